@@ -0,0 +1,381 @@
+package com.hospital.report.ai.client;
+
+import com.hospital.report.ai.client.dto.ChatRequest;
+import com.hospital.report.ai.client.dto.ChatResponse;
+import com.hospital.report.ai.config.LLMGatewayConfig;
+import com.hospital.report.ai.enums.LLMPriority;
+import com.hospital.report.exception.BusinessException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * LLM调用网关
+ * 所有业务侧的DeepSeek调用都经过这里：按优先级排队、限制并发、按令牌速率限流并控制用户每日令牌预算，
+ * 避免批量任务耗尽服务商限额导致交互式对话超时。
+ */
+@Service
+@Slf4j
+public class LLMGateway {
+
+    private final DeepSeekClient deepSeekClient;
+    private final LLMGatewayConfig config;
+
+    private final PriorityBlockingQueue<PendingCall> queue = new PriorityBlockingQueue<>();
+    private final AtomicLong sequence = new AtomicLong(0);
+    private final AtomicInteger inFlight = new AtomicInteger(0);
+    private final AtomicInteger batchInFlight = new AtomicInteger(0);
+    private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+    private final Object drainLock = new Object();
+
+    private final TokenBucket tokenBucket;
+
+    // 用户每日令牌用量，key为 userId:yyyy-MM-dd
+    private final Map<String, AtomicLong> dailyUsage = new ConcurrentHashMap<>();
+
+    private final Map<LLMPriority, QueueStats> queueStats = new EnumMap<>(LLMPriority.class);
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "llm-gateway-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public LLMGateway(DeepSeekClient deepSeekClient, LLMGatewayConfig config) {
+        this.deepSeekClient = deepSeekClient;
+        this.config = config;
+        this.tokenBucket = new TokenBucket(config.getTokensPerMinute());
+        for (LLMPriority priority : LLMPriority.values()) {
+            queueStats.put(priority, new QueueStats());
+        }
+
+        // 每小时清理过期的每日用量记录
+        scheduler.scheduleAtFixedRate(this::cleanupDailyUsage, 1, 1, TimeUnit.HOURS);
+    }
+
+    /**
+     * 同步对话调用，令牌消耗以响应中的usage.totalTokens为准
+     */
+    public Mono<ChatResponse> chat(List<ChatRequest.ChatMessage> messages, LLMPriority priority, Long userId) {
+        return submit(priority, userId, () -> deepSeekClient.chat(messages)
+                .doOnNext(response -> recordUsage(userId, resolveTokens(response, messages)))
+                .flux())
+            .next();
+    }
+
+    /**
+     * 流式对话调用，流式响应不返回usage，按提示词和输出长度估算令牌消耗
+     */
+    public Flux<String> chatStream(List<ChatRequest.ChatMessage> messages, LLMPriority priority, Long userId) {
+        return submit(priority, userId, () -> {
+            AtomicLong outputChars = new AtomicLong(0);
+            return deepSeekClient.chatStream(messages)
+                .doOnNext(chunk -> outputChars.addAndGet(chunk.length()))
+                .doFinally(signal -> recordUsage(userId, estimateTokens(messages) + estimateTokens(outputChars.get())));
+        });
+    }
+
+    /**
+     * 获取用户今日剩余令牌预算，-1表示不限制
+     */
+    public long getRemainingBudget(Long userId) {
+        long budget = config.getUserDailyTokenBudget();
+        if (userId == null || budget <= 0) {
+            return -1;
+        }
+        AtomicLong used = dailyUsage.get(usageKey(userId));
+        return Math.max(0, budget - (used != null ? used.get() : 0));
+    }
+
+    /**
+     * 网关运行统计：在途数、排队数、各优先级排队耗时
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("inFlight", inFlight.get());
+        stats.put("batchInFlight", batchInFlight.get());
+        stats.put("queued", queue.size());
+        stats.put("maxConcurrency", config.getMaxConcurrency());
+        stats.put("availableTokens", tokenBucket.available());
+        stats.put("tokensPerMinute", config.getTokensPerMinute());
+
+        Map<String, Object> byPriority = new LinkedHashMap<>();
+        for (Map.Entry<LLMPriority, QueueStats> entry : queueStats.entrySet()) {
+            byPriority.put(entry.getKey().name(), entry.getValue().toMap());
+        }
+        stats.put("priorities", byPriority);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private <T> Flux<T> submit(LLMPriority priority, Long userId, Supplier<Flux<T>> call) {
+        return Flux.create(sink -> {
+            QueueStats stats = queueStats.get(priority);
+
+            if (userId != null && getRemainingBudget(userId) == 0) {
+                stats.rejected.incrementAndGet();
+                sink.error(new BusinessException(429, "今日AI令牌额度已用完，请明天再试"));
+                return;
+            }
+            if (queue.size() >= config.getMaxQueueSize()) {
+                stats.rejected.incrementAndGet();
+                sink.error(new BusinessException(503, "AI服务繁忙，请稍后重试"));
+                return;
+            }
+
+            PendingCall pending = new PendingCall(priority, sequence.incrementAndGet());
+            pending.start = () -> pending.subscription = call.get()
+                .doFinally(signal -> release(pending))
+                .subscribe(sink::next, sink::error, sink::complete);
+            pending.reject = sink::error;
+            pending.timeout = scheduler.schedule(() -> expire(pending), config.getMaxQueueWaitMs(), TimeUnit.MILLISECONDS);
+            sink.onDispose(pending::cancel);
+
+            stats.submitted.incrementAndGet();
+            queue.offer(pending);
+            drain();
+        }, FluxSink.OverflowStrategy.BUFFER);
+    }
+
+    private void drain() {
+        synchronized (drainLock) {
+            PendingCall next;
+            while (inFlight.get() < config.getMaxConcurrency() && (next = queue.peek()) != null) {
+                if (next.cancelled) {
+                    queue.poll();
+                    continue;
+                }
+
+                boolean batch = next.priority == LLMPriority.BATCH;
+                if (batch && batchInFlight.get() >= config.getBatchMaxConcurrency()) {
+                    // 队首已经是最低优先级，后面不会有更高优先级的请求
+                    break;
+                }
+
+                long waitMs = tokenBucket.waitTimeMs(batch ? config.getBatchReserveRatio() : 0);
+                if (waitMs > 0) {
+                    scheduleDrain(waitMs);
+                    break;
+                }
+
+                queue.poll();
+                if (!next.started.compareAndSet(false, true)) {
+                    continue;
+                }
+                next.timeout.cancel(false);
+                inFlight.incrementAndGet();
+                if (batch) {
+                    batchInFlight.incrementAndGet();
+                }
+                queueStats.get(next.priority).recordWait(System.currentTimeMillis() - next.enqueueTime);
+
+                try {
+                    next.start.run();
+                } catch (Exception e) {
+                    log.error("LLM调用启动失败", e);
+                    release(next);
+                    next.reject.accept(e);
+                }
+            }
+        }
+    }
+
+    private void release(PendingCall pending) {
+        if (!pending.released.compareAndSet(false, true)) {
+            return;
+        }
+        inFlight.decrementAndGet();
+        if (pending.priority == LLMPriority.BATCH) {
+            batchInFlight.decrementAndGet();
+        }
+        queueStats.get(pending.priority).completed.incrementAndGet();
+        drain();
+    }
+
+    private void expire(PendingCall pending) {
+        if (pending.started.compareAndSet(false, true)) {
+            pending.released.set(true);
+            queue.remove(pending);
+            queueStats.get(pending.priority).timedOut.incrementAndGet();
+            log.warn("LLM调用排队超时，优先级: {}, 等待: {}ms", pending.priority, System.currentTimeMillis() - pending.enqueueTime);
+            pending.reject.accept(new BusinessException(503, "AI服务繁忙，排队超时，请稍后重试"));
+        }
+    }
+
+    private void scheduleDrain(long delayMs) {
+        if (drainScheduled.compareAndSet(false, true)) {
+            scheduler.schedule(() -> {
+                drainScheduled.set(false);
+                drain();
+            }, delayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void recordUsage(Long userId, long tokens) {
+        if (tokens <= 0) {
+            return;
+        }
+        tokenBucket.consume(tokens);
+        if (userId != null) {
+            dailyUsage.computeIfAbsent(usageKey(userId), k -> new AtomicLong(0)).addAndGet(tokens);
+        }
+    }
+
+    private long resolveTokens(ChatResponse response, List<ChatRequest.ChatMessage> messages) {
+        if (response != null && response.getUsage() != null && response.getUsage().getTotalTokens() != null) {
+            return response.getUsage().getTotalTokens();
+        }
+        return estimateTokens(messages);
+    }
+
+    private long estimateTokens(List<ChatRequest.ChatMessage> messages) {
+        long chars = 0;
+        for (ChatRequest.ChatMessage message : messages) {
+            if (message.getContent() != null) {
+                chars += message.getContent().length();
+            }
+        }
+        return estimateTokens(chars);
+    }
+
+    private long estimateTokens(long chars) {
+        // 中英文混合文本大致按2个字符1个令牌估算
+        return (chars + 1) / 2;
+    }
+
+    private String usageKey(Long userId) {
+        return userId + ":" + LocalDate.now();
+    }
+
+    private void cleanupDailyUsage() {
+        String today = ":" + LocalDate.now();
+        dailyUsage.keySet().removeIf(key -> !key.endsWith(today));
+    }
+
+    /**
+     * 排队中的调用，按优先级和提交顺序排序
+     */
+    private static class PendingCall implements Comparable<PendingCall> {
+        private final LLMPriority priority;
+        private final long sequence;
+        private final long enqueueTime = System.currentTimeMillis();
+        private final AtomicBoolean started = new AtomicBoolean(false);
+        private final AtomicBoolean released = new AtomicBoolean(false);
+        private volatile boolean cancelled;
+        private volatile Disposable subscription;
+        private Runnable start;
+        private Consumer<Throwable> reject;
+        private ScheduledFuture<?> timeout;
+
+        PendingCall(LLMPriority priority, long sequence) {
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        void cancel() {
+            cancelled = true;
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+            Disposable current = subscription;
+            if (current != null) {
+                current.dispose();
+            }
+        }
+
+        @Override
+        public int compareTo(PendingCall other) {
+            int result = Integer.compare(priority.ordinal(), other.priority.ordinal());
+            return result != 0 ? result : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * 令牌桶，容量为每分钟令牌数，按毫秒匀速补充。
+     * 实际消耗在响应返回后才知道，因此允许透支，透支部分由后续补充抵消。
+     */
+    private static class TokenBucket {
+        private final double capacity;
+        private final double refillPerMs;
+        private double tokens;
+        private long lastRefillTime;
+
+        TokenBucket(long tokensPerMinute) {
+            this.capacity = tokensPerMinute;
+            this.refillPerMs = tokensPerMinute / 60000.0;
+            this.tokens = tokensPerMinute;
+            this.lastRefillTime = System.currentTimeMillis();
+        }
+
+        synchronized long waitTimeMs(double reserveRatio) {
+            refill();
+            double floor = capacity * reserveRatio;
+            if (tokens > floor) {
+                return 0;
+            }
+            return (long) Math.ceil((floor - tokens + 1) / refillPerMs);
+        }
+
+        synchronized void consume(long amount) {
+            refill();
+            tokens -= amount;
+        }
+
+        synchronized long available() {
+            refill();
+            return (long) tokens;
+        }
+
+        private void refill() {
+            long now = System.currentTimeMillis();
+            tokens = Math.min(capacity, tokens + (now - lastRefillTime) * refillPerMs);
+            lastRefillTime = now;
+        }
+    }
+
+    private static class QueueStats {
+        private final AtomicLong submitted = new AtomicLong(0);
+        private final AtomicLong completed = new AtomicLong(0);
+        private final AtomicLong rejected = new AtomicLong(0);
+        private final AtomicLong timedOut = new AtomicLong(0);
+        private final AtomicLong started = new AtomicLong(0);
+        private final AtomicLong totalWaitMs = new AtomicLong(0);
+        private final AtomicLong maxWaitMs = new AtomicLong(0);
+
+        void recordWait(long waitMs) {
+            started.incrementAndGet();
+            totalWaitMs.addAndGet(waitMs);
+            maxWaitMs.accumulateAndGet(waitMs, Math::max);
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            long startedCount = started.get();
+            map.put("submitted", submitted.get());
+            map.put("started", startedCount);
+            map.put("completed", completed.get());
+            map.put("rejected", rejected.get());
+            map.put("timedOut", timedOut.get());
+            map.put("avgQueueTimeMs", startedCount > 0 ? totalWaitMs.get() / startedCount : 0);
+            map.put("maxQueueTimeMs", maxWaitMs.get());
+            return map;
+        }
+    }
+}
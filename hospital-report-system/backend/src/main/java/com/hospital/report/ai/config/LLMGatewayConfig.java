@@ -0,0 +1,36 @@
+package com.hospital.report.ai.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * LLM网关配置
+ * 控制对DeepSeek的并发数、令牌速率以及用户每日令牌预算
+ */
+@Configuration
+@ConfigurationProperties(prefix = "ai.gateway")
+@Data
+public class LLMGatewayConfig {
+    
+    /** 同时在途的LLM调用上限 */
+    private Integer maxConcurrency = 8;
+    
+    /** 批量分析类调用最多占用的并发数，保证交互式请求始终有空位 */
+    private Integer batchMaxConcurrency = 2;
+    
+    /** 排队请求上限，超出后直接拒绝 */
+    private Integer maxQueueSize = 200;
+    
+    /** 排队最长等待时间(毫秒) */
+    private Long maxQueueWaitMs = 60000L;
+    
+    /** 令牌桶容量，对应服务商每分钟令牌限额 */
+    private Long tokensPerMinute = 200000L;
+    
+    /** 令牌剩余比例低于该值时暂停批量调用，为交互式请求保留余量 */
+    private Double batchReserveRatio = 0.2;
+    
+    /** 单用户每日令牌预算，0表示不限制 */
+    private Long userDailyTokenBudget = 500000L;
+}
@@ -1,5 +1,6 @@
 package com.hospital.report.ai.controller;
 
+import com.hospital.report.ai.client.LLMGateway;
 import com.hospital.report.ai.entity.AIConversation;
 import com.hospital.report.ai.entity.AIMessage;
 import com.hospital.report.ai.entity.dto.AIAssistantRequest;
@@ -8,8 +9,11 @@ import com.hospital.report.ai.entity.dto.ConversationStats;
 import com.hospital.report.ai.enums.AnalysisType;
 import com.hospital.report.ai.enums.MessageType;
 import com.hospital.report.ai.service.AIAssistantService;
+import com.hospital.report.ai.service.ConversationContextService;
 import com.hospital.report.ai.service.ConversationService;
 import com.hospital.report.common.Result;
+import com.hospital.report.entity.User;
+import com.hospital.report.service.AuthService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -36,11 +40,20 @@ public class AIAssistantController {
     
     private final AIAssistantService aiAssistantService;
     private final ConversationService conversationService;
+    private final ConversationContextService conversationContextService;
+    private final LLMGateway llmGateway;
+    private final AuthService authService;
     
     public AIAssistantController(AIAssistantService aiAssistantService,
-                                ConversationService conversationService) {
+                                ConversationService conversationService,
+                                ConversationContextService conversationContextService,
+                                LLMGateway llmGateway,
+                                AuthService authService) {
         this.aiAssistantService = aiAssistantService;
         this.conversationService = conversationService;
+        this.conversationContextService = conversationContextService;
+        this.llmGateway = llmGateway;
+        this.authService = authService;
     }
     
     @GetMapping("/test")
@@ -146,7 +159,9 @@ public class AIAssistantController {
             }
             Long datasourceId = Long.valueOf(request.get("datasourceId").toString());
             
-            AIAssistantResponse response = aiAssistantService.analyzeDatabaseSchema(conversationId, datasourceId);
+            Long userId = resolveUserId(request, conversationId);
+            
+            AIAssistantResponse response = aiAssistantService.analyzeDatabaseSchema(conversationId, datasourceId, userId);
             
             if (response.isSuccess()) {
                 return Result.success(response);
@@ -185,7 +200,9 @@ public class AIAssistantController {
                 }
             }
             
-            AIAssistantResponse response = aiAssistantService.analyzeSql(conversationId, sqlContent, datasourceId, analysisType);
+            Long userId = resolveUserId(request, conversationId);
+            
+            AIAssistantResponse response = aiAssistantService.analyzeSql(conversationId, sqlContent, datasourceId, analysisType, userId);
             
             if (response.isSuccess()) {
                 return Result.success(response);
@@ -271,6 +288,7 @@ public class AIAssistantController {
     public Result<Void> archiveConversation(@Parameter(description = "对话ID") @PathVariable Long conversationId) {
         try {
             conversationService.archiveConversation(conversationId);
+            conversationContextService.evict(conversationId);
             return Result.success();
         } catch (Exception e) {
             log.error("归档对话失败，对话ID: {}", conversationId, e);
@@ -283,6 +301,7 @@ public class AIAssistantController {
     public Result<Void> deleteConversation(@Parameter(description = "对话ID") @PathVariable Long conversationId) {
         try {
             conversationService.deleteConversation(conversationId);
+            conversationContextService.evict(conversationId);
             return Result.success();
         } catch (Exception e) {
             log.error("删除对话失败，对话ID: {}", conversationId, e);
@@ -319,6 +338,31 @@ public class AIAssistantController {
         }
     }
     
+    @GetMapping("/gateway/stats")
+    @Operation(summary = "获取LLM网关统计", description = "获取LLM调用的并发、排队耗时和令牌限流情况")
+    public Result<Map<String, Object>> getGatewayStats() {
+        try {
+            return Result.success(llmGateway.getStatistics());
+        } catch (Exception e) {
+            log.error("获取LLM网关统计失败", e);
+            return Result.error("获取LLM网关统计失败: " + e.getMessage());
+        }
+    }
+    
+    @GetMapping({"/gateway/budget", "/gateway/budget/{userId}"})
+    @Operation(summary = "获取用户令牌余额", description = "获取当前登录用户今日剩余的AI令牌预算，-1表示不限制")
+    public Result<Long> getRemainingBudget(
+            @Parameter(description = "用户ID（只能是当前登录用户）") @PathVariable(required = false) Long userId) {
+        Long currentUserId = currentUserId();
+        if (currentUserId == null) {
+            return Result.error("未登录或登录已过期");
+        }
+        if (userId != null && !userId.equals(currentUserId)) {
+            return Result.error("无权查看其他用户的令牌余额");
+        }
+        return Result.success(llmGateway.getRemainingBudget(currentUserId));
+    }
+    
     @PostMapping("/test-connection")
     @Operation(summary = "测试AI连接", description = "测试与AI服务的连接状态")
     public Result<Map<String, Object>> testConnection() {
@@ -353,6 +397,8 @@ public class AIAssistantController {
             conversationService.saveMessage(conversationId, 
                 MessageType.ASSISTANT, 
                 aiResponse);
+            conversationContextService.appendMessage(conversationId, MessageType.USER, userQuery);
+            conversationContextService.appendMessage(conversationId, MessageType.ASSISTANT, aiResponse);
             
             Map<String, Object> result = Map.of(
                 "success", true,
@@ -365,4 +411,31 @@ public class AIAssistantController {
             return Result.error("保存搜索对话失败: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * LLM调用计入的用户：优先取当前登录用户，其次为请求中的用户ID，最后为对话所属用户
+     */
+    private Long resolveUserId(Map<String, Object> request, Long conversationId) {
+        Long userId = currentUserId();
+        if (userId != null) {
+            return userId;
+        }
+        if (request.get("userId") != null) {
+            return Long.valueOf(request.get("userId").toString());
+        }
+        if (conversationId != null) {
+            return conversationService.getConversation(conversationId).getUserId();
+        }
+        return null;
+    }
+    
+    private Long currentUserId() {
+        try {
+            User user = authService.getCurrentUser();
+            return user != null ? user.getId() : null;
+        } catch (Exception e) {
+            log.warn("获取当前登录用户失败: {}", e.getMessage());
+            return null;
+        }
+    }
+}
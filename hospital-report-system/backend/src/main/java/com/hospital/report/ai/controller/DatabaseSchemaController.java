@@ -6,6 +6,8 @@ import com.hospital.report.ai.service.VectorSearchService;
 import com.hospital.report.ai.service.VectorStoreService;
 import com.hospital.report.common.Result;
 import com.hospital.report.entity.DataSource;
+import com.hospital.report.entity.User;
+import com.hospital.report.service.AuthService;
 import com.hospital.report.service.DataSourceService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -33,6 +35,9 @@ public class DatabaseSchemaController {
     @Autowired
     private NaturalLanguageToSqlService nlToSqlService;
 
+    @Autowired
+    private AuthService authService;
+
     /**
      * 为指定数据源创建或更新schema向量
      */
@@ -122,12 +127,18 @@ public class DatabaseSchemaController {
                 return Result.error("查询内容不能为空");
             }
             
+            // LLM调用计入当前登录用户的令牌预算，未登录时兼容请求中的用户ID
+            Long userId = currentUserId();
+            if (userId == null && request.get("userId") != null) {
+                userId = Long.valueOf(request.get("userId").toString());
+            }
+            
             if (!databaseSchemaService.hasSchemaData(datasourceId)) {
                 return Result.error("该数据源尚未构建schema向量，请先执行向量构建");
             }
             
             NaturalLanguageToSqlService.SqlGenerationResult result = 
-                nlToSqlService.generateSql(query, datasourceId);
+                nlToSqlService.generateSql(query, datasourceId, userId);
             
             return Result.success(result);
             
@@ -136,4 +147,14 @@ public class DatabaseSchemaController {
             return Result.error("转换失败: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    private Long currentUserId() {
+        try {
+            User user = authService.getCurrentUser();
+            return user != null ? user.getId() : null;
+        } catch (Exception e) {
+            log.warn("获取当前登录用户失败: {}", e.getMessage());
+            return null;
+        }
+    }
+}
@@ -26,6 +26,15 @@ public class AIConversation {
     @TableField("status")
     private ConversationStatus status = ConversationStatus.ACTIVE;
     
+    @TableField("message_count")
+    private Integer messageCount;
+    
+    @TableField("last_message")
+    private String lastMessage;
+    
+    @TableField("last_message_time")
+    private LocalDateTime lastMessageTime;
+    
     @TableField(value = "created_time", fill = FieldFill.INSERT)
     private LocalDateTime createdTime;
     
@@ -34,10 +43,4 @@ public class AIConversation {
     
     @TableField(exist = false)
     private List<AIMessage> messages;
-    
-    @TableField(exist = false)
-    private Integer messageCount;
-    
-    @TableField(exist = false)
-    private String lastMessage;
 }
\ No newline at end of file
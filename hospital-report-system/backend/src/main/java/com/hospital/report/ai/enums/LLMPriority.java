@@ -0,0 +1,20 @@
+package com.hospital.report.ai.enums;
+
+/**
+ * LLM调用优先级，数值越小越优先
+ */
+public enum LLMPriority {
+    INTERACTIVE("交互式对话"),
+    NL2SQL("自然语言转SQL"),
+    BATCH("批量分析");
+    
+    private final String description;
+    
+    LLMPriority(String description) {
+        this.description = description;
+    }
+    
+    public String getDescription() {
+        return description;
+    }
+}
@@ -5,6 +5,7 @@ import com.hospital.report.ai.entity.AIConversation;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -13,12 +14,26 @@ import java.util.Map;
 @Mapper
 public interface AIConversationMapper extends BaseMapper<AIConversation> {
     
-    @Select("SELECT c.*, " +
-            "(SELECT COUNT(*) FROM ai_message m WHERE m.conversation_id = c.id) as message_count, " +
-            "(SELECT content FROM ai_message m WHERE m.conversation_id = c.id ORDER BY created_time DESC LIMIT 1) as last_message " +
-            "FROM ai_conversation c WHERE c.user_id = #{userId} AND c.status = #{status} " +
-            "ORDER BY c.updated_time DESC")
-    List<Map<String, Object>> selectConversationsWithStats(@Param("userId") Long userId, @Param("status") String status);
+    /**
+     * 对话列表及统计信息，统计字段由saveMessage增量维护，单条查询即可
+     */
+    @Select("<script>" +
+            "SELECT c.* FROM ai_conversation c WHERE c.user_id = #{userId} AND c.status = #{status} " +
+            "ORDER BY c.updated_time DESC" +
+            "<if test='limit != null and limit > 0'> LIMIT #{limit}</if>" +
+            "</script>")
+    List<Map<String, Object>> selectConversationsWithStats(@Param("userId") Long userId,
+                                                            @Param("status") String status,
+                                                            @Param("limit") Integer limit);
+    
+    /**
+     * 原子递增消息数并更新最后一条消息预览
+     */
+    @Update("UPDATE ai_conversation SET message_count = message_count + 1, last_message = #{lastMessage}, " +
+            "last_message_time = #{messageTime}, updated_time = #{messageTime} WHERE id = #{conversationId}")
+    int incrementMessageStats(@Param("conversationId") Long conversationId,
+                              @Param("lastMessage") String lastMessage,
+                              @Param("messageTime") LocalDateTime messageTime);
     
     @Select("SELECT COUNT(*) FROM ai_conversation WHERE user_id = #{userId} AND created_time >= #{startTime}")
     Long countByUserIdAndCreatedTimeAfter(@Param("userId") Long userId, @Param("startTime") LocalDateTime startTime);
@@ -2,14 +2,14 @@ package com.hospital.report.ai.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.hospital.report.ai.client.DeepSeekClient;
+import com.hospital.report.ai.client.LLMGateway;
 import com.hospital.report.ai.client.dto.ChatRequest;
 import com.hospital.report.ai.client.dto.ChatResponse;
 import com.hospital.report.ai.entity.AIConversation;
-import com.hospital.report.ai.entity.AIMessage;
 import com.hospital.report.ai.entity.SqlAnalysisLog;
 import com.hospital.report.ai.entity.dto.*;
 import com.hospital.report.ai.enums.AnalysisType;
+import com.hospital.report.ai.enums.LLMPriority;
 import com.hospital.report.ai.enums.MessageType;
 import com.hospital.report.ai.mapper.SqlAnalysisLogMapper;
 import com.hospital.report.entity.DataSource;
@@ -30,7 +30,7 @@ import java.util.*;
 @Transactional
 public class AIAssistantService {
     
-    private final DeepSeekClient deepSeekClient;
+    private final LLMGateway llmGateway;
     private final DatabaseSchemaAnalyzer schemaAnalyzer;
     private final SqlAnalyzer sqlAnalyzer;
     private final ConversationService conversationService;
@@ -38,17 +38,19 @@ public class AIAssistantService {
     private final NaturalLanguageToSqlService naturalLanguageToSqlService;
     private final SqlAnalysisLogMapper sqlAnalysisLogMapper;
     private final MultiLanguagePromptService multiLanguagePromptService;
+    private final ConversationContextService conversationContextService;
     private final ObjectMapper objectMapper;
     
-    public AIAssistantService(DeepSeekClient deepSeekClient,
+    public AIAssistantService(LLMGateway llmGateway,
                              DatabaseSchemaAnalyzer schemaAnalyzer,
                              SqlAnalyzer sqlAnalyzer,
                              ConversationService conversationService,
                              DataSourceService dataSourceService,
                              NaturalLanguageToSqlService naturalLanguageToSqlService,
                              SqlAnalysisLogMapper sqlAnalysisLogMapper,
-                             MultiLanguagePromptService multiLanguagePromptService) {
-        this.deepSeekClient = deepSeekClient;
+                             MultiLanguagePromptService multiLanguagePromptService,
+                             ConversationContextService conversationContextService) {
+        this.llmGateway = llmGateway;
         this.schemaAnalyzer = schemaAnalyzer;
         this.sqlAnalyzer = sqlAnalyzer;
         this.conversationService = conversationService;
@@ -56,6 +58,7 @@ public class AIAssistantService {
         this.naturalLanguageToSqlService = naturalLanguageToSqlService;
         this.sqlAnalysisLogMapper = sqlAnalysisLogMapper;
         this.multiLanguagePromptService = multiLanguagePromptService;
+        this.conversationContextService = conversationContextService;
         this.objectMapper = new ObjectMapper();
     }
     
@@ -68,7 +71,7 @@ public class AIAssistantService {
             List<ChatRequest.ChatMessage> messages = buildContextMessages(conversation, request);
             
             // 3. 调用AI接口
-            ChatResponse response = deepSeekClient.chat(messages).block();
+            ChatResponse response = llmGateway.chat(messages, LLMPriority.INTERACTIVE, request.getUserId()).block();
             
             if (response == null || response.getChoices().isEmpty()) {
                 return AIAssistantResponse.error("AI服务响应异常");
@@ -79,8 +82,8 @@ public class AIAssistantService {
                 ? response.getUsage().getTotalTokens() : 0;
             
             // 4. 保存对话记录
-            conversationService.saveMessage(conversation.getId(), MessageType.USER, request.getMessage());
-            conversationService.saveMessage(conversation.getId(), MessageType.ASSISTANT, aiResponse, null, tokensUsed);
+            saveMessage(conversation.getId(), MessageType.USER, request.getMessage());
+            saveMessage(conversation.getId(), MessageType.ASSISTANT, aiResponse, tokensUsed);
             
             // 5. 构建响应
             AIAssistantResponse assistantResponse = AIAssistantResponse.success(conversation.getId(), aiResponse);
@@ -124,19 +127,19 @@ public class AIAssistantService {
                 List<ChatRequest.ChatMessage> messages = buildContextMessages(conversation, request);
                 
                 // 4. 保存用户消息
-                conversationService.saveMessage(conversation.getId(), MessageType.USER, request.getMessage());
+                saveMessage(conversation.getId(), MessageType.USER, request.getMessage());
                 
                 // 5. 调用流式AI接口
                 StringBuilder fullResponse = new StringBuilder();
                 
-                deepSeekClient.chatStream(messages)
+                llmGateway.chatStream(messages, LLMPriority.INTERACTIVE, request.getUserId())
                     .doOnNext(chunk -> {
                         fullResponse.append(chunk);
                         sink.next(chunk);
                     })
                     .doOnComplete(() -> {
                         // 保存完整的AI响应
-                        conversationService.saveMessage(conversation.getId(), MessageType.ASSISTANT, fullResponse.toString());
+                        saveMessage(conversation.getId(), MessageType.ASSISTANT, fullResponse.toString());
                         sink.complete();
                         log.info("流式AI对话完成，对话ID: {}", conversation.getId());
                     })
@@ -153,11 +156,11 @@ public class AIAssistantService {
         });
     }
     
-    public AIAssistantResponse analyzeDatabaseSchema(Long conversationId, Long datasourceId) {
-        return analyzeDatabaseSchema(conversationId, datasourceId, null);
+    public AIAssistantResponse analyzeDatabaseSchema(Long conversationId, Long datasourceId, Long userId) {
+        return analyzeDatabaseSchema(conversationId, datasourceId, userId, null);
     }
     
-    public AIAssistantResponse analyzeDatabaseSchema(Long conversationId, Long datasourceId, String userQuery) {
+    public AIAssistantResponse analyzeDatabaseSchema(Long conversationId, Long datasourceId, Long userId, String userQuery) {
         long startTime = System.currentTimeMillis();
         
         try {
@@ -183,7 +186,7 @@ public class AIAssistantService {
             );
             
             // 4. 调用AI分析
-            ChatResponse response = deepSeekClient.chat(messages).block();
+            ChatResponse response = llmGateway.chat(messages, LLMPriority.BATCH, userId).block();
             
             if (response == null || response.getChoices().isEmpty()) {
                 String errorMsg = multiLanguagePromptService.getErrorMessage(language, "ai_service_error") + "数据库分析服务异常";
@@ -198,8 +201,8 @@ public class AIAssistantService {
             if (conversationId != null) {
                 String systemMessage = language == MultiLanguagePromptService.Language.ENGLISH 
                     ? "Database structure analysis" : "数据库结构分析";
-                conversationService.saveMessage(conversationId, MessageType.SYSTEM, systemMessage);
-                conversationService.saveMessage(conversationId, MessageType.ASSISTANT, analysis, null, tokensUsed);
+                saveMessage(conversationId, MessageType.SYSTEM, systemMessage);
+                saveMessage(conversationId, MessageType.ASSISTANT, analysis, tokensUsed);
             }
             
             // 6. 准备响应数据
@@ -222,11 +225,13 @@ public class AIAssistantService {
         }
     }
     
-    public AIAssistantResponse analyzeSql(Long conversationId, String sqlContent, Long datasourceId, AnalysisType analysisType) {
-        return analyzeSql(conversationId, sqlContent, datasourceId, analysisType, null);
+    public AIAssistantResponse analyzeSql(Long conversationId, String sqlContent, Long datasourceId, AnalysisType analysisType,
+                                          Long userId) {
+        return analyzeSql(conversationId, sqlContent, datasourceId, analysisType, userId, null);
     }
     
-    public AIAssistantResponse analyzeSql(Long conversationId, String sqlContent, Long datasourceId, AnalysisType analysisType, String userQuery) {
+    public AIAssistantResponse analyzeSql(Long conversationId, String sqlContent, Long datasourceId, AnalysisType analysisType,
+                                          Long userId, String userQuery) {
         long startTime = System.currentTimeMillis();
         
         try {
@@ -253,7 +258,7 @@ public class AIAssistantService {
             );
             
             // 4. 调用AI分析
-            ChatResponse response = deepSeekClient.chat(messages).block();
+            ChatResponse response = llmGateway.chat(messages, LLMPriority.BATCH, userId).block();
             
             if (response == null || response.getChoices().isEmpty()) {
                 String errorMsg = multiLanguagePromptService.getErrorMessage(language, "ai_service_error") + "SQL分析服务异常";
@@ -271,8 +276,8 @@ public class AIAssistantService {
             if (conversationId != null) {
                 String userMessage = language == MultiLanguagePromptService.Language.ENGLISH 
                     ? "SQL Analysis: " + sqlContent : "SQL分析: " + sqlContent;
-                conversationService.saveMessage(conversationId, MessageType.USER, userMessage);
-                conversationService.saveMessage(conversationId, MessageType.ASSISTANT, aiAnalysis, null, tokensUsed);
+                saveMessage(conversationId, MessageType.USER, userMessage);
+                saveMessage(conversationId, MessageType.ASSISTANT, aiAnalysis, tokensUsed);
             }
             
             // 7. 准备响应数据
@@ -328,28 +333,13 @@ public class AIAssistantService {
         // 1. 检测用户消息的语言
         MultiLanguagePromptService.Language language = multiLanguagePromptService.detectLanguage(request.getMessage());
         
-        // 2. 添加多语言系统提示
-        DataSource dataSource = null;
-        if (conversation.getDatasourceId() != null) {
-            try {
-                dataSource = dataSourceService.getById(conversation.getDatasourceId());
-            } catch (Exception e) {
-                log.warn("获取数据源信息失败", e);
-            }
-        }
-        
+        // 2. 添加多语言系统提示（数据源信息缓存在对话上下文中）
+        DataSource dataSource = conversationContextService.getDataSource(conversation);
         String systemPrompt = multiLanguagePromptService.buildSystemPrompt(language, dataSource);
         messages.add(ChatRequest.ChatMessage.system(systemPrompt));
         
-        // 3. 添加历史对话（最近10条）
-        List<AIMessage> recentMessages = conversationService.getRecentMessages(conversation.getId(), 10);
-        for (AIMessage message : recentMessages) {
-            if (message.getMessageType() == MessageType.USER) {
-                messages.add(ChatRequest.ChatMessage.user(message.getContent()));
-            } else if (message.getMessageType() == MessageType.ASSISTANT) {
-                messages.add(ChatRequest.ChatMessage.assistant(message.getContent()));
-            }
-        }
+        // 3. 添加历史对话（滚动摘要 + 最近消息窗口）
+        messages.addAll(conversationContextService.getHistoryMessages(conversation));
         
         // 4. 添加当前用户消息
         messages.add(ChatRequest.ChatMessage.user(request.getMessage()));
@@ -357,6 +347,18 @@ public class AIAssistantService {
         return messages;
     }
     
+    /**
+     * 保存消息并同步到对话上下文窗口
+     */
+    private void saveMessage(Long conversationId, MessageType messageType, String content) {
+        saveMessage(conversationId, messageType, content, null);
+    }
+    
+    private void saveMessage(Long conversationId, MessageType messageType, String content, Integer tokensUsed) {
+        conversationService.saveMessage(conversationId, messageType, content, null, tokensUsed);
+        conversationContextService.appendMessage(conversationId, messageType, content);
+    }
+    
     private String formatJson(Object obj) {
         try {
             return objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(obj);
@@ -397,10 +399,11 @@ public class AIAssistantService {
             MultiLanguagePromptService.Language language = multiLanguagePromptService.detectLanguage(request.getOriginalQuery());
             
             // 2. 保存用户消息（使用原始查询）
-            conversationService.saveMessage(conversation.getId(), MessageType.USER, request.getOriginalQuery());
+            saveMessage(conversation.getId(), MessageType.USER, request.getOriginalQuery());
             
             // 3. 调用自然语言转SQL服务，获取结果
-            var sqlResult = naturalLanguageToSqlService.generateSql(request.getOriginalQuery(), request.getDatasourceId());
+            var sqlResult = naturalLanguageToSqlService.generateSql(request.getOriginalQuery(), request.getDatasourceId(),
+                request.getUserId());
             
             // 4. 构建多语言流式响应内容
             String formattedResponse;
@@ -468,7 +471,7 @@ public class AIAssistantService {
             );
             
             // 6. 保存完整的AI响应
-            conversationService.saveMessage(conversation.getId(), MessageType.ASSISTANT, fullResponse);
+            saveMessage(conversation.getId(), MessageType.ASSISTANT, fullResponse);
             
             // 7. 完成流式响应
             sink.complete();
@@ -484,7 +487,7 @@ public class AIAssistantService {
             sink.next(errorMessage);
             
             // 保存错误响应
-            conversationService.saveMessage(conversation.getId(), MessageType.ASSISTANT, errorMessage);
+            saveMessage(conversation.getId(), MessageType.ASSISTANT, errorMessage);
             
             sink.complete();
         }
@@ -503,7 +506,7 @@ public class AIAssistantService {
             
             // 2. 保存用户消息
             String userMessage = String.format("%s", request.getUserRequirements());
-            conversationService.saveMessage(conversation.getId(), MessageType.USER, userMessage);
+            saveMessage(conversation.getId(), MessageType.USER, userMessage);
             
             // 3. 获取数据源信息
             DataSource dataSource = dataSourceService.getById(request.getDatasourceId());
@@ -565,14 +568,14 @@ public class AIAssistantService {
             // 5. 调用AI进行流式SQL定制
             StringBuilder fullResponse = new StringBuilder();
             
-            deepSeekClient.chatStream(messages)
+            llmGateway.chatStream(messages, LLMPriority.INTERACTIVE, request.getUserId())
                 .doOnNext(chunk -> {
                     fullResponse.append(chunk);
                     sink.next(chunk);
                 })
                 .doOnComplete(() -> {
                     // 保存完整的AI响应
-                    conversationService.saveMessage(conversation.getId(), MessageType.ASSISTANT, fullResponse.toString());
+                    saveMessage(conversation.getId(), MessageType.ASSISTANT, fullResponse.toString());
                     sink.complete();
                     log.info("SQL智能定制流式响应完成，对话ID: {}", conversation.getId());
                 })
@@ -584,7 +587,7 @@ public class AIAssistantService {
                         "SQL定制失败，请稍后重试。错误: " + error.getMessage();
                     
                     sink.next(errorMessage);
-                    conversationService.saveMessage(conversation.getId(), MessageType.ASSISTANT, errorMessage);
+                    saveMessage(conversation.getId(), MessageType.ASSISTANT, errorMessage);
                     sink.complete();
                 })
                 .subscribe();
@@ -599,7 +602,7 @@ public class AIAssistantService {
                 "SQL定制请求失败，请检查您的需求并重试。错误: " + e.getMessage();
             
             sink.next(errorMessage);
-            conversationService.saveMessage(conversation.getId(), MessageType.ASSISTANT, errorMessage);
+            saveMessage(conversation.getId(), MessageType.ASSISTANT, errorMessage);
             sink.complete();
         }
     }
@@ -0,0 +1,287 @@
+package com.hospital.report.ai.service;
+
+import com.hospital.report.ai.client.LLMGateway;
+import com.hospital.report.ai.client.dto.ChatRequest;
+import com.hospital.report.ai.entity.AIConversation;
+import com.hospital.report.ai.entity.AIMessage;
+import com.hospital.report.ai.enums.LLMPriority;
+import com.hospital.report.ai.enums.MessageType;
+import com.hospital.report.entity.DataSource;
+import com.hospital.report.service.DataSourceService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对话上下文服务
+ * 在内存中为每个对话维护最近消息窗口和数据源信息，避免每轮对话都查库；
+ * 窗口估算令牌数超过阈值时，将较早的消息交给LLM压缩为滚动摘要，使提示词长度保持稳定。
+ */
+@Service
+@Slf4j
+public class ConversationContextService {
+
+    private static final int INITIAL_HISTORY_SIZE = 10;
+
+    private final ConversationService conversationService;
+    private final DataSourceService dataSourceService;
+    private final LLMGateway llmGateway;
+
+    @Value("${ai.context.max-tokens:3000}")
+    private int maxContextTokens;
+
+    @Value("${ai.context.keep-recent-messages:4}")
+    private int keepRecentMessages;
+
+    @Value("${ai.context.max-window-messages:30}")
+    private int maxWindowMessages;
+
+    @Value("${ai.context.idle-minutes:30}")
+    private int idleMinutes;
+
+    @Value("${ai.context.max-sessions:2000}")
+    private int maxSessions;
+
+    private final Map<Long, SessionContext> sessions = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService cleanupExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "conversation-context-cleanup");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ConversationContextService(ConversationService conversationService,
+                                      DataSourceService dataSourceService,
+                                      LLMGateway llmGateway) {
+        this.conversationService = conversationService;
+        this.dataSourceService = dataSourceService;
+        this.llmGateway = llmGateway;
+
+        // 每5分钟清理空闲会话
+        cleanupExecutor.scheduleAtFixedRate(this::evictIdleSessions, 5, 5, TimeUnit.MINUTES);
+    }
+
+    /**
+     * 获取对话绑定的数据源（首次访问时加载并缓存）
+     */
+    public DataSource getDataSource(AIConversation conversation) {
+        return getOrLoad(conversation).dataSource;
+    }
+
+    /**
+     * 获取用于构建提示词的历史消息：滚动摘要（如有）+ 最近消息窗口
+     */
+    public List<ChatRequest.ChatMessage> getHistoryMessages(AIConversation conversation) {
+        SessionContext session = getOrLoad(conversation);
+        synchronized (session) {
+            List<ChatRequest.ChatMessage> history = new ArrayList<>(session.window.size() + 1);
+            if (StringUtils.hasText(session.summary)) {
+                history.add(ChatRequest.ChatMessage.system("以下是本次对话较早内容的摘要：\n" + session.summary));
+            }
+            history.addAll(session.window);
+            return history;
+        }
+    }
+
+    /**
+     * 消息落库后追加到内存窗口，必要时触发后台压缩。会话未加载时无需处理，下次访问会从数据库加载。
+     */
+    public void appendMessage(Long conversationId, MessageType messageType, String content) {
+        SessionContext session = sessions.get(conversationId);
+        if (session == null || content == null) {
+            return;
+        }
+
+        synchronized (session) {
+            if (messageType == MessageType.USER) {
+                session.window.add(ChatRequest.ChatMessage.user(content));
+            } else if (messageType == MessageType.ASSISTANT) {
+                session.window.add(ChatRequest.ChatMessage.assistant(content));
+            } else {
+                return;
+            }
+            session.touch();
+
+            // 摘要一直失败时的兜底，防止窗口无限增长
+            while (session.window.size() > maxWindowMessages) {
+                session.window.remove(0);
+                session.droppedDuringCompaction++;
+            }
+        }
+
+        compactIfNeeded(session);
+    }
+
+    /**
+     * 移除对话的内存上下文，对话被删除（含永久删除）、归档或在其他入口写入消息时调用
+     */
+    public void evict(Long conversationId) {
+        sessions.remove(conversationId);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        cleanupExecutor.shutdownNow();
+    }
+
+    private SessionContext getOrLoad(AIConversation conversation) {
+        SessionContext session = sessions.get(conversation.getId());
+        if (session == null) {
+            // 在映射锁外查库，并发加载时以先放入的为准
+            SessionContext loaded = loadSession(conversation);
+            session = sessions.putIfAbsent(conversation.getId(), loaded);
+            if (session == null) {
+                session = loaded;
+            }
+        }
+        session.touch();
+        if (sessions.size() > maxSessions) {
+            evictLeastRecentlyUsed();
+        }
+        return session;
+    }
+
+    private SessionContext loadSession(AIConversation conversation) {
+        SessionContext session = new SessionContext(conversation.getId(), conversation.getUserId());
+
+        if (conversation.getDatasourceId() != null) {
+            try {
+                session.dataSource = dataSourceService.getById(conversation.getDatasourceId());
+            } catch (Exception e) {
+                log.warn("获取数据源信息失败", e);
+            }
+        }
+
+        List<AIMessage> recentMessages = conversationService.getRecentMessages(conversation.getId(), INITIAL_HISTORY_SIZE);
+        for (AIMessage message : recentMessages) {
+            if (message.getMessageType() == MessageType.USER) {
+                session.window.add(ChatRequest.ChatMessage.user(message.getContent()));
+            } else if (message.getMessageType() == MessageType.ASSISTANT) {
+                session.window.add(ChatRequest.ChatMessage.assistant(message.getContent()));
+            }
+        }
+
+        log.debug("加载对话上下文，对话ID: {}, 消息数: {}", conversation.getId(), session.window.size());
+        return session;
+    }
+
+    private void compactIfNeeded(SessionContext session) {
+        List<ChatRequest.ChatMessage> toSummarize;
+        String previousSummary;
+
+        synchronized (session) {
+            if (session.compacting
+                    || session.window.size() <= keepRecentMessages
+                    || estimateTokens(session) <= maxContextTokens) {
+                return;
+            }
+            session.compacting = true;
+            session.droppedDuringCompaction = 0;
+            toSummarize = new ArrayList<>(session.window.subList(0, session.window.size() - keepRecentMessages));
+            previousSummary = session.summary;
+        }
+
+        llmGateway.chat(buildSummaryMessages(previousSummary, toSummarize), LLMPriority.BATCH, session.userId)
+            .subscribe(
+                response -> {
+                    String summary = (response != null && response.getChoices() != null && !response.getChoices().isEmpty())
+                        ? response.getChoices().get(0).getMessage().getContent() : null;
+                    synchronized (session) {
+                        if (StringUtils.hasText(summary)) {
+                            // 压缩期间只会在窗口尾部追加消息，头部被兜底裁剪掉的消息需要扣除
+                            int removable = Math.min(toSummarize.size() - session.droppedDuringCompaction, session.window.size());
+                            removable = Math.max(0, removable);
+                            session.window.subList(0, removable).clear();
+                            session.summary = summary.trim();
+                        }
+                        session.compacting = false;
+                    }
+                    log.debug("对话上下文已压缩，对话ID: {}, 压缩消息数: {}", session.conversationId, toSummarize.size());
+                },
+                error -> {
+                    synchronized (session) {
+                        session.compacting = false;
+                    }
+                    log.warn("对话上下文压缩失败，对话ID: {}", session.conversationId, error);
+                });
+    }
+
+    private List<ChatRequest.ChatMessage> buildSummaryMessages(String previousSummary, List<ChatRequest.ChatMessage> messages) {
+        StringBuilder content = new StringBuilder();
+        if (StringUtils.hasText(previousSummary)) {
+            content.append("已有摘要：\n").append(previousSummary).append("\n\n");
+        }
+        content.append("新增对话：\n");
+        for (ChatRequest.ChatMessage message : messages) {
+            content.append("user".equals(message.getRole()) ? "用户: " : "助手: ")
+                   .append(message.getContent()).append("\n");
+        }
+
+        return List.of(
+            ChatRequest.ChatMessage.system(
+                "你负责压缩对话历史。请将已有摘要与新增对话合并为一段简洁的摘要，" +
+                "保留用户的目标、涉及的表和字段、已确认的SQL要点及未解决的问题，省略完整SQL文本和寒暄。" +
+                "摘要使用对话所用的语言，不超过300字。"),
+            ChatRequest.ChatMessage.user(content.toString())
+        );
+    }
+
+    private long estimateTokens(SessionContext session) {
+        long chars = session.summary != null ? session.summary.length() : 0;
+        for (ChatRequest.ChatMessage message : session.window) {
+            if (message.getContent() != null) {
+                chars += message.getContent().length();
+            }
+        }
+        // 中英文混合文本大致按2个字符1个令牌估算
+        return (chars + 1) / 2;
+    }
+
+    private void evictIdleSessions() {
+        long cutoff = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(idleMinutes);
+        int before = sessions.size();
+        sessions.values().removeIf(session -> session.lastAccessTime < cutoff);
+        if (before != sessions.size()) {
+            log.debug("清理空闲对话上下文 {} 个", before - sessions.size());
+        }
+    }
+
+    private void evictLeastRecentlyUsed() {
+        sessions.values().stream()
+            .min((a, b) -> Long.compare(a.lastAccessTime, b.lastAccessTime))
+            .ifPresent(oldest -> sessions.remove(oldest.conversationId));
+    }
+
+    /**
+     * 单个对话的内存上下文
+     */
+    private static class SessionContext {
+        private final Long conversationId;
+        private final Long userId;
+        private final List<ChatRequest.ChatMessage> window = new ArrayList<>();
+        private DataSource dataSource;
+        private String summary;
+        private boolean compacting;
+        private int droppedDuringCompaction;
+        private volatile long lastAccessTime = System.currentTimeMillis();
+
+        SessionContext(Long conversationId, Long userId) {
+            this.conversationId = conversationId;
+            this.userId = userId;
+        }
+
+        void touch() {
+            lastAccessTime = System.currentTimeMillis();
+        }
+    }
+}
@@ -9,6 +9,7 @@ import com.hospital.report.ai.enums.MessageType;
 import com.hospital.report.ai.mapper.AIConversationMapper;
 import com.hospital.report.ai.mapper.AIMessageMapper;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
@@ -25,11 +26,14 @@ public class ConversationService {
     
     private final AIConversationMapper conversationMapper;
     private final AIMessageMapper messageMapper;
+    private final ConversationContextService conversationContextService;
     
     public ConversationService(AIConversationMapper conversationMapper,
-                              AIMessageMapper messageMapper) {
+                              AIMessageMapper messageMapper,
+                              @Lazy ConversationContextService conversationContextService) {
         this.conversationMapper = conversationMapper;
         this.messageMapper = messageMapper;
+        this.conversationContextService = conversationContextService;
     }
     
     public AIConversation createConversation(Long userId, String title, Long datasourceId) {
@@ -42,6 +46,7 @@ public class ConversationService {
         conversation.setTitle(title);
         conversation.setDatasourceId(datasourceId);
         conversation.setStatus(ConversationStatus.ACTIVE);
+        conversation.setMessageCount(0);
         conversation.setCreatedTime(LocalDateTime.now());
         conversation.setUpdatedTime(LocalDateTime.now());
         
@@ -69,18 +74,12 @@ public class ConversationService {
             wrapper.last("LIMIT " + limit);
         }
         
-        List<AIConversation> conversations = conversationMapper.selectList(wrapper);
-        
-        // 为每个对话添加统计信息
-        for (AIConversation conversation : conversations) {
-            enrichConversationWithStats(conversation);
-        }
-        
-        return conversations;
+        // 消息数和最后一条消息已冗余在对话表中，无需逐条统计
+        return conversationMapper.selectList(wrapper);
     }
     
     public List<Map<String, Object>> getUserConversationsWithStats(Long userId, Integer limit) {
-        return conversationMapper.selectConversationsWithStats(userId, ConversationStatus.ACTIVE.name());
+        return conversationMapper.selectConversationsWithStats(userId, ConversationStatus.ACTIVE.name(), limit);
     }
     
     public AIMessage saveMessage(Long conversationId, MessageType messageType, String content) {
@@ -98,8 +97,8 @@ public class ConversationService {
         
         messageMapper.insert(message);
         
-        // 更新对话的最后更新时间
-        updateConversationTimestamp(conversationId);
+        // 增量更新对话的消息数、最后一条消息和更新时间
+        conversationMapper.incrementMessageStats(conversationId, buildMessagePreview(content), message.getCreatedTime());
         
         log.debug("保存消息成功，对话ID: {}, 类型: {}, 长度: {}", conversationId, messageType, content.length());
         return message;
@@ -178,6 +177,7 @@ public class ConversationService {
         
         // 物理删除对话
         conversationMapper.deleteById(conversationId);
+        conversationContextService.evict(conversationId);
         log.info("永久删除对话: {}", conversationId);
     }
     
@@ -245,29 +245,10 @@ public class ConversationService {
         return title;
     }
     
-    private void updateConversationTimestamp(Long conversationId) {
-        AIConversation conversation = new AIConversation();
-        conversation.setId(conversationId);
-        conversation.setUpdatedTime(LocalDateTime.now());
-        conversationMapper.updateById(conversation);
-    }
-    
-    private void enrichConversationWithStats(AIConversation conversation) {
-        // 获取消息数量
-        QueryWrapper<AIMessage> messageWrapper = new QueryWrapper<>();
-        messageWrapper.eq("conversation_id", conversation.getId());
-        Long messageCount = messageMapper.selectCount(messageWrapper);
-        conversation.setMessageCount(messageCount.intValue());
-        
-        // 获取最后一条消息
-        QueryWrapper<AIMessage> lastMessageWrapper = new QueryWrapper<>();
-        lastMessageWrapper.eq("conversation_id", conversation.getId())
-                          .orderByDesc("created_time")
-                          .last("LIMIT 1");
-        AIMessage lastMessage = messageMapper.selectOne(lastMessageWrapper);
-        if (lastMessage != null) {
-            String content = lastMessage.getContent();
-            conversation.setLastMessage(content.length() > 50 ? content.substring(0, 50) + "..." : content);
+    private String buildMessagePreview(String content) {
+        if (content == null) {
+            return null;
         }
+        return content.length() > 50 ? content.substring(0, 50) + "..." : content;
     }
 }
\ No newline at end of file
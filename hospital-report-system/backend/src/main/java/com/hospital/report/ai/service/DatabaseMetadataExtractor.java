@@ -5,14 +5,21 @@ import com.hospital.report.ai.entity.TableRelation;
 import com.hospital.report.entity.DataSource;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * 数据库元数据提取服务
+ * MySQL和PostgreSQL通过information_schema/pg_catalog集合查询一次性读取全部表、字段、主键和外键，
+ * 其他数据库回退到JDBC逐表元数据调用，并由有界数量的连接并行处理。
  */
 @Service
 @Slf4j
@@ -20,38 +27,102 @@ public class DatabaseMetadataExtractor {
 
     @Autowired
     private DatabaseConnectionService connectionService;
-
+    
+    /**
+     * JDBC逐表提取时使用的最大并行连接数
+     */
+    @Value("${ai.schema.metadata-parallelism:4}")
+    private int metadataParallelism;
+    
+    // MySQL
+    private static final String MYSQL_TABLES_SQL =
+        "SELECT TABLE_NAME, TABLE_COMMENT FROM information_schema.TABLES " +
+        "WHERE TABLE_SCHEMA = ? AND TABLE_TYPE = 'BASE TABLE' ORDER BY TABLE_NAME";
+    
+    private static final String MYSQL_COLUMNS_SQL =
+        "SELECT TABLE_NAME, COLUMN_NAME, " +
+        "CONCAT(UPPER(DATA_TYPE), IF(COLUMN_TYPE LIKE '%unsigned%', ' UNSIGNED', '')) AS TYPE_NAME, " +
+        "COLUMN_COMMENT, IS_NULLABLE, COLUMN_DEFAULT " +
+        "FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = ? ORDER BY TABLE_NAME, ORDINAL_POSITION";
+    
+    private static final String MYSQL_PRIMARY_KEYS_SQL =
+        "SELECT k.TABLE_NAME, k.COLUMN_NAME FROM information_schema.TABLE_CONSTRAINTS t " +
+        "JOIN information_schema.KEY_COLUMN_USAGE k ON k.CONSTRAINT_SCHEMA = t.CONSTRAINT_SCHEMA " +
+        "AND k.CONSTRAINT_NAME = t.CONSTRAINT_NAME AND k.TABLE_NAME = t.TABLE_NAME " +
+        "WHERE t.TABLE_SCHEMA = ? AND t.CONSTRAINT_TYPE = 'PRIMARY KEY'";
+    
+    private static final String MYSQL_FOREIGN_KEYS_SQL =
+        "SELECT TABLE_NAME AS FKTABLE_NAME, COLUMN_NAME AS FKCOLUMN_NAME, " +
+        "REFERENCED_TABLE_NAME AS PKTABLE_NAME, REFERENCED_COLUMN_NAME AS PKCOLUMN_NAME " +
+        "FROM information_schema.KEY_COLUMN_USAGE " +
+        "WHERE TABLE_SCHEMA = ? AND REFERENCED_TABLE_NAME IS NOT NULL " +
+        "ORDER BY TABLE_NAME, CONSTRAINT_NAME, ORDINAL_POSITION";
+    
+    // PostgreSQL
+    private static final String PG_USER_SCHEMA_FILTER =
+        "n.nspname NOT IN ('pg_catalog', 'information_schema') AND n.nspname NOT LIKE 'pg_toast%'";
+    
+    private static final String PG_TABLES_SQL =
+        "SELECT c.relname AS TABLE_NAME, obj_description(c.oid, 'pg_class') AS TABLE_COMMENT " +
+        "FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace " +
+        "WHERE c.relkind IN ('r', 'p') AND " + PG_USER_SCHEMA_FILTER + " ORDER BY c.relname";
+    
+    private static final String PG_COLUMNS_SQL =
+        "SELECT c.relname AS TABLE_NAME, a.attname AS COLUMN_NAME, t.typname AS TYPE_NAME, " +
+        "col_description(c.oid, a.attnum) AS COLUMN_COMMENT, " +
+        "CASE WHEN a.attnotnull THEN 'NO' ELSE 'YES' END AS IS_NULLABLE, " +
+        "pg_get_expr(d.adbin, d.adrelid) AS COLUMN_DEFAULT " +
+        "FROM pg_attribute a " +
+        "JOIN pg_class c ON c.oid = a.attrelid " +
+        "JOIN pg_namespace n ON n.oid = c.relnamespace " +
+        "JOIN pg_type t ON t.oid = a.atttypid " +
+        "LEFT JOIN pg_attrdef d ON d.adrelid = a.attrelid AND d.adnum = a.attnum " +
+        "WHERE c.relkind IN ('r', 'p') AND a.attnum > 0 AND NOT a.attisdropped AND " + PG_USER_SCHEMA_FILTER +
+        " ORDER BY c.relname, a.attnum";
+    
+    private static final String PG_PRIMARY_KEYS_SQL =
+        "SELECT c.relname AS TABLE_NAME, a.attname AS COLUMN_NAME " +
+        "FROM pg_constraint con " +
+        "JOIN pg_class c ON c.oid = con.conrelid " +
+        "JOIN pg_namespace n ON n.oid = c.relnamespace " +
+        "JOIN pg_attribute a ON a.attrelid = con.conrelid AND a.attnum = ANY(con.conkey) " +
+        "WHERE con.contype = 'p' AND " + PG_USER_SCHEMA_FILTER;
+    
+    private static final String PG_FOREIGN_KEYS_SQL =
+        "SELECT fc.relname AS FKTABLE_NAME, fa.attname AS FKCOLUMN_NAME, " +
+        "pc.relname AS PKTABLE_NAME, pa.attname AS PKCOLUMN_NAME " +
+        "FROM pg_constraint con " +
+        "JOIN pg_class fc ON fc.oid = con.conrelid " +
+        "JOIN pg_class pc ON pc.oid = con.confrelid " +
+        "JOIN pg_namespace n ON n.oid = fc.relnamespace " +
+        "CROSS JOIN LATERAL unnest(con.conkey, con.confkey) AS k(fk_attnum, pk_attnum) " +
+        "JOIN pg_attribute fa ON fa.attrelid = con.conrelid AND fa.attnum = k.fk_attnum " +
+        "JOIN pg_attribute pa ON pa.attrelid = con.confrelid AND pa.attnum = k.pk_attnum " +
+        "WHERE con.contype = 'f' AND " + PG_USER_SCHEMA_FILTER +
+        " ORDER BY fc.relname, con.conname";
+    
     /**
      * 提取数据库的所有表和字段信息
      */
     public List<DatabaseSchema> extractDatabaseSchema(DataSource dataSource) {
-        List<DatabaseSchema> schemas = new ArrayList<>();
+        long startTime = System.currentTimeMillis();
+        List<DatabaseSchema> schemas = null;
         
-        try (Connection connection = connectionService.getConnection(dataSource)) {
-            DatabaseMetaData metaData = connection.getMetaData();
-            String databaseName = connection.getCatalog();
-            
-            log.info("开始提取数据库 {} 的元数据", databaseName);
-            
-            // 获取所有表
-            try (ResultSet tables = metaData.getTables(databaseName, null, "%", new String[]{"TABLE"})) {
-                while (tables.next()) {
-                    String tableName = tables.getString("TABLE_NAME");
-                    String tableComment = tables.getString("REMARKS");
-                    
-                    log.debug("处理表: {}", tableName);
-                    
-                    // 为每个表创建一个概览记录
-                    DatabaseSchema tableSchema = createTableOverview(dataSource, databaseName, tableName, tableComment);
-                    schemas.add(tableSchema);
-                    
-                    // 获取表的所有字段
-                    schemas.addAll(extractColumnsForTable(dataSource, databaseName, tableName, tableComment, metaData));
+        try {
+            BulkQueries queries = resolveBulkQueries(dataSource);
+            if (queries != null) {
+                try {
+                    schemas = extractSchemaInBulk(dataSource, queries);
+                } catch (SQLException e) {
+                    log.warn("批量读取元数据失败，回退到JDBC逐表提取: {}", e.getMessage());
                 }
             }
+            if (schemas == null) {
+                schemas = extractSchemaPerTable(dataSource);
+            }
             
-            log.info("成功提取 {} 个schema记录", schemas.size());
-            
+            log.info("成功提取 {} 个schema记录，耗时: {}ms", schemas.size(), System.currentTimeMillis() - startTime);
+        
         } catch (SQLException e) {
             log.error("提取数据库元数据失败: {}", e.getMessage(), e);
             throw new RuntimeException("Failed to extract database metadata", e);
@@ -59,39 +130,243 @@ public class DatabaseMetadataExtractor {
         
         return schemas;
     }
-
+    
     /**
-     * 创建表概览记录
+     * 提取表之间的关系
      */
-    private DatabaseSchema createTableOverview(DataSource dataSource, String databaseName, 
-                                             String tableName, String tableComment) {
-        DatabaseSchema schema = new DatabaseSchema();
-        schema.setDatasourceId(dataSource.getId());
-        schema.setDatabaseName(databaseName);
-        schema.setTableName(tableName);
-        schema.setTableComment(tableComment);
-        schema.setColumnName(null); // 表概览不关联具体字段
+    public List<TableRelation> extractTableRelations(DataSource dataSource) {
+        long startTime = System.currentTimeMillis();
+        List<TableRelation> relations = null;
         
-        // 构建表的完整描述
-        StringBuilder description = new StringBuilder();
-        description.append("表名: ").append(tableName);
-        if (tableComment != null && !tableComment.trim().isEmpty()) {
-            description.append(", 描述: ").append(tableComment);
+        try {
+            BulkQueries queries = resolveBulkQueries(dataSource);
+            if (queries != null) {
+                try {
+                    relations = extractRelationsInBulk(dataSource, queries);
+                } catch (SQLException e) {
+                    log.warn("批量读取外键失败，回退到JDBC逐表提取: {}", e.getMessage());
+                }
+            }
+            if (relations == null) {
+                relations = extractRelationsPerTable(dataSource);
+            }
+            
+            log.info("成功提取 {} 个表关系，耗时: {}ms", relations.size(), System.currentTimeMillis() - startTime);
+        
+        } catch (SQLException e) {
+            log.error("提取表关系失败: {}", e.getMessage(), e);
+            throw new RuntimeException("Failed to extract table relations", e);
         }
-        description.append(", 数据库: ").append(databaseName);
         
-        schema.setFullDescription(description.toString());
-        schema.setCreatedTime(LocalDateTime.now());
-        schema.setUpdatedTime(LocalDateTime.now());
+        return relations;
+    }
+    
+    private BulkQueries resolveBulkQueries(DataSource dataSource) {
+        String databaseType = dataSource.getDatabaseType() != null ? dataSource.getDatabaseType().toLowerCase() : "";
+        switch (databaseType) {
+            case "mysql":
+                return new BulkQueries(true, MYSQL_TABLES_SQL, MYSQL_COLUMNS_SQL, MYSQL_PRIMARY_KEYS_SQL, MYSQL_FOREIGN_KEYS_SQL);
+            case "postgresql":
+                return new BulkQueries(false, PG_TABLES_SQL, PG_COLUMNS_SQL, PG_PRIMARY_KEYS_SQL, PG_FOREIGN_KEYS_SQL);
+            default:
+                return null;
+        }
+    }
+    
+    /**
+     * 通过四条集合查询读取整个库的表、字段和主键，与表数量无关
+     */
+    private List<DatabaseSchema> extractSchemaInBulk(DataSource dataSource, BulkQueries queries) throws SQLException {
+        try (Connection connection = connectionService.getConnection(dataSource)) {
+            String databaseName = connection.getCatalog();
+            log.info("开始批量提取数据库 {} 的元数据", databaseName);
+            
+            // 表及注释
+            Map<String, String> tableComments = new LinkedHashMap<>();
+            try (PreparedStatement ps = prepare(connection, queries.tablesSql, queries, databaseName);
+                 ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    tableComments.put(rs.getString("TABLE_NAME"), rs.getString("TABLE_COMMENT"));
+                }
+            }
+            
+            // 主键
+            Map<String, Set<String>> primaryKeys = new HashMap<>();
+            try (PreparedStatement ps = prepare(connection, queries.primaryKeysSql, queries, databaseName);
+                 ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    primaryKeys.computeIfAbsent(rs.getString("TABLE_NAME"), k -> new HashSet<>())
+                               .add(rs.getString("COLUMN_NAME"));
+                }
+            }
+            
+            // 字段，按表分组
+            Map<String, List<DatabaseSchema>> columnsByTable = new HashMap<>();
+            try (PreparedStatement ps = prepare(connection, queries.columnsSql, queries, databaseName)) {
+                ps.setFetchSize(1000);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        String tableName = rs.getString("TABLE_NAME");
+                        if (!tableComments.containsKey(tableName)) {
+                            // 视图等非基础表
+                            continue;
+                        }
+                        String columnName = rs.getString("COLUMN_NAME");
+                        columnsByTable.computeIfAbsent(tableName, k -> new ArrayList<>()).add(createColumnSchema(
+                            dataSource, databaseName, tableName, tableComments.get(tableName),
+                            columnName,
+                            rs.getString("TYPE_NAME"),
+                            rs.getString("COLUMN_COMMENT"),
+                            "YES".equalsIgnoreCase(rs.getString("IS_NULLABLE")),
+                            rs.getString("COLUMN_DEFAULT"),
+                            primaryKeys.getOrDefault(tableName, Collections.emptySet()).contains(columnName)));
+                    }
+                }
+            }
+            
+            List<DatabaseSchema> schemas = new ArrayList<>();
+            for (Map.Entry<String, String> table : tableComments.entrySet()) {
+                schemas.add(createTableOverview(dataSource, databaseName, table.getKey(), table.getValue()));
+                schemas.addAll(columnsByTable.getOrDefault(table.getKey(), Collections.emptyList()));
+            }
+            
+            log.info("批量提取完成，表: {}, 字段: {}", tableComments.size(), schemas.size() - tableComments.size());
+            return schemas;
+        }
+    }
+    
+    private List<TableRelation> extractRelationsInBulk(DataSource dataSource, BulkQueries queries) throws SQLException {
+        try (Connection connection = connectionService.getConnection(dataSource)) {
+            String databaseName = connection.getCatalog();
+            log.info("开始批量提取数据库 {} 的表关系", databaseName);
+            
+            List<TableRelation> relations = new ArrayList<>();
+            try (PreparedStatement ps = prepare(connection, queries.foreignKeysSql, queries, databaseName);
+                 ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    relations.add(createRelation(dataSource, rs));
+                }
+            }
+            return relations;
+        }
+    }
+    
+    private PreparedStatement prepare(Connection connection, String sql, BulkQueries queries,
+                                      String databaseName) throws SQLException {
+        PreparedStatement ps = connection.prepareStatement(sql);
+        if (queries.bindSchema) {
+            ps.setString(1, databaseName);
+        }
+        return ps;
+    }
+    
+    private List<DatabaseSchema> extractSchemaPerTable(DataSource dataSource) throws SQLException {
+        List<String[]> tables;
+        String databaseName;
+        try (Connection connection = connectionService.getConnection(dataSource)) {
+            databaseName = connection.getCatalog();
+            tables = listTables(connection.getMetaData(), databaseName);
+        }
         
-        return schema;
+        log.info("开始逐表提取数据库 {} 的元数据，表数量: {}", databaseName, tables.size());
+        
+        return processTablesInParallel(dataSource, tables, (metaData, table) -> {
+            List<DatabaseSchema> schemas = new ArrayList<>();
+            schemas.add(createTableOverview(dataSource, databaseName, table[0], table[1]));
+            schemas.addAll(extractColumnsForTable(dataSource, databaseName, table[0], table[1], metaData));
+            return schemas;
+        });
     }
-
+    
+    private List<TableRelation> extractRelationsPerTable(DataSource dataSource) throws SQLException {
+        List<String[]> tables;
+        String databaseName;
+        try (Connection connection = connectionService.getConnection(dataSource)) {
+            databaseName = connection.getCatalog();
+            tables = listTables(connection.getMetaData(), databaseName);
+        }
+        
+        log.info("开始逐表提取数据库 {} 的表关系，表数量: {}", databaseName, tables.size());
+        
+        return processTablesInParallel(dataSource, tables, (metaData, table) -> {
+            List<TableRelation> relations = new ArrayList<>();
+            // 获取该表作为外键表的所有关系
+            try (ResultSet foreignKeys = metaData.getImportedKeys(databaseName, null, table[0])) {
+                while (foreignKeys.next()) {
+                    relations.add(createRelation(dataSource, foreignKeys));
+                }
+            }
+            return relations;
+        });
+    }
+    
+    private List<String[]> listTables(DatabaseMetaData metaData, String databaseName) throws SQLException {
+        List<String[]> tables = new ArrayList<>();
+        try (ResultSet rs = metaData.getTables(databaseName, null, "%", new String[]{"TABLE"})) {
+            while (rs.next()) {
+                tables.add(new String[]{rs.getString("TABLE_NAME"), rs.getString("REMARKS")});
+            }
+        }
+        return tables;
+    }
+    
+    /**
+     * 将表按轮询方式分配给有界数量的连接并行处理，结果保持原有表顺序
+     */
+    private <T> List<T> processTablesInParallel(DataSource dataSource, List<String[]> tables,
+                                                TableMetadataTask<T> task) throws SQLException {
+        if (tables.isEmpty()) {
+            return new ArrayList<>();
+        }
+        
+        int workers = Math.max(1, Math.min(metadataParallelism, tables.size()));
+        List<List<T>> resultsByTable = new ArrayList<>(Collections.nCopies(tables.size(), null));
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int worker = 0; worker < workers; worker++) {
+                final int offset = worker;
+                futures.add(executor.submit(() -> {
+                    try (Connection connection = connectionService.getConnection(dataSource)) {
+                        DatabaseMetaData metaData = connection.getMetaData();
+                        for (int i = offset; i < tables.size(); i += workers) {
+                            log.debug("处理表: {}", tables.get(i)[0]);
+                            resultsByTable.set(i, task.apply(metaData, tables.get(i)));
+                        }
+                    }
+                    return null;
+                }));
+            }
+            
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("元数据提取被中断", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            throw new SQLException("元数据提取失败: " + cause.getMessage(), cause);
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        List<T> results = new ArrayList<>();
+        for (List<T> tableResults : resultsByTable) {
+            results.addAll(tableResults);
+        }
+        return results;
+    }
+    
     /**
      * 提取表的所有字段信息
      */
     private List<DatabaseSchema> extractColumnsForTable(DataSource dataSource, String databaseName,
-                                                       String tableName, String tableComment, 
+                                                       String tableName, String tableComment,
                                                        DatabaseMetaData metaData) throws SQLException {
         List<DatabaseSchema> columnSchemas = new ArrayList<>();
         
@@ -101,62 +376,25 @@ public class DatabaseMetadataExtractor {
         // 获取字段信息
         try (ResultSet columns = metaData.getColumns(databaseName, null, tableName, "%")) {
             while (columns.next()) {
-                DatabaseSchema columnSchema = new DatabaseSchema();
-                columnSchema.setDatasourceId(dataSource.getId());
-                columnSchema.setDatabaseName(databaseName);
-                columnSchema.setTableName(tableName);
-                columnSchema.setTableComment(tableComment);
-                
                 String columnName = columns.getString("COLUMN_NAME");
-                String columnType = columns.getString("TYPE_NAME");
-                String columnComment = columns.getString("REMARKS");
-                int nullable = columns.getInt("NULLABLE");
-                String defaultValue = columns.getString("COLUMN_DEF");
-                
-                columnSchema.setColumnName(columnName);
-                columnSchema.setColumnType(columnType);
-                columnSchema.setColumnComment(columnComment);
-                columnSchema.setIsPrimaryKey(primaryKeys.contains(columnName));
-                columnSchema.setIsNullable(nullable == DatabaseMetaData.columnNullable);
-                columnSchema.setDefaultValue(defaultValue);
-                
-                // 构建字段的完整描述
-                StringBuilder description = new StringBuilder();
-                description.append("表: ").append(tableName);
-                description.append(", 字段: ").append(columnName);
-                description.append(", 类型: ").append(columnType);
-                
-                if (columnComment != null && !columnComment.trim().isEmpty()) {
-                    description.append(", 描述: ").append(columnComment);
-                }
-                
-                if (primaryKeys.contains(columnName)) {
-                    description.append(", 主键");
-                }
-                
-                if (nullable != DatabaseMetaData.columnNullable) {
-                    description.append(", 非空");
-                }
-                
-                if (tableComment != null && !tableComment.trim().isEmpty()) {
-                    description.append(", 表描述: ").append(tableComment);
-                }
-                
-                columnSchema.setFullDescription(description.toString());
-                columnSchema.setCreatedTime(LocalDateTime.now());
-                columnSchema.setUpdatedTime(LocalDateTime.now());
-                
-                columnSchemas.add(columnSchema);
+                columnSchemas.add(createColumnSchema(
+                    dataSource, databaseName, tableName, tableComment,
+                    columnName,
+                    columns.getString("TYPE_NAME"),
+                    columns.getString("REMARKS"),
+                    columns.getInt("NULLABLE") == DatabaseMetaData.columnNullable,
+                    columns.getString("COLUMN_DEF"),
+                    primaryKeys.contains(columnName)));
             }
         }
         
         return columnSchemas;
     }
-
+    
     /**
      * 获取表的主键字段
      */
-    private Set<String> getPrimaryKeys(DatabaseMetaData metaData, String databaseName, String tableName) 
+    private Set<String> getPrimaryKeys(DatabaseMetaData metaData, String databaseName, String tableName)
             throws SQLException {
         Set<String> primaryKeys = new HashSet<>();
         
@@ -168,55 +406,129 @@ public class DatabaseMetadataExtractor {
         
         return primaryKeys;
     }
-
+    
     /**
-     * 提取表之间的关系
+     * 创建表概览记录
      */
-    public List<TableRelation> extractTableRelations(DataSource dataSource) {
-        List<TableRelation> relations = new ArrayList<>();
+    private DatabaseSchema createTableOverview(DataSource dataSource, String databaseName,
+                                             String tableName, String tableComment) {
+        DatabaseSchema schema = new DatabaseSchema();
+        schema.setDatasourceId(dataSource.getId());
+        schema.setDatabaseName(databaseName);
+        schema.setTableName(tableName);
+        schema.setTableComment(tableComment);
+        schema.setColumnName(null); // 表概览不关联具体字段
         
-        try (Connection connection = connectionService.getConnection(dataSource)) {
-            DatabaseMetaData metaData = connection.getMetaData();
-            String databaseName = connection.getCatalog();
-            
-            log.info("开始提取数据库 {} 的表关系", databaseName);
-            
-            // 获取所有表
-            try (ResultSet tables = metaData.getTables(databaseName, null, "%", new String[]{"TABLE"})) {
-                while (tables.next()) {
-                    String tableName = tables.getString("TABLE_NAME");
-                    
-                    // 获取该表作为外键表的所有关系
-                    try (ResultSet foreignKeys = metaData.getImportedKeys(databaseName, null, tableName)) {
-                        while (foreignKeys.next()) {
-                            TableRelation relation = new TableRelation();
-                            relation.setDatasourceId(dataSource.getId());
-                            relation.setPrimaryTable(foreignKeys.getString("PKTABLE_NAME"));
-                            relation.setForeignTable(foreignKeys.getString("FKTABLE_NAME"));
-                            relation.setPrimaryColumn(foreignKeys.getString("PKCOLUMN_NAME"));
-                            relation.setForeignColumn(foreignKeys.getString("FKCOLUMN_NAME"));
-                            relation.setRelationType("ONE_TO_MANY"); // 默认一对多关系
-                            
-                            // 构建关系描述
-                            String description = String.format("表 %s 的字段 %s 引用表 %s 的字段 %s",
-                                relation.getForeignTable(), relation.getForeignColumn(),
-                                relation.getPrimaryTable(), relation.getPrimaryColumn());
-                            relation.setRelationDescription(description);
-                            relation.setCreatedTime(LocalDateTime.now());
-                            
-                            relations.add(relation);
-                        }
-                    }
-                }
-            }
-            
-            log.info("成功提取 {} 个表关系", relations.size());
-            
-        } catch (SQLException e) {
-            log.error("提取表关系失败: {}", e.getMessage(), e);
-            throw new RuntimeException("Failed to extract table relations", e);
+        // 构建表的完整描述
+        StringBuilder description = new StringBuilder();
+        description.append("表名: ").append(tableName);
+        if (tableComment != null && !tableComment.trim().isEmpty()) {
+            description.append(", 描述: ").append(tableComment);
         }
+        description.append(", 数据库: ").append(databaseName);
         
-        return relations;
+        schema.setFullDescription(description.toString());
+        schema.setCreatedTime(LocalDateTime.now());
+        schema.setUpdatedTime(LocalDateTime.now());
+        
+        return schema;
+    }
+    
+    /**
+     * 创建字段记录
+     */
+    private DatabaseSchema createColumnSchema(DataSource dataSource, String databaseName,
+                                              String tableName, String tableComment,
+                                              String columnName, String columnType, String columnComment,
+                                              boolean nullable, String defaultValue, boolean primaryKey) {
+        DatabaseSchema columnSchema = new DatabaseSchema();
+        columnSchema.setDatasourceId(dataSource.getId());
+        columnSchema.setDatabaseName(databaseName);
+        columnSchema.setTableName(tableName);
+        columnSchema.setTableComment(tableComment);
+        columnSchema.setColumnName(columnName);
+        columnSchema.setColumnType(columnType);
+        columnSchema.setColumnComment(columnComment);
+        columnSchema.setIsPrimaryKey(primaryKey);
+        columnSchema.setIsNullable(nullable);
+        columnSchema.setDefaultValue(defaultValue);
+        
+        // 构建字段的完整描述
+        StringBuilder description = new StringBuilder();
+        description.append("表: ").append(tableName);
+        description.append(", 字段: ").append(columnName);
+        description.append(", 类型: ").append(columnType);
+        
+        if (columnComment != null && !columnComment.trim().isEmpty()) {
+            description.append(", 描述: ").append(columnComment);
+        }
+        
+        if (primaryKey) {
+            description.append(", 主键");
+        }
+        
+        if (!nullable) {
+            description.append(", 非空");
+        }
+        
+        if (tableComment != null && !tableComment.trim().isEmpty()) {
+            description.append(", 表描述: ").append(tableComment);
+        }
+        
+        columnSchema.setFullDescription(description.toString());
+        columnSchema.setCreatedTime(LocalDateTime.now());
+        columnSchema.setUpdatedTime(LocalDateTime.now());
+        
+        return columnSchema;
+    }
+    
+    /**
+     * 从外键结果集（JDBC getImportedKeys或批量查询，列名一致）构建表关系
+     */
+    private TableRelation createRelation(DataSource dataSource, ResultSet rs) throws SQLException {
+        TableRelation relation = new TableRelation();
+        relation.setDatasourceId(dataSource.getId());
+        relation.setPrimaryTable(rs.getString("PKTABLE_NAME"));
+        relation.setForeignTable(rs.getString("FKTABLE_NAME"));
+        relation.setPrimaryColumn(rs.getString("PKCOLUMN_NAME"));
+        relation.setForeignColumn(rs.getString("FKCOLUMN_NAME"));
+        relation.setRelationType("ONE_TO_MANY"); // 默认一对多关系
+        
+        // 构建关系描述
+        String description = String.format("表 %s 的字段 %s 引用表 %s 的字段 %s",
+            relation.getForeignTable(), relation.getForeignColumn(),
+            relation.getPrimaryTable(), relation.getPrimaryColumn());
+        relation.setRelationDescription(description);
+        relation.setCreatedTime(LocalDateTime.now());
+        
+        return relation;
+    }
+    
+    /**
+     * 单表元数据处理任务
+     */
+    @FunctionalInterface
+    private interface TableMetadataTask<T> {
+        List<T> apply(DatabaseMetaData metaData, String[] table) throws SQLException;
+    }
+    
+    /**
+     * 方言相关的批量元数据查询
+     */
+    private static class BulkQueries {
+        private final boolean bindSchema;
+        private final String tablesSql;
+        private final String columnsSql;
+        private final String primaryKeysSql;
+        private final String foreignKeysSql;
+        
+        BulkQueries(boolean bindSchema, String tablesSql, String columnsSql,
+                    String primaryKeysSql, String foreignKeysSql) {
+            this.bindSchema = bindSchema;
+            this.tablesSql = tablesSql;
+            this.columnsSql = columnsSql;
+            this.primaryKeysSql = primaryKeysSql;
+            this.foreignKeysSql = foreignKeysSql;
+        }
     }
-}
\ No newline at end of file
+}
@@ -7,8 +7,14 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.DigestUtils;
 
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * 数据库Schema管理服务 - 纯Milvus向量存储架构
@@ -27,31 +33,55 @@ public class DatabaseSchemaService {
     private VectorStoreService vectorStoreService;
 
     /**
-     * 为数据源创建schema向量数据（纯Milvus存储）
+     * 为数据源增量更新schema向量数据（纯Milvus存储）
+     * 以表/列定义的指纹作为source_id，只为新增或变更的列生成向量，
+     * 先写入新向量再删除过期向量，更新失败时保留旧版本，检索期间不会出现空索引
      */
     @Transactional
     public void createOrUpdateSchemaVectors(DataSource dataSource) {
-        log.info("开始为数据源 {} 创建schema向量数据（纯Milvus存储）", dataSource.getDatasourceName());
+        log.info("开始为数据源 {} 增量更新schema向量数据（纯Milvus存储）", dataSource.getDatasourceName());
         
         try {
-            // 1. 清除Milvus中的现有数据
-            clearExistingDataFromMilvus(dataSource.getId());
-            
-            // 2. 提取数据库元数据
+            // 1. 提取数据库元数据
             List<DatabaseSchema> schemas = metadataExtractor.extractDatabaseSchema(dataSource);
             
             if (schemas.isEmpty()) {
-                log.warn("数据源 {} 没有提取到schema信息", dataSource.getDatasourceName());
+                log.warn("数据源 {} 没有提取到schema信息，保留现有向量数据", dataSource.getDatasourceName());
                 return;
             }
             
             log.info("提取到 {} 个schema记录", schemas.size());
             
-            // 3. 生成向量嵌入并直接存储到Milvus
-            embeddingService.generateEmbeddingsForSchemas(schemas);
+            // 2. 计算目标source_id集合并与Milvus中的现有数据比对（列出失败时抛出异常，中止本次差异更新）
+            Map<String, DatabaseSchema> targetSchemas = new LinkedHashMap<>();
+            for (DatabaseSchema schema : schemas) {
+                targetSchemas.put(buildSourceId(dataSource.getId(), schema), schema);
+            }
+            
+            Set<String> existingIds = new HashSet<>(
+                vectorStoreService.listSourceIdsByDatasourceId(MilvusConfig.SCHEMA_COLLECTION, dataSource.getId()));
+            
+            Map<String, DatabaseSchema> toAdd = new LinkedHashMap<>(targetSchemas);
+            toAdd.keySet().removeAll(existingIds);
+            
+            Set<String> toRemove = new HashSet<>(existingIds);
+            toRemove.removeAll(targetSchemas.keySet());
+            
+            log.info("数据源 {} schema差异：新增/变更 {} 条，过期 {} 条，未变化 {} 条", 
+                dataSource.getDatasourceName(), toAdd.size(), toRemove.size(), targetSchemas.size() - toAdd.size());
+            
+            // 3. 仅为新增或变更的记录生成向量并写入
+            if (!embeddingService.upsertSchemaEmbeddings(toAdd)) {
+                throw new IllegalStateException("部分schema向量写入失败，保留旧版本向量数据");
+            }
+            
+            // 4. 新版本写入成功后再删除过期向量
+            if (!vectorStoreService.deleteVectorsBySourceIds(MilvusConfig.SCHEMA_COLLECTION, toRemove)) {
+                log.warn("数据源 {} 部分过期schema向量删除失败，将在下次更新时重试", dataSource.getDatasourceName());
+            }
             
-            log.info("成功为数据源 {} 创建了 {} 个schema向量记录（纯Milvus存储）", 
-                dataSource.getDatasourceName(), schemas.size());
+            log.info("成功为数据源 {} 更新schema向量记录（纯Milvus存储），当前共 {} 条", 
+                dataSource.getDatasourceName(), targetSchemas.size());
                 
         } catch (Exception e) {
             log.error("为数据源 {} 创建schema向量数据失败: {}", dataSource.getDatasourceName(), e.getMessage(), e);
@@ -60,28 +90,21 @@ public class DatabaseSchemaService {
     }
     
     /**
-     * 清除指定数据源在Milvus中的现有schema数据
+     * 根据列定义生成稳定的source_id，定义不变时ID不变
      */
-    private void clearExistingDataFromMilvus(Long datasourceId) {
-        log.info("清除数据源 {} 在Milvus中的现有schema数据", datasourceId);
-        
-        try {
-            // 查询所有相关数据的source_id
-            List<VectorStoreService.SearchResult> existingData = 
-                vectorStoreService.searchByDatasourceId(MilvusConfig.SCHEMA_COLLECTION, datasourceId, 10000);
-            
-            // 逐个删除
-            for (VectorStoreService.SearchResult result : existingData) {
-                if (result.getSourceId() != null) {
-                    vectorStoreService.deleteVectors(MilvusConfig.SCHEMA_COLLECTION, result.getSourceId());
-                }
-            }
-            
-            log.info("清除了 {} 条数据源 {} 的旧schema数据（Milvus）", existingData.size(), datasourceId);
-            
-        } catch (Exception e) {
-            log.warn("清除Milvus中的旧数据时出现异常：{}", e.getMessage());
-        }
+    private String buildSourceId(Long datasourceId, DatabaseSchema schema) {
+        String fingerprint = String.join("\u0001",
+            String.valueOf(schema.getDatabaseName()),
+            String.valueOf(schema.getTableName()),
+            String.valueOf(schema.getTableComment()),
+            String.valueOf(schema.getColumnName()),
+            String.valueOf(schema.getColumnType()),
+            String.valueOf(schema.getColumnComment()),
+            String.valueOf(schema.getIsNullable()),
+            String.valueOf(schema.getIsPrimaryKey()),
+            String.valueOf(schema.getDefaultValue()),
+            String.valueOf(schema.getFullDescription()));
+        return "schema_" + datasourceId + "_" + DigestUtils.md5DigestAsHex(fingerprint.getBytes(StandardCharsets.UTF_8));
     }
 
     /**
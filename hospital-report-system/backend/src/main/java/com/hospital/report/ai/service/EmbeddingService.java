@@ -48,57 +48,21 @@ public class EmbeddingService {
         // 使用并发处理提高效率
         List<CompletableFuture<Void>> futures = schemas.stream()
             .map(schema -> CompletableFuture.runAsync(() -> {
-                try {
-                    // 使用完整描述生成嵌入向量
-                    String description = schema.getFullDescription();
-                    if (description != null && !description.trim().isEmpty()) {
-                        List<Float> embedding = generateEmbedding(description);
-                        
-                        if (!embedding.isEmpty()) {
-                            // 为MySQL存储准备JSON格式的向量
-                            List<Double> embeddingDouble = embedding.stream()
-                                .map(Float::doubleValue)
-                                .collect(Collectors.toList());
-                            
-                            try {
-                                String embeddingJson = objectMapper.writeValueAsString(embeddingDouble);
-                                schema.setEmbedding(embeddingJson); // 存储到MySQL
-                            } catch (Exception e) {
-                                log.warn("向量JSON序列化失败: {}", e.getMessage());
-                            }
-                            
-                            // 为Milvus存储准备详细的元数据（增强版）
-                            String metadata = buildEnhancedMetadata(schema);
-                            
-                            // 创建向量数据（使用真实的schema ID）
-                            String sourceId;
-                            if (schema.getId() != null) {
-                                sourceId = "schema_" + schema.getId();
-                                log.debug("使用真实ID: {}", sourceId);
-                            } else {
-                                sourceId = "schema_temp_" + System.currentTimeMillis() + "_" + Math.random();
-                                log.warn("使用临时ID（schema.getId()为null）: {}", sourceId);
-                            }
-                            
-                            VectorStoreService.VectorData vectorData = new VectorStoreService.VectorData(
-                                sourceId,
-                                description,
-                                metadata,
-                                embedding
-                            );
-                            
-                            synchronized (vectorDataList) {
-                                vectorDataList.add(vectorData);
-                            }
-                            
-                            log.debug("千问向量模型为schema生成嵌入: {} -> 维度: {}", 
-                                description.substring(0, Math.min(50, description.length())), 
-                                embedding.size());
-                        }
+                // 创建向量数据（使用真实的schema ID）
+                String sourceId;
+                if (schema.getId() != null) {
+                    sourceId = "schema_" + schema.getId();
+                    log.debug("使用真实ID: {}", sourceId);
+                } else {
+                    sourceId = "schema_temp_" + System.currentTimeMillis() + "_" + Math.random();
+                    log.warn("使用临时ID（schema.getId()为null）: {}", sourceId);
+                }
+                
+                VectorStoreService.VectorData vectorData = buildSchemaVectorData(schema, sourceId);
+                if (vectorData != null) {
+                    synchronized (vectorDataList) {
+                        vectorDataList.add(vectorData);
                     }
-                } catch (Exception e) {
-                    log.error("千问向量模型为schema生成嵌入失败: {}", schema.getFullDescription(), e);
-                    // 继续处理其他schema，不因单个失败而停止
                 }
             }))
             .collect(Collectors.toList());
@@ -121,6 +85,88 @@ public class EmbeddingService {
         log.info("千问向量模型嵌入生成并存储完成（混合存储：MySQL+Milvus）");
     }
 
+    /**
+     * 按指定的sourceId为schema生成向量并分批写入Milvus（用于增量更新）
+     * 任一记录嵌入失败或写入失败都返回false，调用方据此决定是否保留旧版本
+     */
+    public boolean upsertSchemaEmbeddings(Map<String, DatabaseSchema> schemasBySourceId) {
+        if (schemasBySourceId.isEmpty()) {
+            return true;
+        }
+        
+        vectorStoreService.createCollection(MilvusConfig.SCHEMA_COLLECTION, "数据库Schema向量存储");
+        
+        List<VectorStoreService.VectorData> vectorDataList = new ArrayList<>();
+        List<CompletableFuture<Void>> futures = schemasBySourceId.entrySet().stream()
+            .map(entry -> CompletableFuture.runAsync(() -> {
+                VectorStoreService.VectorData vectorData = buildSchemaVectorData(entry.getValue(), entry.getKey());
+                if (vectorData != null) {
+                    synchronized (vectorDataList) {
+                        vectorDataList.add(vectorData);
+                    }
+                }
+            }))
+            .collect(Collectors.toList());
+        
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        
+        boolean success = vectorDataList.size() == schemasBySourceId.size();
+        int batchSize = 1000;
+        for (int start = 0; start < vectorDataList.size(); start += batchSize) {
+            List<VectorStoreService.VectorData> batch = vectorDataList.subList(start, Math.min(start + batchSize, vectorDataList.size()));
+            if (!vectorStoreService.insertVectors(MilvusConfig.SCHEMA_COLLECTION, batch)) {
+                success = false;
+            }
+        }
+        
+        log.info("增量写入schema向量 {} / {} 条", vectorDataList.size(), schemasBySourceId.size());
+        return success;
+    }
+    
+    /**
+     * 为单个schema生成向量数据，描述为空或生成失败时返回null
+     */
+    private VectorStoreService.VectorData buildSchemaVectorData(DatabaseSchema schema, String sourceId) {
+        try {
+            // 使用完整描述生成嵌入向量
+            String description = schema.getFullDescription();
+            if (description == null || description.trim().isEmpty()) {
+                return null;
+            }
+            
+            List<Float> embedding = generateEmbedding(description);
+            if (embedding.isEmpty()) {
+                return null;
+            }
+            
+            // 为MySQL存储准备JSON格式的向量
+            List<Double> embeddingDouble = embedding.stream()
+                .map(Float::doubleValue)
+                .collect(Collectors.toList());
+            
+            try {
+                String embeddingJson = objectMapper.writeValueAsString(embeddingDouble);
+                schema.setEmbedding(embeddingJson); // 存储到MySQL
+            } catch (Exception e) {
+                log.warn("向量JSON序列化失败: {}", e.getMessage());
+            }
+            
+            // 为Milvus存储准备详细的元数据（增强版）
+            String metadata = buildEnhancedMetadata(schema);
+            
+            log.debug("千问向量模型为schema生成嵌入: {} -> 维度: {}", 
+                description.substring(0, Math.min(50, description.length())), 
+                embedding.size());
+            
+            return new VectorStoreService.VectorData(sourceId, description, metadata, embedding);
+            
+        } catch (Exception e) {
+            log.error("千问向量模型为schema生成嵌入失败: {}", schema.getFullDescription(), e);
+            // 继续处理其他schema，不因单个失败而停止
+            return null;
+        }
+    }
+    
     /**
      * 为单个文本生成向量嵌入 - 使用千问向量模型，返回Float列表用于Milvus
      */
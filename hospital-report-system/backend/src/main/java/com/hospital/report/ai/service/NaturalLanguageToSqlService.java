@@ -1,7 +1,8 @@
 package com.hospital.report.ai.service;
 
-import com.hospital.report.ai.client.DeepSeekClient;
+import com.hospital.report.ai.client.LLMGateway;
 import com.hospital.report.ai.entity.DatabaseSchema;
+import com.hospital.report.ai.enums.LLMPriority;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -23,12 +24,13 @@ public class NaturalLanguageToSqlService {
     private EmbeddingService embeddingService;
     
     @Autowired
-    private DeepSeekClient deepSeekClient;
+    private LLMGateway llmGateway;
 
     /**
      * 将自然语言转换为SQL查询
+     * @param userId 发起请求的用户，LLM调用计入该用户的每日令牌预算
      */
-    public SqlGenerationResult generateSql(String naturalLanguageQuery, Long datasourceId) {
+    public SqlGenerationResult generateSql(String naturalLanguageQuery, Long datasourceId, Long userId) {
         log.info("开始生成SQL，查询: {}, 数据源ID: {}", naturalLanguageQuery, datasourceId);
         
         try {
@@ -40,8 +42,9 @@ public class NaturalLanguageToSqlService {
             String prompt = buildMilvusSqlGenerationPrompt(context);
             
             // 3. 调用AI生成SQL
-            String aiResponse = deepSeekClient.chat(
-                List.of(com.hospital.report.ai.client.dto.ChatRequest.ChatMessage.user(prompt))
+            String aiResponse = llmGateway.chat(
+                List.of(com.hospital.report.ai.client.dto.ChatRequest.ChatMessage.user(prompt)),
+                LLMPriority.NL2SQL, userId
             ).map(response -> response.getChoices().get(0).getMessage().getContent())
              .block();
             
@@ -52,7 +55,7 @@ public class NaturalLanguageToSqlService {
             List<String> invalidFields = validateSqlFields(result.getGeneratedSql(), context);
             if (!invalidFields.isEmpty()) {
                 log.warn("发现无效字段: {}, 重新生成SQL", invalidFields);
-                result = regenerateWithMilvusConstraints(naturalLanguageQuery, context, invalidFields);
+                result = regenerateWithMilvusConstraints(naturalLanguageQuery, context, invalidFields, userId);
             }
             
             log.info("基于Milvus的SQL生成完成: {}", result.getGeneratedSql().substring(0, 
@@ -598,7 +601,8 @@ public class NaturalLanguageToSqlService {
      */
     private SqlGenerationResult regenerateWithMilvusConstraints(String naturalLanguageQuery, 
                                                               MilvusQueryContext context, 
-                                                              List<String> invalidFields) {
+                                                              List<String> invalidFields,
+                                                              Long userId) {
         try {
             log.info("开始重新生成SQL，限制无效字段: {}", invalidFields);
             
@@ -606,8 +610,9 @@ public class NaturalLanguageToSqlService {
             String constrainedPrompt = buildMilvusConstrainedRegenerationPrompt(context, invalidFields);
             
             // 调用AI重新生成
-            String aiResponse = deepSeekClient.chat(
-                List.of(com.hospital.report.ai.client.dto.ChatRequest.ChatMessage.user(constrainedPrompt))
+            String aiResponse = llmGateway.chat(
+                List.of(com.hospital.report.ai.client.dto.ChatRequest.ChatMessage.user(constrainedPrompt)),
+                LLMPriority.NL2SQL, userId
             ).map(response -> response.getChoices().get(0).getMessage().getContent())
              .block();
             
@@ -570,6 +570,128 @@ public class VectorStoreService {
         }
     }
     
+    /**
+     * 按主键游标分页列出指定数据源的全部source_id，元数据模糊匹配后再按datasourceId精确过滤
+     * 不使用offset分页（offset+limit超过16384会被Milvus拒绝）；任一页失败直接抛出异常，
+     * 避免调用方拿到不完整的列表后把已有向量当作新增重复写入
+     */
+    public List<String> listSourceIdsByDatasourceId(String collectionName, Long datasourceId) {
+        if (!loadCollectionOptimized(collectionName)) {
+            throw new IllegalStateException("集合加载失败，无法列出source_id: " + collectionName);
+        }
+        
+        List<String> sourceIds = new ArrayList<>();
+        String metadataExpr = "metadata like \"%datasourceId\":" + datasourceId + "%\"";
+        long pageSize = 5000;
+        long lastId = Long.MIN_VALUE;
+        while (true) {
+            R<QueryResults> response = milvusClient.query(
+                io.milvus.param.dml.QueryParam.newBuilder()
+                    .withCollectionName(collectionName)
+                    .withExpr("id > " + lastId + " && " + metadataExpr)
+                    .withOutFields(Arrays.asList("id", "source_id", "metadata"))
+                    .withLimit(pageSize)
+                    .build()
+            );
+            
+            if (response.getStatus() != R.Status.Success.getCode()) {
+                throw new IllegalStateException("列出数据源 " + datasourceId + " 的source_id失败: " + response.getMessage());
+            }
+            
+            List<Long> ids = parsePrimaryKeys(response.getData());
+            if (ids.isEmpty()) {
+                break;
+            }
+            List<SearchResult> page = parseQueryResultsOptimized(response.getData());
+            if (page.size() != ids.size()) {
+                throw new IllegalStateException("列出数据源 " + datasourceId + " 的source_id失败: 查询结果字段不完整");
+            }
+            for (SearchResult result : page) {
+                if (result.getSourceId() != null && belongsToDatasource(result.getMetadata(), datasourceId)) {
+                    sourceIds.add(result.getSourceId());
+                }
+            }
+            
+            if (ids.size() < pageSize) {
+                break;
+            }
+            lastId = Collections.max(ids);
+        }
+        
+        return sourceIds;
+    }
+    
+    /**
+     * 解析查询结果中的Int64主键
+     */
+    private List<Long> parsePrimaryKeys(QueryResults queryResults) {
+        if (queryResults != null) {
+            for (io.milvus.grpc.FieldData fieldData : queryResults.getFieldsDataList()) {
+                if ("id".equals(fieldData.getFieldName()) && fieldData.hasScalars()) {
+                    return fieldData.getScalars().getLongData().getDataList();
+                }
+            }
+        }
+        return Collections.emptyList();
+    }
+    
+    /**
+     * 按source_id批量删除向量，使用in表达式分批执行
+     */
+    public boolean deleteVectorsBySourceIds(String collectionName, Collection<String> sourceIds) {
+        if (sourceIds == null || sourceIds.isEmpty()) {
+            return true;
+        }
+        
+        List<String> ids = new ArrayList<>(sourceIds);
+        int batchSize = 500;
+        boolean success = true;
+        
+        for (int start = 0; start < ids.size(); start += batchSize) {
+            List<String> batch = ids.subList(start, Math.min(start + batchSize, ids.size()));
+            StringBuilder expr = new StringBuilder("source_id in [");
+            for (int i = 0; i < batch.size(); i++) {
+                if (i > 0) {
+                    expr.append(",");
+                }
+                expr.append("\"").append(batch.get(i).replace("\"", "\\\"")).append("\"");
+            }
+            expr.append("]");
+            
+            try {
+                R<MutationResult> response = milvusClient.delete(
+                    DeleteParam.newBuilder()
+                        .withCollectionName(collectionName)
+                        .withExpr(expr.toString())
+                        .build()
+                );
+                
+                if (response.getStatus() != R.Status.Success.getCode()) {
+                    log.error("批量删除向量失败: {}", response.getMessage());
+                    success = false;
+                }
+            } catch (Exception e) {
+                log.error("批量删除向量失败: " + collectionName, e);
+                success = false;
+            }
+        }
+        
+        log.info("批量删除 {} 个向量，集合: {}", ids.size(), collectionName);
+        return success;
+    }
+    
+    private boolean belongsToDatasource(String metadata, Long datasourceId) {
+        if (metadata == null) {
+            return false;
+        }
+        try {
+            com.fasterxml.jackson.databind.JsonNode node = objectMapper.readTree(metadata).get("datasourceId");
+            return node != null && node.asLong() == datasourceId;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+    
     /**
      * 删除集合
      */
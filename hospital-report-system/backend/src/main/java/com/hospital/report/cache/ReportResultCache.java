@@ -0,0 +1,293 @@
+package com.hospital.report.cache;
+
+import com.hospital.report.mapper.ReportDataSourceMapper;
+import com.hospital.report.snapshot.ReportSnapshotEngine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * 报表查询结果缓存
+ * 按报表配置的 cache_enabled / cache_timeout 缓存数据源查询结果，键为 报表ID + 数据源ID + 规范化参数。
+ *
+ * 过期策略为 stale-while-revalidate：条目过期后的一个宽限期内仍直接返回旧结果，同时只提交一次后台刷新；
+ * 过期时间带随机抖动，避免同一时刻写入的大量条目在同一时刻集中失效。
+ * 冷启动时同一键的并发请求合并为一次源查询。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ReportResultCache {
+
+    private final ReportDataSourceMapper dataSourceMapper;
+
+    // 缓存策略（报表的缓存配置）在本地保留的时间，配置修改后最迟在该时间后生效
+    private static final long POLICY_TTL_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    @Value("${report.result-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${report.result-cache.max-entries:2000}")
+    private int maxEntries;
+
+    @Value("${report.result-cache.jitter-ratio:0.1}")
+    private double jitterRatio;
+
+    @Value("${report.result-cache.stale-multiplier:1.0}")
+    private double staleMultiplier;
+
+    @Value("${report.result-cache.refresh-threads:2}")
+    private int refreshThreads;
+
+    private ExecutorService refreshExecutor;
+
+    private Map<String, Entry> entries;
+
+    // 冷启动加载中的键，并发请求等待同一次查询
+    private final ConcurrentHashMap<String, CompletableFuture<Map<String, Object>>> loading = new ConcurrentHashMap<>();
+
+    // 后台刷新中的键，每个键同时只有一次刷新
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    // 数据源ID -> 缓存策略
+    private final ConcurrentHashMap<Long, CachePolicy> policies = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        entries = Collections.synchronizedMap(new LinkedHashMap<String, Entry>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        });
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        refreshExecutor = Executors.newFixedThreadPool(Math.max(1, refreshThreads), r -> {
+            Thread thread = new Thread(r, "report-result-refresh-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    /**
+     * 获取数据源所属报表的缓存策略
+     * @return 报表未开启缓存时返回null
+     */
+    public CachePolicy getPolicy(Long dataSourceId) {
+        if (!enabled || dataSourceId == null) {
+            return null;
+        }
+
+        long now = System.currentTimeMillis();
+        CachePolicy policy = policies.get(dataSourceId);
+        if (policy == null || now - policy.loadedAt > POLICY_TTL_MILLIS) {
+            policy = loadPolicy(dataSourceId, now);
+            policies.put(dataSourceId, policy);
+        }
+        return policy.isEnabled() ? policy : null;
+    }
+
+    /**
+     * 读取缓存结果，未命中或已过宽限期时同步加载
+     */
+    public Map<String, Object> get(CachePolicy policy, Long dataSourceId, Map<String, Object> parameters,
+                                   Supplier<Map<String, Object>> loader) {
+        String key = cacheKey(policy.reportId, dataSourceId, parameters);
+        long now = System.currentTimeMillis();
+
+        Entry entry = entries.get(key);
+        if (entry != null && now < entry.freshUntil) {
+            hits.increment();
+            return copyOf(entry, false);
+        }
+
+        if (entry != null && now < entry.staleUntil) {
+            staleHits.increment();
+            scheduleRefresh(key, policy, loader);
+            return copyOf(entry, true);
+        }
+
+        misses.increment();
+        return loadCoalesced(key, policy, loader);
+    }
+
+    /**
+     * 使数据源的全部缓存结果失效
+     */
+    public void invalidateDataSource(Long dataSourceId) {
+        String marker = ":" + dataSourceId + ":";
+        synchronized (entries) {
+            entries.keySet().removeIf(key -> key.contains(marker));
+        }
+        policies.remove(dataSourceId);
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("entries", entries.size());
+        stats.put("hits", hits.sum());
+        stats.put("staleHits", staleHits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("refreshing", refreshing.size());
+        return stats;
+    }
+
+    private Map<String, Object> loadCoalesced(String key, CachePolicy policy, Supplier<Map<String, Object>> loader) {
+        CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
+        CompletableFuture<Map<String, Object>> existing = loading.putIfAbsent(key, future);
+        if (existing != null) {
+            try {
+                return copyOf(existing.join());
+            } catch (CompletionException e) {
+                throw unwrap(e);
+            }
+        }
+
+        try {
+            Map<String, Object> result = loader.get();
+            store(key, policy, result);
+            future.complete(result);
+            return copyOf(result);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, future);
+        }
+    }
+
+    private void scheduleRefresh(String key, CachePolicy policy, Supplier<Map<String, Object>> loader) {
+        if (!refreshing.add(key)) {
+            return;
+        }
+
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    store(key, policy, loader.get());
+                } catch (Exception e) {
+                    // 刷新失败时保留旧结果，宽限期结束后由请求线程重新加载
+                    log.warn("报表结果缓存后台刷新失败: {} - {}", key, e.getMessage());
+                } finally {
+                    refreshing.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(key);
+        }
+    }
+
+    private void store(String key, CachePolicy policy, Map<String, Object> result) {
+        if (result == null || Boolean.FALSE.equals(result.get("success"))) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        long ttlMillis = TimeUnit.SECONDS.toMillis(policy.timeoutSeconds);
+        // 在 [ttl * (1 - jitter), ttl] 范围内随机缩短有效期
+        long jitter = (long) (ttlMillis * jitterRatio * ThreadLocalRandom.current().nextDouble());
+        long freshUntil = now + ttlMillis - jitter;
+        long staleUntil = freshUntil + (long) (ttlMillis * staleMultiplier);
+
+        entries.put(key, new Entry(new HashMap<>(result), freshUntil, staleUntil));
+    }
+
+    private CachePolicy loadPolicy(Long dataSourceId, long now) {
+        Map<String, Object> row = dataSourceMapper.selectCachePolicy(dataSourceId);
+        if (row == null) {
+            return new CachePolicy(null, false, 0, now);
+        }
+
+        Object reportId = row.get("report_id");
+        Object cacheEnabled = row.get("cache_enabled");
+        Object cacheTimeout = row.get("cache_timeout");
+
+        boolean policyEnabled = cacheEnabled instanceof Number
+            ? ((Number) cacheEnabled).intValue() == 1
+            : Boolean.TRUE.equals(cacheEnabled);
+        int timeoutSeconds = cacheTimeout instanceof Number ? ((Number) cacheTimeout).intValue() : 0;
+
+        return new CachePolicy(reportId instanceof Number ? ((Number) reportId).longValue() : null,
+            policyEnabled && timeoutSeconds > 0, timeoutSeconds, now);
+    }
+
+    private static String cacheKey(Long reportId, Long dataSourceId, Map<String, Object> parameters) {
+        String parameterText = ReportSnapshotEngine.normalizeParameters(parameters).entrySet().stream()
+            .map(entry -> entry.getKey() + "=" + entry.getValue())
+            .collect(Collectors.joining("&"));
+        return reportId + ":" + dataSourceId + ":" + DigestUtils.md5DigestAsHex(parameterText.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Map<String, Object> copyOf(Entry entry, boolean stale) {
+        Map<String, Object> result = new HashMap<>(entry.result);
+        result.put("fromCache", true);
+        result.put("stale", stale);
+        return result;
+    }
+
+    private static Map<String, Object> copyOf(Map<String, Object> result) {
+        return new HashMap<>(result);
+    }
+
+    private static RuntimeException unwrap(CompletionException e) {
+        Throwable cause = e.getCause();
+        return cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+    }
+
+    /**
+     * 报表缓存策略
+     */
+    public static class CachePolicy {
+
+        private final Long reportId;
+        private final boolean enabled;
+        private final int timeoutSeconds;
+        private final long loadedAt;
+
+        CachePolicy(Long reportId, boolean enabled, int timeoutSeconds, long loadedAt) {
+            this.reportId = reportId;
+            this.enabled = enabled;
+            this.timeoutSeconds = timeoutSeconds;
+            this.loadedAt = loadedAt;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+    }
+
+    private static class Entry {
+
+        final Map<String, Object> result;
+        final long freshUntil;
+        final long staleUntil;
+
+        Entry(Map<String, Object> result, long freshUntil, long staleUntil) {
+            this.result = result;
+            this.freshUntil = freshUntil;
+            this.staleUntil = staleUntil;
+        }
+    }
+}
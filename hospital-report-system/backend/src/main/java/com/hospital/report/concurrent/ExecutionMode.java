@@ -0,0 +1,96 @@
+package com.hospital.report.concurrent;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Supplier;
+
+/**
+ * 任务执行模式
+ * 开启 execution.virtual-threads.enabled 且运行在支持虚拟线程的JDK（21+）上时，
+ * 请求处理、SQL异步执行、同步任务等阻塞型任务改为每任务一个虚拟线程，JDBC/HTTP阻塞时不再占用平台线程；
+ * 否则沿用各处原有的平台线程池。
+ *
+ * 项目按Java 17编译，虚拟线程API通过反射获取，低版本JDK上自动回退。
+ */
+@Slf4j
+@Component
+public class ExecutionMode {
+
+    private final boolean virtualThreads;
+
+    private final Method ofVirtualMethod;
+
+    private final Method newThreadPerTaskExecutorMethod;
+
+    public ExecutionMode(@Value("${execution.virtual-threads.enabled:false}") boolean virtualThreadsEnabled) {
+        Method ofVirtual = null;
+        Method newThreadPerTaskExecutor = null;
+        if (virtualThreadsEnabled) {
+            try {
+                ofVirtual = Thread.class.getMethod("ofVirtual");
+                newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            } catch (NoSuchMethodException e) {
+                ofVirtual = null;
+                log.warn("当前JDK {} 不支持虚拟线程，继续使用平台线程池", Runtime.version());
+            }
+        }
+        this.ofVirtualMethod = ofVirtual;
+        this.newThreadPerTaskExecutorMethod = newThreadPerTaskExecutor;
+        this.virtualThreads = ofVirtual != null;
+        if (virtualThreads) {
+            log.info("虚拟线程执行模式已开启");
+        }
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * 创建阻塞型任务的执行器
+     * @param namePrefix 线程名前缀
+     * @param platformExecutor 未开启虚拟线程时使用的原有执行器
+     */
+    public ExecutorService newTaskExecutor(String namePrefix, Supplier<ExecutorService> platformExecutor) {
+        if (!virtualThreads) {
+            return platformExecutor.get();
+        }
+        return newVirtualThreadExecutor(namePrefix);
+    }
+
+    /**
+     * 每任务一个虚拟线程的执行器
+     */
+    public ExecutorService newVirtualThreadExecutor(String namePrefix) {
+        try {
+            return (ExecutorService) newThreadPerTaskExecutorMethod.invoke(null, virtualThreadFactory(namePrefix));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("创建虚拟线程执行器失败", e);
+        }
+    }
+
+    /**
+     * 虚拟线程工厂，线程名为 前缀 + 递增序号
+     */
+    public ThreadFactory virtualThreadFactory(String namePrefix) {
+        if (!virtualThreads) {
+            throw new IllegalStateException("虚拟线程执行模式未开启");
+        }
+
+        try {
+            // 通过公开接口 Thread.Builder 调用，实现类不对外开放
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = ofVirtualMethod.invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("创建虚拟线程工厂失败", e);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.hospital.report.concurrent;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.info.Info;
+import org.springframework.boot.actuate.info.InfoContributor;
+import org.springframework.stereotype.Component;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 虚拟线程钉住（pinning）诊断
+ * 通过JFR事件流订阅 jdk.VirtualThreadPinned：虚拟线程在 synchronized 块或本地方法中阻塞超过阈值时，
+ * 会占住底层载体线程，此时记录阻塞时长和调用栈，并按栈顶位置汇总次数，便于定位需要改为 ReentrantLock 的代码。
+ * 汇总结果通过 /actuator/info 的 virtualThreads 项查看。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class VirtualThreadPinningMonitor implements InfoContributor {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    // 日志中输出的调用栈深度
+    private static final int LOGGED_FRAMES = 8;
+
+    private final ExecutionMode executionMode;
+
+    @Value("${execution.virtual-threads.pinning-threshold-ms:20}")
+    private long pinningThresholdMs;
+
+    private RecordingStream recordingStream;
+
+    private final LongAdder pinnedEvents = new LongAdder();
+
+    // 栈顶位置 -> 钉住次数
+    private final ConcurrentHashMap<String, LongAdder> pinnedSites = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void start() {
+        if (!executionMode.isVirtualThreads()) {
+            return;
+        }
+
+        try {
+            recordingStream = new RecordingStream();
+            recordingStream.enable(PINNED_EVENT)
+                .withThreshold(Duration.ofMillis(pinningThresholdMs))
+                .withStackTrace();
+            recordingStream.onEvent(PINNED_EVENT, this::onPinned);
+            recordingStream.startAsync();
+            log.info("虚拟线程钉住诊断已开启，阈值: {}ms", pinningThresholdMs);
+        } catch (Exception e) {
+            log.warn("开启虚拟线程钉住诊断失败: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (recordingStream != null) {
+            recordingStream.close();
+        }
+    }
+
+    @Override
+    public void contribute(Info.Builder builder) {
+        builder.withDetail("virtualThreads", getStatistics());
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("virtualThreads", executionMode.isVirtualThreads());
+        stats.put("pinnedEvents", pinnedEvents.sum());
+
+        Map<String, Long> sites = new HashMap<>();
+        pinnedSites.forEach((site, count) -> sites.put(site, count.sum()));
+        stats.put("pinnedSites", sites);
+        return stats;
+    }
+
+    private void onPinned(RecordedEvent event) {
+        pinnedEvents.increment();
+
+        RecordedStackTrace stackTrace = event.getStackTrace();
+        List<RecordedFrame> frames = stackTrace != null ? stackTrace.getFrames() : List.of();
+        String site = firstApplicationFrame(frames);
+        pinnedSites.computeIfAbsent(site, key -> new LongAdder()).increment();
+
+        StringBuilder stack = new StringBuilder();
+        for (int i = 0; i < Math.min(LOGGED_FRAMES, frames.size()); i++) {
+            stack.append("\n\tat ").append(describe(frames.get(i)));
+        }
+        log.warn("虚拟线程被钉住 {}ms，位置: {}{}", event.getDuration().toMillis(), site, stack);
+    }
+
+    private static String firstApplicationFrame(List<RecordedFrame> frames) {
+        for (RecordedFrame frame : frames) {
+            if (frame.isJavaFrame() && frame.getMethod().getType().getName().startsWith("com.hospital.")) {
+                return describe(frame);
+            }
+        }
+        return frames.isEmpty() ? "unknown" : describe(frames.get(0));
+    }
+
+    private static String describe(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+    }
+}
@@ -0,0 +1,29 @@
+package com.hospital.report.config;
+
+import com.hospital.report.concurrent.ExecutionMode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 执行模式配置
+ * 开启虚拟线程模式后，Tomcat 每个请求在独立的虚拟线程上处理，
+ * server.tomcat.threads.max 不再限制并发请求数，并发由各数据源连接池控制。
+ */
+@Slf4j
+@Configuration
+public class ExecutionModeConfig {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer(ExecutionMode executionMode) {
+        return protocolHandler -> {
+            if (!executionMode.isVirtualThreads()) {
+                return;
+            }
+
+            protocolHandler.setExecutor(executionMode.newVirtualThreadExecutor("http-vt-"));
+            log.info("Tomcat请求处理已切换为虚拟线程");
+        };
+    }
+}
@@ -1,5 +1,6 @@
 package com.hospital.report.config;
 
+import com.hospital.report.sync.SyncSchedulerThreadPool;
 import org.quartz.Scheduler;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -12,12 +13,15 @@ import java.util.Properties;
 public class QuartzConfig {
 
     @Bean
-    public SchedulerFactoryBean schedulerFactoryBean(DataSource dataSource, QuartzJobFactory quartzJobFactory) {
+    public SchedulerFactoryBean schedulerFactoryBean(DataSource dataSource, QuartzJobFactory quartzJobFactory,
+                                                     SyncSchedulerThreadPool syncSchedulerThreadPool) {
         SchedulerFactoryBean factory = new SchedulerFactoryBean();
         
         factory.setDataSource(dataSource);
         factory.setJobFactory(quartzJobFactory);
         factory.setApplicationContextSchedulerContextKey("applicationContext");
+        // 调度线程数随本节点调度的任务调整，见SyncSchedulerThreadPool
+        factory.setTaskExecutor(syncSchedulerThreadPool.getExecutor());
         
         Properties quartzProperties = new Properties();
         quartzProperties.put("org.quartz.scheduler.instanceName", "HospitalReportScheduler");
@@ -26,11 +30,6 @@ public class QuartzConfig {
         
         quartzProperties.put("org.quartz.jobStore.class", "org.quartz.simpl.RAMJobStore");
         
-        quartzProperties.put("org.quartz.threadPool.class", "org.quartz.simpl.SimpleThreadPool");
-        quartzProperties.put("org.quartz.threadPool.threadCount", "10");
-        quartzProperties.put("org.quartz.threadPool.threadPriority", "5");
-        quartzProperties.put("org.quartz.threadPool.threadsInheritContextClassLoaderOfInitializingThread", "true");
-        
         factory.setQuartzProperties(quartzProperties);
         factory.setStartupDelay(30);
         factory.setAutoStartup(true);
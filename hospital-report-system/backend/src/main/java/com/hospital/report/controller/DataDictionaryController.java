@@ -1,21 +1,30 @@
 package com.hospital.report.controller;
 
 import com.baomidou.mybatisplus.core.metadata.IPage;
+import com.hospital.report.concurrent.ExecutionMode;
 import com.hospital.report.entity.DataDictionary;
 import com.hospital.report.service.DataDictionaryService;
 import com.hospital.report.utils.Result;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.File;
+import java.io.IOException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Slf4j
 @RestController
@@ -24,6 +33,32 @@ import java.util.Map;
 public class DataDictionaryController {
 
     private final DataDictionaryService dataDictionaryService;
+    private final ExecutionMode executionMode;
+
+    @Value("${dict.import.stream-threads:2}")
+    private int importThreads;
+
+    @Value("${dict.import.stream-queue-capacity:8}")
+    private int importQueueCapacity;
+
+    // 流式导入在独立的有界线程池中执行阻塞的解析和入库，不占用公共ForkJoinPool
+    private ExecutorService importExecutor;
+
+    @PostConstruct
+    public void initImportExecutor() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        importExecutor = executionMode.newTaskExecutor("dict-import-", () -> new ThreadPoolExecutor(
+            importThreads, importThreads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(importQueueCapacity), r -> {
+                Thread thread = new Thread(r, "dict-import-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }));
+    }
+
+    @PreDestroy
+    public void shutdownImportExecutor() {
+        importExecutor.shutdownNow();
+    }
 
     @PostMapping("/fields")
     public Result<DataDictionary> createField(@RequestBody DataDictionary field) {
@@ -197,6 +232,58 @@ public class DataDictionaryController {
         }
     }
 
+    @PostMapping("/import/stream")
+    public SseEmitter importFieldsWithProgress(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(required = false) Long userId) throws IOException {
+        SseEmitter emitter = new SseEmitter(30 * 60 * 1000L); // 30分钟超时
+
+        if (file.isEmpty()) {
+            emitter.send(SseEmitter.event().name("error").data("上传文件不能为空"));
+            emitter.complete();
+            return emitter;
+        }
+
+        // 请求线程内先落盘，后台线程只读取临时文件
+        File tempFile = File.createTempFile("dict-import-", ".xlsx");
+        file.transferTo(tempFile);
+
+        try {
+            CompletableFuture.runAsync(() -> importToEmitter(tempFile, userId, emitter), importExecutor);
+        } catch (RejectedExecutionException e) {
+            log.warn("字段导入任务过多，拒绝新的流式导入请求");
+            deleteTempFile(tempFile);
+            emitter.completeWithError(new IllegalStateException("字段导入任务过多，请稍后重试"));
+        }
+
+        return emitter;
+    }
+
+    private void importToEmitter(File tempFile, Long userId, SseEmitter emitter) {
+        try {
+            Map<String, Object> result = dataDictionaryService.importFields(tempFile, userId, progress -> {
+                try {
+                    emitter.send(SseEmitter.event().name("progress").data(progress));
+                } catch (IOException e) {
+                    log.debug("推送导入进度失败: {}", e.getMessage());
+                }
+            });
+            emitter.send(SseEmitter.event().name("complete").data(result));
+            emitter.complete();
+        } catch (Exception e) {
+            log.error("导入字段失败: {}", e.getMessage(), e);
+            emitter.completeWithError(e);
+        } finally {
+            deleteTempFile(tempFile);
+        }
+    }
+
+    private static void deleteTempFile(File tempFile) {
+        if (!tempFile.delete()) {
+            tempFile.deleteOnExit();
+        }
+    }
+
     @PostMapping("/export")
     public ResponseEntity<byte[]> exportFields(@RequestBody(required = false) List<Long> fieldIds) {
         try {
@@ -1,15 +1,23 @@
 package com.hospital.report.controller;
 
+import com.hospital.report.concurrent.ExecutionMode;
 import com.hospital.report.entity.LineageNode;
 import com.hospital.report.service.DataLineageService;
 import com.hospital.report.service.LineageNodeService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Slf4j
 @RestController
@@ -19,6 +27,32 @@ public class DataLineageController {
 
     private final DataLineageService dataLineageService;
     private final LineageNodeService lineageNodeService;
+    private final ExecutionMode executionMode;
+
+    @Value("${lineage.discovery.stream-threads:2}")
+    private int streamThreads;
+
+    @Value("${lineage.discovery.stream-queue-capacity:8}")
+    private int streamQueueCapacity;
+
+    // 流式发现在独立的有界线程池中执行阻塞的JDBC读取，不占用公共ForkJoinPool
+    private ExecutorService discoveryExecutor;
+
+    @PostConstruct
+    public void initDiscoveryExecutor() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        discoveryExecutor = executionMode.newTaskExecutor("lineage-discovery-", () -> new ThreadPoolExecutor(
+            streamThreads, streamThreads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(streamQueueCapacity), r -> {
+                Thread thread = new Thread(r, "lineage-discovery-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }));
+    }
+
+    @PreDestroy
+    public void shutdownDiscoveryExecutor() {
+        discoveryExecutor.shutdownNow();
+    }
 
     @GetMapping("/nodes")
     public ResponseEntity<List<LineageNode>> searchNodes(
@@ -173,6 +207,40 @@ public class DataLineageController {
         return ResponseEntity.ok(relations);
     }
 
+    @PostMapping("/discover/stream")
+    public SseEmitter discoverLineageRelationsStream(
+            @RequestParam String systemSource,
+            @RequestParam String discoveryMethod) {
+        SseEmitter emitter = new SseEmitter(30 * 60 * 1000L); // 30分钟超时
+
+        try {
+            CompletableFuture.runAsync(() -> discoverToEmitter(systemSource, discoveryMethod, emitter), discoveryExecutor);
+        } catch (RejectedExecutionException e) {
+            log.warn("血缘关系发现任务过多，拒绝新的流式发现请求");
+            emitter.completeWithError(new IllegalStateException("血缘关系发现任务过多，请稍后重试"));
+        }
+
+        return emitter;
+    }
+
+    private void discoverToEmitter(String systemSource, String discoveryMethod, SseEmitter emitter) {
+        try {
+            Map<String, Object> summary = dataLineageService.discoverLineageRelations(systemSource, discoveryMethod,
+                relation -> {
+                    try {
+                        emitter.send(SseEmitter.event().name("relation").data(relation));
+                    } catch (IOException e) {
+                        throw new IllegalStateException("SSE连接已断开", e);
+                    }
+                });
+            emitter.send(SseEmitter.event().name("complete").data(summary));
+            emitter.complete();
+        } catch (Exception e) {
+            log.error("血缘关系发现失败: {}", e.getMessage(), e);
+            emitter.completeWithError(e);
+        }
+    }
+
     @GetMapping("/{nodeId}/data-flow")
     public ResponseEntity<Map<String, Object>> getDataFlowAnalysis(@PathVariable String nodeId) {
         Map<String, Object> analysis = dataLineageService.getDataFlowAnalysis(nodeId);
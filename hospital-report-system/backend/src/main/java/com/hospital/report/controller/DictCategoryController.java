@@ -11,6 +11,10 @@ import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
@@ -64,22 +68,49 @@ public class DictCategoryController {
      * 获取分类字段混合树
      */
     @GetMapping("/field-tree")
-    @Operation(summary = "获取分类字段混合树", description = "获取分类作为分支节点，字段作为叶子节点的完整树形结构")
-    public Result<List<CategoryFieldTreeVO>> getCategoryFieldTree() {
-        log.info("获取分类字段混合树");
-        List<CategoryFieldTreeVO> tree = dictCategoryService.getCategoryFieldTree();
-        return Result.success(tree);
+    @Operation(summary = "获取分类字段混合树", description = "获取分类作为分支节点，字段作为叶子节点的完整树形结构，支持ETag协商缓存")
+    public ResponseEntity<Result<List<CategoryFieldTreeVO>>> getCategoryFieldTree(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return buildTreeResponse(dictCategoryService.getCategoryFieldTreeSnapshot(false), ifNoneMatch);
     }
 
     /**
      * 获取启用的分类字段混合树
      */
     @GetMapping("/field-tree/enabled")
-    @Operation(summary = "获取启用的分类字段混合树", description = "获取只包含启用状态的分类字段混合树形结构")
-    public Result<List<CategoryFieldTreeVO>> getEnabledCategoryFieldTree() {
-        log.info("获取启用的分类字段混合树");
-        List<CategoryFieldTreeVO> tree = dictCategoryService.getEnabledCategoryFieldTree();
-        return Result.success(tree);
+    @Operation(summary = "获取启用的分类字段混合树", description = "获取只包含启用状态的分类字段混合树形结构，支持ETag协商缓存")
+    public ResponseEntity<Result<List<CategoryFieldTreeVO>>> getEnabledCategoryFieldTree(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return buildTreeResponse(dictCategoryService.getCategoryFieldTreeSnapshot(true), ifNoneMatch);
+    }
+
+    /**
+     * 获取分类字段混合树增量
+     */
+    @GetMapping("/field-tree/delta")
+    @Operation(summary = "获取分类字段混合树增量", description = "返回自指定版本以来新增、变更和删除的节点，版本过旧时返回全量树")
+    public Result<Map<String, Object>> getCategoryFieldTreeDelta(
+            @Parameter(description = "客户端持有的树版本") @RequestParam Long since,
+            @Parameter(description = "是否只包含启用节点") @RequestParam(defaultValue = "false") Boolean enabled) {
+        return Result.success(dictCategoryService.getCategoryFieldTreeDelta(enabled, since));
+    }
+
+    /**
+     * 按快照ETag返回树或304
+     */
+    private ResponseEntity<Result<List<CategoryFieldTreeVO>>> buildTreeResponse(
+            CategoryFieldTreeSnapshot snapshot, String ifNoneMatch) {
+        String etag = snapshot.getETag();
+        if (ifNoneMatch != null && ifNoneMatch.contains(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .header("X-Tree-Version", String.valueOf(snapshot.getVersion()))
+                .body(Result.success(snapshot.getTree()));
     }
 
     /**
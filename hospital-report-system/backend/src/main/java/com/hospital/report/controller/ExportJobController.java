@@ -0,0 +1,216 @@
+package com.hospital.report.controller;
+
+import com.hospital.report.common.Result;
+import com.hospital.report.service.ExportJobService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+@Slf4j
+@RestController
+@RequestMapping("/export-jobs")
+@RequiredArgsConstructor
+@Tag(name = "导出任务管理", description = "后台导出任务相关接口")
+@CrossOrigin(origins = "*")
+public class ExportJobController {
+
+    private final ExportJobService exportJobService;
+
+    @PostMapping
+    @Operation(summary = "提交导出任务", description = "提交后台导出任务，返回任务ID；相同导出会合并为同一任务")
+    public Result<Map<String, Object>> submitExport(@RequestBody Map<String, Object> request) {
+        String sqlContent = (String) request.get("sqlContent");
+        String databaseType = (String) request.get("databaseType");
+        Map<String, Object> parameters = (Map<String, Object>) request.getOrDefault("parameters", Map.of());
+        Map<String, Object> options = (Map<String, Object>) request.getOrDefault("options", Map.of());
+        String dataVersion = request.get("dataVersion") != null ? request.get("dataVersion").toString() : null;
+
+        return Result.success(exportJobService.submitQueryExport(sqlContent, parameters, databaseType, options, dataVersion));
+    }
+
+    @GetMapping("/{jobId}")
+    @Operation(summary = "查询导出任务状态")
+    public Result<Map<String, Object>> getJobStatus(@PathVariable String jobId) {
+        return Result.success(exportJobService.getJobStatus(jobId));
+    }
+
+    @GetMapping("/{jobId}/progress")
+    @Operation(summary = "订阅导出进度", description = "以SSE方式推送任务状态，任务结束后关闭连接")
+    public SseEmitter subscribeProgress(@PathVariable String jobId) {
+        SseEmitter emitter = new SseEmitter(30 * 60 * 1000L); // 30分钟超时
+
+        Runnable unsubscribe = exportJobService.subscribe(jobId, status -> {
+            try {
+                emitter.send(SseEmitter.event().name("progress").data(status));
+                String state = (String) status.get("status");
+                if ("COMPLETED".equals(state) || "FAILED".equals(state) || "CANCELLED".equals(state)) {
+                    emitter.complete();
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("SSE连接已断开", e);
+            }
+        });
+
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(error -> unsubscribe.run());
+        return emitter;
+    }
+
+    @DeleteMapping("/{jobId}")
+    @Operation(summary = "取消导出任务")
+    public Result<Void> cancelJob(@PathVariable String jobId) {
+        exportJobService.cancelJob(jobId);
+        return Result.success();
+    }
+
+    @GetMapping("/statistics")
+    @Operation(summary = "导出任务统计")
+    public Result<Map<String, Object>> getStatistics() {
+        return Result.success(exportJobService.getStatistics());
+    }
+
+    @GetMapping("/{jobId}/download")
+    @Operation(summary = "下载导出文件", description = "支持HTTP Range断点续传")
+    public void download(@PathVariable String jobId,
+                         @RequestHeader(value = HttpHeaders.RANGE, required = false) String rangeHeader,
+                         @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange,
+                         HttpServletResponse response) throws IOException {
+        // 下载期间占用文件，过期清理会跳过该任务
+        File file = exportJobService.acquireJobFile(jobId);
+        try {
+            writeFile(jobId, file, rangeHeader, ifRange, response);
+        } finally {
+            exportJobService.releaseJobFile(jobId);
+        }
+    }
+
+    private void writeFile(String jobId, File file, String rangeHeader, String ifRange,
+                           HttpServletResponse response) throws IOException {
+        long fileLength = file.length();
+        String etag = "\"" + jobId + "-" + fileLength + "\"";
+
+        long start = 0;
+        long end = fileLength - 1;
+
+        // If-Range不匹配时忽略Range，返回完整文件
+        if (rangeHeader != null && (ifRange == null || etag.equals(ifRange))) {
+            long[] range = parseRange(rangeHeader, fileLength);
+            if (range == null) {
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + fileLength);
+                return;
+            }
+            if (range.length == 2) {
+                start = range[0];
+                end = range[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + fileLength);
+            }
+        }
+
+        long contentLength = end - start + 1;
+        String fileName = exportJobService.getDownloadFileName(jobId);
+        response.setContentType(fileName.endsWith(".arrow")
+            ? "application/vnd.apache.arrow.stream"
+            : "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\""
+            + URLEncoder.encode(fileName, StandardCharsets.UTF_8) + "\"");
+        response.setContentLengthLong(contentLength);
+
+        try {
+            OutputStream out = response.getOutputStream();
+            if (contentLength == fileLength) {
+                Files.copy(file.toPath(), out);
+            } else {
+                copyRange(file.toPath(), start, contentLength, out);
+            }
+            response.flushBuffer();
+        } catch (IOException e) {
+            // 客户端中断下载属于正常情况，可通过Range续传
+            log.debug("导出文件下载中断: {}, {}", jobId, e.getMessage());
+        }
+    }
+
+    /**
+     * 从指定位置复制length字节（Servlet输出流不是文件通道，transferTo不能零拷贝，直接按缓冲区复制）
+     */
+    private void copyRange(Path path, long start, long length, OutputStream out) throws IOException {
+        try (SeekableByteChannel channel = Files.newByteChannel(path)) {
+            channel.position(start);
+            InputStream in = Channels.newInputStream(channel);
+            byte[] buffer = new byte[64 * 1024];
+            long remaining = length;
+            while (remaining > 0) {
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    break;
+                }
+                out.write(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+    }
+
+    /**
+     * 解析单段Range请求头
+     * @return null表示范围无效；空数组表示不支持的格式（返回完整文件）；否则为[start, end]
+     */
+    private long[] parseRange(String rangeHeader, long fileLength) {
+        if (!rangeHeader.startsWith("bytes=") || rangeHeader.contains(",")) {
+            return new long[0];
+        }
+
+        String spec = rangeHeader.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return new long[0];
+        }
+
+        try {
+            String startPart = spec.substring(0, dash).trim();
+            String endPart = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+
+            if (startPart.isEmpty()) {
+                // 后缀范围：最后N个字节
+                long suffixLength = Long.parseLong(endPart);
+                if (suffixLength <= 0) {
+                    return null;
+                }
+                start = Math.max(0, fileLength - suffixLength);
+                end = fileLength - 1;
+            } else {
+                start = Long.parseLong(startPart);
+                end = endPart.isEmpty() ? fileLength - 1 : Math.min(Long.parseLong(endPart), fileLength - 1);
+            }
+
+            if (start >= fileLength || start > end) {
+                return null;
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+}
@@ -424,6 +424,18 @@ public class ReportController {
         }
     }
 
+    @PostMapping("/datasources/combine")
+    public Result<Map<String, Object>> combineDataSources(
+            @RequestParam List<Long> dataSourceIds,
+            @RequestBody(required = false) String combineConfig) {
+        try {
+            Map<String, Object> result = reportDataService.combineDataSources(dataSourceIds, combineConfig);
+            return Result.success(result);
+        } catch (Exception e) {
+            return Result.error("Failed to combine data sources: " + e.getMessage());
+        }
+    }
+
     @GetMapping("/datasources/{dataSourceId}/preview")
     public Result<Map<String, Object>> previewDataSource(
             @PathVariable Long dataSourceId,
@@ -591,6 +603,18 @@ public class ReportController {
         }
     }
 
+    @PostMapping("/{reportId}/component-data")
+    public Result<Map<String, Object>> getReportComponentData(
+            @PathVariable Long reportId,
+            @RequestBody(required = false) Map<String, Object> parameters) {
+        try {
+            Map<String, Object> data = reportDataService.fetchReportComponentData(reportId, parameters);
+            return Result.success(data);
+        } catch (Exception e) {
+            return Result.error("Failed to get component data: " + e.getMessage());
+        }
+    }
+
     @GetMapping("/{reportId}/versions")
     public Result<List<Map<String, Object>>> getReportVersions(@PathVariable Long reportId) {
         try {
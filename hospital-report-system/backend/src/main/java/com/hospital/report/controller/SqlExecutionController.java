@@ -1,13 +1,18 @@
 package com.hospital.report.controller;
 
 import com.hospital.report.common.Result;
+import com.hospital.report.service.ExportService;
 import com.hospital.report.service.SqlExecutionService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.OutputStream;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 
 @Slf4j
@@ -20,6 +25,9 @@ public class SqlExecutionController {
     @Autowired
     private SqlExecutionService sqlExecutionService;
 
+    @Autowired
+    private ExportService exportService;
+
     @PostMapping("/execute")
     @Operation(summary = "执行SQL查询", description = "同步执行SQL查询并返回结果")
     public Result<Map<String, Object>> executeQuery(@RequestBody Map<String, Object> request) {
@@ -47,6 +55,40 @@ public class SqlExecutionController {
         }
     }
 
+    @PostMapping("/export/excel")
+    @Operation(summary = "流式导出查询结果", description = "按数据库游标读取查询结果，以XLSX格式直接写入响应流")
+    public void exportQueryToExcel(@RequestBody Map<String, Object> request, HttpServletResponse response) {
+        String sqlContent = (String) request.get("sqlContent");
+        String databaseType = (String) request.get("databaseType");
+        Map<String, Object> parameters = (Map<String, Object>) request.getOrDefault("parameters", Map.of());
+        Map<String, Object> options = (Map<String, Object>) request.getOrDefault("options", Map.of());
+
+        log.info("Exporting SQL query to excel, database: {}", databaseType);
+
+        String fileName = "query_" + System.currentTimeMillis() + ".xlsx";
+        response.setContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+        response.setHeader("Content-Disposition",
+                "attachment; filename=\"" + URLEncoder.encode(fileName, StandardCharsets.UTF_8) + "\"");
+
+        try {
+            OutputStream outputStream = response.getOutputStream();
+            exportService.exportQueryToExcel(sqlContent, parameters, databaseType, options, outputStream);
+        } catch (Exception e) {
+            log.error("Failed to export SQL query", e);
+            // 响应尚未提交时才能改写为错误信息，已开始写入时只能中断下载
+            if (!response.isCommitted()) {
+                response.reset();
+                response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                response.setContentType("text/plain;charset=UTF-8");
+                try {
+                    response.getWriter().write("Excel导出失败: " + e.getMessage());
+                } catch (Exception ignored) {
+                    // 客户端已断开
+                }
+            }
+        }
+    }
+
     @PostMapping("/validate")
     @Operation(summary = "验证SQL语句", description = "验证SQL语句的语法正确性")
     public Result<Map<String, Object>> validateSql(@RequestBody Map<String, Object> request) {
@@ -9,6 +9,7 @@ import com.hospital.report.mapper.SyncLogMapper;
 import com.hospital.report.mapper.SyncTaskMapper;
 import com.hospital.report.service.QuartzScheduleService;
 import com.hospital.report.service.SyncService;
+import com.hospital.report.sync.SyncClusterCoordinator;
 import com.hospital.report.sync.SyncContext;
 import com.hospital.report.utils.Result;
 import lombok.RequiredArgsConstructor;
@@ -30,6 +31,7 @@ public class SyncController {
     private final QuartzScheduleService quartzScheduleService;
     private final SyncTaskMapper syncTaskMapper;
     private final SyncLogMapper syncLogMapper;
+    private final SyncClusterCoordinator clusterCoordinator;
 
     @PostMapping("/tasks")
     public Result<SyncTask> createTask(@RequestBody SyncTask syncTask) {
@@ -309,6 +311,16 @@ public class SyncController {
         }
     }
 
+    @GetMapping("/cluster")
+    public Result<Map<String, Object>> getClusterStatus() {
+        try {
+            return Result.success(clusterCoordinator.getClusterStatus());
+        } catch (Exception e) {
+            log.error("获取调度集群状态失败: {}", e.getMessage(), e);
+            return Result.error("获取调度集群状态失败: " + e.getMessage());
+        }
+    }
+
     @GetMapping("/logs")
     public Result<IPage<SyncLog>> getSyncLogs(
             @RequestParam(defaultValue = "1") Integer current,
@@ -0,0 +1,298 @@
+package com.hospital.report.counter;
+
+import com.hospital.report.mapper.ReportConfigMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 报表观看次数的写后计数器
+ * 观看请求只在内存中累加（每个报表一个LongAdder），由后台线程定期把增量批量写回：
+ * UPDATE report_config SET view_count = view_count + ?。
+ * 写回的是增量而不是绝对值，多实例部署时各节点各自累加写回，结果同样正确。
+ * 读取的次数为已持久化次数 + 本节点未写回增量；已持久化次数在每次写回后从数据库重新加载，
+ * 因此包含其他节点写回的增量，各节点读数的偏差不超过一个写回周期。
+ * 没有待写回增量且空闲超过 idle-minutes 的计数器在写回时淘汰，重新加载只针对仍活跃的报表，
+ * 内存占用和加载量随当前活跃报表数变化，而不是随启动以来被观看过的报表总数增长。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ReportViewCounter {
+
+    private final ReportConfigMapper reportConfigMapper;
+
+    // 单条UPDATE语句包含的报表数
+    private static final int FLUSH_BATCH_SIZE = 500;
+
+    @Value("${report.view-count.flush-seconds:5}")
+    private int flushSeconds;
+
+    @Value("${report.view-count.idle-minutes:10}")
+    private int idleMinutes;
+
+    private final ConcurrentHashMap<Long, Counter> counters = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService flushExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "report-view-count-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // 串行化写回与重置，避免重置期间有增量写回；写回期间访问数据库，使用ReentrantLock避免钉住虚拟线程
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    @PostConstruct
+    public void initFlush() {
+        flushExecutor.scheduleWithFixedDelay(this::flushQuietly, flushSeconds, flushSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdownFlush() {
+        flushExecutor.shutdownNow();
+        // 停机前写回剩余增量
+        flushQuietly();
+    }
+
+    /**
+     * 记录一次观看
+     * @return 包含未写回增量的最新观看次数
+     * @throws IllegalArgumentException 报表不存在
+     */
+    public long increment(Long reportId) {
+        while (true) {
+            Counter counter = getCounter(reportId);
+            counter.pending.increment();
+            if (!counter.retired) {
+                counter.lastViewTime.set(LocalDateTime.now());
+                counter.touch();
+                return counter.current();
+            }
+            // 计数器已被淘汰或重置替换：撤回本次增量，在当前计数器上重试
+            counter.pending.decrement();
+        }
+    }
+
+    /**
+     * 获取观看次数（已持久化次数 + 未写回增量）
+     * @throws IllegalArgumentException 报表不存在
+     */
+    public long getViewCount(Long reportId) {
+        Counter counter = getCounter(reportId);
+        counter.touch();
+        return counter.current();
+    }
+
+    /**
+     * 在数据库读出的观看次数上合并本节点未写回的增量
+     */
+    public int mergePending(Long reportId, Integer persistedCount) {
+        int base = persistedCount != null ? persistedCount : 0;
+        Counter counter = reportId != null ? counters.get(reportId) : null;
+        return counter != null ? base + (int) counter.pending.sum() : base;
+    }
+
+    /**
+     * 重置计数：丢弃未写回的增量并把数据库中的次数清零
+     * 在写回锁内先用零基数的新计数器替换旧计数器，再更新数据库：重置期间的观看计入新计数器，
+     * 写回和重新加载不会与重置交错，不会带回重置前的次数。
+     */
+    public void reset(Long reportId) {
+        flushLock.lock();
+        try {
+            Counter previous = counters.put(reportId, new Counter(0));
+            if (previous != null) {
+                previous.retired = true;
+            }
+            reportConfigMapper.resetViewCount(reportId);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 把所有未写回的增量批量写入数据库
+     * 写入失败时增量退回计数器，下次继续写回，不会丢失。
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            List<Map<String, Object>> batch = new ArrayList<>(FLUSH_BATCH_SIZE);
+            List<Counter> batchCounters = new ArrayList<>(FLUSH_BATCH_SIZE);
+            long totalViews = 0;
+
+            for (Map.Entry<Long, Counter> entry : counters.entrySet()) {
+                Counter counter = entry.getValue();
+                long delta = counter.pending.sum();
+                if (delta == 0) {
+                    continue;
+                }
+
+                // 先计入已持久化次数再扣减待写回增量，读取结果只会短暂偏高而不会偏低
+                counter.base.addAndGet(delta);
+                counter.pending.add(-delta);
+                counter.inFlight = delta;
+
+                Map<String, Object> item = new HashMap<>();
+                item.put("reportId", entry.getKey());
+                item.put("delta", delta);
+                item.put("lastViewTime", counter.lastViewTime.get());
+                batch.add(item);
+                batchCounters.add(counter);
+                totalViews += delta;
+
+                if (batch.size() >= FLUSH_BATCH_SIZE) {
+                    writeBatch(batch, batchCounters);
+                    batch.clear();
+                    batchCounters.clear();
+                }
+            }
+
+            if (!batch.isEmpty()) {
+                writeBatch(batch, batchCounters);
+            }
+
+            if (totalViews > 0) {
+                log.debug("报表观看次数写回完成，增量: {}", totalViews);
+            }
+
+            evictIdleCounters();
+            reloadPersistedCounts();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void writeBatch(List<Map<String, Object>> batch, List<Counter> batchCounters) {
+        try {
+            reportConfigMapper.batchIncrementViewCount(batch);
+        } catch (Exception e) {
+            log.error("报表观看次数写回失败，{}个报表的增量将在下次重试", batch.size(), e);
+            for (Counter counter : batchCounters) {
+                counter.base.addAndGet(-counter.inFlight);
+                counter.pending.add(counter.inFlight);
+            }
+        } finally {
+            for (Counter counter : batchCounters) {
+                counter.inFlight = 0;
+            }
+        }
+    }
+
+    /**
+     * 淘汰没有待写回增量且长时间未访问的计数器，下次访问时从数据库重新加载
+     * 先标记淘汰再检查增量：标记前已累加的增量会被检查到而保留计数器，标记后累加的观看会撤回并重试到新计数器
+     */
+    private void evictIdleCounters() {
+        long idleBefore = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(idleMinutes);
+        int evicted = 0;
+        for (Map.Entry<Long, Counter> entry : counters.entrySet()) {
+            Counter counter = entry.getValue();
+            if (counter.lastAccessMillis > idleBefore || counter.pending.sum() != 0) {
+                continue;
+            }
+            counter.retired = true;
+            if (counter.pending.sum() != 0) {
+                counter.retired = false;
+                continue;
+            }
+            if (counters.remove(entry.getKey(), counter)) {
+                evicted++;
+            }
+        }
+        if (evicted > 0) {
+            log.debug("淘汰空闲的报表观看计数器: {}", evicted);
+        }
+    }
+
+    /**
+     * 重新加载仍活跃的计数器的已持久化次数，写回失败退回的增量仍在pending中，不会重复计入
+     */
+    private void reloadPersistedCounts() {
+        List<Long> reportIds = new ArrayList<>(counters.keySet());
+        for (int start = 0; start < reportIds.size(); start += FLUSH_BATCH_SIZE) {
+            List<Map<String, Object>> rows;
+            try {
+                rows = reportConfigMapper.selectViewCounts(
+                    reportIds.subList(start, Math.min(start + FLUSH_BATCH_SIZE, reportIds.size())));
+            } catch (Exception e) {
+                log.warn("重新加载报表观看次数失败，下次写回时重试: {}", e.getMessage());
+                return;
+            }
+            for (Map<String, Object> row : rows) {
+                Counter counter = counters.get(((Number) row.get("id")).longValue());
+                if (counter != null && row.get("view_count") instanceof Number) {
+                    counter.base.set(((Number) row.get("view_count")).longValue());
+                }
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("报表观看次数写回异常", e);
+        }
+    }
+
+    private Counter getCounter(Long reportId) {
+        Counter counter = counters.get(reportId);
+        if (counter != null) {
+            return counter;
+        }
+
+        // 首次访问时加载已持久化的次数，同时校验报表存在
+        Integer persisted = reportConfigMapper.selectViewCount(reportId);
+        if (persisted == null) {
+            throw new IllegalArgumentException("Report not found with id: " + reportId);
+        }
+        return counters.computeIfAbsent(reportId, id -> new Counter(persisted));
+    }
+
+    private static class Counter {
+
+        // 已写回数据库的次数，每次写回后从数据库重新加载
+        final AtomicLong base;
+
+        // 尚未写回的增量
+        final LongAdder pending = new LongAdder();
+
+        final AtomicReference<LocalDateTime> lastViewTime = new AtomicReference<>();
+
+        // 正在写回的增量，仅由写回线程在flushLock内访问
+        long inFlight;
+
+        // 最近一次读写时间，用于淘汰空闲计数器
+        volatile long lastAccessMillis = System.currentTimeMillis();
+
+        // 已被淘汰或被重置替换，不再接受增量
+        volatile boolean retired;
+
+        Counter(long persisted) {
+            this.base = new AtomicLong(persisted);
+        }
+
+        long current() {
+            return base.get() + pending.sum();
+        }
+
+        void touch() {
+            lastAccessMillis = System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,448 @@
+package com.hospital.report.dictionary;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.hospital.report.entity.DataDictionary;
+import com.hospital.report.mapper.DataDictionaryMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.sourceforge.pinyin4j.PinyinHelper;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 数据字典内存倒排索引
+ * 中文按单字和二元组切分，英文和编码按下划线、驼峰切分为小写词，中文名称额外索引拼音首字母。
+ * 查询时英文词按前缀展开以支持输入联想，结果按BM25打分取前K个字段ID。
+ * 首次查询时从数据库加载，之后由字段的增删改增量维护。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DictionarySearchIndex {
+
+    private final DataDictionaryMapper dataDictionaryMapper;
+
+    // 拼音首字母词的前缀标记，英文词中不会出现该字符
+    private static final char PINYIN_MARK = '#';
+
+    private static final float WEIGHT_NAME_CN = 3.0f;
+    private static final float WEIGHT_FIELD_CODE = 3.0f;
+    private static final float WEIGHT_NAME_EN = 2.0f;
+    private static final float WEIGHT_BUSINESS_MEANING = 1.0f;
+
+    // 前缀展开命中的词相对完整命中的折扣
+    private static final float PREFIX_BOOST = 0.7f;
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+
+    private static final double BM25_K1 = 1.2;
+    private static final double BM25_B = 0.75;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 词 -> 倒排表，有序以便前缀查找
+    private final TreeMap<String, Postings> postings = new TreeMap<>();
+
+    // 字段ID <-> 内部文档编号
+    private final Map<Long, Integer> docIndex = new HashMap<>();
+    private long[] docIds = new long[1024];
+    private float[] docLengths = new float[1024];
+    private String[][] docTerms = new String[1024][];
+    private int docCount;
+    private int aliveCount;
+    private double totalLength;
+
+    private volatile boolean loaded;
+
+    /**
+     * 检索字段
+     * @return 按相关度降序排列的字段ID
+     */
+    public List<Long> search(String keyword, int limit) {
+        if (keyword == null || keyword.trim().isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+        ensureLoaded();
+
+        List<QueryTerm> queryTerms = analyzeQuery(keyword);
+        lock.readLock().lock();
+        try {
+            if (aliveCount == 0 || queryTerms.isEmpty()) {
+                return new ArrayList<>();
+            }
+
+            double avgLength = totalLength / aliveCount;
+            float[] scores = new float[docCount];
+            int[] touched = new int[16];
+            int touchedCount = 0;
+
+            for (QueryTerm queryTerm : queryTerms) {
+                for (Map.Entry<String, Float> match : expand(queryTerm).entrySet()) {
+                    Postings list = postings.get(match.getKey());
+                    double idf = Math.log(1 + (aliveCount - list.size + 0.5) / (list.size + 0.5));
+                    float boost = match.getValue();
+
+                    for (int i = 0; i < list.size; i++) {
+                        int doc = list.docs[i];
+                        float tf = list.freqs[i];
+                        double norm = BM25_K1 * (1 - BM25_B + BM25_B * docLengths[doc] / avgLength);
+                        float score = (float) (boost * idf * tf * (BM25_K1 + 1) / (tf + norm));
+
+                        if (scores[doc] == 0) {
+                            if (touchedCount == touched.length) {
+                                touched = Arrays.copyOf(touched, touchedCount * 2);
+                            }
+                            touched[touchedCount++] = doc;
+                        }
+                        scores[doc] += score;
+                    }
+                }
+            }
+
+            // 小顶堆保留得分最高的K个
+            PriorityQueue<Integer> heap = new PriorityQueue<>(Math.min(limit, touchedCount) + 1,
+                (a, b) -> scores[a] != scores[b] ? Float.compare(scores[a], scores[b]) : Integer.compare(b, a));
+            for (int i = 0; i < touchedCount; i++) {
+                heap.offer(touched[i]);
+                if (heap.size() > limit) {
+                    heap.poll();
+                }
+            }
+
+            LinkedList<Long> result = new LinkedList<>();
+            while (!heap.isEmpty()) {
+                result.addFirst(docIds[heap.poll()]);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 检索全部匹配的字段
+     * @return 按相关度降序排列的字段ID
+     */
+    public List<Long> searchAll(String keyword) {
+        return search(keyword, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 新增或更新字段的索引
+     */
+    public void upsert(DataDictionary field) {
+        if (field == null || field.getId() == null) {
+            return;
+        }
+        if (Boolean.TRUE.equals(field.getIsDeleted())) {
+            remove(field.getId());
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            // 尚未加载时无需维护，首次加载会读到最新数据
+            if (loaded) {
+                indexDocument(field);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 从索引中移除字段
+     */
+    public void remove(Long fieldId) {
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                return;
+            }
+            Integer doc = docIndex.remove(fieldId);
+            if (doc != null) {
+                removeDocument(doc);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            stats.put("loaded", loaded);
+            stats.put("documentCount", aliveCount);
+            stats.put("termCount", postings.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+        return stats;
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (loaded) {
+                return;
+            }
+            long startTime = System.currentTimeMillis();
+            List<DataDictionary> fields = dataDictionaryMapper.selectList(new QueryWrapper<DataDictionary>()
+                .select("id", "field_code", "field_name_cn", "field_name_en", "business_meaning")
+                .eq("is_deleted", false));
+            for (DataDictionary field : fields) {
+                indexDocument(field);
+            }
+            loaded = true;
+            log.info("数据字典检索索引加载完成，字段数: {}, 词项数: {}, 耗时: {}ms",
+                aliveCount, postings.size(), System.currentTimeMillis() - startTime);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void indexDocument(DataDictionary field) {
+        Integer existing = docIndex.get(field.getId());
+        int doc;
+        if (existing != null) {
+            doc = existing;
+            removeDocument(doc);
+        } else {
+            doc = docCount++;
+            ensureCapacity(docCount);
+            docIndex.put(field.getId(), doc);
+            docIds[doc] = field.getId();
+        }
+
+        Map<String, Float> freqs = new HashMap<>();
+        addTerms(freqs, field.getFieldNameCn(), WEIGHT_NAME_CN, true);
+        addTerms(freqs, field.getFieldCode(), WEIGHT_FIELD_CODE, false);
+        addTerms(freqs, field.getFieldNameEn(), WEIGHT_NAME_EN, false);
+        addTerms(freqs, field.getBusinessMeaning(), WEIGHT_BUSINESS_MEANING, false);
+
+        float length = 0;
+        String[] terms = new String[freqs.size()];
+        int i = 0;
+        for (Map.Entry<String, Float> entry : freqs.entrySet()) {
+            postings.computeIfAbsent(entry.getKey(), key -> new Postings()).add(doc, entry.getValue());
+            terms[i++] = entry.getKey();
+            length += entry.getValue();
+        }
+
+        docTerms[doc] = terms;
+        docLengths[doc] = length;
+        totalLength += length;
+        aliveCount++;
+    }
+
+    private void removeDocument(int doc) {
+        String[] terms = docTerms[doc];
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms) {
+            Postings list = postings.get(term);
+            if (list != null && list.remove(doc) && list.size == 0) {
+                postings.remove(term);
+            }
+        }
+        docTerms[doc] = null;
+        totalLength -= docLengths[doc];
+        docLengths[doc] = 0;
+        aliveCount--;
+    }
+
+    private void ensureCapacity(int size) {
+        if (size > docIds.length) {
+            int capacity = Math.max(size, docIds.length * 2);
+            docIds = Arrays.copyOf(docIds, capacity);
+            docLengths = Arrays.copyOf(docLengths, capacity);
+            docTerms = Arrays.copyOf(docTerms, capacity);
+        }
+    }
+
+    /**
+     * 索引切分：中文单字+二元组，英文按词，中文名称附加拼音首字母
+     */
+    private static void addTerms(Map<String, Float> freqs, String text, float weight, boolean withPinyin) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        for (Token token : tokenize(text)) {
+            if (token.chinese) {
+                String run = token.text;
+                for (int i = 0; i < run.length(); i++) {
+                    freqs.merge(run.substring(i, i + 1), weight, Float::sum);
+                    if (i + 1 < run.length()) {
+                        freqs.merge(run.substring(i, i + 2), weight, Float::sum);
+                    }
+                }
+                if (withPinyin) {
+                    String initials = pinyinInitials(run);
+                    if (!initials.isEmpty()) {
+                        freqs.merge(PINYIN_MARK + initials, weight, Float::sum);
+                    }
+                }
+            } else {
+                freqs.merge(token.text, weight, Float::sum);
+            }
+        }
+    }
+
+    /**
+     * 查询切分：中文连续片段取二元组（单字时取单字），英文词做前缀展开并同时匹配拼音首字母
+     */
+    private static List<QueryTerm> analyzeQuery(String keyword) {
+        List<QueryTerm> terms = new ArrayList<>();
+        for (Token token : tokenize(keyword.trim())) {
+            if (token.chinese) {
+                String run = token.text;
+                if (run.length() == 1) {
+                    terms.add(new QueryTerm(run, false));
+                } else {
+                    for (int i = 0; i + 1 < run.length(); i++) {
+                        terms.add(new QueryTerm(run.substring(i, i + 2), false));
+                    }
+                }
+            } else {
+                terms.add(new QueryTerm(token.text, true));
+            }
+        }
+        return terms;
+    }
+
+    private Map<String, Float> expand(QueryTerm queryTerm) {
+        Map<String, Float> matches = new LinkedHashMap<>();
+        if (postings.containsKey(queryTerm.text)) {
+            matches.put(queryTerm.text, 1.0f);
+        }
+        if (queryTerm.prefix) {
+            expandPrefix(queryTerm.text, matches);
+            expandPrefix(PINYIN_MARK + queryTerm.text, matches);
+        }
+        return matches;
+    }
+
+    private void expandPrefix(String prefix, Map<String, Float> matches) {
+        int expanded = 0;
+        for (String term : postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false).keySet()) {
+            if (expanded++ >= MAX_PREFIX_EXPANSIONS) {
+                break;
+            }
+            matches.putIfAbsent(term, term.equals(prefix) ? 1.0f : PREFIX_BOOST);
+        }
+    }
+
+    /**
+     * 把文本切分为中文连续片段和小写英文/数字词，英文词在下划线、驼峰和字母数字交界处断开
+     */
+    private static List<Token> tokenize(String text) {
+        List<Token> tokens = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean currentChinese = false;
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            boolean chinese = Character.UnicodeScript.of(c) == Character.UnicodeScript.HAN;
+            boolean latin = Character.isLetterOrDigit(c) && !chinese;
+
+            if (!chinese && !latin) {
+                flushToken(tokens, current, currentChinese);
+                continue;
+            }
+
+            if (current.length() > 0) {
+                char prev = text.charAt(i - 1);
+                boolean boundary = chinese != currentChinese
+                    || (!chinese && Character.isUpperCase(c) && Character.isLowerCase(prev))
+                    || (!chinese && Character.isDigit(c) != Character.isDigit(prev));
+                if (boundary) {
+                    flushToken(tokens, current, currentChinese);
+                }
+            }
+
+            current.append(chinese ? c : Character.toLowerCase(c));
+            currentChinese = chinese;
+        }
+        flushToken(tokens, current, currentChinese);
+        return tokens;
+    }
+
+    private static void flushToken(List<Token> tokens, StringBuilder current, boolean chinese) {
+        if (current.length() > 0) {
+            tokens.add(new Token(current.toString(), chinese));
+            current.setLength(0);
+        }
+    }
+
+    private static String pinyinInitials(String chinese) {
+        StringBuilder initials = new StringBuilder(chinese.length());
+        for (int i = 0; i < chinese.length(); i++) {
+            // 多音字取第一个读音
+            String[] pinyin = PinyinHelper.toHanyuPinyinStringArray(chinese.charAt(i));
+            if (pinyin != null && pinyin.length > 0 && !pinyin[0].isEmpty()) {
+                initials.append(pinyin[0].charAt(0));
+            }
+        }
+        return initials.toString();
+    }
+
+    private static class Token {
+
+        final String text;
+        final boolean chinese;
+
+        Token(String text, boolean chinese) {
+            this.text = text;
+            this.chinese = chinese;
+        }
+    }
+
+    private static class QueryTerm {
+
+        final String text;
+        final boolean prefix;
+
+        QueryTerm(String text, boolean prefix) {
+            this.text = text;
+            this.prefix = prefix;
+        }
+    }
+
+    /**
+     * 倒排表：文档编号与加权词频的并列数组
+     */
+    private static class Postings {
+
+        int[] docs = new int[4];
+        float[] freqs = new float[4];
+        int size;
+
+        void add(int doc, float freq) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+            }
+            docs[size] = doc;
+            freqs[size] = freq;
+            size++;
+        }
+
+        boolean remove(int doc) {
+            for (int i = 0; i < size; i++) {
+                if (docs[i] == doc) {
+                    size--;
+                    docs[i] = docs[size];
+                    freqs[i] = freqs[size];
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
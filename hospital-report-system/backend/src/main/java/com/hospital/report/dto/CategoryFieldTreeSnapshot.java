@@ -0,0 +1,73 @@
+package com.hospital.report.dto;
+
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 分类字段混合树的不可变快照
+ * 由后台线程在分类/字段变更后重建，请求直接返回同一份快照。
+ *
+ * @author system
+ * @since 2025-01-20
+ */
+@Getter
+public class CategoryFieldTreeSnapshot {
+
+    /**
+     * 快照版本号，内容变化时递增
+     */
+    private final long version;
+
+    /**
+     * 树内容摘要，用作HTTP ETag
+     */
+    private final String contentHash;
+
+    private final LocalDateTime buildTime;
+
+    private final List<CategoryFieldTreeVO> tree;
+
+    /**
+     * 扁平化的节点索引：节点键值 -> 节点条目，用于计算增量
+     */
+    private final Map<String, NodeEntry> nodes;
+
+    public CategoryFieldTreeSnapshot(long version, String contentHash, List<CategoryFieldTreeVO> tree,
+                                     Map<String, NodeEntry> nodes) {
+        this.version = version;
+        this.contentHash = contentHash;
+        this.buildTime = LocalDateTime.now();
+        this.tree = Collections.unmodifiableList(tree);
+        this.nodes = Collections.unmodifiableMap(nodes);
+    }
+
+    public String getETag() {
+        return "\"" + contentHash + "\"";
+    }
+
+    /**
+     * 节点条目：不含子节点的节点数据及其在树中的位置
+     */
+    @Getter
+    public static class NodeEntry {
+
+        private final CategoryFieldTreeVO node;
+
+        private final String parentKey;
+
+        private final int position;
+
+        private final String digest;
+
+        public NodeEntry(CategoryFieldTreeVO node, String parentKey, int position, String digest) {
+            this.node = node;
+            this.parentKey = parentKey;
+            this.position = position;
+            this.digest = digest;
+        }
+    }
+}
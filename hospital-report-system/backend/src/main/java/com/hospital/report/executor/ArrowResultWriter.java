@@ -0,0 +1,391 @@
+package com.hospital.report.executor;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.*;
+import org.apache.arrow.vector.dictionary.Dictionary;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.apache.arrow.vector.types.DateUnit;
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.DictionaryEncoding;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.function.LongConsumer;
+
+/**
+ * 将JDBC结果集按列批次写为Arrow IPC流
+ * 列类型取自ResultConverter.getColumnMetadata；字符串列根据首个批次的基数决定是否使用字典编码，
+ * 字典在后续批次中增量扩充，变化时由流写入器输出替换字典批次。
+ * 字典超过上限后在批次边界清空重建，单个字典最多为上限加一个批次的去重值。
+ * JDBC的FLOAT为双精度，统一写为Float8；无符号整数列按位宽提升一级，避免溢出；
+ * BLOB/CLOB在读取行时取出内容，分别写为VarBinary/VarChar。
+ * Arrow内存模块需要JVM开放java.nio（--add-opens=java.base/java.nio=ALL-UNNAMED），未开放时在读取结果集前直接失败。
+ */
+public class ArrowResultWriter {
+
+    private static final String REQUIRED_JVM_OPTION = "--add-opens=java.base/java.nio=ALL-UNNAMED";
+
+    private final List<Map<String, Object>> columns;
+    private final int batchSize;
+    private final int maxDictionarySize;
+
+    public ArrowResultWriter(List<Map<String, Object>> columns, int batchSize, int maxDictionarySize) {
+        this.columns = columns;
+        this.batchSize = batchSize;
+        this.maxDictionarySize = maxDictionarySize;
+    }
+
+    /**
+     * 写出结果集，返回写入的行数
+     */
+    public long write(ResultSet resultSet, OutputStream outputStream, LongConsumer progressListener) throws SQLException, IOException {
+        checkNioAccess();
+        int columnCount = columns.size();
+
+        // 先缓冲首个批次，用于判断字符串列的基数
+        List<Object[]> firstBatch = new ArrayList<>(batchSize);
+        while (firstBatch.size() < batchSize && resultSet.next()) {
+            firstBatch.add(readRow(resultSet, columnCount));
+        }
+        boolean[] dictionaryEncoded = chooseDictionaryColumns(firstBatch);
+
+        try (BufferAllocator allocator = new RootAllocator(Long.MAX_VALUE)) {
+            DictionaryProvider.MapDictionaryProvider provider = new DictionaryProvider.MapDictionaryProvider();
+            ColumnWriter[] writers = new ColumnWriter[columnCount];
+            List<FieldVector> vectors = new ArrayList<>(columnCount);
+
+            for (int i = 0; i < columnCount; i++) {
+                writers[i] = createColumnWriter(columns.get(i), i, dictionaryEncoded[i], allocator, provider);
+                vectors.add(writers[i].vector);
+            }
+
+            try (VectorSchemaRoot root = new VectorSchemaRoot(vectors);
+                 ArrowStreamWriter writer = new ArrowStreamWriter(root, provider, Channels.newChannel(outputStream))) {
+                root.allocateNew();
+                writer.start();
+
+                long totalRows = 0;
+                int rowInBatch = 0;
+
+                for (Object[] row : firstBatch) {
+                    setRow(writers, rowInBatch++, row);
+                }
+                firstBatch.clear();
+
+                while (true) {
+                    if (rowInBatch < batchSize && resultSet.next()) {
+                        setRow(writers, rowInBatch++, readRow(resultSet, columnCount));
+                        continue;
+                    }
+                    if (rowInBatch == 0) {
+                        break;
+                    }
+
+                    flushBatch(root, writers, writer, rowInBatch);
+                    totalRows += rowInBatch;
+                    if (progressListener != null) {
+                        progressListener.accept(totalRows);
+                    }
+                    // 批次未满说明结果集已读完
+                    if (rowInBatch < batchSize) {
+                        break;
+                    }
+                    rowInBatch = 0;
+                }
+
+                writer.end();
+                return totalRows;
+            } finally {
+                for (ColumnWriter columnWriter : writers) {
+                    if (columnWriter != null && columnWriter.dictionaryVector != null) {
+                        columnWriter.dictionaryVector.close();
+                    }
+                }
+            }
+        }
+    }
+
+    private void flushBatch(VectorSchemaRoot root, ColumnWriter[] writers, ArrowStreamWriter writer, int rowCount) throws IOException {
+        for (ColumnWriter columnWriter : writers) {
+            columnWriter.vector.setValueCount(rowCount);
+            if (columnWriter.dictionaryVector != null) {
+                columnWriter.dictionaryVector.setValueCount(columnWriter.dictionaryIndex.size());
+            }
+        }
+        root.setRowCount(rowCount);
+        writer.writeBatch();
+
+        for (ColumnWriter columnWriter : writers) {
+            columnWriter.vector.reset();
+            // 字典超过上限时从下一批次重新构建，流写入器随该批次输出替换字典
+            if (columnWriter.dictionaryVector != null && columnWriter.dictionaryIndex.size() > maxDictionarySize) {
+                columnWriter.dictionaryIndex.clear();
+                columnWriter.dictionaryVector.reset();
+            }
+        }
+    }
+
+    private static void checkNioAccess() {
+        if (!Object.class.getModule().isOpen("java.nio", ArrowResultWriter.class.getModule())) {
+            throw new IllegalStateException("Arrow export requires JVM option " + REQUIRED_JVM_OPTION);
+        }
+    }
+
+    private Object[] readRow(ResultSet resultSet, int columnCount) throws SQLException {
+        Object[] row = new Object[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            Object value = resultSet.getObject(i + 1);
+            row[i] = resultSet.wasNull() ? null : readLob(value);
+        }
+        return row;
+    }
+
+    /**
+     * LOB只在当前行有效，首个批次会被缓冲，因此在读取行时就取出内容
+     */
+    private static Object readLob(Object value) throws SQLException {
+        if (value instanceof Blob) {
+            Blob blob = (Blob) value;
+            try {
+                return blob.getBytes(1, Math.toIntExact(blob.length()));
+            } finally {
+                blob.free();
+            }
+        }
+        if (value instanceof Clob) {
+            Clob clob = (Clob) value;
+            try {
+                return clob.getSubString(1, Math.toIntExact(clob.length()));
+            } finally {
+                clob.free();
+            }
+        }
+        return value;
+    }
+
+    private void setRow(ColumnWriter[] writers, int index, Object[] row) {
+        for (int i = 0; i < writers.length; i++) {
+            writers[i].set(index, row[i]);
+        }
+    }
+
+    private boolean[] chooseDictionaryColumns(List<Object[]> sample) {
+        boolean[] result = new boolean[columns.size()];
+        for (int i = 0; i < columns.size(); i++) {
+            if (!"STRING".equals(columns.get(i).get("type"))) {
+                continue;
+            }
+            Set<Object> distinct = new HashSet<>();
+            int nonNull = 0;
+            for (Object[] row : sample) {
+                if (row[i] != null) {
+                    nonNull++;
+                    if (distinct.size() <= maxDictionarySize) {
+                        distinct.add(row[i].toString());
+                    }
+                }
+            }
+            // 去重后不超过上限且重复度较高（如科室编码、状态）时使用字典编码
+            result[i] = nonNull > 0 && distinct.size() <= maxDictionarySize && distinct.size() * 2 <= nonNull;
+        }
+        return result;
+    }
+
+    private ColumnWriter createColumnWriter(Map<String, Object> column, int position, boolean dictionaryEncoded,
+                                            BufferAllocator allocator, DictionaryProvider.MapDictionaryProvider provider) {
+        String name = (String) column.get("name");
+        String type = (String) column.get("type");
+
+        if (dictionaryEncoded) {
+            DictionaryEncoding encoding = new DictionaryEncoding(position, false, new ArrowType.Int(32, true));
+            IntVector indexVector = new IntVector(
+                new Field(name, new FieldType(true, new ArrowType.Int(32, true), encoding), null), allocator);
+            VarCharVector dictionaryVector = new VarCharVector(name + "_dict", allocator);
+            dictionaryVector.allocateNew();
+            provider.put(new Dictionary(dictionaryVector, encoding));
+            return new ColumnWriter(indexVector, "DICTIONARY", dictionaryVector);
+        }
+
+        int precision = column.get("precision") instanceof Number ? ((Number) column.get("precision")).intValue() : 0;
+        int scale = column.get("scale") instanceof Number ? ((Number) column.get("scale")).intValue() : 0;
+        boolean unsigned = column.get("typeName") != null
+            && column.get("typeName").toString().toUpperCase().contains("UNSIGNED");
+
+        switch (type) {
+            case "BOOLEAN":
+                return new ColumnWriter(new BitVector(name, allocator), type, null);
+            case "INTEGER":
+                if (unsigned) {
+                    return new ColumnWriter(new BigIntVector(name, allocator), "BIGINT", null);
+                }
+                return new ColumnWriter(new IntVector(name, allocator), type, null);
+            case "BIGINT":
+                if (unsigned) {
+                    // BIGINT UNSIGNED超出long范围，驱动返回BigInteger
+                    return new ColumnWriter(new DecimalVector(name, allocator, 20, 0), "DECIMAL", null);
+                }
+                return new ColumnWriter(new BigIntVector(name, allocator), type, null);
+            case "FLOAT":
+            case "DOUBLE":
+                return new ColumnWriter(new Float8Vector(name, allocator), "DOUBLE", null);
+            case "DECIMAL":
+                if (precision > 0 && precision <= 38 && scale >= 0 && scale <= precision) {
+                    return new ColumnWriter(new DecimalVector(name, allocator, precision, scale), type, null);
+                }
+                return new ColumnWriter(new VarCharVector(name, allocator), "STRING", null);
+            case "DATE":
+                return new ColumnWriter(new DateDayVector(name,
+                    FieldType.nullable(new ArrowType.Date(DateUnit.DAY)), allocator), type, null);
+            case "TIME":
+                return new ColumnWriter(new TimeMilliVector(name,
+                    FieldType.nullable(new ArrowType.Time(TimeUnit.MILLISECOND, 32)), allocator), type, null);
+            case "TIMESTAMP":
+                return new ColumnWriter(new TimeStampMilliVector(name,
+                    FieldType.nullable(new ArrowType.Timestamp(TimeUnit.MILLISECOND, null)), allocator), type, null);
+            case "BINARY":
+            case "BLOB":
+                return new ColumnWriter(new VarBinaryVector(name, allocator), "BINARY", null);
+            default:
+                return new ColumnWriter(new VarCharVector(name, allocator), "STRING", null);
+        }
+    }
+
+    /**
+     * 单列写入器，按列类型把JDBC值写入对应的Arrow向量
+     */
+    private static class ColumnWriter {
+        private final FieldVector vector;
+        private final String type;
+        private final VarCharVector dictionaryVector;
+        private final Map<String, Integer> dictionaryIndex;
+
+        ColumnWriter(FieldVector vector, String type, VarCharVector dictionaryVector) {
+            this.vector = vector;
+            this.type = type;
+            this.dictionaryVector = dictionaryVector;
+            this.dictionaryIndex = dictionaryVector != null ? new HashMap<>() : null;
+        }
+
+        void set(int index, Object value) {
+            if (value == null) {
+                setNull(index);
+                return;
+            }
+
+            switch (type) {
+                case "DICTIONARY": {
+                    String text = value.toString();
+                    Integer code = dictionaryIndex.get(text);
+                    if (code == null) {
+                        code = dictionaryIndex.size();
+                        dictionaryVector.setSafe(code, text.getBytes(StandardCharsets.UTF_8));
+                        dictionaryIndex.put(text, code);
+                    }
+                    ((IntVector) vector).setSafe(index, code);
+                    break;
+                }
+                case "BOOLEAN":
+                    ((BitVector) vector).setSafe(index, toBoolean(value) ? 1 : 0);
+                    break;
+                case "INTEGER":
+                    ((IntVector) vector).setSafe(index, ((Number) value).intValue());
+                    break;
+                case "BIGINT":
+                    ((BigIntVector) vector).setSafe(index, ((Number) value).longValue());
+                    break;
+                case "DOUBLE":
+                    ((Float8Vector) vector).setSafe(index, ((Number) value).doubleValue());
+                    break;
+                case "DECIMAL": {
+                    DecimalVector decimalVector = (DecimalVector) vector;
+                    BigDecimal decimal = value instanceof BigDecimal ? (BigDecimal) value : new BigDecimal(value.toString());
+                    decimalVector.setSafe(index, decimal.setScale(decimalVector.getScale(), RoundingMode.HALF_UP));
+                    break;
+                }
+                case "DATE":
+                    ((DateDayVector) vector).setSafe(index, (int) toLocalDate(value).toEpochDay());
+                    break;
+                case "TIME":
+                    ((TimeMilliVector) vector).setSafe(index, (int) (toLocalTime(value).toNanoOfDay() / 1_000_000));
+                    break;
+                case "TIMESTAMP":
+                    ((TimeStampMilliVector) vector).setSafe(index, toEpochMillis(value));
+                    break;
+                case "BINARY":
+                    ((VarBinaryVector) vector).setSafe(index, (byte[]) value);
+                    break;
+                default:
+                    ((VarCharVector) vector).setSafe(index, value.toString().getBytes(StandardCharsets.UTF_8));
+                    break;
+            }
+        }
+
+        private void setNull(int index) {
+            if (vector instanceof BaseFixedWidthVector) {
+                ((BaseFixedWidthVector) vector).setNull(index);
+            } else if (vector instanceof BaseVariableWidthVector) {
+                ((BaseVariableWidthVector) vector).setNull(index);
+            }
+        }
+
+        private static boolean toBoolean(Object value) {
+            if (value instanceof Boolean) {
+                return (Boolean) value;
+            }
+            if (value instanceof Number) {
+                return ((Number) value).intValue() != 0;
+            }
+            return Boolean.parseBoolean(value.toString());
+        }
+
+        private static java.time.LocalDate toLocalDate(Object value) {
+            if (value instanceof java.sql.Date) {
+                return ((java.sql.Date) value).toLocalDate();
+            }
+            if (value instanceof java.time.LocalDate) {
+                return (java.time.LocalDate) value;
+            }
+            if (value instanceof java.time.LocalDateTime) {
+                return ((java.time.LocalDateTime) value).toLocalDate();
+            }
+            return java.time.LocalDate.parse(value.toString().substring(0, 10));
+        }
+
+        private static java.time.LocalTime toLocalTime(Object value) {
+            if (value instanceof java.sql.Time) {
+                return ((java.sql.Time) value).toLocalTime();
+            }
+            if (value instanceof java.time.LocalTime) {
+                return (java.time.LocalTime) value;
+            }
+            return java.time.LocalTime.parse(value.toString());
+        }
+
+        private static long toEpochMillis(Object value) {
+            if (value instanceof java.util.Date) {
+                return ((java.util.Date) value).getTime();
+            }
+            if (value instanceof java.time.LocalDateTime) {
+                return java.sql.Timestamp.valueOf((java.time.LocalDateTime) value).getTime();
+            }
+            if (value instanceof java.time.OffsetDateTime) {
+                return ((java.time.OffsetDateTime) value).toInstant().toEpochMilli();
+            }
+            return java.sql.Timestamp.valueOf(value.toString()).getTime();
+        }
+    }
+}
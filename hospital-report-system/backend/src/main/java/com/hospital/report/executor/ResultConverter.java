@@ -1,18 +1,28 @@
 package com.hospital.report.executor;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.util.*;
+import java.util.function.LongConsumer;
 
 @Component
 @Slf4j
 public class ResultConverter {
 
+    @Value("${export.columnar.batch-size:65536}")
+    private int columnarBatchSize = 65536;
+
+    @Value("${export.columnar.max-dictionary-size:4096}")
+    private int maxDictionarySize = 4096;
+
     public List<Map<String, Object>> convertResultSet(ResultSet resultSet) throws SQLException {
         List<Map<String, Object>> rows = new ArrayList<>();
         ResultSetMetaData metaData = resultSet.getMetaData();
@@ -74,6 +84,9 @@ public class ResultConverter {
                 result.put("contentType", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
                 result.put("filename", "export.xlsx");
                 break;
+            case "arrow":
+            case "parquet":
+                throw new IllegalArgumentException("Columnar format " + format + " must be written from a ResultSet, use writeColumnarFormat");
             default:
                 throw new IllegalArgumentException("Unsupported export format: " + format);
         }
@@ -81,6 +94,29 @@ public class ResultConverter {
         return result;
     }
 
+    /**
+     * 按列批次把结果集直接写为列式格式，不在内存中物化整个结果集
+     * 目前支持Arrow IPC流（arrow），返回写入的行数
+     */
+    public long writeColumnarFormat(ResultSet resultSet, String format, OutputStream outputStream,
+                                    LongConsumer progressListener) throws SQLException, IOException {
+        switch (format.toLowerCase()) {
+            case "arrow":
+                List<Map<String, Object>> columns = getColumnMetadata(resultSet);
+                return new ArrowResultWriter(columns, columnarBatchSize, maxDictionarySize)
+                        .write(resultSet, outputStream, progressListener);
+            case "parquet":
+                // Parquet写入依赖Hadoop运行时，暂不支持；Arrow IPC流可由pyarrow直接读取并转换
+                throw new IllegalArgumentException("Parquet export is not supported, use arrow instead");
+            default:
+                throw new IllegalArgumentException("Unsupported columnar format: " + format);
+        }
+    }
+
+    public String getColumnarContentType(String format) {
+        return "arrow".equalsIgnoreCase(format) ? "application/vnd.apache.arrow.stream" : "application/octet-stream";
+    }
+
     public List<Map<String, Object>> paginate(List<Map<String, Object>> data, int page, int size) {
         if (data == null || data.isEmpty()) {
             return new ArrayList<>();
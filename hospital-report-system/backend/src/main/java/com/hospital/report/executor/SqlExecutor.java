@@ -1,5 +1,6 @@
 package com.hospital.report.executor;
 
+import com.hospital.report.concurrent.ExecutionMode;
 import com.hospital.report.entity.SqlExecutionLog;
 import com.hospital.report.entity.SqlTemplate;
 import lombok.Data;
@@ -13,6 +14,8 @@ import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 
 @Component
@@ -26,17 +29,21 @@ public class SqlExecutor {
     private final PerformanceMonitor performanceMonitor;
     private final SecurityChecker securityChecker;
     private final CacheManager cacheManager;
+    private final ExecutorService asyncExecutor;
 
     public SqlExecutor(ParameterProcessor parameterProcessor, 
                       ResultConverter resultConverter,
                       PerformanceMonitor performanceMonitor,
                       SecurityChecker securityChecker,
-                      CacheManager cacheManager) {
+                      CacheManager cacheManager,
+                      ExecutionMode executionMode) {
         this.parameterProcessor = parameterProcessor;
         this.resultConverter = resultConverter;
         this.performanceMonitor = performanceMonitor;
         this.securityChecker = securityChecker;
         this.cacheManager = cacheManager;
+        // Async queries block on JDBC; run them on virtual threads when that mode is enabled
+        this.asyncExecutor = executionMode.newTaskExecutor("sql-async-", ForkJoinPool::commonPool);
     }
 
     public ExecutionResult executeQuery(SqlTemplate template, Map<String, Object> parameters, Long userId) {
@@ -144,7 +151,7 @@ public class SqlExecutor {
                 errorResult.setErrorMessage(e.getMessage());
                 return errorResult;
             }
-        });
+        }, asyncExecutor);
 
         asyncExecutions.put(taskId, future);
         
@@ -0,0 +1,620 @@
+package com.hospital.report.federation;
+
+import com.hospital.report.concurrent.ExecutionMode;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * 跨数据源联邦合并引擎
+ * 各数据源的结果以行流读入（SQL数据源由独立线程流式读取游标），在应用内完成合并：
+ * <pre>
+ * {"type": "JOIN",
+ *  "joinType": "INNER" 或 "LEFT",
+ *  "keys": ["patient_id"] 或 [{"left": "patient_id", "right": "pat_id"}],
+ *  "sorted": false,
+ *  "rightPrefix": "r_",
+ *  "maxRows": 100000}
+ * {"type": "UNION"}
+ * </pre>
+ * JOIN 按数据源顺序左深连接：第一个数据源为探测侧逐行流过，其余数据源依次建哈希表；
+ * 哈希表超过内存预算时按分区溢写到本地磁盘，落在溢写分区的探测行暂存磁盘，最后逐分区连接。
+ * 声明 sorted 时前两个数据源都必须按连接键升序排列，改用归并连接，两侧都不需要建表；
+ * 读取中发现顺序不符（如数据库排序规则与Java不同）会报错。
+ * UNION（或 APPEND）按数据源顺序依次追加，不去重。
+ * 连接键中的整数、小数按数值比较（1、1L、1.0 视为同一个键），含空值的键不参与匹配。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FederatedJoinEngine {
+
+    private final ExecutionMode executionMode;
+
+    public static final String STRATEGY_HASH = "HASH";
+    public static final String STRATEGY_MERGE = "MERGE";
+    public static final String STRATEGY_APPEND = "APPEND";
+
+    @Value("${report.federation.memory-budget-mb:64}")
+    private long memoryBudgetMb;
+
+    @Value("${report.federation.spill-partitions:16}")
+    private int spillPartitions;
+
+    @Value("${report.federation.spill-dir:${java.io.tmpdir}/report-federation}")
+    private String spillDir;
+
+    @Value("${report.federation.queue-size:1024}")
+    private int queueSize;
+
+    @Value("${report.federation.max-result-rows:100000}")
+    private int maxResultRows;
+
+    private ExecutorService producerExecutor;
+
+    @PostConstruct
+    public void init() {
+        // 每个流式数据源占用一个线程直到读完，不能排队
+        AtomicInteger threadIndex = new AtomicInteger();
+        producerExecutor = executionMode.newTaskExecutor("federation-source-", () -> Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "federation-source-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        producerExecutor.shutdownNow();
+    }
+
+    /**
+     * 在独立线程中执行生产方，返回按读取速度推进的行流
+     */
+    public RowStream stream(String name, RowStream.Producer producer) {
+        QueuedRowStream stream = new QueuedRowStream(name, queueSize);
+        producerExecutor.execute(() -> {
+            try {
+                producer.produce(stream);
+                stream.complete();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                stream.fail(e);
+            } catch (Throwable e) {
+                stream.fail(e);
+            }
+        });
+        return stream;
+    }
+
+    /**
+     * 合并多个数据源的行流，结束后关闭全部行流
+     * @return data 为合并结果，truncated 表示结果超过行数上限被截断，combineStats 为执行统计
+     * @throws IllegalArgumentException 合并配置错误
+     */
+    public Map<String, Object> combine(List<RowStream> inputs, Map<String, Object> config) throws IOException {
+        long startTime = System.currentTimeMillis();
+        String type = String.valueOf(config.getOrDefault("type", "JOIN")).toUpperCase();
+        Object maxRows = config.get("maxRows");
+        ResultSink sink = new ResultSink(maxRows instanceof Number
+            ? Math.min(((Number) maxRows).intValue(), maxResultRows) : maxResultRows);
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        Path directory = null;
+        try {
+            switch (type) {
+                case "UNION":
+                case "APPEND":
+                    append(inputs, sink);
+                    stats.put("strategies", List.of(STRATEGY_APPEND));
+                    break;
+                case "JOIN":
+                    Path root = Files.createDirectories(Paths.get(spillDir));
+                    directory = Files.createTempDirectory(root, "join-");
+                    join(inputs, JoinSpec.parse(config), sink, directory, stats);
+                    break;
+                default:
+                    throw new IllegalArgumentException("不支持的合并类型: " + type);
+            }
+        } finally {
+            for (RowStream input : inputs) {
+                input.close();
+            }
+            deleteDirectory(directory);
+        }
+
+        stats.put("inputCount", inputs.size());
+        stats.put("elapsedMs", System.currentTimeMillis() - startTime);
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", true);
+        result.put("data", sink.rows);
+        result.put("columns", new ArrayList<>(sink.columns));
+        result.put("total", sink.rows.size());
+        result.put("truncated", sink.truncated);
+        result.put("fromCache", false);
+        result.put("combineStats", stats);
+        return result;
+    }
+
+    private static void append(List<RowStream> inputs, ResultSink sink) {
+        for (RowStream input : inputs) {
+            while (input.hasNext()) {
+                if (!sink.accept(input.next())) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void join(List<RowStream> inputs, JoinSpec spec, ResultSink sink, Path directory,
+                      Map<String, Object> stats) throws IOException {
+        if (inputs.size() < 2) {
+            throw new IllegalArgumentException("连接至少需要两个数据源");
+        }
+
+        long stageBudget = memoryBudgetMb * 1024 * 1024 / (inputs.size() - 1);
+        int firstHashInput = spec.sorted ? 2 : 1;
+        List<HashJoinStage> stages = new ArrayList<>();
+        try {
+            // 从最后一个数据源开始建表，使每个连接阶段都已知其下游
+            RowConsumer downstream = sink;
+            for (int i = inputs.size() - 1; i >= firstHashInput; i--) {
+                SpillableHashTable table = buildTable(inputs.get(i), spec, stageBudget, directory);
+                HashJoinStage stage = new HashJoinStage(spec, table, downstream, directory);
+                stages.add(0, stage);
+                downstream = stage;
+            }
+
+            if (spec.sorted) {
+                mergeJoin(inputs.get(0), inputs.get(1), spec, downstream);
+            } else {
+                RowStream probe = inputs.get(0);
+                boolean running = true;
+                while (running && probe.hasNext()) {
+                    running = downstream.accept(probe.next());
+                }
+                if (running) {
+                    downstream.finish();
+                }
+            }
+
+            List<String> strategies = new ArrayList<>();
+            if (spec.sorted) {
+                strategies.add(STRATEGY_MERGE);
+            }
+            int spilledPartitions = 0;
+            long spilledRows = 0;
+            for (HashJoinStage stage : stages) {
+                strategies.add(STRATEGY_HASH);
+                spilledPartitions += stage.table.getSpilledPartitions().size();
+                spilledRows += stage.table.getSpilledRows() + stage.probeSpilledRows;
+            }
+            stats.put("strategies", strategies);
+            stats.put("spilledPartitions", spilledPartitions);
+            stats.put("spilledRows", spilledRows);
+            if (spilledPartitions > 0) {
+                log.info("联邦连接溢写 {} 个分区，共 {} 行", spilledPartitions, spilledRows);
+            }
+        } finally {
+            for (HashJoinStage stage : stages) {
+                stage.close();
+            }
+        }
+    }
+
+    private SpillableHashTable buildTable(RowStream build, JoinSpec spec, long budgetBytes, Path directory)
+            throws IOException {
+        SpillableHashTable table = new SpillableHashTable(spillPartitions, budgetBytes, directory,
+            row -> joinKey(row, spec.rightKeys));
+        while (build.hasNext()) {
+            Map<String, Object> row = build.next();
+            List<Object> key = joinKey(row, spec.rightKeys);
+            if (key != null) {
+                table.add(key, row);
+            }
+        }
+        return table;
+    }
+
+    /**
+     * 归并连接：两侧按连接键升序，右侧相同键的行缓存为一组，与左侧相同键的各行依次连接
+     */
+    private static void mergeJoin(RowStream left, RowStream right, JoinSpec spec, RowConsumer downstream)
+            throws IOException {
+        SortedCursor rightCursor = new SortedCursor(right, spec.rightKeys);
+        List<Object> previousLeftKey = null;
+        List<Object> groupKey = null;
+        List<Map<String, Object>> group = new ArrayList<>();
+
+        while (left.hasNext()) {
+            Map<String, Object> leftRow = left.next();
+            List<Object> leftKey = joinKey(leftRow, spec.leftKeys);
+            if (leftKey == null) {
+                if (spec.leftJoin && !downstream.accept(leftRow)) {
+                    return;
+                }
+                continue;
+            }
+            checkOrder(previousLeftKey, leftKey, left);
+            previousLeftKey = leftKey;
+
+            if (groupKey == null || compareKeys(groupKey, leftKey) != 0) {
+                group.clear();
+                groupKey = null;
+                while (rightCursor.row != null && compareKeys(rightCursor.key, leftKey) < 0) {
+                    rightCursor.advance();
+                }
+                if (rightCursor.row != null && compareKeys(rightCursor.key, leftKey) == 0) {
+                    groupKey = leftKey;
+                    while (rightCursor.row != null && compareKeys(rightCursor.key, leftKey) == 0) {
+                        group.add(rightCursor.row);
+                        rightCursor.advance();
+                    }
+                }
+            }
+
+            if (!emitJoined(leftRow, groupKey != null ? group : Collections.emptyList(), spec, downstream)) {
+                return;
+            }
+        }
+        downstream.finish();
+    }
+
+    /**
+     * 输出左侧行与匹配的右侧行；左连接无匹配时原样输出左侧行
+     * @return false 表示结果已达上限
+     */
+    private static boolean emitJoined(Map<String, Object> leftRow, List<Map<String, Object>> matches, JoinSpec spec,
+                                      RowConsumer downstream) throws IOException {
+        if (matches.isEmpty()) {
+            return !spec.leftJoin || downstream.accept(leftRow);
+        }
+        for (Map<String, Object> rightRow : matches) {
+            if (!downstream.accept(spec.merge(leftRow, rightRow))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void checkOrder(List<Object> previous, List<Object> current, RowStream stream) {
+        if (previous != null && compareKeys(previous, current) > 0) {
+            throw new IllegalStateException("数据源 " + stream.getName()
+                + " 未按连接键升序排列（注意数据库排序规则），请去掉 sorted 改用哈希连接");
+        }
+    }
+
+    // ==================== 连接键 ====================
+
+    /**
+     * 取连接键，任一字段为空时返回null
+     */
+    static List<Object> joinKey(Map<String, Object> row, String[] fields) {
+        Object[] values = new Object[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            Object value = normalizeKey(row.get(fields[i]));
+            if (value == null) {
+                return null;
+            }
+            values[i] = value;
+        }
+        return Arrays.asList(values);
+    }
+
+    /**
+     * 统一不同数据库驱动返回的数值类型：整数值转为Long，其余数值转为去掉末尾0的BigDecimal
+     */
+    static Object normalizeKey(Object value) {
+        if (value instanceof Long || value instanceof String || value == null) {
+            return value;
+        }
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof Character) {
+            return value.toString();
+        }
+
+        BigDecimal decimal;
+        if (value instanceof BigDecimal) {
+            decimal = (BigDecimal) value;
+        } else if (value instanceof BigInteger) {
+            decimal = new BigDecimal((BigInteger) value);
+        } else if ((value instanceof Double || value instanceof Float) && Double.isFinite(((Number) value).doubleValue())) {
+            decimal = BigDecimal.valueOf(((Number) value).doubleValue());
+        } else {
+            return value;
+        }
+
+        decimal = decimal.stripTrailingZeros();
+        if (decimal.scale() <= 0 && decimal.precision() - decimal.scale() <= 18) {
+            return decimal.longValue();
+        }
+        return decimal;
+    }
+
+    static int compareKeys(List<Object> a, List<Object> b) {
+        for (int i = 0; i < a.size(); i++) {
+            int comparison = compareKeyValues(a.get(i), b.get(i));
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return 0;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compareKeyValues(Object a, Object b) {
+        if (a instanceof Long && b instanceof Long) {
+            return Long.compare((Long) a, (Long) b);
+        }
+        if (a instanceof Number && b instanceof Number) {
+            return toDecimal(a).compareTo(toDecimal(b));
+        }
+        if (a.getClass() == b.getClass() && a instanceof Comparable) {
+            return ((Comparable) a).compareTo(b);
+        }
+        return a.toString().compareTo(b.toString());
+    }
+
+    private static BigDecimal toDecimal(Object number) {
+        return number instanceof BigDecimal ? (BigDecimal) number : new BigDecimal(number.toString());
+    }
+
+    private static void deleteDirectory(Path directory) {
+        if (directory == null) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    log.warn("删除溢写文件失败: {}", path);
+                }
+            });
+        } catch (IOException e) {
+            log.warn("删除溢写目录失败: {}", directory);
+        }
+    }
+
+    // ==================== 执行结构 ====================
+
+    private interface RowConsumer {
+
+        /**
+         * @return false 表示结果已达上限，上游应停止读取
+         */
+        boolean accept(Map<String, Object> row) throws IOException;
+
+        /**
+         * 上游全部输入完成
+         */
+        void finish() throws IOException;
+    }
+
+    /**
+     * 哈希连接阶段：接收上游（探测侧）的行，与构建表连接后交给下游
+     */
+    private static class HashJoinStage implements RowConsumer, Closeable {
+
+        final JoinSpec spec;
+        final SpillableHashTable table;
+        final RowConsumer downstream;
+        final Path directory;
+        final SpillFile[] probeSpills;
+        long probeSpilledRows;
+
+        HashJoinStage(JoinSpec spec, SpillableHashTable table, RowConsumer downstream, Path directory) {
+            this.spec = spec;
+            this.table = table;
+            this.downstream = downstream;
+            this.directory = directory;
+            this.probeSpills = new SpillFile[table.getPartitionCount()];
+        }
+
+        @Override
+        public boolean accept(Map<String, Object> row) throws IOException {
+            List<Object> key = joinKey(row, spec.leftKeys);
+            if (key == null) {
+                return !spec.leftJoin || downstream.accept(row);
+            }
+
+            int partition = table.partitionOf(key);
+            if (table.isSpilled(partition)) {
+                if (probeSpills[partition] == null) {
+                    probeSpills[partition] = new SpillFile(directory, "probe-" + partition + "-");
+                }
+                probeSpills[partition].write(row);
+                probeSpilledRows++;
+                return true;
+            }
+            return emitJoined(row, table.lookup(key), spec, downstream);
+        }
+
+        @Override
+        public void finish() throws IOException {
+            for (int partition : table.getSpilledPartitions()) {
+                if (probeSpills[partition] == null) {
+                    continue;
+                }
+                Map<List<Object>, List<Map<String, Object>>> buildRows = table.loadPartition(partition);
+                Iterator<Map<String, Object>> probeRows = probeSpills[partition].read();
+                while (probeRows.hasNext()) {
+                    Map<String, Object> row = probeRows.next();
+                    List<Map<String, Object>> matches = buildRows.get(joinKey(row, spec.leftKeys));
+                    if (!emitJoined(row, matches != null ? matches : Collections.emptyList(), spec, downstream)) {
+                        return;
+                    }
+                }
+                probeSpills[partition].close();
+                probeSpills[partition] = null;
+            }
+            downstream.finish();
+        }
+
+        @Override
+        public void close() {
+            table.close();
+            for (SpillFile spillFile : probeSpills) {
+                if (spillFile != null) {
+                    spillFile.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * 归并连接右侧的游标，跳过连接键为空的行并检查顺序
+     */
+    private static class SortedCursor {
+
+        final RowStream stream;
+        final String[] keyFields;
+        Map<String, Object> row;
+        List<Object> key;
+
+        SortedCursor(RowStream stream, String[] keyFields) {
+            this.stream = stream;
+            this.keyFields = keyFields;
+            advance();
+        }
+
+        void advance() {
+            List<Object> previousKey = key;
+            row = null;
+            key = null;
+            while (stream.hasNext()) {
+                Map<String, Object> next = stream.next();
+                List<Object> nextKey = joinKey(next, keyFields);
+                if (nextKey != null) {
+                    checkOrder(previousKey, nextKey, stream);
+                    row = next;
+                    key = nextKey;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 收集合并结果，超过行数上限时截断
+     */
+    private static class ResultSink implements RowConsumer {
+
+        final int maxRows;
+        final List<Map<String, Object>> rows = new ArrayList<>();
+        final Set<String> columns = new LinkedHashSet<>();
+        boolean truncated;
+
+        ResultSink(int maxRows) {
+            this.maxRows = maxRows;
+        }
+
+        @Override
+        public boolean accept(Map<String, Object> row) {
+            if (rows.size() >= maxRows) {
+                truncated = true;
+                return false;
+            }
+            rows.add(row);
+            columns.addAll(row.keySet());
+            return true;
+        }
+
+        @Override
+        public void finish() {
+        }
+    }
+
+    /**
+     * 连接配置
+     */
+    private static class JoinSpec {
+
+        final String[] leftKeys;
+        final String[] rightKeys;
+        final boolean leftJoin;
+        final boolean sorted;
+        final String rightPrefix;
+        // 与左侧同名的右侧连接键，输出时不重复
+        final Set<String> sharedKeys = new HashSet<>();
+
+        JoinSpec(String[] leftKeys, String[] rightKeys, boolean leftJoin, boolean sorted, String rightPrefix) {
+            this.leftKeys = leftKeys;
+            this.rightKeys = rightKeys;
+            this.leftJoin = leftJoin;
+            this.sorted = sorted;
+            this.rightPrefix = rightPrefix;
+            for (int i = 0; i < leftKeys.length; i++) {
+                if (leftKeys[i].equals(rightKeys[i])) {
+                    sharedKeys.add(rightKeys[i]);
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        static JoinSpec parse(Map<String, Object> config) {
+            Object keysConfig = config.get("keys");
+            if (!(keysConfig instanceof List) || ((List<Object>) keysConfig).isEmpty()) {
+                throw new IllegalArgumentException("连接配置缺少keys");
+            }
+
+            List<Object> keys = (List<Object>) keysConfig;
+            String[] leftKeys = new String[keys.size()];
+            String[] rightKeys = new String[keys.size()];
+            for (int i = 0; i < keys.size(); i++) {
+                Object key = keys.get(i);
+                if (key instanceof String) {
+                    leftKeys[i] = (String) key;
+                    rightKeys[i] = (String) key;
+                } else if (key instanceof Map && ((Map<String, Object>) key).get("left") instanceof String
+                    && ((Map<String, Object>) key).get("right") instanceof String) {
+                    leftKeys[i] = (String) ((Map<String, Object>) key).get("left");
+                    rightKeys[i] = (String) ((Map<String, Object>) key).get("right");
+                } else {
+                    throw new IllegalArgumentException("连接键格式错误: " + key);
+                }
+            }
+
+            String joinType = String.valueOf(config.getOrDefault("joinType", "INNER")).toUpperCase();
+            if (!"INNER".equals(joinType) && !"LEFT".equals(joinType)) {
+                throw new IllegalArgumentException("不支持的连接类型: " + joinType);
+            }
+            return new JoinSpec(leftKeys, rightKeys, "LEFT".equals(joinType),
+                Boolean.TRUE.equals(config.get("sorted")), String.valueOf(config.getOrDefault("rightPrefix", "r_")));
+        }
+
+        /**
+         * 合并左右两行：右侧与左侧重名的列加前缀
+         */
+        Map<String, Object> merge(Map<String, Object> leftRow, Map<String, Object> rightRow) {
+            Map<String, Object> merged = new LinkedHashMap<>(leftRow);
+            for (Map.Entry<String, Object> entry : rightRow.entrySet()) {
+                String name = entry.getKey();
+                if (sharedKeys.contains(name)) {
+                    continue;
+                }
+                merged.put(leftRow.containsKey(name) ? rightPrefix + name : name, entry.getValue());
+            }
+            return merged;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.hospital.report.federation;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 由生产线程填充的行流
+ * 生产方和读取方通过有界队列交接，队列满时生产方等待，数据库游标按读取速度推进；
+ * 读取方关闭后生产方在下一次写入时停止，生产方出错时读取方在下一次读取时抛出。
+ */
+class QueuedRowStream implements RowStream, RowStream.Sink {
+
+    private static final Map<String, Object> END = Collections.emptyMap();
+
+    private final String name;
+    private final BlockingQueue<Map<String, Object>> queue;
+
+    private volatile boolean closed;
+    private volatile Throwable failure;
+
+    private Map<String, Object> nextRow;
+    private boolean finished;
+
+    QueuedRowStream(String name, int capacity) {
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    // ==================== 生产方 ====================
+
+    @Override
+    public boolean accept(Map<String, Object> row) throws InterruptedException {
+        while (!closed) {
+            if (queue.offer(row, 100, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void complete() throws InterruptedException {
+        accept(END);
+    }
+
+    void fail(Throwable e) {
+        failure = e;
+        queue.clear();
+        queue.offer(END);
+    }
+
+    // ==================== 读取方 ====================
+
+    @Override
+    public boolean hasNext() {
+        if (nextRow != null) {
+            return true;
+        }
+        if (finished) {
+            return false;
+        }
+
+        Map<String, Object> row;
+        try {
+            row = queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("读取数据源 " + name + " 被中断", e);
+        }
+
+        if (row == END) {
+            finished = true;
+            if (failure != null) {
+                throw new IllegalStateException("读取数据源 " + name + " 失败: " + failure.getMessage(), failure);
+            }
+            return false;
+        }
+        nextRow = row;
+        return true;
+    }
+
+    @Override
+    public Map<String, Object> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Map<String, Object> row = nextRow;
+        nextRow = null;
+        return row;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        finished = true;
+        queue.clear();
+    }
+}
@@ -0,0 +1,65 @@
+package com.hospital.report.federation;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 联邦查询的输入行流
+ * 按顺序逐行读取一个数据源的结果，读取结束或放弃读取时必须关闭以释放数据库游标。
+ */
+public interface RowStream extends Iterator<Map<String, Object>>, AutoCloseable {
+
+    /**
+     * 数据源名称，用于日志和错误信息
+     */
+    String getName();
+
+    @Override
+    void close();
+
+    /**
+     * 已在内存中的结果（API、静态数据或经过转换的数据源）
+     */
+    static RowStream of(String name, List<Map<String, Object>> rows) {
+        Iterator<Map<String, Object>> iterator = rows.iterator();
+        return new RowStream() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Map<String, Object> next() {
+                return iterator.next();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * 行的接收方
+     */
+    interface Sink {
+
+        /**
+         * @return false 表示读取方已关闭，生产方应停止读取
+         */
+        boolean accept(Map<String, Object> row) throws InterruptedException;
+    }
+
+    /**
+     * 行的生产方，在独立线程中把数据源结果逐行写入 Sink（如流式读取 ResultSet）
+     */
+    interface Producer {
+        void produce(Sink sink) throws Exception;
+    }
+}
@@ -0,0 +1,108 @@
+package com.hospital.report.federation;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * 溢写到本地磁盘的行文件
+ * 先顺序写入、关闭后再顺序读回；不可序列化的字段值（部分驱动的专有类型）按字符串写入。
+ */
+class SpillFile implements Closeable {
+
+    // 定期重置对象流的引用表，避免写入大量行时引用表持续增长
+    private static final int RESET_INTERVAL = 1024;
+
+    private final Path path;
+    private ObjectOutputStream output;
+    private long rowCount;
+
+    SpillFile(Path directory, String prefix) throws IOException {
+        this.path = Files.createTempFile(directory, prefix, ".spill");
+        this.output = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 64 * 1024));
+    }
+
+    long getRowCount() {
+        return rowCount;
+    }
+
+    void write(Map<String, Object> row) throws IOException {
+        LinkedHashMap<String, Object> serializable = new LinkedHashMap<>(Math.max(16, (int) (row.size() / 0.75f) + 1));
+        for (Map.Entry<String, Object> entry : row.entrySet()) {
+            Object value = entry.getValue();
+            serializable.put(entry.getKey(), value == null || value instanceof Serializable ? value : value.toString());
+        }
+        output.writeObject(serializable);
+        if (++rowCount % RESET_INTERVAL == 0) {
+            output.reset();
+        }
+    }
+
+    /**
+     * 结束写入并按写入顺序读回
+     */
+    Iterator<Map<String, Object>> read() throws IOException {
+        finishWrite();
+        ObjectInputStream input = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(path), 64 * 1024));
+        return new Iterator<Map<String, Object>>() {
+            long remaining = rowCount;
+
+            @Override
+            public boolean hasNext() {
+                if (remaining == 0) {
+                    closeQuietly(input);
+                    return false;
+                }
+                return true;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public Map<String, Object> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    remaining--;
+                    return (Map<String, Object>) input.readObject();
+                } catch (IOException | ClassNotFoundException e) {
+                    closeQuietly(input);
+                    throw new UncheckedIOException(new IOException("读取溢写文件失败: " + path, e));
+                }
+            }
+        };
+    }
+
+    private void finishWrite() throws IOException {
+        if (output != null) {
+            output.close();
+            output = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        closeQuietly(output);
+        output = null;
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // 目录在联邦查询结束时整体删除
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+            // 忽略关闭异常
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.hospital.report.federation;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * 可溢写的哈希连接构建表
+ * 构建行按连接键哈希分到固定数量的分区；内存估算超过预算时把当前最大的内存分区整体写到磁盘，
+ * 此后落在该分区的构建行直接追加到磁盘。探测时内存分区直接查找，落在溢写分区的探测行由调用方暂存，
+ * 全部探测完后再逐个把溢写分区读回内存连接（Grace Hash Join）。
+ */
+@Slf4j
+class SpillableHashTable implements Closeable {
+
+    private final Function<Map<String, Object>, List<Object>> keyFunction;
+    private final long budgetBytes;
+    private final Path spillDirectory;
+
+    private final Map<List<Object>, List<Map<String, Object>>>[] partitions;
+    private final long[] partitionBytes;
+    private final SpillFile[] spillFiles;
+
+    private long memoryBytes;
+    private long spilledRows;
+
+    @SuppressWarnings("unchecked")
+    SpillableHashTable(int partitionCount, long budgetBytes, Path spillDirectory,
+                       Function<Map<String, Object>, List<Object>> keyFunction) {
+        this.keyFunction = keyFunction;
+        this.budgetBytes = budgetBytes;
+        this.spillDirectory = spillDirectory;
+        this.partitions = new Map[partitionCount];
+        this.partitionBytes = new long[partitionCount];
+        this.spillFiles = new SpillFile[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            partitions[i] = new HashMap<>();
+        }
+    }
+
+    /**
+     * 加入一行构建数据（连接键不能为空）
+     */
+    void add(List<Object> key, Map<String, Object> row) throws IOException {
+        int partition = partitionOf(key);
+        if (spillFiles[partition] != null) {
+            spillFiles[partition].write(row);
+            spilledRows++;
+            return;
+        }
+
+        partitions[partition].computeIfAbsent(key, k -> new ArrayList<>(1)).add(row);
+        long size = estimateSize(row);
+        partitionBytes[partition] += size;
+        memoryBytes += size;
+
+        while (memoryBytes > budgetBytes && spillLargestPartition()) {
+            // 溢写直到回到预算以内
+        }
+    }
+
+    /**
+     * 分区号：先用黄金分割乘法打散哈希（小整数键的List哈希只在低位变化，奇偶性固定），
+     * 再取乘积的高位映射到分区数，分区数不要求为2的幂
+     */
+    int partitionOf(List<Object> key) {
+        long mixed = (key.hashCode() * 0x9E3779B9) & 0xFFFFFFFFL;
+        return (int) ((mixed * partitions.length) >>> 32);
+    }
+
+    int getPartitionCount() {
+        return partitions.length;
+    }
+
+    boolean isSpilled(int partition) {
+        return spillFiles[partition] != null;
+    }
+
+    /**
+     * 在内存分区中查找匹配的构建行
+     */
+    List<Map<String, Object>> lookup(List<Object> key) {
+        List<Map<String, Object>> rows = partitions[partitionOf(key)].get(key);
+        return rows != null ? rows : Collections.emptyList();
+    }
+
+    List<Integer> getSpilledPartitions() {
+        List<Integer> spilled = new ArrayList<>();
+        for (int i = 0; i < spillFiles.length; i++) {
+            if (spillFiles[i] != null) {
+                spilled.add(i);
+            }
+        }
+        return spilled;
+    }
+
+    long getSpilledRows() {
+        return spilledRows;
+    }
+
+    /**
+     * 把溢写分区读回内存，供该分区暂存的探测行连接
+     * 单个分区超出预算时仍整体读入（分区数足够时少见），并记录警告
+     */
+    Map<List<Object>, List<Map<String, Object>>> loadPartition(int partition) throws IOException {
+        Map<List<Object>, List<Map<String, Object>>> table = new HashMap<>();
+        long bytes = 0;
+        Iterator<Map<String, Object>> rows = spillFiles[partition].read();
+        while (rows.hasNext()) {
+            Map<String, Object> row = rows.next();
+            table.computeIfAbsent(keyFunction.apply(row), k -> new ArrayList<>(1)).add(row);
+            bytes += estimateSize(row);
+        }
+        if (bytes > budgetBytes) {
+            log.warn("溢写分区 {} 读回后约 {}KB，超过内存预算 {}KB", partition, bytes / 1024, budgetBytes / 1024);
+        }
+        return table;
+    }
+
+    private boolean spillLargestPartition() throws IOException {
+        int largest = -1;
+        for (int i = 0; i < partitions.length; i++) {
+            if (spillFiles[i] == null && partitionBytes[i] > 0
+                && (largest < 0 || partitionBytes[i] > partitionBytes[largest])) {
+                largest = i;
+            }
+        }
+        if (largest < 0) {
+            return false;
+        }
+
+        SpillFile spillFile = new SpillFile(spillDirectory, "build-" + largest + "-");
+        for (List<Map<String, Object>> rows : partitions[largest].values()) {
+            for (Map<String, Object> row : rows) {
+                spillFile.write(row);
+                spilledRows++;
+            }
+        }
+        spillFiles[largest] = spillFile;
+        partitions[largest] = Collections.emptyMap();
+        memoryBytes -= partitionBytes[largest];
+        partitionBytes[largest] = 0;
+        log.debug("构建表分区 {} 溢写到磁盘，当前内存约 {}KB", largest, memoryBytes / 1024);
+        return true;
+    }
+
+    @Override
+    public void close() {
+        for (SpillFile spillFile : spillFiles) {
+            if (spillFile != null) {
+                spillFile.close();
+            }
+        }
+    }
+
+    /**
+     * 行占用内存的粗略估算（对象头、哈希表项和字段值）
+     */
+    static long estimateSize(Map<String, Object> row) {
+        long size = 64;
+        for (Map.Entry<String, Object> entry : row.entrySet()) {
+            size += 48;
+            Object value = entry.getValue();
+            if (value instanceof String) {
+                size += 40 + 2L * ((String) value).length();
+            } else if (value != null) {
+                size += 24;
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,204 @@
+package com.hospital.report.generator;
+
+import com.hospital.report.concurrent.ExecutionMode;
+import com.hospital.report.entity.ReportComponent;
+import com.hospital.report.snapshot.ReportSnapshotEngine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * 报表组件数据并发获取
+ * 报表内各组件的数据查询并发提交到有界线程池，数据源和参数相同的组件共用一次查询；
+ * 整个报表共享一个截止时间，超时或失败的组件带错误标记返回，其余组件的数据照常返回。
+ * 虚拟线程模式下每个查询一个虚拟线程，同时执行的查询数仍以 fetch-threads 为上限。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ReportComponentFetcher {
+
+    private final ExecutionMode executionMode;
+
+    public static final String ERROR_TIMEOUT = "TIMEOUT";
+    public static final String ERROR_REJECTED = "REJECTED";
+    public static final String ERROR_FAILED = "FAILED";
+
+    @Value("${report.generation.fetch-threads:16}")
+    private int fetchThreads;
+
+    @Value("${report.generation.queue-capacity:200}")
+    private int queueCapacity;
+
+    @Value("${report.generation.deadline-ms:10000}")
+    private long defaultDeadlineMillis;
+
+    private ExecutorService fetchExecutor;
+
+    // 虚拟线程模式下限制同时执行的查询数
+    private Semaphore virtualPermits;
+
+    @PostConstruct
+    public void init() {
+        if (executionMode.isVirtualThreads()) {
+            fetchExecutor = executionMode.newVirtualThreadExecutor("report-component-fetch-");
+            virtualPermits = new Semaphore(fetchThreads);
+            return;
+        }
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(fetchThreads, fetchThreads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), r -> {
+                Thread thread = new Thread(r, "report-component-fetch-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        fetchExecutor = executor;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        fetchExecutor.shutdownNow();
+    }
+
+    public long getDefaultDeadlineMillis() {
+        return defaultDeadlineMillis;
+    }
+
+    /**
+     * 并发获取组件数据
+     * @param components 报表组件
+     * @param parameterResolver 解析组件的查询参数
+     * @param query 数据查询：数据源ID + 参数 -> 查询结果
+     * @param deadlineMillis 整个报表的截止时间（毫秒）
+     * @return components 为按组件顺序排列的组件数据，partial 表示是否有组件未取得数据
+     */
+    public Map<String, Object> fetch(List<ReportComponent> components,
+                                     Function<ReportComponent, Map<String, Object>> parameterResolver,
+                                     BiFunction<Long, Map<String, Object>, Map<String, Object>> query,
+                                     long deadlineMillis) {
+        long startTime = System.currentTimeMillis();
+        long deadline = startTime + deadlineMillis;
+
+        // 数据源 + 规范化参数相同的组件共用一次查询
+        Map<String, Future<Map<String, Object>>> queries = new LinkedHashMap<>();
+        Map<Long, String> componentQueryKeys = new HashMap<>();
+        for (ReportComponent component : components) {
+            if (component.getDataSourceId() == null || Boolean.FALSE.equals(component.getIsVisible())) {
+                continue;
+            }
+
+            Map<String, Object> parameters = parameterResolver.apply(component);
+            String key = component.getDataSourceId() + ":" + ReportSnapshotEngine.normalizeParameters(parameters);
+            submitQuery(queries, key, component.getDataSourceId(), parameters, query);
+            componentQueryKeys.put(component.getComponentId(), key);
+        }
+
+        // 在截止时间内等待各查询完成
+        Map<String, Map<String, Object>> outcomes = new HashMap<>();
+        for (Map.Entry<String, Future<Map<String, Object>>> entry : queries.entrySet()) {
+            outcomes.put(entry.getKey(), await(entry.getKey(), entry.getValue(), deadline));
+        }
+
+        List<Map<String, Object>> componentData = new ArrayList<>();
+        int failedCount = 0;
+        for (ReportComponent component : components) {
+            Map<String, Object> compData = new HashMap<>();
+            compData.put("componentId", component.getComponentId());
+            compData.put("componentType", component.getComponentType());
+            compData.put("componentName", component.getComponentName());
+
+            String key = componentQueryKeys.get(component.getComponentId());
+            if (key != null) {
+                Map<String, Object> outcome = outcomes.get(key);
+                if (outcome.containsKey("dataError")) {
+                    compData.put("dataError", outcome.get("dataError"));
+                    compData.put("errorType", outcome.get("errorType"));
+                    failedCount++;
+                } else {
+                    compData.put("data", outcome.get("data"));
+                }
+            }
+            componentData.add(compData);
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("components", componentData);
+        result.put("partial", failedCount > 0);
+        result.put("failedCount", failedCount);
+        result.put("queryCount", queries.size());
+        result.put("deadlineMs", deadlineMillis);
+        result.put("elapsedMs", System.currentTimeMillis() - startTime);
+        return result;
+    }
+
+    private void submitQuery(Map<String, Future<Map<String, Object>>> queries, String key, Long dataSourceId,
+                             Map<String, Object> parameters,
+                             BiFunction<Long, Map<String, Object>, Map<String, Object>> query) {
+        if (queries.containsKey(key)) {
+            return;
+        }
+
+        try {
+            queries.put(key, fetchExecutor.submit(() -> runQuery(query, dataSourceId, parameters)));
+        } catch (RejectedExecutionException e) {
+            // 线程池已满时不在请求线程上执行，避免拖过截止时间
+            queries.put(key, null);
+        }
+    }
+
+    private Map<String, Object> runQuery(BiFunction<Long, Map<String, Object>, Map<String, Object>> query,
+                                         Long dataSourceId, Map<String, Object> parameters) throws InterruptedException {
+        if (virtualPermits == null) {
+            return query.apply(dataSourceId, parameters);
+        }
+
+        virtualPermits.acquire();
+        try {
+            return query.apply(dataSourceId, parameters);
+        } finally {
+            virtualPermits.release();
+        }
+    }
+
+    private Map<String, Object> await(String key, Future<Map<String, Object>> future, long deadline) {
+        Map<String, Object> outcome = new HashMap<>();
+        if (future == null) {
+            outcome.put("dataError", "数据查询繁忙，请稍后重试");
+            outcome.put("errorType", ERROR_REJECTED);
+            return outcome;
+        }
+
+        try {
+            long remaining = Math.max(0, deadline - System.currentTimeMillis());
+            outcome.put("data", future.get(remaining, TimeUnit.MILLISECONDS));
+        } catch (TimeoutException e) {
+            // 超时的查询不再需要，中断以释放线程
+            future.cancel(true);
+            outcome.put("dataError", "数据查询超时");
+            outcome.put("errorType", ERROR_TIMEOUT);
+            log.warn("组件数据查询超过报表截止时间: {}", key);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            outcome.put("dataError", "数据查询被中断");
+            outcome.put("errorType", ERROR_FAILED);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            outcome.put("dataError", cause.getMessage());
+            outcome.put("errorType", ERROR_FAILED);
+            log.warn("组件数据查询失败: {} - {}", key, cause.getMessage());
+        }
+        return outcome;
+    }
+}
@@ -1,6 +1,7 @@
 package com.hospital.report.job;
 
 import com.hospital.report.service.SyncService;
+import com.hospital.report.sync.SyncClusterCoordinator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.quartz.*;
@@ -13,6 +14,7 @@ import org.springframework.stereotype.Component;
 public class SyncJob implements Job {
 
     private final SyncService syncService;
+    private final SyncClusterCoordinator clusterCoordinator;
 
     @Override
     public void execute(JobExecutionContext context) throws JobExecutionException {
@@ -22,6 +24,17 @@ public class SyncJob implements Job {
         String taskCode = dataMap.getString("taskCode");
         String taskName = dataMap.getString("taskName");
         
+        // 集群模式下归属切换期间可能有两个节点同时调度，只有认领成功的节点执行
+        try {
+            if (!clusterCoordinator.claimFire(taskId, context.getScheduledFireTime())) {
+                log.info("定时同步任务已由其他节点执行，跳过: {} - {}", taskCode, context.getScheduledFireTime());
+                return;
+            }
+        } catch (Exception e) {
+            log.error("定时同步任务认领失败: {} - {}", taskCode, e.getMessage(), e);
+            throw new JobExecutionException(e);
+        }
+        
         log.info("开始执行定时同步任务: {} - {}", taskCode, taskName);
         
         try {
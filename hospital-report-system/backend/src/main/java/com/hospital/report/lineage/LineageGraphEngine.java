@@ -0,0 +1,622 @@
+package com.hospital.report.lineage;
+
+import com.hospital.report.mapper.DataLineageMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 血缘图内存引擎
+ * 将data_lineage中的有效边加载为按整数编号的CSR正向/反向邻接数组，
+ * 新建的血缘关系以增量边的形式追加，累积到阈值后或定时在后台重建。
+ * 影响分析、最短路径、环检测和孤立节点判断均在内存中完成，不再逐节点查询数据库。
+ */
+@Slf4j
+@Component
+public class LineageGraphEngine {
+
+    private final DataLineageMapper dataLineageMapper;
+
+    @Value("${lineage.graph.refresh-minutes:30}")
+    private int refreshMinutes;
+
+    @Value("${lineage.graph.max-pending-edges:10000}")
+    private int maxPendingEdges;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // 重建期间读取数据库，使用ReentrantLock避免钉住虚拟线程
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+
+    private final ScheduledExecutorService refreshExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "lineage-graph-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // 首次使用时加载
+    private volatile Graph graph;
+
+    // 重建期间新增的边，新图生成后重放，避免扫描与增量更新之间的遗漏
+    private List<String[]> edgesDuringRebuild;
+
+    public LineageGraphEngine(DataLineageMapper dataLineageMapper) {
+        this.dataLineageMapper = dataLineageMapper;
+    }
+
+    @PostConstruct
+    public void init() {
+        refreshExecutor.scheduleWithFixedDelay(() -> {
+            if (graph != null) {
+                refreshQuietly();
+            }
+        }, refreshMinutes, refreshMinutes, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    /**
+     * 按层级遍历上游或下游节点
+     * @param downstream true为下游影响，false为上游依赖
+     * @return 每个可达节点的nodeId、level、relationType、impactType
+     */
+    public List<Map<String, Object>> traverse(String nodeId, int maxDepth, boolean downstream) {
+        Graph g = ensureLoaded();
+        lock.readLock().lock();
+        try {
+            List<Map<String, Object>> result = new ArrayList<>();
+            Integer start = g.nodeIndex.get(nodeId);
+            if (start == null || maxDepth <= 0) {
+                return result;
+            }
+
+            String impactType = downstream ? "DOWNSTREAM" : "UPSTREAM";
+            BitSet visited = new BitSet(g.nodeCount());
+            IntList frontier = new IntList(16);
+            visited.set(start);
+            frontier.add(start);
+
+            for (int level = 1; level <= maxDepth && frontier.size > 0; level++) {
+                IntList next = new IntList(frontier.size * 2);
+                for (int i = 0; i < frontier.size; i++) {
+                    int current = frontier.get(i);
+                    int degree = g.degree(current, downstream);
+                    for (int k = 0; k < degree; k++) {
+                        int neighbor = g.neighbor(current, k, downstream);
+                        if (visited.get(neighbor)) {
+                            continue;
+                        }
+                        visited.set(neighbor);
+                        next.add(neighbor);
+
+                        Map<String, Object> item = new HashMap<>();
+                        item.put("nodeId", g.nodeIds.get(neighbor));
+                        item.put("level", level);
+                        item.put("relationType", g.relationTypes.get(g.relation(current, k, downstream)));
+                        item.put("impactType", impactType);
+                        result.add(item);
+                    }
+                }
+                frontier = next;
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 沿下游方向查找最短路径
+     * @return 路径上的节点ID（含起止节点），不可达时返回空列表
+     */
+    public List<String> findShortestPath(String sourceNodeId, String targetNodeId) {
+        Graph g = ensureLoaded();
+        lock.readLock().lock();
+        try {
+            Integer source = g.nodeIndex.get(sourceNodeId);
+            Integer target = g.nodeIndex.get(targetNodeId);
+            if (source == null || target == null) {
+                return new ArrayList<>();
+            }
+
+            int[] parent = new int[g.nodeCount()];
+            Arrays.fill(parent, -1);
+            parent[source] = source;
+            IntList queue = new IntList(16);
+            queue.add(source);
+
+            for (int head = 0; head < queue.size && parent[target] < 0; head++) {
+                int current = queue.get(head);
+                int degree = g.degree(current, true);
+                for (int k = 0; k < degree; k++) {
+                    int neighbor = g.neighbor(current, k, true);
+                    if (parent[neighbor] < 0) {
+                        parent[neighbor] = current;
+                        queue.add(neighbor);
+                    }
+                }
+            }
+
+            if (parent[target] < 0) {
+                return new ArrayList<>();
+            }
+
+            LinkedList<String> path = new LinkedList<>();
+            for (int node = target; ; node = parent[node]) {
+                path.addFirst(g.nodeIds.get(node));
+                if (node == source) {
+                    break;
+                }
+            }
+            return path;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 使用Tarjan算法（迭代实现）查找强连通分量
+     * @return 构成循环依赖的节点组：节点数大于1的分量，或带自环的单个节点
+     */
+    public List<List<String>> findCycles() {
+        Graph g = ensureLoaded();
+        lock.readLock().lock();
+        try {
+            int n = g.nodeCount();
+            int[] index = new int[n];
+            int[] low = new int[n];
+            int[] cursor = new int[n];
+            int[] stack = new int[n];
+            int[] callStack = new int[n];
+            boolean[] onStack = new boolean[n];
+            Arrays.fill(index, -1);
+
+            List<List<String>> cycles = new ArrayList<>();
+            int counter = 0;
+            int sp = 0;
+
+            for (int root = 0; root < n; root++) {
+                if (index[root] >= 0) {
+                    continue;
+                }
+
+                int csp = 0;
+                index[root] = low[root] = counter++;
+                stack[sp++] = root;
+                onStack[root] = true;
+                callStack[csp++] = root;
+
+                while (csp > 0) {
+                    int v = callStack[csp - 1];
+                    if (cursor[v] < g.degree(v, true)) {
+                        int w = g.neighbor(v, cursor[v]++, true);
+                        if (index[w] < 0) {
+                            index[w] = low[w] = counter++;
+                            stack[sp++] = w;
+                            onStack[w] = true;
+                            callStack[csp++] = w;
+                        } else if (onStack[w]) {
+                            low[v] = Math.min(low[v], index[w]);
+                        }
+                        continue;
+                    }
+
+                    csp--;
+                    if (csp > 0) {
+                        int parent = callStack[csp - 1];
+                        low[parent] = Math.min(low[parent], low[v]);
+                    }
+
+                    if (low[v] == index[v]) {
+                        List<String> component = new ArrayList<>();
+                        int w;
+                        do {
+                            w = stack[--sp];
+                            onStack[w] = false;
+                            component.add(g.nodeIds.get(w));
+                        } while (w != v);
+
+                        if (component.size() > 1 || g.hasSelfLoop(v)) {
+                            cycles.add(component);
+                        }
+                    }
+                }
+            }
+            return cycles;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 节点是否参与任何有效血缘关系
+     */
+    public boolean hasEdges(String nodeId) {
+        Graph g = ensureLoaded();
+        lock.readLock().lock();
+        try {
+            Integer node = g.nodeIndex.get(nodeId);
+            return node != null && (g.degree(node, true) > 0 || g.degree(node, false) > 0);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 追加一条新建的血缘边（应在事务提交后调用）
+     */
+    public void addEdge(String sourceNodeId, String targetNodeId, String relationType) {
+        boolean needRebuild;
+        lock.writeLock().lock();
+        try {
+            if (edgesDuringRebuild != null) {
+                edgesDuringRebuild.add(new String[]{sourceNodeId, targetNodeId, relationType});
+            }
+            Graph g = graph;
+            if (g == null) {
+                // 尚未加载，首次加载时会从数据库读到这条边
+                return;
+            }
+            g.addPendingEdge(sourceNodeId, targetNodeId, relationType);
+            needRebuild = g.pendingEdgeCount >= maxPendingEdges;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        if (needRebuild && rebuildScheduled.compareAndSet(false, true)) {
+            refreshExecutor.execute(() -> {
+                try {
+                    refreshQuietly();
+                } finally {
+                    rebuildScheduled.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * 从数据库重新加载血缘图
+     */
+    public void refresh() {
+        rebuildLock.lock();
+        try {
+            long startTime = System.currentTimeMillis();
+
+            lock.writeLock().lock();
+            try {
+                edgesDuringRebuild = new ArrayList<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            Graph newGraph;
+            try {
+                GraphBuilder builder = new GraphBuilder();
+                dataLineageMapper.scanActiveEdges(context -> {
+                    Map<String, Object> row = context.getResultObject();
+                    builder.addEdge((String) row.get("source_id"), (String) row.get("target_id"),
+                        (String) row.get("relation_type"));
+                });
+                newGraph = builder.build();
+            } catch (RuntimeException e) {
+                lock.writeLock().lock();
+                try {
+                    edgesDuringRebuild = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                throw e;
+            }
+
+            lock.writeLock().lock();
+            try {
+                for (String[] edge : edgesDuringRebuild) {
+                    if (!newGraph.containsEdge(edge[0], edge[1], edge[2])) {
+                        newGraph.addPendingEdge(edge[0], edge[1], edge[2]);
+                    }
+                }
+                edgesDuringRebuild = null;
+                newGraph.buildTime = System.currentTimeMillis() - startTime;
+                graph = newGraph;
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            log.info("血缘图加载完成，节点数: {}, 边数: {}, 耗时: {}ms",
+                newGraph.nodeCount(), newGraph.edgeCount, newGraph.buildTime);
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        Graph g = graph;
+        stats.put("loaded", g != null);
+        if (g != null) {
+            lock.readLock().lock();
+            try {
+                stats.put("nodeCount", g.nodeCount());
+                stats.put("edgeCount", g.edgeCount);
+                stats.put("pendingEdgeCount", g.pendingEdgeCount);
+                stats.put("buildTime", g.buildTime);
+                stats.put("loadedTime", g.loadedTime);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        return stats;
+    }
+
+    private Graph ensureLoaded() {
+        Graph g = graph;
+        if (g == null) {
+            rebuildLock.lock();
+            try {
+                if (graph == null) {
+                    refresh();
+                }
+                g = graph;
+            } finally {
+                rebuildLock.unlock();
+            }
+        }
+        return g;
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            log.error("重建血缘图失败，继续使用当前版本: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 血缘图：基础部分为CSR数组，之后新增的边存放在按节点分组的增量表中
+     */
+    private static class Graph {
+
+        final List<String> nodeIds;
+        final Map<String, Integer> nodeIndex;
+        final List<String> relationTypes;
+        final Map<String, Integer> relationIndex;
+
+        // 基础CSR部分覆盖的节点数，之后追加的节点只有增量边
+        final int baseNodeCount;
+        final int[] outOffsets;
+        final int[] outTargets;
+        final short[] outRelations;
+        final int[] inOffsets;
+        final int[] inSources;
+        final short[] inRelations;
+
+        // 增量边：节点 -> [邻居, 关系类型, 邻居, 关系类型, ...]
+        final Map<Integer, IntList> pendingOut = new HashMap<>();
+        final Map<Integer, IntList> pendingIn = new HashMap<>();
+
+        int edgeCount;
+        int pendingEdgeCount;
+        long buildTime;
+        final LocalDateTime loadedTime = LocalDateTime.now();
+
+        Graph(List<String> nodeIds, Map<String, Integer> nodeIndex,
+              List<String> relationTypes, Map<String, Integer> relationIndex,
+              int[] outOffsets, int[] outTargets, short[] outRelations,
+              int[] inOffsets, int[] inSources, short[] inRelations) {
+            this.nodeIds = nodeIds;
+            this.nodeIndex = nodeIndex;
+            this.relationTypes = relationTypes;
+            this.relationIndex = relationIndex;
+            this.baseNodeCount = nodeIds.size();
+            this.outOffsets = outOffsets;
+            this.outTargets = outTargets;
+            this.outRelations = outRelations;
+            this.inOffsets = inOffsets;
+            this.inSources = inSources;
+            this.inRelations = inRelations;
+            this.edgeCount = outTargets.length;
+        }
+
+        int nodeCount() {
+            return nodeIds.size();
+        }
+
+        int baseDegree(int node, boolean forward) {
+            if (node >= baseNodeCount) {
+                return 0;
+            }
+            int[] offsets = forward ? outOffsets : inOffsets;
+            return offsets[node + 1] - offsets[node];
+        }
+
+        int degree(int node, boolean forward) {
+            IntList pending = (forward ? pendingOut : pendingIn).get(node);
+            return baseDegree(node, forward) + (pending != null ? pending.size / 2 : 0);
+        }
+
+        int neighbor(int node, int k, boolean forward) {
+            int base = baseDegree(node, forward);
+            if (k < base) {
+                return forward ? outTargets[outOffsets[node] + k] : inSources[inOffsets[node] + k];
+            }
+            return (forward ? pendingOut : pendingIn).get(node).get(2 * (k - base));
+        }
+
+        int relation(int node, int k, boolean forward) {
+            int base = baseDegree(node, forward);
+            if (k < base) {
+                return forward ? outRelations[outOffsets[node] + k] : inRelations[inOffsets[node] + k];
+            }
+            return (forward ? pendingOut : pendingIn).get(node).get(2 * (k - base) + 1);
+        }
+
+        boolean hasSelfLoop(int node) {
+            int degree = degree(node, true);
+            for (int k = 0; k < degree; k++) {
+                if (neighbor(node, k, true) == node) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean containsEdge(String sourceNodeId, String targetNodeId, String relationType) {
+            Integer source = nodeIndex.get(sourceNodeId);
+            Integer target = nodeIndex.get(targetNodeId);
+            Integer relation = relationIndex.get(relationType);
+            if (source == null || target == null || relation == null) {
+                return false;
+            }
+            int degree = degree(source, true);
+            for (int k = 0; k < degree; k++) {
+                if (neighbor(source, k, true) == target && relation(source, k, true) == relation) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void addPendingEdge(String sourceNodeId, String targetNodeId, String relationType) {
+            int source = internNode(sourceNodeId);
+            int target = internNode(targetNodeId);
+            int relation = relationIndex.computeIfAbsent(relationType, key -> {
+                relationTypes.add(key);
+                return relationTypes.size() - 1;
+            });
+
+            IntList out = pendingOut.computeIfAbsent(source, key -> new IntList(4));
+            out.add(target);
+            out.add(relation);
+            IntList in = pendingIn.computeIfAbsent(target, key -> new IntList(4));
+            in.add(source);
+            in.add(relation);
+
+            edgeCount++;
+            pendingEdgeCount++;
+        }
+
+        private int internNode(String nodeId) {
+            return nodeIndex.computeIfAbsent(nodeId, key -> {
+                nodeIds.add(key);
+                return nodeIds.size() - 1;
+            });
+        }
+    }
+
+    /**
+     * 扫描边列表后一次性生成CSR数组
+     */
+    private static class GraphBuilder {
+
+        private final List<String> nodeIds = new ArrayList<>();
+        private final Map<String, Integer> nodeIndex = new HashMap<>();
+        private final List<String> relationTypes = new ArrayList<>();
+        private final Map<String, Integer> relationIndex = new HashMap<>();
+
+        private final IntList sources = new IntList(1024);
+        private final IntList targets = new IntList(1024);
+        private final IntList relations = new IntList(1024);
+
+        void addEdge(String sourceNodeId, String targetNodeId, String relationType) {
+            if (sourceNodeId == null || targetNodeId == null) {
+                return;
+            }
+            sources.add(internNode(sourceNodeId));
+            targets.add(internNode(targetNodeId));
+            relations.add(relationIndex.computeIfAbsent(relationType, key -> {
+                if (relationTypes.size() >= Short.MAX_VALUE) {
+                    throw new IllegalStateException("血缘关系类型过多: " + relationTypes.size());
+                }
+                relationTypes.add(key);
+                return relationTypes.size() - 1;
+            }));
+        }
+
+        Graph build() {
+            int n = nodeIds.size();
+            int m = sources.size;
+
+            int[] outOffsets = new int[n + 1];
+            int[] inOffsets = new int[n + 1];
+            for (int e = 0; e < m; e++) {
+                outOffsets[sources.get(e) + 1]++;
+                inOffsets[targets.get(e) + 1]++;
+            }
+            for (int i = 0; i < n; i++) {
+                outOffsets[i + 1] += outOffsets[i];
+                inOffsets[i + 1] += inOffsets[i];
+            }
+
+            int[] outTargets = new int[m];
+            short[] outRelations = new short[m];
+            int[] inSources = new int[m];
+            short[] inRelations = new short[m];
+            int[] outPos = Arrays.copyOf(outOffsets, n);
+            int[] inPos = Arrays.copyOf(inOffsets, n);
+            for (int e = 0; e < m; e++) {
+                int source = sources.get(e);
+                int target = targets.get(e);
+                short relation = (short) relations.get(e);
+
+                int o = outPos[source]++;
+                outTargets[o] = target;
+                outRelations[o] = relation;
+
+                int i = inPos[target]++;
+                inSources[i] = source;
+                inRelations[i] = relation;
+            }
+
+            return new Graph(nodeIds, nodeIndex, relationTypes, relationIndex,
+                outOffsets, outTargets, outRelations, inOffsets, inSources, inRelations);
+        }
+
+        private int internNode(String nodeId) {
+            return nodeIndex.computeIfAbsent(nodeId, key -> {
+                nodeIds.add(key);
+                return nodeIds.size() - 1;
+            });
+        }
+    }
+
+    /**
+     * 可增长的int数组，避免装箱
+     */
+    private static class IntList {
+
+        int[] data;
+        int size;
+
+        IntList(int capacity) {
+            data = new int[Math.max(capacity, 4)];
+        }
+
+        void add(int value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            data[size++] = value;
+        }
+
+        int get(int i) {
+            return data[i];
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.hospital.report.lineage;
+
+import com.hospital.report.entity.LineageNode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * 基于命名规则的血缘发现
+ * 先对表名、字段名做规范化，再按阻塞键分桶，只在同一桶内比较候选节点，
+ * 避免全部节点两两比较。扫描在后台并行执行，每个扫描任务先在本地收集关系，
+ * 整批放入队列后由调用线程取出并依次回调，边扫描边输出，回调无需加锁。
+ *
+ * 规则：
+ * 1. 派生字段：目标字段名以源字段名加下划线开头（如 amount -> amount_total），不限定同表，
+ *    以源字段名为阻塞键，目标字段只需查找自身的各级下划线前缀；
+ * 2. 键引用：以 _id/_code/_no/_key 结尾的同名字段，以规范化字段名为阻塞键，
+ *    表名与字段词干对应的表（如 dept_id 对应 sys_dept）作为源，其余表作为目标。
+ */
+@Slf4j
+@Component
+public class NamingConventionDiscovery {
+
+    public static final String DISCOVERY_METHOD = "NAMING_CONVENTION";
+
+    private static final List<String> KEY_SUFFIXES = Arrays.asList("_id", "_code", "_no", "_key");
+
+    private static final double DERIVED_CONFIDENCE = 0.6;
+    private static final double REFERENCE_CONFIDENCE = 0.5;
+
+    private static final long POLL_MILLIS = 100;
+
+    /**
+     * 发现节点间的命名血缘关系
+     * @param relationConsumer 每发现一条关系回调一次（在调用线程中依次回调，可直接写入SSE等非线程安全目标）；
+     *                         回调抛出异常时停止扫描并向上抛出
+     * @return 发现的关系数
+     */
+    public int discover(List<LineageNode> nodes, Consumer<Map<String, Object>> relationConsumer) {
+        long startTime = System.currentTimeMillis();
+
+        List<NameEntry> entries = new ArrayList<>(nodes.size());
+        for (LineageNode node : nodes) {
+            String columnName = normalize(node.getColumnName());
+            if (!columnName.isEmpty() && node.getNodeId() != null) {
+                entries.add(new NameEntry(node.getNodeId(), columnName, normalize(node.getTableName())));
+            }
+        }
+
+        // 阻塞键：规范化字段名 -> 节点
+        Map<String, List<NameEntry>> byColumnName = new HashMap<>();
+        for (NameEntry entry : entries) {
+            byColumnName.computeIfAbsent(entry.columnName, key -> new ArrayList<>()).add(entry);
+        }
+
+        // 扫描任务整批入队，调用线程边取边回调；队列不设上限，扫描线程不会因回调慢而阻塞
+        BlockingQueue<List<Map<String, Object>>> batches = new LinkedBlockingQueue<>();
+        AtomicBoolean cancelled = new AtomicBoolean(false);
+        CompletableFuture<Void> scan = CompletableFuture.runAsync(() -> {
+            scanDerived(entries, byColumnName, cancelled, batches);
+            scanReferences(byColumnName, cancelled, batches);
+        });
+
+        int relationCount = 0;
+        try {
+            while (true) {
+                boolean finished = scan.isDone();
+                List<Map<String, Object>> batch = batches.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (batch != null) {
+                    batch.forEach(relationConsumer);
+                    relationCount += batch.size();
+                } else if (finished) {
+                    break;
+                }
+            }
+            scan.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("命名规则血缘发现被中断", e);
+        } finally {
+            cancelled.set(true);
+        }
+
+        log.info("命名规则血缘发现完成，节点数: {}, 阻塞桶数: {}, 发现关系: {}, 耗时: {}ms",
+            entries.size(), byColumnName.size(), relationCount, System.currentTimeMillis() - startTime);
+        return relationCount;
+    }
+
+    /**
+     * 规则1：派生字段，每个目标字段只查找自身的下划线前缀
+     */
+    private static void scanDerived(List<NameEntry> entries, Map<String, List<NameEntry>> byColumnName,
+                                    AtomicBoolean cancelled, BlockingQueue<List<Map<String, Object>>> batches) {
+        IntStream.range(0, entries.size()).parallel().forEach(i -> {
+            if (cancelled.get()) {
+                return;
+            }
+            NameEntry target = entries.get(i);
+            String columnName = target.columnName;
+            List<Map<String, Object>> found = null;
+            for (int pos = columnName.indexOf('_'); pos > 0; pos = columnName.indexOf('_', pos + 1)) {
+                List<NameEntry> sources = byColumnName.get(columnName.substring(0, pos));
+                if (sources == null) {
+                    continue;
+                }
+                if (found == null) {
+                    found = new ArrayList<>(sources.size());
+                }
+                for (NameEntry source : sources) {
+                    found.add(buildRelation(source, target, "DERIVED", DERIVED_CONFIDENCE, "DERIVED_COLUMN"));
+                }
+            }
+            if (found != null) {
+                batches.add(found);
+            }
+        });
+    }
+
+    /**
+     * 规则2：键引用，只在同名的键字段桶内比较
+     */
+    private static void scanReferences(Map<String, List<NameEntry>> byColumnName,
+                                       AtomicBoolean cancelled, BlockingQueue<List<Map<String, Object>>> batches) {
+        byColumnName.entrySet().parallelStream()
+            .filter(bucket -> bucket.getValue().size() > 1)
+            .forEach(bucket -> {
+                String stem = keyStem(bucket.getKey());
+                if (stem == null || cancelled.get()) {
+                    return;
+                }
+
+                List<NameEntry> owners = new ArrayList<>();
+                List<NameEntry> referencing = new ArrayList<>();
+                for (NameEntry entry : bucket.getValue()) {
+                    if (isOwnerTable(entry.tableName, stem)) {
+                        owners.add(entry);
+                    } else {
+                        referencing.add(entry);
+                    }
+                }
+
+                List<Map<String, Object>> found = new ArrayList<>();
+                for (NameEntry owner : owners) {
+                    for (NameEntry reference : referencing) {
+                        if (!owner.tableName.equals(reference.tableName)) {
+                            found.add(buildRelation(owner, reference, "REFERENCE", REFERENCE_CONFIDENCE, "KEY_REFERENCE"));
+                        }
+                    }
+                }
+                if (!found.isEmpty()) {
+                    batches.add(found);
+                }
+            });
+    }
+
+    /**
+     * 规范化名称：驼峰转下划线、统一小写、合并多余的分隔符
+     */
+    static String normalize(String name) {
+        if (name == null) {
+            return "";
+        }
+
+        StringBuilder sb = new StringBuilder(name.length() + 8);
+        char prev = 0;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '`' || c == '"' || c == '[' || c == ']') {
+                continue;
+            }
+            if (c == '-' || c == ' ' || c == '.' || c == '_') {
+                c = '_';
+            } else if (Character.isUpperCase(c)) {
+                if (Character.isLowerCase(prev) || Character.isDigit(prev)) {
+                    appendSeparator(sb);
+                }
+                c = Character.toLowerCase(c);
+            }
+
+            if (c == '_') {
+                appendSeparator(sb);
+            } else {
+                sb.append(c);
+            }
+            prev = name.charAt(i);
+        }
+
+        int end = sb.length();
+        while (end > 0 && sb.charAt(end - 1) == '_') {
+            end--;
+        }
+        return sb.substring(0, end);
+    }
+
+    private static void appendSeparator(StringBuilder sb) {
+        if (sb.length() > 0 && sb.charAt(sb.length() - 1) != '_') {
+            sb.append('_');
+        }
+    }
+
+    /**
+     * 键字段的词干，如 dept_id -> dept；不是键字段时返回null
+     */
+    private static String keyStem(String columnName) {
+        for (String suffix : KEY_SUFFIXES) {
+            if (columnName.endsWith(suffix) && columnName.length() > suffix.length()) {
+                return columnName.substring(0, columnName.length() - suffix.length());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 表名与词干对应，如 dept、sys_dept、t_dept、depts
+     */
+    private static boolean isOwnerTable(String tableName, String stem) {
+        if (tableName.isEmpty()) {
+            return false;
+        }
+        return tableName.equals(stem)
+            || tableName.equals(stem + "s")
+            || tableName.endsWith("_" + stem)
+            || tableName.endsWith("_" + stem + "s");
+    }
+
+    private static Map<String, Object> buildRelation(NameEntry source, NameEntry target, String relationType,
+                                                     double confidence, String matchRule) {
+        Map<String, Object> relation = new HashMap<>();
+        relation.put("sourceId", source.nodeId);
+        relation.put("targetId", target.nodeId);
+        relation.put("relationType", relationType);
+        relation.put("confidence", confidence);
+        relation.put("discoveryMethod", DISCOVERY_METHOD);
+        relation.put("matchRule", matchRule);
+        return relation;
+    }
+
+    private static class NameEntry {
+
+        final String nodeId;
+        final String columnName;
+        final String tableName;
+
+        NameEntry(String nodeId, String columnName, String tableName) {
+            this.nodeId = nodeId;
+            this.columnName = columnName;
+            this.tableName = tableName;
+        }
+    }
+}
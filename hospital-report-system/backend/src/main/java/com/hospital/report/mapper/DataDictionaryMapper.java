@@ -25,15 +25,21 @@ public interface DataDictionaryMapper extends BaseMapper<DataDictionary> {
             "${ew.customSqlSegment}")
     IPage<Map<String, Object>> selectDictionaryPage(Page<?> page, @Param("ew") Object wrapper);
 
-    @Select("SELECT * FROM data_dictionary " +
-            "WHERE is_deleted = 0 " +
-            "AND (field_name_cn LIKE CONCAT('%', #{keyword}, '%') " +
-            "     OR field_name_en LIKE CONCAT('%', #{keyword}, '%') " +
-            "     OR field_code LIKE CONCAT('%', #{keyword}, '%') " +
-            "     OR business_meaning LIKE CONCAT('%', #{keyword}, '%')) " +
-            "ORDER BY usage_count DESC, updated_time DESC " +
-            "LIMIT #{limit}")
-    List<DataDictionary> searchFields(@Param("keyword") String keyword, @Param("limit") Integer limit);
+    /**
+     * 按ID查询字段及分类名称（关键字检索结果的当前页）
+     */
+    @Select("<script>" +
+            "SELECT " +
+            "  d.*, " +
+            "  c.category_name " +
+            "FROM data_dictionary d " +
+            "LEFT JOIN dictionary_category c ON d.category_id = c.id " +
+            "WHERE d.is_deleted = 0 AND d.id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>" +
+            "#{id}" +
+            "</foreach>" +
+            "</script>")
+    List<Map<String, Object>> selectDictionaryByIds(@Param("ids") List<Long> ids);
 
     @Select("SELECT " +
             "  data_type, " +
@@ -105,6 +111,9 @@ public interface DataDictionaryMapper extends BaseMapper<DataDictionary> {
             "AND id != #{excludeId}")
     int checkFieldCodeExists(@Param("fieldCode") String fieldCode, @Param("excludeId") Long excludeId);
 
+    @Select("SELECT field_code FROM data_dictionary WHERE is_deleted = 0")
+    List<String> selectAllFieldCodes();
+
     @Select("SELECT * FROM data_dictionary " +
             "WHERE is_deleted = 0 " +
             "AND approval_status = #{status} " +
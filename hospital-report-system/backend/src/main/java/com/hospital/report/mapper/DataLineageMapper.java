@@ -3,8 +3,12 @@ package com.hospital.report.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.hospital.report.entity.DataLineage;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.ResultType;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.session.ResultHandler;
 
 import java.util.List;
 import java.util.Map;
@@ -155,4 +159,13 @@ public interface DataLineageMapper extends BaseMapper<DataLineage> {
             "ORDER BY dl.created_time DESC " +
             "LIMIT #{limit}")
     List<Map<String, Object>> getRecentLineagesByNode(@Param("nodeId") String nodeId, @Param("limit") Integer limit);
-}
\ No newline at end of file
+
+    /**
+     * 流式扫描所有有效血缘边，仅包含构建图所需的列
+     * MySQL驱动下fetchSize为Integer.MIN_VALUE时逐行读取，不会把整张表载入内存
+     */
+    @Select("SELECT source_id, target_id, relation_type FROM data_lineage WHERE is_deleted = 0")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = Integer.MIN_VALUE)
+    @ResultType(Map.class)
+    void scanActiveEdges(ResultHandler<Map<String, Object>> handler);
+}
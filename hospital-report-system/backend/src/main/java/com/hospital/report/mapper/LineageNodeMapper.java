@@ -98,4 +98,7 @@ public interface LineageNodeMapper extends BaseMapper<LineageNode> {
             "AND owner_department = #{department} " +
             "ORDER BY criticality_level, node_name")
     List<LineageNode> getNodesByDepartment(@Param("department") String department);
-}
\ No newline at end of file
+
+    @Select("SELECT node_id FROM lineage_node WHERE is_deleted = 0")
+    List<String> selectActiveNodeIds();
+}
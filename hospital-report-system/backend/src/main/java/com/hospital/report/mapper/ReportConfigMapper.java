@@ -87,6 +87,65 @@ public interface ReportConfigMapper extends BaseMapper<ReportConfig> {
             "COUNT(CASE WHEN access_level = 'PRIVATE' THEN 1 END) as private_reports")
     Map<String, Object> selectOverallStatistics();
 
+    /**
+     * 审核统计：一次聚合查询得到各审核状态的数量，不加载报表配置内容
+     */
+    @Select("SELECT " +
+            "COUNT(CASE WHEN approval_status >= 2 THEN 1 END) as total_reports, " +
+            "COUNT(CASE WHEN approval_status = 2 THEN 1 END) as pending_count, " +
+            "COUNT(CASE WHEN approval_status = 3 THEN 1 END) as approved_count, " +
+            "COUNT(CASE WHEN approval_status = 4 THEN 1 END) as rejected_count, " +
+            "COUNT(CASE WHEN approval_status = 3 AND is_published = 1 THEN 1 END) as published_count, " +
+            "COUNT(CASE WHEN approval_status = 3 AND (is_published IS NULL OR is_published != 1) THEN 1 END) as approved_unpublished_count, " +
+            "AVG(CASE WHEN audit_time IS NOT NULL AND submit_time IS NOT NULL " +
+            "THEN TIMESTAMPDIFF(HOUR, submit_time, audit_time) END) as avg_audit_hours, " +
+            "MAX(CASE WHEN approval_status >= 2 THEN audit_time END) as last_audit_time " +
+            "FROM report_config")
+    Map<String, Object> selectAuditStatistics();
+
+    /**
+     * 发布统计：一次聚合查询得到发布/未发布数量及最后发布时间
+     */
+    @Select("SELECT " +
+            "COUNT(*) as total_reports, " +
+            "COUNT(CASE WHEN is_published = 1 THEN 1 END) as published_count, " +
+            "COUNT(CASE WHEN is_published IS NULL OR is_published != 1 THEN 1 END) as unpublished_count, " +
+            "COUNT(CASE WHEN (is_published IS NULL OR is_published != 1) AND approval_status = 3 THEN 1 END) as approved_unpublished_count, " +
+            "MAX(CASE WHEN is_published = 1 THEN publish_time END) as last_publish_time " +
+            "FROM report_config")
+    Map<String, Object> selectPublishStatistics();
+
+    @Select("SELECT IFNULL(view_count, 0) FROM report_config WHERE id = #{reportId}")
+    Integer selectViewCount(@Param("reportId") Long reportId);
+
+    /**
+     * 批量查询已持久化的观看次数，每项包含 id、view_count
+     */
+    @Select("<script>" +
+            "SELECT id, IFNULL(view_count, 0) AS view_count FROM report_config WHERE id IN " +
+            "<foreach collection='reportIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    List<Map<String, Object>> selectViewCounts(@Param("reportIds") List<Long> reportIds);
+
+    /**
+     * 批量累加观看次数，每项包含 reportId、delta、lastViewTime
+     */
+    @Update("<script>" +
+            "UPDATE report_config SET " +
+            "view_count = IFNULL(view_count, 0) + CASE id " +
+            "<foreach collection='deltas' item='item'>WHEN #{item.reportId} THEN #{item.delta} </foreach>" +
+            "END, " +
+            "last_view_time = CASE id " +
+            "<foreach collection='deltas' item='item'>WHEN #{item.reportId} THEN #{item.lastViewTime} </foreach>" +
+            "END " +
+            "WHERE id IN " +
+            "<foreach collection='deltas' item='item' open='(' separator=',' close=')'>#{item.reportId}</foreach>" +
+            "</script>")
+    int batchIncrementViewCount(@Param("deltas") List<Map<String, Object>> deltas);
+
+    @Update("UPDATE report_config SET view_count = 0, updated_time = NOW() WHERE id = #{reportId}")
+    int resetViewCount(@Param("reportId") Long reportId);
+
     @Update("UPDATE report_config SET is_published = #{isPublished}, published_time = NOW() WHERE report_id = #{reportId}")
     int updatePublishStatus(@Param("reportId") Long reportId, @Param("isPublished") Boolean isPublished);
 
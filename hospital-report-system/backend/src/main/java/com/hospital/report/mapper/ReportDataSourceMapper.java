@@ -42,6 +42,25 @@ public interface ReportDataSourceMapper extends BaseMapper<ReportDataSource> {
     @Select("SELECT * FROM report_data_source WHERE is_active = true AND cache_enabled = true AND last_refresh_time < DATE_SUB(NOW(), INTERVAL cache_duration MINUTE)")
     List<ReportDataSource> selectExpiredCacheDataSources();
 
+    /**
+     * 需要快照的数据源及其刷新间隔（秒）：数据源自身的刷新间隔优先，否则取所属报表的刷新间隔
+     */
+    @Select("SELECT ds.data_source_id, " +
+            "CASE WHEN ds.refresh_interval > 0 THEN ds.refresh_interval ELSE r.refresh_interval END AS refresh_interval " +
+            "FROM report_data_source ds " +
+            "LEFT JOIN report_config r ON r.id = ds.report_id " +
+            "WHERE ds.is_active = true AND (ds.refresh_interval > 0 OR r.refresh_interval > 0)")
+    List<java.util.Map<String, Object>> selectSnapshotSchedules();
+
+    /**
+     * 数据源所属报表的结果缓存配置
+     */
+    @Select("SELECT ds.report_id, r.cache_enabled, r.cache_timeout " +
+            "FROM report_data_source ds " +
+            "LEFT JOIN report_config r ON r.id = ds.report_id " +
+            "WHERE ds.data_source_id = #{dataSourceId}")
+    java.util.Map<String, Object> selectCachePolicy(@Param("dataSourceId") Long dataSourceId);
+
     @Select("SELECT source_type, COUNT(*) as count FROM report_data_source WHERE report_id = #{reportId} GROUP BY source_type")
     List<java.util.Map<String, Object>> selectDataSourceTypeStatistics(@Param("reportId") Long reportId);
 
@@ -0,0 +1,42 @@
+package com.hospital.report.mapper;
+
+import org.apache.ibatis.annotations.*;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 同步调度集群的节点租约与触发认领
+ */
+@Mapper
+public interface SyncClusterMapper {
+
+    @Insert("INSERT INTO sync_cluster_node (node_id, host_name, started_time, heartbeat_time) " +
+            "VALUES (#{nodeId}, #{hostName}, NOW(), NOW()) " +
+            "ON DUPLICATE KEY UPDATE heartbeat_time = NOW()")
+    int heartbeat(@Param("nodeId") String nodeId, @Param("hostName") String hostName);
+
+    /**
+     * 以数据库时钟判断租约，避免各节点时钟不一致
+     */
+    @Select("SELECT node_id FROM sync_cluster_node " +
+            "WHERE heartbeat_time >= DATE_SUB(NOW(), INTERVAL #{leaseSeconds} SECOND) " +
+            "ORDER BY node_id")
+    List<String> selectLiveNodeIds(@Param("leaseSeconds") int leaseSeconds);
+
+    @Delete("DELETE FROM sync_cluster_node WHERE node_id = #{nodeId}")
+    int deleteNode(@Param("nodeId") String nodeId);
+
+    @Delete("DELETE FROM sync_cluster_node WHERE heartbeat_time < DATE_SUB(NOW(), INTERVAL #{expireSeconds} SECOND)")
+    int deleteExpiredNodes(@Param("expireSeconds") int expireSeconds);
+
+    /**
+     * 认领一次计划触发，已被其他节点认领时返回0
+     */
+    @Insert("INSERT IGNORE INTO sync_fire_claim (task_id, fire_time, node_id, claimed_time) " +
+            "VALUES (#{taskId}, #{fireTime}, #{nodeId}, NOW())")
+    int claimFire(@Param("taskId") Long taskId, @Param("fireTime") Date fireTime, @Param("nodeId") String nodeId);
+
+    @Delete("DELETE FROM sync_fire_claim WHERE fire_time < DATE_SUB(NOW(), INTERVAL #{retentionHours} HOUR)")
+    int deleteExpiredClaims(@Param("retentionHours") int retentionHours);
+}
@@ -5,8 +5,10 @@ import com.baomidou.mybatisplus.extension.service.IService;
 import com.hospital.report.entity.DataDictionary;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.File;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 public interface DataDictionaryService extends IService<DataDictionary> {
 
@@ -52,6 +54,11 @@ public interface DataDictionaryService extends IService<DataDictionary> {
      */
     Map<String, Object> importFields(MultipartFile file, Long userId);
 
+    /**
+     * 从本地xlsx文件批量导入字段，每写入一批后回调进度（已处理行数、成功数、失败数及本批新增的错误）
+     */
+    Map<String, Object> importFields(File file, Long userId, Consumer<Map<String, Object>> progressListener);
+
     /**
      * 导出字段
      */
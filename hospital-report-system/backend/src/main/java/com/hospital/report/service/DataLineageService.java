@@ -6,6 +6,7 @@ import com.hospital.report.entity.LineageNode;
 
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 public interface DataLineageService extends IService<DataLineage> {
 
@@ -50,6 +51,13 @@ public interface DataLineageService extends IService<DataLineage> {
      */
     List<Map<String, Object>> discoverLineageRelations(String systemSource, String discoveryMethod);
 
+    /**
+     * 自动发现血缘关系，每发现一条关系即回调一次
+     * @return 发现结果汇总
+     */
+    Map<String, Object> discoverLineageRelations(String systemSource, String discoveryMethod,
+                                                 Consumer<Map<String, Object>> relationConsumer);
+
     /**
      * 获取数据流向分析
      */
@@ -6,6 +6,7 @@ import com.hospital.report.dto.*;
 import com.hospital.report.entity.DictCategory;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * 数据字典分类服务接口
@@ -169,6 +170,23 @@ public interface DictCategoryService extends IService<DictCategory> {
      */
     List<CategoryFieldTreeVO> getEnabledCategoryFieldTree();
 
+    /**
+     * 获取分类字段混合树的当前快照
+     *
+     * @param enabledOnly 是否只包含启用的分类和字段
+     * @return 树快照（含版本号和ETag）
+     */
+    CategoryFieldTreeSnapshot getCategoryFieldTreeSnapshot(boolean enabledOnly);
+
+    /**
+     * 获取分类字段混合树自指定版本以来的增量
+     *
+     * @param enabledOnly 是否只包含启用的分类和字段
+     * @param sinceVersion 客户端持有的快照版本
+     * @return 增量（新增/变更节点与删除的节点键值），版本过旧时返回全量树
+     */
+    Map<String, Object> getCategoryFieldTreeDelta(boolean enabledOnly, Long sinceVersion);
+
     /**
      * 验证分类是否可以删除
      * 
@@ -0,0 +1,71 @@
+package com.hospital.report.service;
+
+import java.io.File;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 后台导出任务服务接口
+ */
+public interface ExportJobService {
+
+    /**
+     * 提交查询结果导出任务，相同查询、参数和数据版本的任务会被合并
+     * @param sqlContent SQL语句
+     * @param parameters 查询参数
+     * @param databaseType 数据源ID或编码
+     * @param options 导出选项
+     * @param dataVersion 数据版本（可为空，为空时只合并仍在执行中的任务）
+     * @return 任务状态
+     */
+    Map<String, Object> submitQueryExport(String sqlContent, Map<String, Object> parameters, String databaseType,
+                                          Map<String, Object> options, String dataVersion);
+
+    /**
+     * 获取任务状态
+     * @param jobId 任务ID
+     * @return 任务状态
+     */
+    Map<String, Object> getJobStatus(String jobId);
+
+    /**
+     * 订阅任务进度，订阅时立即推送一次当前状态，任务结束后自动取消订阅
+     * @param jobId 任务ID
+     * @param listener 状态监听器
+     * @return 取消订阅的回调
+     */
+    Runnable subscribe(String jobId, Consumer<Map<String, Object>> listener);
+
+    /**
+     * 获取已完成任务的导出文件并标记为下载中，下载中的文件不会被过期清理删除
+     * 下载结束后必须调用 {@link #releaseJobFile(String)}
+     * @param jobId 任务ID
+     * @return 导出文件
+     */
+    File acquireJobFile(String jobId);
+
+    /**
+     * 结束一次下载，释放 {@link #acquireJobFile(String)} 的占用
+     * @param jobId 任务ID
+     */
+    void releaseJobFile(String jobId);
+
+    /**
+     * 获取导出文件的下载文件名
+     * @param jobId 任务ID
+     * @return 文件名
+     */
+    String getDownloadFileName(String jobId);
+
+    /**
+     * 取消任务
+     * @param jobId 任务ID
+     */
+    void cancelJob(String jobId);
+
+    /**
+     * 获取任务统计信息
+     * @return 统计信息
+     */
+    Map<String, Object> getStatistics();
+}
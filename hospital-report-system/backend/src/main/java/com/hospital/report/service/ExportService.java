@@ -1,6 +1,8 @@
 package com.hospital.report.service;
 
+import java.io.OutputStream;
 import java.util.Map;
+import java.util.function.LongConsumer;
 
 /**
  * 报表导出服务接口
@@ -23,6 +25,39 @@ public interface ExportService {
      */
     byte[] exportToExcel(Map<String, Object> reportData, Map<String, Object> options);
     
+    /**
+     * 以流式方式导出Excel，工作簿直接写入输出流
+     * @param reportData 报表数据
+     * @param options 导出选项
+     * @param outputStream 输出流（调用方负责关闭）
+     */
+    void exportToExcel(Map<String, Object> reportData, Map<String, Object> options, OutputStream outputStream);
+    
+    /**
+     * 以数据库游标逐行读取查询结果并流式导出Excel，内存占用与结果行数无关
+     * @param sqlContent SQL语句
+     * @param parameters 查询参数
+     * @param databaseType 数据源ID或编码
+     * @param options 导出选项
+     * @param outputStream 输出流（调用方负责关闭）
+     */
+    void exportQueryToExcel(String sqlContent, Map<String, Object> parameters, String databaseType,
+                            Map<String, Object> options, OutputStream outputStream);
+    
+    /**
+     * 流式导出查询结果，并定期回调已写入的行数（回调中抛出异常可中断导出）
+     * @param progressListener 进度回调，可为null
+     */
+    void exportQueryToExcel(String sqlContent, Map<String, Object> parameters, String databaseType,
+                            Map<String, Object> options, OutputStream outputStream, LongConsumer progressListener);
+    
+    /**
+     * 以数据库游标逐批读取查询结果并导出为Arrow IPC流，保留列类型，低基数字符串列使用字典编码
+     * @param progressListener 进度回调，可为null
+     */
+    void exportQueryToArrow(String sqlContent, Map<String, Object> parameters, String databaseType,
+                            OutputStream outputStream, LongConsumer progressListener);
+    
     /**
      * 导出为Word
      * @param reportData 报表数据
@@ -3,14 +3,20 @@ package com.hospital.report.service;
 import com.hospital.report.entity.SyncTask;
 import com.hospital.report.job.SyncJob;
 import com.hospital.report.mapper.SyncTaskMapper;
+import com.hospital.report.sync.SyncClusterCoordinator;
+import com.hospital.report.sync.SyncSchedulerThreadPool;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.quartz.*;
+import org.quartz.impl.matchers.GroupMatcher;
 import org.springframework.boot.ApplicationArguments;
 import org.springframework.boot.ApplicationRunner;
 import org.springframework.stereotype.Service;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Slf4j
 @Service
@@ -19,11 +25,21 @@ public class QuartzScheduleService implements ApplicationRunner {
 
     private final Scheduler scheduler;
     private final SyncTaskMapper syncTaskMapper;
+    private final SyncClusterCoordinator clusterCoordinator;
+    private final SyncSchedulerThreadPool schedulerThreadPool;
+
+    private static final String JOB_GROUP = "sync_job_group";
+
+    // 任务的调度线程权重，取其并行线程数（至少为1）
+    private static final String THREAD_WEIGHT_KEY = "threadWeight";
 
     @Override
     public void run(ApplicationArguments args) throws Exception {
         log.info("初始化定时任务调度器...");
         initScheduledTasks();
+        if (clusterCoordinator.isClusterEnabled()) {
+            clusterCoordinator.addRebalanceListener(this::rebalance);
+        }
         log.info("定时任务调度器初始化完成");
     }
 
@@ -31,23 +47,121 @@ public class QuartzScheduleService implements ApplicationRunner {
         try {
             List<SyncTask> enabledTasks = syncTaskMapper.selectEnabledTasks();
             
+            int scheduledCount = 0;
             for (SyncTask task : enabledTasks) {
-                if (task.getCronExpression() != null && !task.getCronExpression().trim().isEmpty()) {
-                    scheduleTask(task);
+                if (hasCron(task) && clusterCoordinator.isOwner(task.getId())) {
+                    doScheduleTask(task);
+                    scheduledCount++;
                 }
             }
+            resizeThreadPool();
             
-            log.info("已加载 {} 个定时同步任务", enabledTasks.size());
+            log.info("已加载 {} 个定时同步任务，本节点调度 {} 个", enabledTasks.size(), scheduledCount);
             
         } catch (Exception e) {
             log.error("初始化定时任务失败: {}", e.getMessage(), e);
         }
     }
 
+    /**
+     * 集群对账：按当前哈希环调整本节点调度的任务
+     * 接管新归属的任务、释放不再归属的任务，并同步其他节点上修改过的Cron表达式。
+     */
+    public synchronized void rebalance() {
+        try {
+            Map<Long, SyncTask> ownedTasks = new HashMap<>();
+            for (SyncTask task : syncTaskMapper.selectEnabledTasks()) {
+                if (hasCron(task) && clusterCoordinator.isOwner(task.getId())) {
+                    ownedTasks.put(task.getId(), task);
+                }
+            }
+
+            int released = 0;
+            Set<JobKey> localJobs = scheduler.getJobKeys(GroupMatcher.jobGroupEquals(JOB_GROUP));
+            for (JobKey jobKey : localJobs) {
+                Long taskId = parseTaskId(jobKey);
+                if (taskId != null && !ownedTasks.containsKey(taskId)) {
+                    scheduler.deleteJob(jobKey);
+                    released++;
+                }
+            }
+
+            int acquired = 0;
+            for (SyncTask task : ownedTasks.values()) {
+                Trigger trigger = scheduler.getTrigger(new TriggerKey("sync_trigger_" + task.getId(), "sync_trigger_group"));
+                boolean cronChanged = trigger instanceof CronTrigger
+                        && !task.getCronExpression().equals(((CronTrigger) trigger).getCronExpression());
+                if (trigger == null || cronChanged) {
+                    doScheduleTask(task);
+                    acquired++;
+                }
+            }
+            resizeThreadPool();
+
+            if (released > 0 || acquired > 0) {
+                log.info("集群任务对账完成，节点: {}, 接管/更新: {}, 释放: {}", clusterCoordinator.getNodeId(), acquired, released);
+            }
+        } catch (Exception e) {
+            log.error("集群任务对账失败: {}", e.getMessage(), e);
+        }
+    }
+
+    private boolean hasCron(SyncTask task) {
+        return task.getCronExpression() != null && !task.getCronExpression().trim().isEmpty();
+    }
+
+    /**
+     * 按本节点当前调度的任务权重调整调度线程数，在初始化、对账及任务调度变更后调用
+     */
+    private void resizeThreadPool() {
+        try {
+            int totalWeight = 0;
+            for (JobKey jobKey : scheduler.getJobKeys(GroupMatcher.jobGroupEquals(JOB_GROUP))) {
+                JobDetail jobDetail = scheduler.getJobDetail(jobKey);
+                if (jobDetail != null) {
+                    JobDataMap dataMap = jobDetail.getJobDataMap();
+                    totalWeight += dataMap.containsKey(THREAD_WEIGHT_KEY) ? dataMap.getInt(THREAD_WEIGHT_KEY) : 1;
+                }
+            }
+            schedulerThreadPool.resize(totalWeight);
+        } catch (Exception e) {
+            log.error("调整调度线程数失败: {}", e.getMessage(), e);
+        }
+    }
+
+    private static int threadWeight(SyncTask task) {
+        Integer parallelThreads = task.getParallelThreads();
+        return parallelThreads != null && parallelThreads > 0 ? parallelThreads : 1;
+    }
+
+    private Long parseTaskId(JobKey jobKey) {
+        String name = jobKey.getName();
+        if (!name.startsWith("sync_job_")) {
+            return null;
+        }
+        try {
+            return Long.valueOf(name.substring("sync_job_".length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
     public void scheduleTask(SyncTask task) {
+        doScheduleTask(task);
+        resizeThreadPool();
+    }
+
+    private void doScheduleTask(SyncTask task) {
+        if (!clusterCoordinator.isOwner(task.getId())) {
+            // 集群模式下由归属节点在下次对账时调度
+            doUnscheduleTask(task.getId());
+            log.info("任务不归属本节点，由归属节点调度: {}", task.getTaskCode());
+            return;
+        }
+
         try {
             String jobName = "sync_job_" + task.getId();
-            String jobGroup = "sync_job_group";
+            String jobGroup = JOB_GROUP;
             String triggerName = "sync_trigger_" + task.getId();
             String triggerGroup = "sync_trigger_group";
 
@@ -57,6 +171,7 @@ public class QuartzScheduleService implements ApplicationRunner {
                     .usingJobData("taskId", task.getId())
                     .usingJobData("taskCode", task.getTaskCode())
                     .usingJobData("taskName", task.getTaskName())
+                    .usingJobData(THREAD_WEIGHT_KEY, threadWeight(task))
                     .build();
 
             CronTrigger trigger = TriggerBuilder.newTrigger()
@@ -79,9 +194,14 @@ public class QuartzScheduleService implements ApplicationRunner {
     }
 
     public void unscheduleTask(Long taskId) {
+        doUnscheduleTask(taskId);
+        resizeThreadPool();
+    }
+
+    private void doUnscheduleTask(Long taskId) {
         try {
             String jobName = "sync_job_" + taskId;
-            String jobGroup = "sync_job_group";
+            String jobGroup = JOB_GROUP;
             
             JobKey jobKey = new JobKey(jobName, jobGroup);
             
@@ -96,16 +216,17 @@ public class QuartzScheduleService implements ApplicationRunner {
     }
 
     public void rescheduleTask(SyncTask task) {
-        unscheduleTask(task.getId());
+        doUnscheduleTask(task.getId());
         if (task.getIsEnabled() && task.getCronExpression() != null) {
-            scheduleTask(task);
+            doScheduleTask(task);
         }
+        resizeThreadPool();
     }
 
     public void pauseTask(Long taskId) {
         try {
             String jobName = "sync_job_" + taskId;
-            String jobGroup = "sync_job_group";
+            String jobGroup = JOB_GROUP;
             
             JobKey jobKey = new JobKey(jobName, jobGroup);
             scheduler.pauseJob(jobKey);
@@ -120,7 +241,7 @@ public class QuartzScheduleService implements ApplicationRunner {
     public void resumeTask(Long taskId) {
         try {
             String jobName = "sync_job_" + taskId;
-            String jobGroup = "sync_job_group";
+            String jobGroup = JOB_GROUP;
             
             JobKey jobKey = new JobKey(jobName, jobGroup);
             scheduler.resumeJob(jobKey);
@@ -135,10 +256,15 @@ public class QuartzScheduleService implements ApplicationRunner {
     public void triggerTask(Long taskId) {
         try {
             String jobName = "sync_job_" + taskId;
-            String jobGroup = "sync_job_group";
+            String jobGroup = JOB_GROUP;
             
             JobKey jobKey = new JobKey(jobName, jobGroup);
-            scheduler.triggerJob(jobKey);
+            if (scheduler.checkExists(jobKey)) {
+                scheduler.triggerJob(jobKey);
+            } else {
+                // 集群模式下任务可能由其他节点调度，在本节点立即执行一次
+                triggerOnce(taskId);
+            }
             
             log.info("任务手动触发成功: {}", taskId);
             
@@ -147,10 +273,31 @@ public class QuartzScheduleService implements ApplicationRunner {
         }
     }
 
+    private void triggerOnce(Long taskId) throws SchedulerException {
+        SyncTask task = syncTaskMapper.selectById(taskId);
+        if (task == null) {
+            throw new SchedulerException("同步任务不存在: " + taskId);
+        }
+
+        JobDetail jobDetail = JobBuilder.newJob(SyncJob.class)
+                .withIdentity("sync_manual_" + taskId + "_" + System.currentTimeMillis(), "sync_manual_group")
+                .usingJobData("taskId", task.getId())
+                .usingJobData("taskCode", task.getTaskCode())
+                .usingJobData("taskName", task.getTaskName())
+                .build();
+
+        Trigger trigger = TriggerBuilder.newTrigger()
+                .withIdentity(jobDetail.getKey().getName(), "sync_manual_group")
+                .startNow()
+                .build();
+
+        scheduler.scheduleJob(jobDetail, trigger);
+    }
+
     public boolean isTaskScheduled(Long taskId) {
         try {
             String jobName = "sync_job_" + taskId;
-            String jobGroup = "sync_job_group";
+            String jobGroup = JOB_GROUP;
             
             JobKey jobKey = new JobKey(jobName, jobGroup);
             return scheduler.checkExists(jobKey);
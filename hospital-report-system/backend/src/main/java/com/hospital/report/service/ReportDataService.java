@@ -33,8 +33,18 @@ public interface ReportDataService {
 
     List<Map<String, Object>> getDataSourceHistory(Long dataSourceId, Integer days);
 
+    /**
+     * 跨数据源合并（合并配置见 FederatedJoinEngine）
+     * 配置中的 parameters 为各数据源共用的参数，以数据源ID为键的对象为该数据源单独的参数，
+     * 如 {"from": "2024-01-01", "12": {"deptId": 3}}；SQL 数据源只绑定其 SQL 中引用的参数
+     */
     Map<String, Object> combineDataSources(List<Long> dataSourceIds, String combineConfig);
 
+    /**
+     * 并发获取报表全部组件的数据，超过截止时间的组件带错误标记返回
+     */
+    Map<String, Object> fetchReportComponentData(Long reportId, Map<String, Object> parameters);
+
     Map<String, Object> getRealtimeData(Long dataSourceId, Map<String, Object> parameters);
 
     void scheduleDataRefresh(Long dataSourceId, String cronExpression);
@@ -1,5 +1,7 @@
 package com.hospital.report.service;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Map;
 
 /**
@@ -16,6 +18,14 @@ public interface ReportRendererService {
      */
     String renderToHtml(Map<String, Object> reportData, Map<String, Object> options);
     
+    /**
+     * 流式渲染HTML格式报表，边生成边写出
+     * @param reportData 报表数据
+     * @param options 渲染选项
+     * @param out 输出流（调用方负责关闭）
+     */
+    void renderToHtml(Map<String, Object> reportData, Map<String, Object> options, OutputStream out) throws IOException;
+    
     /**
      * 渲染JSON格式报表
      * @param reportData 报表数据
@@ -32,6 +42,14 @@ public interface ReportRendererService {
      */
     String renderToMobileHtml(Map<String, Object> reportData, Map<String, Object> options);
     
+    /**
+     * 流式渲染移动端HTML，边生成边写出
+     * @param reportData 报表数据
+     * @param options 渲染选项
+     * @param out 输出流（调用方负责关闭）
+     */
+    void renderToMobileHtml(Map<String, Object> reportData, Map<String, Object> options, OutputStream out) throws IOException;
+    
     /**
      * 渲染打印版HTML
      * @param reportData 报表数据
@@ -1,5 +1,10 @@
 package com.hospital.report.service;
 
+import java.sql.Clob;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
 import java.util.List;
 import java.util.Map;
 
@@ -9,6 +14,11 @@ public interface SqlExecutionService {
 
     Map<String, Object> executeQuery(String sqlContent, Map<String, Object> parameters, String databaseType, Long userId);
 
+    /**
+     * 以只进游标方式执行查询，结果集不在内存中物化，逐行交给处理器消费（用于大数据量导出）
+     */
+    void executeQueryStreaming(String sqlContent, Map<String, Object> parameters, String databaseType, CursorHandler handler);
+
     String executeQueryAsync(Long templateId, Map<String, Object> parameters, Long userId);
 
     String executeQueryAsync(String sqlContent, Map<String, Object> parameters, String databaseType, Long userId);
@@ -46,4 +56,27 @@ public interface SqlExecutionService {
     Map<String, Object> getExecutionDetails(Long executionId);
 
     void exportExecutionResults(Long executionId, String format);
-}
\ No newline at end of file
+
+    /**
+     * 查询结果的值转换：日期时间转为字符串，大文本读取为字符串
+     * 游标方式读取的行与 executeQuery 返回的行使用相同的转换
+     */
+    static Object toResultValue(Object value) throws SQLException {
+        if (value instanceof Timestamp || value instanceof java.sql.Date || value instanceof Time) {
+            return value.toString();
+        }
+        if (value instanceof Clob) {
+            Clob clob = (Clob) value;
+            return clob.getSubString(1, (int) clob.length());
+        }
+        return value;
+    }
+
+    /**
+     * 游标结果处理器
+     */
+    @FunctionalInterface
+    interface CursorHandler {
+        void handle(ResultSet resultSet) throws Exception;
+    }
+}
@@ -1,5 +1,6 @@
 package com.hospital.report.service;
 
+import com.hospital.report.concurrent.ExecutionMode;
 import com.hospital.report.entity.SyncLog;
 import com.hospital.report.entity.SyncTask;
 import com.hospital.report.sync.SyncContext;
@@ -8,6 +9,7 @@ import com.hospital.report.mapper.SyncTaskMapper;
 import com.hospital.report.mapper.SyncLogMapper;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -28,9 +30,15 @@ public class SyncService {
     private final SyncLogMapper syncLogMapper;
     private final DataExtractor dataExtractor;
     private final ObjectMapper objectMapper;
+    private final ExecutionMode executionMode;
     
     private final Map<String, SyncContext> runningTasks = new ConcurrentHashMap<>();
-    private final ExecutorService executorService = Executors.newCachedThreadPool();
+    private ExecutorService executorService;
+
+    @PostConstruct
+    public void initExecutor() {
+        executorService = executionMode.newTaskExecutor("sync-worker-", Executors::newCachedThreadPool);
+    }
 
     public String executeSync(Long taskId, String triggerType, Long triggerUser) {
         SyncTask task = syncTaskMapper.selectById(taskId);
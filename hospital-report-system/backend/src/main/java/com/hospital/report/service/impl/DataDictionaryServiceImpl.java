@@ -4,11 +4,13 @@ import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hospital.report.dictionary.DictionarySearchIndex;
 import com.hospital.report.entity.DataDictionary;
 import com.hospital.report.entity.FieldUsageLog;
 import com.hospital.report.mapper.DataDictionaryMapper;
 import com.hospital.report.mapper.FieldUsageLogMapper;
 import com.hospital.report.service.DataDictionaryService;
+import com.hospital.report.utils.ExcelSaxReader;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -16,12 +18,19 @@ import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.Serializable;
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
@@ -32,23 +41,71 @@ public class DataDictionaryServiceImpl extends ServiceImpl<DataDictionaryMapper,
     private final DataDictionaryMapper dataDictionaryMapper;
     private final FieldUsageLogMapper fieldUsageLogMapper;
     private final ObjectMapper objectMapper;
+    private final DictionarySearchIndex dictionarySearchIndex;
+
+    private static final int IMPORT_BATCH_SIZE = 1000;
+    private static final int MAX_RETURNED_ERRORS = 1000;
+
+    // 无其他条件时，分页查询从检索索引取出的候选字段上限
+    private static final int MAX_KEYWORD_CANDIDATES = 2000;
+
+    // 按其他条件筛选候选字段时每次查询的ID数量
+    private static final int KEYWORD_FILTER_BATCH_SIZE = 1000;
+
+    @Override
+    public boolean save(DataDictionary entity) {
+        boolean saved = super.save(entity);
+        if (saved) {
+            afterCommit(() -> dictionarySearchIndex.upsert(entity));
+        }
+        return saved;
+    }
+
+    @Override
+    public boolean saveBatch(Collection<DataDictionary> entityList, int batchSize) {
+        boolean saved = super.saveBatch(entityList, batchSize);
+        if (saved) {
+            List<DataDictionary> fields = new ArrayList<>(entityList);
+            afterCommit(() -> fields.forEach(dictionarySearchIndex::upsert));
+        }
+        return saved;
+    }
+
+    @Override
+    public boolean updateById(DataDictionary entity) {
+        boolean updated = super.updateById(entity);
+        // 只更新审批等字段时不影响检索内容，无需重建该字段的索引
+        if (updated && (entity.getFieldCode() != null || entity.getFieldNameCn() != null
+                || entity.getFieldNameEn() != null || entity.getBusinessMeaning() != null)) {
+            Long fieldId = entity.getId();
+            afterCommit(() -> dictionarySearchIndex.upsert(this.getById(fieldId)));
+        }
+        return updated;
+    }
+
+    @Override
+    public boolean removeById(Serializable id) {
+        boolean removed = super.removeById(id);
+        if (removed) {
+            Long fieldId = Long.valueOf(id.toString());
+            afterCommit(() -> dictionarySearchIndex.remove(fieldId));
+        }
+        return removed;
+    }
 
     @Override
     public IPage<Map<String, Object>> getDataDictionaryPage(Integer current, Integer size,
                                                            String keyword, Long categoryId,
                                                            String dataType, String approvalStatus) {
+        if (keyword != null && !keyword.trim().isEmpty()) {
+            return getKeywordPage(current, size, keyword, categoryId, dataType, approvalStatus);
+        }
+
         Page<DataDictionary> page = new Page<>(current, size);
         QueryWrapper<DataDictionary> wrapper = new QueryWrapper<>();
         
         wrapper.eq("is_deleted", false);
         
-        if (keyword != null && !keyword.trim().isEmpty()) {
-            wrapper.and(w -> w.like("field_name_cn", keyword)
-                    .or().like("field_name_en", keyword)
-                    .or().like("field_code", keyword)
-                    .or().like("business_meaning", keyword));
-        }
-        
         if (categoryId != null) {
             wrapper.eq("category_id", categoryId);
         }
@@ -66,12 +123,76 @@ public class DataDictionaryServiceImpl extends ServiceImpl<DataDictionaryMapper,
         return dataDictionaryMapper.selectDictionaryPage(page, wrapper);
     }
 
+    /**
+     * 关键字分页：在检索索引中按相关度排序，其他条件在数据库中按候选ID分批筛选，分页后按相关度返回当前页
+     * 有其他条件时不截断候选字段，避免相关度较低但满足条件的字段被截掉
+     */
+    private IPage<Map<String, Object>> getKeywordPage(Integer current, Integer size, String keyword, Long categoryId,
+                                                      String dataType, String approvalStatus) {
+        boolean filtered = categoryId != null || (dataType != null && !dataType.trim().isEmpty())
+                || (approvalStatus != null && !approvalStatus.trim().isEmpty());
+        List<Long> rankedIds = filtered
+                ? dictionarySearchIndex.searchAll(keyword)
+                : dictionarySearchIndex.search(keyword, MAX_KEYWORD_CANDIDATES);
+
+        if (filtered && !rankedIds.isEmpty()) {
+            Set<Long> matchedIds = new HashSet<>();
+            for (int start = 0; start < rankedIds.size(); start += KEYWORD_FILTER_BATCH_SIZE) {
+                QueryWrapper<DataDictionary> wrapper = new QueryWrapper<DataDictionary>()
+                        .select("id")
+                        .eq("is_deleted", false)
+                        .in("id", rankedIds.subList(start, Math.min(start + KEYWORD_FILTER_BATCH_SIZE, rankedIds.size())));
+                if (categoryId != null) {
+                    wrapper.eq("category_id", categoryId);
+                }
+                if (dataType != null && !dataType.trim().isEmpty()) {
+                    wrapper.eq("data_type", dataType);
+                }
+                if (approvalStatus != null && !approvalStatus.trim().isEmpty()) {
+                    wrapper.eq("approval_status", approvalStatus);
+                }
+                for (Object id : this.listObjs(wrapper)) {
+                    matchedIds.add(((Number) id).longValue());
+                }
+            }
+            rankedIds = rankedIds.stream().filter(matchedIds::contains).collect(Collectors.toList());
+        }
+
+        Page<Map<String, Object>> page = new Page<>(current, size, rankedIds.size());
+        int from = (int) Math.min(page.offset(), rankedIds.size());
+        List<Long> pageIds = rankedIds.subList(from, (int) Math.min(from + page.getSize(), rankedIds.size()));
+        if (pageIds.isEmpty()) {
+            return page.setRecords(new ArrayList<>());
+        }
+
+        // 按相关度顺序返回当前页
+        Map<Long, Map<String, Object>> rows = new HashMap<>();
+        for (Map<String, Object> row : dataDictionaryMapper.selectDictionaryByIds(new ArrayList<>(pageIds))) {
+            rows.put(((Number) row.get("id")).longValue(), row);
+        }
+        return page.setRecords(pageIds.stream()
+                .map(rows::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList()));
+    }
+
     @Override
     public List<DataDictionary> searchFields(String keyword, Integer limit) {
         if (limit == null || limit <= 0) {
             limit = 20;
         }
-        return dataDictionaryMapper.searchFields(keyword, limit);
+        List<Long> fieldIds = dictionarySearchIndex.search(keyword, limit);
+        if (fieldIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // 按检索相关度排序返回
+        Map<Long, DataDictionary> fieldMap = this.listByIds(fieldIds).stream()
+                .collect(Collectors.toMap(DataDictionary::getId, field -> field));
+        return fieldIds.stream()
+                .map(fieldMap::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
     }
 
     @Override
@@ -151,56 +272,123 @@ public class DataDictionaryServiceImpl extends ServiceImpl<DataDictionaryMapper,
     }
 
     @Override
-    @Transactional
     public Map<String, Object> importFields(MultipartFile file, Long userId) {
-        Map<String, Object> result = new HashMap<>();
-        List<String> errors = new ArrayList<>();
-        int successCount = 0;
-        int errorCount = 0;
+        File tempFile = null;
+        try {
+            // SAX读取需要随机访问zip条目，先落盘到临时文件，避免把整个上传内容读入内存
+            tempFile = File.createTempFile("dict-import-", ".xlsx");
+            file.transferTo(tempFile);
+            return importFields(tempFile, userId, null);
+        } catch (IOException e) {
+            log.error("导入文件保存失败", e);
+            Map<String, Object> result = new HashMap<>();
+            result.put("successCount", 0);
+            result.put("errorCount", 0);
+            result.put("errors", Collections.singletonList("文件解析失败：" + e.getMessage()));
+            return result;
+        } finally {
+            if (tempFile != null && !tempFile.delete()) {
+                tempFile.deleteOnExit();
+            }
+        }
+    }
 
-        try (Workbook workbook = new XSSFWorkbook(file.getInputStream())) {
-            Sheet sheet = workbook.getSheetAt(0);
-            
-            // 跳过标题行
-            for (int i = 1; i <= sheet.getLastRowNum(); i++) {
-                Row row = sheet.getRow(i);
-                if (row == null) continue;
-                
+    @Override
+    public Map<String, Object> importFields(File file, Long userId, Consumer<Map<String, Object>> progressListener) {
+        ImportContext context = new ImportContext(userId, progressListener);
+
+        // 一次性加载已有字段编码，后续重复检查只查内存
+        context.existingCodes.addAll(dataDictionaryMapper.selectAllFieldCodes());
+
+        try {
+            ExcelSaxReader.readFirstSheet(file, (rowIndex, values) -> {
+                // 跳过标题行
+                if (rowIndex == 0) {
+                    return;
+                }
+                context.processedRows++;
+                handleImportRow(context, rowIndex + 1, values);
+                if (context.processedRows % IMPORT_BATCH_SIZE == 0) {
+                    flushImportBatch(context);
+                }
+            });
+            flushImportBatch(context);
+        } catch (Exception e) {
+            log.error("导入文件解析失败", e);
+            flushImportBatch(context);
+            context.addError("文件解析失败：" + e.getMessage());
+        }
+
+        Map<String, Object> result = context.toProgress(false);
+        result.put("errors", context.errors);
+        result.put("truncatedErrors", context.errorCount > context.errors.size());
+        log.info("数据字典导入完成，处理 {} 行，成功 {} 行，失败 {} 行",
+            context.processedRows, context.successCount, context.errorCount);
+        return result;
+    }
+
+    private void handleImportRow(ImportContext context, int excelRow, List<String> values) {
+        if (values.stream().allMatch(value -> value == null || value.trim().isEmpty())) {
+            return;
+        }
+
+        try {
+            DataDictionary field = parseValuesToField(values);
+            if (field.getFieldCode() == null || field.getFieldCode().trim().isEmpty()) {
+                context.addError("第" + excelRow + "行：字段编码不能为空");
+                return;
+            }
+            field.setFieldCode(field.getFieldCode().trim());
+
+            // 检查字段编码是否重复（包括文件内重复）
+            if (!context.existingCodes.add(field.getFieldCode())) {
+                context.addError("第" + excelRow + "行：字段编码已存在 - " + field.getFieldCode());
+                return;
+            }
+
+            LocalDateTime now = LocalDateTime.now();
+            field.setCreatedBy(context.userId);
+            field.setUpdatedBy(context.userId);
+            field.setCreatedTime(now);
+            field.setUpdatedTime(now);
+            field.setStatus(1);
+            field.setIsDeleted(false);
+
+            context.pending.add(field);
+            context.pendingRows.add(excelRow);
+
+        } catch (Exception e) {
+            context.addError("第" + excelRow + "行：" + e.getMessage());
+        }
+    }
+
+    private void flushImportBatch(ImportContext context) {
+        if (context.pending.isEmpty()) {
+            context.publishProgress();
+            return;
+        }
+
+        try {
+            this.saveBatch(context.pending, IMPORT_BATCH_SIZE);
+            context.successCount += context.pending.size();
+        } catch (Exception e) {
+            // 批量写入失败时逐行重试，定位出错的行
+            log.warn("批量导入失败，改为逐行写入: {}", e.getMessage());
+            for (int i = 0; i < context.pending.size(); i++) {
+                DataDictionary field = context.pending.get(i);
                 try {
-                    DataDictionary field = parseRowToField(row);
-                    field.setCreatedBy(userId);
-                    field.setUpdatedBy(userId);
-                    field.setCreatedTime(LocalDateTime.now());
-                    field.setUpdatedTime(LocalDateTime.now());
-                    field.setStatus(1);
-                    field.setIsDeleted(false);
-                    
-                    // 检查字段编码是否重复
-                    if (checkFieldCodeExists(field.getFieldCode(), null)) {
-                        errors.add("第" + (i + 1) + "行：字段编码已存在 - " + field.getFieldCode());
-                        errorCount++;
-                        continue;
-                    }
-                    
                     this.save(field);
-                    successCount++;
-                    
-                } catch (Exception e) {
-                    errors.add("第" + (i + 1) + "行：" + e.getMessage());
-                    errorCount++;
+                    context.successCount++;
+                } catch (Exception rowError) {
+                    context.existingCodes.remove(field.getFieldCode());
+                    context.addError("第" + context.pendingRows.get(i) + "行：" + rowError.getMessage());
                 }
             }
-            
-        } catch (IOException e) {
-            log.error("导入文件解析失败", e);
-            errors.add("文件解析失败：" + e.getMessage());
         }
 
-        result.put("successCount", successCount);
-        result.put("errorCount", errorCount);
-        result.put("errors", errors);
-        
-        return result;
+        context.pending.clear();
+        context.pendingRows.clear();
+        context.publishProgress();
     }
 
     @Override
@@ -451,29 +639,29 @@ public class DataDictionaryServiceImpl extends ServiceImpl<DataDictionaryMapper,
         return lineage;
     }
 
-    private DataDictionary parseRowToField(Row row) {
+    private DataDictionary parseValuesToField(List<String> values) {
         DataDictionary field = new DataDictionary();
         
-        field.setFieldCode(getCellStringValue(row.getCell(0)));
-        field.setFieldNameCn(getCellStringValue(row.getCell(1)));
-        field.setFieldNameEn(getCellStringValue(row.getCell(2)));
-        field.setDataType(getCellStringValue(row.getCell(3)));
-        field.setDataLength(getCellIntValue(row.getCell(4)));
-        field.setDataPrecision(getCellIntValue(row.getCell(5)));
-        field.setDataScale(getCellIntValue(row.getCell(6)));
-        field.setIsNullable(getCellBooleanValue(row.getCell(7)));
-        field.setDefaultValue(getCellStringValue(row.getCell(8)));
-        field.setBusinessMeaning(getCellStringValue(row.getCell(9)));
-        field.setDataSource(getCellStringValue(row.getCell(10)));
-        field.setUpdateFrequency(getCellStringValue(row.getCell(11)));
-        field.setOwnerUser(getCellStringValue(row.getCell(12)));
-        field.setOwnerDepartment(getCellStringValue(row.getCell(13)));
-        field.setTableName(getCellStringValue(row.getCell(14)));
-        field.setColumnName(getCellStringValue(row.getCell(15)));
-        field.setValueRange(getCellStringValue(row.getCell(16)));
-        field.setSampleValues(getCellStringValue(row.getCell(17)));
-        field.setTags(getCellStringValue(row.getCell(18)));
-        field.setRemark(getCellStringValue(row.getCell(19)));
+        field.setFieldCode(getStringValue(values, 0));
+        field.setFieldNameCn(getStringValue(values, 1));
+        field.setFieldNameEn(getStringValue(values, 2));
+        field.setDataType(getStringValue(values, 3));
+        field.setDataLength(getIntValue(values, 4));
+        field.setDataPrecision(getIntValue(values, 5));
+        field.setDataScale(getIntValue(values, 6));
+        field.setIsNullable(getBooleanValue(values, 7));
+        field.setDefaultValue(getStringValue(values, 8));
+        field.setBusinessMeaning(getStringValue(values, 9));
+        field.setDataSource(getStringValue(values, 10));
+        field.setUpdateFrequency(getStringValue(values, 11));
+        field.setOwnerUser(getStringValue(values, 12));
+        field.setOwnerDepartment(getStringValue(values, 13));
+        field.setTableName(getStringValue(values, 14));
+        field.setColumnName(getStringValue(values, 15));
+        field.setValueRange(getStringValue(values, 16));
+        field.setSampleValues(getStringValue(values, 17));
+        field.setTags(getStringValue(values, 18));
+        field.setRemark(getStringValue(values, 19));
         
         // 设置默认值
         field.setUsageCount(0L);
@@ -484,18 +672,92 @@ public class DataDictionaryServiceImpl extends ServiceImpl<DataDictionaryMapper,
         return field;
     }
 
-    private String getCellStringValue(Cell cell) {
-        if (cell == null) return null;
-        return cell.getStringCellValue();
+    private String getStringValue(List<String> values, int index) {
+        if (index >= values.size()) return null;
+        return values.get(index);
     }
 
-    private Integer getCellIntValue(Cell cell) {
-        if (cell == null) return null;
-        return (int) cell.getNumericCellValue();
+    private Integer getIntValue(List<String> values, int index) {
+        String value = getStringValue(values, index);
+        if (value == null || value.trim().isEmpty()) return null;
+        try {
+            return new BigDecimal(value.trim()).intValue();
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("第" + (index + 1) + "列不是有效数字 - " + value);
+        }
+    }
+
+    private Boolean getBooleanValue(List<String> values, int index) {
+        String value = getStringValue(values, index);
+        if (value == null) return false;
+        String normalized = value.trim();
+        return "TRUE".equalsIgnoreCase(normalized) || "1".equals(normalized) || "是".equals(normalized)
+            || "Y".equalsIgnoreCase(normalized);
+    }
+
+    /**
+     * 在当前事务提交后执行，无事务时立即执行
+     */
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
     }
 
-    private Boolean getCellBooleanValue(Cell cell) {
-        if (cell == null) return false;
-        return cell.getBooleanCellValue();
+    /**
+     * 单次导入的状态
+     */
+    private static class ImportContext {
+        private final Long userId;
+        private final Consumer<Map<String, Object>> progressListener;
+        private final Set<String> existingCodes = new HashSet<>();
+        private final List<DataDictionary> pending = new ArrayList<>(IMPORT_BATCH_SIZE);
+        private final List<Integer> pendingRows = new ArrayList<>(IMPORT_BATCH_SIZE);
+        private final List<String> errors = new ArrayList<>();
+        private final List<String> newErrors = new ArrayList<>();
+        private int processedRows;
+        private int successCount;
+        private int errorCount;
+
+        ImportContext(Long userId, Consumer<Map<String, Object>> progressListener) {
+            this.userId = userId;
+            this.progressListener = progressListener;
+        }
+
+        void addError(String error) {
+            errorCount++;
+            // 结果中只保留前若干条错误，完整错误通过进度回调推送
+            if (errors.size() < MAX_RETURNED_ERRORS) {
+                errors.add(error);
+            }
+            if (progressListener != null) {
+                newErrors.add(error);
+            }
+        }
+
+        void publishProgress() {
+            if (progressListener != null) {
+                progressListener.accept(toProgress(true));
+                newErrors.clear();
+            }
+        }
+
+        Map<String, Object> toProgress(boolean includeNewErrors) {
+            Map<String, Object> progress = new HashMap<>();
+            progress.put("processedRows", processedRows);
+            progress.put("successCount", successCount);
+            progress.put("errorCount", errorCount);
+            if (includeNewErrors) {
+                progress.put("newErrors", new ArrayList<>(newErrors));
+            }
+            return progress;
+        }
     }
-}
\ No newline at end of file
+}
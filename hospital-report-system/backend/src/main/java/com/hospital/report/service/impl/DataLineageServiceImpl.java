@@ -5,6 +5,8 @@ import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.hospital.report.entity.DataLineage;
 import com.hospital.report.entity.LineageImpactAnalysis;
 import com.hospital.report.entity.LineageNode;
+import com.hospital.report.lineage.LineageGraphEngine;
+import com.hospital.report.lineage.NamingConventionDiscovery;
 import com.hospital.report.mapper.DataLineageMapper;
 import com.hospital.report.mapper.LineageImpactAnalysisMapper;
 import com.hospital.report.mapper.LineageNodeMapper;
@@ -14,9 +16,12 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -29,6 +34,8 @@ public class DataLineageServiceImpl extends ServiceImpl<DataLineageMapper, DataL
     private final LineageNodeMapper lineageNodeMapper;
     private final LineageImpactAnalysisMapper impactAnalysisMapper;
     private final ObjectMapper objectMapper;
+    private final LineageGraphEngine lineageGraphEngine;
+    private final NamingConventionDiscovery namingConventionDiscovery;
 
     @Override
     public Map<String, Object> getNodeLineage(String nodeId, Integer maxDepth, String direction) {
@@ -153,6 +160,18 @@ public class DataLineageServiceImpl extends ServiceImpl<DataLineageMapper, DataL
         }
         
         this.save(lineage);
+
+        // 事务提交后再更新内存血缘图，回滚时不会留下脏边
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    lineageGraphEngine.addEdge(sourceNodeId, targetNodeId, relationType);
+                }
+            });
+        } else {
+            lineageGraphEngine.addEdge(sourceNodeId, targetNodeId, relationType);
+        }
         
         log.info("创建血缘关系: {} -> {} ({})", sourceNodeId, targetNodeId, relationType);
     }
@@ -169,10 +188,10 @@ public class DataLineageServiceImpl extends ServiceImpl<DataLineageMapper, DataL
         long startTime = System.currentTimeMillis();
         
         // 获取下游影响
-        List<Map<String, Object>> downstreamImpacts = analyzeDownstreamImpact(nodeId, analysisDepth);
+        List<Map<String, Object>> downstreamImpacts = lineageGraphEngine.traverse(nodeId, analysisDepth, true);
         
         // 获取上游依赖
-        List<Map<String, Object>> upstreamDependencies = analyzeUpstreamDependencies(nodeId, analysisDepth);
+        List<Map<String, Object>> upstreamDependencies = lineageGraphEngine.traverse(nodeId, analysisDepth, false);
         
         // 计算影响范围
         Set<String> allAffectedNodes = new HashSet<>();
@@ -242,6 +261,9 @@ public class DataLineageServiceImpl extends ServiceImpl<DataLineageMapper, DataL
         
         // 热门表关系
         stats.put("topTableRelations", dataLineageMapper.getTopTableRelations(10));
+
+        // 内存血缘图状态
+        stats.put("graphEngine", lineageGraphEngine.getStatistics());
         
         return stats;
     }
@@ -271,16 +293,34 @@ public class DataLineageServiceImpl extends ServiceImpl<DataLineageMapper, DataL
 
     @Override
     public List<Map<String, Object>> discoverLineageRelations(String systemSource, String discoveryMethod) {
+        List<Map<String, Object>> discoveredRelations = new ArrayList<>();
+        discoverLineageRelations(systemSource, discoveryMethod, discoveredRelations::add);
+        return discoveredRelations;
+    }
+
+    @Override
+    public Map<String, Object> discoverLineageRelations(String systemSource, String discoveryMethod,
+                                                        Consumer<Map<String, Object>> relationConsumer) {
         // 这里可以实现自动发现逻辑
         // 例如：分析SQL语句、解析配置文件、扫描数据流等
-        List<Map<String, Object>> discoveredRelations = new ArrayList<>();
-        
-        // 示例：基于命名规则的发现
-        if ("NAMING_CONVENTION".equals(discoveryMethod)) {
-            discoveredRelations = discoverByNamingConvention(systemSource);
+        long startTime = System.currentTimeMillis();
+        int nodeCount = 0;
+        int relationCount = 0;
+
+        // 基于命名规则的发现
+        if (NamingConventionDiscovery.DISCOVERY_METHOD.equals(discoveryMethod)) {
+            List<LineageNode> nodes = lineageNodeMapper.getNodesBySystem(systemSource);
+            nodeCount = nodes.size();
+            relationCount = namingConventionDiscovery.discover(nodes, relationConsumer);
         }
-        
-        return discoveredRelations;
+
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("systemSource", systemSource);
+        summary.put("discoveryMethod", discoveryMethod);
+        summary.put("nodeCount", nodeCount);
+        summary.put("relationCount", relationCount);
+        summary.put("executionTime", System.currentTimeMillis() - startTime);
+        return summary;
     }
 
     @Override
@@ -308,8 +348,8 @@ public class DataLineageServiceImpl extends ServiceImpl<DataLineageMapper, DataL
 
     @Override
     public List<Map<String, Object>> getLineagePath(String sourceNodeId, String targetNodeId) {
-        // 使用广度优先搜索找到路径
-        return findShortestPath(sourceNodeId, targetNodeId);
+        // 在内存血缘图上广度优先搜索，再补充路径上各段的关系信息
+        return buildPath(lineageGraphEngine.findShortestPath(sourceNodeId, targetNodeId));
     }
 
     @Override
@@ -360,30 +400,36 @@ public class DataLineageServiceImpl extends ServiceImpl<DataLineageMapper, DataL
 
     @Override
     public List<Map<String, Object>> detectCircularDependencies() {
-        // 检测循环依赖的算法实现
-        return new ArrayList<>(); // 简化实现
+        // 每个强连通分量即一组相互依赖的节点
+        List<List<String>> cycles = lineageGraphEngine.findCycles();
+        cycles.sort((a, b) -> Integer.compare(b.size(), a.size()));
+
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (int i = 0; i < cycles.size(); i++) {
+            Map<String, Object> cycle = new HashMap<>();
+            cycle.put("cycleId", i + 1);
+            cycle.put("nodeIds", cycles.get(i));
+            cycle.put("nodeCount", cycles.get(i).size());
+            result.add(cycle);
+        }
+        return result;
     }
 
     @Override
     public List<LineageNode> getOrphanNodes() {
-        // 查找没有任何血缘关系的孤立节点
-        QueryWrapper<LineageNode> wrapper = new QueryWrapper<>();
-        wrapper.eq("is_deleted", false);
-        
-        List<LineageNode> allNodes = lineageNodeMapper.selectList(wrapper);
-        Set<String> connectedNodes = new HashSet<>();
-        
-        // 获取所有有连接的节点
-        List<DataLineage> allLineages = this.list(new QueryWrapper<DataLineage>().eq("is_deleted", false));
-        for (DataLineage lineage : allLineages) {
-            connectedNodes.add(lineage.getSourceId());
-            connectedNodes.add(lineage.getTargetId());
-        }
-        
-        // 过滤出孤立节点
-        return allNodes.stream()
-                .filter(node -> !connectedNodes.contains(node.getNodeId()))
+        // 查找没有任何血缘关系的孤立节点，连接关系由内存血缘图判断
+        List<String> orphanIds = lineageNodeMapper.selectActiveNodeIds().stream()
+                .filter(nodeId -> !lineageGraphEngine.hasEdges(nodeId))
                 .collect(Collectors.toList());
+
+        List<LineageNode> orphanNodes = new ArrayList<>();
+        for (int i = 0; i < orphanIds.size(); i += 1000) {
+            QueryWrapper<LineageNode> wrapper = new QueryWrapper<>();
+            wrapper.in("node_id", orphanIds.subList(i, Math.min(i + 1000, orphanIds.size())))
+                   .eq("is_deleted", false);
+            orphanNodes.addAll(lineageNodeMapper.selectList(wrapper));
+        }
+        return orphanNodes;
     }
 
     @Override
@@ -457,76 +503,6 @@ public class DataLineageServiceImpl extends ServiceImpl<DataLineageMapper, DataL
         return edgeData;
     }
 
-    private List<Map<String, Object>> analyzeDownstreamImpact(String nodeId, Integer depth) {
-        List<Map<String, Object>> impacts = new ArrayList<>();
-        Set<String> visited = new HashSet<>();
-        Queue<Map<String, Object>> queue = new LinkedList<>();
-        
-        queue.offer(Map.of("nodeId", nodeId, "level", 0));
-        visited.add(nodeId);
-        
-        while (!queue.isEmpty() && queue.peek() != null) {
-            Map<String, Object> current = queue.poll();
-            String currentNodeId = (String) current.get("nodeId");
-            Integer currentLevel = (Integer) current.get("level");
-            
-            if (currentLevel >= depth) continue;
-            
-            List<Map<String, Object>> downstreams = dataLineageMapper.getDownstreamLineages(currentNodeId);
-            for (Map<String, Object> downstream : downstreams) {
-                String targetId = (String) downstream.get("target_id");
-                if (!visited.contains(targetId)) {
-                    visited.add(targetId);
-                    queue.offer(Map.of("nodeId", targetId, "level", currentLevel + 1));
-                    
-                    Map<String, Object> impact = new HashMap<>();
-                    impact.put("nodeId", targetId);
-                    impact.put("level", currentLevel + 1);
-                    impact.put("relationType", downstream.get("relation_type"));
-                    impact.put("impactType", "DOWNSTREAM");
-                    impacts.add(impact);
-                }
-            }
-        }
-        
-        return impacts;
-    }
-
-    private List<Map<String, Object>> analyzeUpstreamDependencies(String nodeId, Integer depth) {
-        List<Map<String, Object>> dependencies = new ArrayList<>();
-        Set<String> visited = new HashSet<>();
-        Queue<Map<String, Object>> queue = new LinkedList<>();
-        
-        queue.offer(Map.of("nodeId", nodeId, "level", 0));
-        visited.add(nodeId);
-        
-        while (!queue.isEmpty()) {
-            Map<String, Object> current = queue.poll();
-            String currentNodeId = (String) current.get("nodeId");
-            Integer currentLevel = (Integer) current.get("level");
-            
-            if (currentLevel >= depth) continue;
-            
-            List<Map<String, Object>> upstreams = dataLineageMapper.getUpstreamLineages(currentNodeId);
-            for (Map<String, Object> upstream : upstreams) {
-                String sourceId = (String) upstream.get("source_id");
-                if (!visited.contains(sourceId)) {
-                    visited.add(sourceId);
-                    queue.offer(Map.of("nodeId", sourceId, "level", currentLevel + 1));
-                    
-                    Map<String, Object> dependency = new HashMap<>();
-                    dependency.put("nodeId", sourceId);
-                    dependency.put("level", currentLevel + 1);
-                    dependency.put("relationType", upstream.get("relation_type"));
-                    dependency.put("impactType", "UPSTREAM");
-                    dependencies.add(dependency);
-                }
-            }
-        }
-        
-        return dependencies;
-    }
-
     private String calculateRiskLevel(int affectedNodeCount, String changeType) {
         if (affectedNodeCount >= 10 || "DELETE".equals(changeType)) {
             return "CRITICAL";
@@ -600,39 +576,6 @@ public class DataLineageServiceImpl extends ServiceImpl<DataLineageMapper, DataL
         return result;
     }
 
-    private List<Map<String, Object>> discoverByNamingConvention(String systemSource) {
-        // 基于命名规则发现血缘关系的示例实现
-        List<Map<String, Object>> relations = new ArrayList<>();
-        
-        // 获取系统中的所有节点
-        List<LineageNode> nodes = lineageNodeMapper.getNodesBySystem(systemSource);
-        
-        // 基于命名规则推断关系
-        for (LineageNode sourceNode : nodes) {
-            for (LineageNode targetNode : nodes) {
-                if (isRelatedByNaming(sourceNode, targetNode)) {
-                    Map<String, Object> relation = new HashMap<>();
-                    relation.put("sourceId", sourceNode.getNodeId());
-                    relation.put("targetId", targetNode.getNodeId());
-                    relation.put("relationType", "DERIVED");
-                    relation.put("confidence", 0.6);
-                    relation.put("discoveryMethod", "NAMING_CONVENTION");
-                    relations.add(relation);
-                }
-            }
-        }
-        
-        return relations;
-    }
-
-    private boolean isRelatedByNaming(LineageNode source, LineageNode target) {
-        // 简单的命名规则检查
-        if (source.getColumnName() != null && target.getColumnName() != null) {
-            return target.getColumnName().startsWith(source.getColumnName() + "_");
-        }
-        return false;
-    }
-
     private Map<String, Object> analyzeFlowCharacteristics(List<Map<String, Object>> inputFlows,
                                                           List<Map<String, Object>> outputFlows) {
         Map<String, Object> characteristics = new HashMap<>();
@@ -656,64 +599,29 @@ public class DataLineageServiceImpl extends ServiceImpl<DataLineageMapper, DataL
         return characteristics;
     }
 
-    private List<Map<String, Object>> findShortestPath(String sourceNodeId, String targetNodeId) {
-        // 使用BFS算法找到最短路径
-        Queue<String> queue = new LinkedList<>();
-        Map<String, String> parent = new HashMap<>();
-        Set<String> visited = new HashSet<>();
-        
-        queue.offer(sourceNodeId);
-        visited.add(sourceNodeId);
-        parent.put(sourceNodeId, null);
-        
-        while (!queue.isEmpty()) {
-            String currentNode = queue.poll();
-            
-            if (currentNode.equals(targetNodeId)) {
-                // 找到目标，构建路径
-                return buildPath(parent, sourceNodeId, targetNodeId);
-            }
-            
-            List<Map<String, Object>> downstreams = dataLineageMapper.getDownstreamLineages(currentNode);
-            for (Map<String, Object> downstream : downstreams) {
-                String nextNode = (String) downstream.get("target_id");
-                if (!visited.contains(nextNode)) {
-                    visited.add(nextNode);
-                    parent.put(nextNode, currentNode);
-                    queue.offer(nextNode);
-                }
-            }
-        }
-        
-        return new ArrayList<>(); // 没有找到路径
-    }
-
-    private List<Map<String, Object>> buildPath(Map<String, String> parent, String source, String target) {
+    private List<Map<String, Object>> buildPath(List<String> nodePath) {
         List<Map<String, Object>> path = new ArrayList<>();
-        String current = target;
-        
-        while (current != null && !current.equals(source)) {
-            String prev = parent.get(current);
-            if (prev != null) {
-                // 查找这两个节点之间的血缘关系
-                QueryWrapper<DataLineage> wrapper = new QueryWrapper<>();
-                wrapper.eq("source_id", prev)
-                       .eq("target_id", current)
-                       .eq("is_deleted", false);
-                DataLineage lineage = this.getOne(wrapper);
-                
-                if (lineage != null) {
-                    Map<String, Object> pathSegment = new HashMap<>();
-                    pathSegment.put("source", prev);
-                    pathSegment.put("target", current);
-                    pathSegment.put("relationType", lineage.getRelationType());
-                    pathSegment.put("transformRule", lineage.getTransformRule());
-                    path.add(0, pathSegment); // 插入到开头
-                }
-            }
-            current = prev;
+
+        for (int i = 1; i < nodePath.size(); i++) {
+            String prev = nodePath.get(i - 1);
+            String current = nodePath.get(i);
+
+            // 查找这两个节点之间的血缘关系
+            QueryWrapper<DataLineage> wrapper = new QueryWrapper<>();
+            wrapper.eq("source_id", prev)
+                   .eq("target_id", current)
+                   .eq("is_deleted", false)
+                   .last("LIMIT 1");
+            DataLineage lineage = this.getOne(wrapper);
+
+            Map<String, Object> pathSegment = new HashMap<>();
+            pathSegment.put("source", prev);
+            pathSegment.put("target", current);
+            pathSegment.put("relationType", lineage != null ? lineage.getRelationType() : null);
+            pathSegment.put("transformRule", lineage != null ? lineage.getTransformRule() : null);
+            path.add(pathSegment);
         }
-        
+
         return path;
     }
 
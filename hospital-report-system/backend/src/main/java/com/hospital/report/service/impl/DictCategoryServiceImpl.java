@@ -3,6 +3,8 @@ package com.hospital.report.service.impl;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.hospital.report.dto.*;
 import com.hospital.report.entity.DictCategory;
 import com.hospital.report.entity.DictField;
@@ -11,17 +13,28 @@ import com.hospital.report.mapper.DictCategoryMapper;
 import com.hospital.report.mapper.DictFieldMapper;
 import com.hospital.report.service.DictCategoryService;
 import lombok.RequiredArgsConstructor;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.CollectionUtils;
+import org.springframework.util.DigestUtils;
 import org.springframework.util.StringUtils;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
 /**
@@ -37,6 +50,45 @@ public class DictCategoryServiceImpl extends ServiceImpl<DictCategoryMapper, Dic
 
     private final DictCategoryMapper dictCategoryMapper;
     private final DictFieldMapper dictFieldMapper;
+    private final ObjectMapper objectMapper;
+
+    // 保留的历史快照数，客户端版本早于此范围时返回全量树
+    private static final int TREE_HISTORY_SIZE = 20;
+
+    @Value("${dict.tree.refresh-minutes:5}")
+    private int treeRefreshMinutes;
+
+    private final ScheduledExecutorService treeRebuildExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "dict-tree-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicBoolean treeRebuildPending = new AtomicBoolean();
+
+    // 重建快照期间读取数据库，使用ReentrantLock避免钉住虚拟线程
+    private final ReentrantLock treeLock = new ReentrantLock();
+
+    // 当前快照，首次访问时构建
+    private volatile TreeSnapshots treeSnapshots;
+
+    // 历史快照，按版本递增排列，由treeLock保护
+    private final Deque<TreeSnapshots> treeHistory = new ArrayDeque<>();
+
+    @PostConstruct
+    public void initTreeRefresh() {
+        // 兜底定时重建，覆盖绕过服务层直接修改数据的情况；内容未变化时版本不变
+        treeRebuildExecutor.scheduleWithFixedDelay(() -> {
+            if (treeSnapshots != null) {
+                rebuildTreeSnapshotsQuietly();
+            }
+        }, treeRefreshMinutes, treeRefreshMinutes, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void shutdownTreeRefresh() {
+        treeRebuildExecutor.shutdownNow();
+    }
 
     @Override
     @Cacheable(value = "dict:category:tree", key = "'all'")
@@ -136,6 +188,7 @@ public class DictCategoryServiceImpl extends ServiceImpl<DictCategoryMapper, Dic
         save(category);
         
         log.info("分类新增成功，ID：{}", category.getId());
+        scheduleTreeRebuild();
         return convertToVO(category);
     }
 
@@ -185,6 +238,7 @@ public class DictCategoryServiceImpl extends ServiceImpl<DictCategoryMapper, Dic
         updateById(category);
         
         log.info("分类修改成功，ID：{}", id);
+        scheduleTreeRebuild();
         return convertToVO(category);
     }
 
@@ -200,6 +254,7 @@ public class DictCategoryServiceImpl extends ServiceImpl<DictCategoryMapper, Dic
         
         if (result) {
             log.info("分类删除成功，ID：{}", id);
+            scheduleTreeRebuild();
         } else {
             log.error("分类删除失败，ID：{}", id);
         }
@@ -226,6 +281,7 @@ public class DictCategoryServiceImpl extends ServiceImpl<DictCategoryMapper, Dic
         
         if (result) {
             log.info("分类批量删除成功，数量：{}", ids.size());
+            scheduleTreeRebuild();
         } else {
             log.error("分类批量删除失败，IDs：{}", ids);
         }
@@ -251,6 +307,7 @@ public class DictCategoryServiceImpl extends ServiceImpl<DictCategoryMapper, Dic
         }
         
         log.info("分类排序调整成功");
+        scheduleTreeRebuild();
         return true;
     }
 
@@ -277,6 +334,7 @@ public class DictCategoryServiceImpl extends ServiceImpl<DictCategoryMapper, Dic
         int updateCount = dictCategoryMapper.batchUpdateStatus(dto.getIds(), dto.getStatus(), currentUser);
         
         log.info("分类状态批量修改成功，影响行数：{}", updateCount);
+        scheduleTreeRebuild();
         return updateCount > 0;
     }
 
@@ -391,6 +449,7 @@ public class DictCategoryServiceImpl extends ServiceImpl<DictCategoryMapper, Dic
     @CacheEvict(value = "dict:category:tree", allEntries = true)
     public void refreshCategoryCache() {
         log.info("刷新分类缓存");
+        scheduleTreeRebuild();
     }
 
     @Override
@@ -503,9 +562,217 @@ public class DictCategoryServiceImpl extends ServiceImpl<DictCategoryMapper, Dic
     }
 
     @Override
-    // @Cacheable(value = "dict:category:field:tree", key = "'all'")
     public List<CategoryFieldTreeVO> getCategoryFieldTree() {
-        log.info("获取完整分类字段混合树");
+        return getCategoryFieldTreeSnapshot(false).getTree();
+    }
+
+    @Override
+    public List<CategoryFieldTreeVO> getEnabledCategoryFieldTree() {
+        return getCategoryFieldTreeSnapshot(true).getTree();
+    }
+
+    @Override
+    public CategoryFieldTreeSnapshot getCategoryFieldTreeSnapshot(boolean enabledOnly) {
+        TreeSnapshots snapshots = treeSnapshots;
+        if (snapshots == null) {
+            treeLock.lock();
+            try {
+                if (treeSnapshots == null) {
+                    rebuildTreeSnapshots();
+                }
+                snapshots = treeSnapshots;
+            } finally {
+                treeLock.unlock();
+            }
+        }
+        return snapshots.get(enabledOnly);
+    }
+
+    @Override
+    public Map<String, Object> getCategoryFieldTreeDelta(boolean enabledOnly, Long sinceVersion) {
+        CategoryFieldTreeSnapshot current = getCategoryFieldTreeSnapshot(enabledOnly);
+
+        Map<String, Object> delta = new HashMap<>();
+        delta.put("version", current.getVersion());
+        delta.put("etag", current.getETag());
+
+        CategoryFieldTreeSnapshot base = null;
+        if (sinceVersion != null) {
+            treeLock.lock();
+            try {
+                for (TreeSnapshots history : treeHistory) {
+                    if (history.version == sinceVersion) {
+                        base = history.get(enabledOnly);
+                        break;
+                    }
+                }
+            } finally {
+                treeLock.unlock();
+            }
+        }
+
+        // 客户端版本已不在历史范围内，返回全量树
+        if (base == null) {
+            delta.put("full", true);
+            delta.put("tree", current.getTree());
+            return delta;
+        }
+
+        List<Map<String, Object>> upserted = new ArrayList<>();
+        for (Map.Entry<String, CategoryFieldTreeSnapshot.NodeEntry> entry : current.getNodes().entrySet()) {
+            CategoryFieldTreeSnapshot.NodeEntry previous = base.getNodes().get(entry.getKey());
+            if (previous == null || !previous.getDigest().equals(entry.getValue().getDigest())) {
+                Map<String, Object> change = new HashMap<>();
+                change.put("key", entry.getKey());
+                change.put("parentKey", entry.getValue().getParentKey());
+                change.put("position", entry.getValue().getPosition());
+                change.put("node", entry.getValue().getNode());
+                upserted.add(change);
+            }
+        }
+
+        List<String> removed = base.getNodes().keySet().stream()
+                .filter(key -> !current.getNodes().containsKey(key))
+                .collect(Collectors.toList());
+
+        delta.put("full", false);
+        delta.put("fromVersion", base.getVersion());
+        delta.put("upserted", upserted);
+        delta.put("removed", removed);
+        return delta;
+    }
+
+    /**
+     * 在事务提交后异步重建分类字段树快照，短时间内的多次变更合并为一次重建
+     */
+    private void scheduleTreeRebuild() {
+        Runnable submit = () -> {
+            if (treeRebuildPending.compareAndSet(false, true)) {
+                treeRebuildExecutor.execute(() -> {
+                    treeRebuildPending.set(false);
+                    rebuildTreeSnapshotsQuietly();
+                });
+            }
+        };
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submit.run();
+                }
+            });
+        } else {
+            submit.run();
+        }
+    }
+
+    private void rebuildTreeSnapshotsQuietly() {
+        try {
+            rebuildTreeSnapshots();
+        } catch (Exception e) {
+            log.error("重建分类字段树快照失败，继续使用当前版本: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 从数据库重建全量树和启用树的快照，内容未变化时保留当前版本
+     */
+    private void rebuildTreeSnapshots() {
+        treeLock.lock();
+        try {
+            long startTime = System.currentTimeMillis();
+            List<CategoryFieldTreeVO> allTree = loadCategoryFieldTree();
+            List<CategoryFieldTreeVO> enabledTree = loadEnabledCategoryFieldTree();
+            String allHash = hashTree(allTree);
+            String enabledHash = hashTree(enabledTree);
+
+            TreeSnapshots current = treeSnapshots;
+            if (current != null && current.all.getContentHash().equals(allHash)
+                    && current.enabled.getContentHash().equals(enabledHash)) {
+                return;
+            }
+
+            // 以时间为基准的版本号，服务重启后也不会与客户端持有的旧版本冲突
+            long version = current == null
+                    ? System.currentTimeMillis()
+                    : Math.max(current.version + 1, System.currentTimeMillis());
+            TreeSnapshots next = new TreeSnapshots(version,
+                    createTreeSnapshot(version, allTree, allHash),
+                    createTreeSnapshot(version, enabledTree, enabledHash));
+
+            treeHistory.addLast(next);
+            while (treeHistory.size() > TREE_HISTORY_SIZE) {
+                treeHistory.removeFirst();
+            }
+            treeSnapshots = next;
+
+            log.info("分类字段树快照已更新，版本：{}，耗时：{}ms", version, System.currentTimeMillis() - startTime);
+        } finally {
+            treeLock.unlock();
+        }
+    }
+
+    private CategoryFieldTreeSnapshot createTreeSnapshot(long version, List<CategoryFieldTreeVO> tree, String contentHash) {
+        Map<String, CategoryFieldTreeSnapshot.NodeEntry> nodes = new HashMap<>();
+        flattenTree(tree, null, nodes);
+        return new CategoryFieldTreeSnapshot(version, contentHash, tree, nodes);
+    }
+
+    /**
+     * 扁平化树节点并把子节点列表改为只读
+     */
+    private void flattenTree(List<CategoryFieldTreeVO> children, String parentKey,
+                             Map<String, CategoryFieldTreeSnapshot.NodeEntry> nodes) {
+        for (int i = 0; i < children.size(); i++) {
+            CategoryFieldTreeVO node = children.get(i);
+
+            CategoryFieldTreeVO flatNode = new CategoryFieldTreeVO();
+            BeanUtils.copyProperties(node, flatNode, "children");
+            String digest = DigestUtils.md5DigestAsHex(toJsonBytes(flatNode)) + ":" + parentKey + ":" + i;
+            nodes.put(node.getKey(), new CategoryFieldTreeSnapshot.NodeEntry(flatNode, parentKey, i, digest));
+
+            if (node.getChildren() != null) {
+                flattenTree(node.getChildren(), node.getKey(), nodes);
+                node.setChildren(Collections.unmodifiableList(node.getChildren()));
+            }
+        }
+    }
+
+    private String hashTree(List<CategoryFieldTreeVO> tree) {
+        return DigestUtils.md5DigestAsHex(toJsonBytes(tree));
+    }
+
+    private byte[] toJsonBytes(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("序列化分类字段树失败", e);
+        }
+    }
+
+    /**
+     * 同一版本的全量树与启用树
+     */
+    private static class TreeSnapshots {
+
+        final long version;
+        final CategoryFieldTreeSnapshot all;
+        final CategoryFieldTreeSnapshot enabled;
+
+        TreeSnapshots(long version, CategoryFieldTreeSnapshot all, CategoryFieldTreeSnapshot enabled) {
+            this.version = version;
+            this.all = all;
+            this.enabled = enabled;
+        }
+
+        CategoryFieldTreeSnapshot get(boolean enabledOnly) {
+            return enabledOnly ? enabled : all;
+        }
+    }
+
+    private List<CategoryFieldTreeVO> loadCategoryFieldTree() {
+        log.info("加载完整分类字段混合树");
 
         // 获取所有分类
         List<DictCategory> categories = dictCategoryMapper.selectAllWithHierarchy();
@@ -516,10 +783,8 @@ public class DictCategoryServiceImpl extends ServiceImpl<DictCategoryMapper, Dic
         return buildCategoryFieldTree(categories, fields);
     }
 
-    @Override
-    // @Cacheable(value = "dict:category:field:tree", key = "'enabled'")
-    public List<CategoryFieldTreeVO> getEnabledCategoryFieldTree() {
-        log.info("获取启用的分类字段混合树");
+    private List<CategoryFieldTreeVO> loadEnabledCategoryFieldTree() {
+        log.info("加载启用的分类字段混合树");
 
         // 获取启用的分类
         LambdaQueryWrapper<DictCategory> categoryWrapper = new LambdaQueryWrapper<>();
@@ -8,6 +8,7 @@ import com.hospital.report.entity.DictCategory;
 import com.hospital.report.entity.DictField;
 import com.hospital.report.mapper.DictCategoryMapper;
 import com.hospital.report.mapper.DictFieldMapper;
+import com.hospital.report.service.DictCategoryService;
 import com.hospital.report.service.DictFieldService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
@@ -30,6 +31,9 @@ public class DictFieldServiceImpl extends ServiceImpl<DictFieldMapper, DictField
     @Autowired
     private DictCategoryMapper dictCategoryMapper;
 
+    @Autowired
+    private DictCategoryService dictCategoryService;
+
     @Override
     public IPage<DictField> getDictFieldPage(Page<DictField> page, String fieldName, String fieldCode,
                                              Long categoryId, String fieldType, Integer status) {
@@ -89,6 +93,7 @@ public class DictFieldServiceImpl extends ServiceImpl<DictFieldMapper, DictField
 
             if (result > 0) {
                 log.info("数据字段创建成功，ID：{}", dictField.getId());
+                dictCategoryService.refreshCategoryCache();
                 return true;
             } else {
                 log.error("数据字段创建失败，插入返回结果：{}", result);
@@ -126,6 +131,7 @@ public class DictFieldServiceImpl extends ServiceImpl<DictFieldMapper, DictField
 
             if (result) {
                 log.info("数据字段更新成功，ID：{}", dictField.getId());
+                dictCategoryService.refreshCategoryCache();
                 return true;
             } else {
                 log.error("数据字段更新失败，更新返回结果：{}", result);
@@ -152,7 +158,11 @@ public class DictFieldServiceImpl extends ServiceImpl<DictFieldMapper, DictField
             dictField.setUpdatedBy(String.valueOf(updatedBy));
             dictField.setUpdatedTime(LocalDateTime.now());
 
-            return baseMapper.updateDictField(dictField);
+            boolean result = baseMapper.updateDictField(dictField);
+            if (result) {
+                dictCategoryService.refreshCategoryCache();
+            }
+            return result;
         } catch (Exception e) {
             log.error("删除数据字段失败", e);
             throw new RuntimeException("删除数据字段失败: " + e.getMessage());
@@ -167,7 +177,11 @@ public class DictFieldServiceImpl extends ServiceImpl<DictFieldMapper, DictField
                 throw new RuntimeException("字段ID列表不能为空");
             }
 
-            return baseMapper.batchDelete(fieldIds, updatedBy) > 0;
+            boolean result = baseMapper.batchDelete(fieldIds, updatedBy) > 0;
+            if (result) {
+                dictCategoryService.refreshCategoryCache();
+            }
+            return result;
         } catch (Exception e) {
             log.error("批量删除数据字段失败", e);
             throw new RuntimeException("批量删除数据字段失败: " + e.getMessage());
@@ -221,7 +235,11 @@ public class DictFieldServiceImpl extends ServiceImpl<DictFieldMapper, DictField
                 throw new RuntimeException("字段ID列表不能为空");
             }
 
-            return baseMapper.batchUpdateStatus(fieldIds, status, updatedBy) > 0;
+            boolean result = baseMapper.batchUpdateStatus(fieldIds, status, updatedBy) > 0;
+            if (result) {
+                dictCategoryService.refreshCategoryCache();
+            }
+            return result;
         } catch (Exception e) {
             log.error("批量更新状态失败", e);
             throw new RuntimeException("批量更新状态失败: " + e.getMessage());
@@ -0,0 +1,568 @@
+package com.hospital.report.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hospital.report.exception.BusinessException;
+import com.hospital.report.service.ExportJobService;
+import com.hospital.report.service.ExportService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * 后台导出任务服务实现
+ * 导出在有界工作线程池中执行，结果先写入临时文件，完成后原子重命名，供断点续传下载。
+ * 任务状态保存在内存中，超过保留时间的任务及其文件由定时任务清理。
+ */
+@Slf4j
+@Service
+public class ExportJobServiceImpl implements ExportJobService {
+
+    private static final String STATUS_PENDING = "PENDING";
+    private static final String STATUS_RUNNING = "RUNNING";
+    private static final String STATUS_COMPLETED = "COMPLETED";
+    private static final String STATUS_FAILED = "FAILED";
+    private static final String STATUS_CANCELLED = "CANCELLED";
+
+    private static final String FORMAT_EXCEL = "EXCEL";
+    private static final String FORMAT_ARROW = "ARROW";
+
+    private final ExportService exportService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${export.job.worker-threads:2}")
+    private int workerThreads;
+
+    @Value("${export.job.queue-capacity:20}")
+    private int queueCapacity;
+
+    @Value("${export.job.spool-dir:${java.io.tmpdir}/hospital-report-exports}")
+    private String spoolDir;
+
+    @Value("${export.job.retention-minutes:120}")
+    private int retentionMinutes;
+
+    private final Map<String, ExportJob> jobs = new ConcurrentHashMap<>();
+
+    // 任务指纹 -> 任务ID，用于合并相同导出
+    private final Map<String, String> fingerprintIndex = new ConcurrentHashMap<>();
+
+    private final AtomicLong submittedCount = new AtomicLong();
+    private final AtomicLong deduplicatedCount = new AtomicLong();
+
+    private ThreadPoolExecutor workerExecutor;
+
+    private final ScheduledExecutorService cleanupExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "export-job-cleanup");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ExportJobServiceImpl(ExportService exportService, ObjectMapper objectMapper) {
+        this.exportService = exportService;
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(Paths.get(spoolDir));
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        workerExecutor = new ThreadPoolExecutor(workerThreads, workerThreads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), r -> {
+                Thread thread = new Thread(r, "export-job-worker-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+
+        // 每5分钟清理过期任务
+        cleanupExecutor.scheduleAtFixedRate(this::cleanupExpiredJobs, 5, 5, TimeUnit.MINUTES);
+
+        log.info("导出任务服务初始化完成，工作线程: {}, 队列容量: {}, 临时目录: {}", workerThreads, queueCapacity, spoolDir);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        cleanupExecutor.shutdownNow();
+        if (workerExecutor != null) {
+            workerExecutor.shutdownNow();
+        }
+    }
+
+    @Override
+    public Map<String, Object> submitQueryExport(String sqlContent, Map<String, Object> parameters, String databaseType,
+                                                 Map<String, Object> options, String dataVersion) {
+        if (sqlContent == null || sqlContent.trim().isEmpty()) {
+            throw new BusinessException(400, "SQL语句不能为空");
+        }
+        if (databaseType == null || databaseType.trim().isEmpty()) {
+            throw new BusinessException(400, "数据源不能为空");
+        }
+
+        String format = options != null && options.get("format") != null
+            ? options.get("format").toString().toUpperCase() : FORMAT_EXCEL;
+        if (!FORMAT_EXCEL.equals(format) && !FORMAT_ARROW.equals(format)) {
+            throw new BusinessException(400, "不支持的导出格式: " + format);
+        }
+
+        String fingerprint = buildFingerprint(sqlContent, parameters, databaseType, options, dataVersion);
+
+        synchronized (fingerprintIndex) {
+            ExportJob existing = Optional.ofNullable(fingerprintIndex.get(fingerprint)).map(jobs::get).orElse(null);
+            if (existing != null && canReuse(existing, dataVersion)) {
+                deduplicatedCount.incrementAndGet();
+                log.info("合并相同导出任务: {}", existing.jobId);
+                Map<String, Object> status = existing.toStatus();
+                status.put("deduplicated", true);
+                return status;
+            }
+
+            ExportJob job = new ExportJob(UUID.randomUUID().toString().replace("-", ""), fingerprint);
+            job.sqlContent = sqlContent;
+            job.parameters = parameters != null ? new LinkedHashMap<>(parameters) : new LinkedHashMap<>();
+            job.databaseType = databaseType;
+            job.options = options != null ? new HashMap<>(options) : new HashMap<>();
+            job.format = format;
+
+            try {
+                job.future = workerExecutor.submit(() -> runJob(job));
+            } catch (RejectedExecutionException e) {
+                throw new BusinessException(503, "导出任务队列已满，请稍后重试");
+            }
+
+            jobs.put(job.jobId, job);
+            fingerprintIndex.put(fingerprint, job.jobId);
+            submittedCount.incrementAndGet();
+
+            log.info("提交导出任务: {}, 数据源: {}", job.jobId, databaseType);
+            Map<String, Object> status = job.toStatus();
+            status.put("deduplicated", false);
+            return status;
+        }
+    }
+
+    @Override
+    public Map<String, Object> getJobStatus(String jobId) {
+        return getJob(jobId).toStatus();
+    }
+
+    @Override
+    public Runnable subscribe(String jobId, Consumer<Map<String, Object>> listener) {
+        ExportJob job = getJob(jobId);
+        Subscriber subscriber = new Subscriber(listener);
+        boolean finished;
+        job.lock.lock();
+        try {
+            finished = job.isFinished();
+            if (!finished) {
+                job.listeners.add(subscriber);
+            }
+        } finally {
+            job.lock.unlock();
+        }
+        // 首次状态在锁外推送，慢客户端不会阻塞任务状态更新
+        deliver(job, subscriber);
+        if (finished) {
+            return () -> { };
+        }
+        return () -> job.listeners.remove(subscriber);
+    }
+
+    @Override
+    public File acquireJobFile(String jobId) {
+        ExportJob job = getJob(jobId);
+        job.lock.lock();
+        try {
+            if (job.expired || !STATUS_COMPLETED.equals(job.status) || job.file == null || !job.file.exists()) {
+                throw new BusinessException(409, "导出任务尚未完成或文件已过期: " + job.status);
+            }
+            job.activeDownloads++;
+            return job.file;
+        } finally {
+            job.lock.unlock();
+        }
+    }
+
+    @Override
+    public void releaseJobFile(String jobId) {
+        ExportJob job = jobs.get(jobId);
+        if (job == null) {
+            return;
+        }
+        job.lock.lock();
+        try {
+            if (job.activeDownloads > 0) {
+                job.activeDownloads--;
+            }
+        } finally {
+            job.lock.unlock();
+        }
+    }
+
+    @Override
+    public String getDownloadFileName(String jobId) {
+        ExportJob job = getJob(jobId);
+        return "export_" + job.jobId + job.fileExtension();
+    }
+
+    @Override
+    public void cancelJob(String jobId) {
+        ExportJob job = getJob(jobId);
+        boolean pending;
+        job.lock.lock();
+        try {
+            if (job.isFinished()) {
+                return;
+            }
+            job.cancelRequested = true;
+            pending = STATUS_PENDING.equals(job.status);
+        } finally {
+            job.lock.unlock();
+        }
+        // 尚未开始的任务直接移出队列并标记取消；执行中的任务只设置取消标记，
+        // 由工作线程在下一次进度回调时中断并清理文件后再置为CANCELLED
+        if (pending) {
+            if (job.future != null) {
+                job.future.cancel(false);
+            }
+            updateStatus(job, STATUS_CANCELLED, null);
+        }
+        log.info("取消导出任务: {}", jobId);
+    }
+
+    @Override
+    public Map<String, Object> getStatistics() {
+        Map<String, Long> statusCounts = new HashMap<>();
+        for (ExportJob job : jobs.values()) {
+            statusCounts.merge(job.status, 1L, Long::sum);
+        }
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("totalJobs", jobs.size());
+        stats.put("statusCounts", statusCounts);
+        stats.put("submittedCount", submittedCount.get());
+        stats.put("deduplicatedCount", deduplicatedCount.get());
+        stats.put("activeWorkers", workerExecutor.getActiveCount());
+        stats.put("queuedJobs", workerExecutor.getQueue().size());
+        stats.put("queueCapacity", queueCapacity);
+        return stats;
+    }
+
+    private void runJob(ExportJob job) {
+        if (!startJob(job)) {
+            updateStatus(job, STATUS_CANCELLED, null);
+            return;
+        }
+
+        Path partFile = Paths.get(spoolDir, job.jobId + job.fileExtension() + ".part");
+        Path finalFile = Paths.get(spoolDir, job.jobId + job.fileExtension());
+
+        try {
+            try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(partFile), 64 * 1024)) {
+                LongConsumer progressListener = rows -> {
+                    if (job.cancelRequested) {
+                        throw new CancellationException("导出任务已取消");
+                    }
+                    job.rowCount = rows;
+                    notifyListeners(job);
+                };
+                if (FORMAT_ARROW.equals(job.format)) {
+                    exportService.exportQueryToArrow(job.sqlContent, job.parameters, job.databaseType,
+                        outputStream, progressListener);
+                } else {
+                    exportService.exportQueryToExcel(job.sqlContent, job.parameters, job.databaseType, job.options,
+                        outputStream, progressListener);
+                }
+            }
+
+            if (job.cancelRequested) {
+                throw new CancellationException("导出任务已取消");
+            }
+
+            Files.move(partFile, finalFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (!completeJob(job, finalFile.toFile())) {
+                // 重命名后才收到取消请求，丢弃已生成的文件
+                deleteQuietly(finalFile);
+                throw new CancellationException("导出任务已取消");
+            }
+
+            log.info("导出任务完成: {}, 行数: {}, 文件大小: {} bytes, 耗时: {}ms",
+                job.jobId, job.rowCount, job.fileSize, System.currentTimeMillis() - job.startedTime);
+
+        } catch (Exception e) {
+            deleteQuietly(partFile);
+            if (job.cancelRequested) {
+                updateStatus(job, STATUS_CANCELLED, null);
+                log.info("导出任务已取消: {}", job.jobId);
+            } else {
+                updateStatus(job, STATUS_FAILED, e.getMessage());
+                log.error("导出任务失败: {}", job.jobId, e);
+            }
+        }
+    }
+
+    /**
+     * 在锁内把任务从PENDING切换为RUNNING，与cancelJob互斥，已请求取消时返回false
+     */
+    private boolean startJob(ExportJob job) {
+        job.lock.lock();
+        try {
+            if (job.cancelRequested || !STATUS_PENDING.equals(job.status)) {
+                return false;
+            }
+            job.startedTime = System.currentTimeMillis();
+            job.status = STATUS_RUNNING;
+        } finally {
+            job.lock.unlock();
+        }
+        notifyListeners(job);
+        return true;
+    }
+
+    /**
+     * 在锁内检查取消标记并发布结果文件，已请求取消时返回false
+     */
+    private boolean completeJob(ExportJob job, File file) {
+        job.lock.lock();
+        try {
+            if (job.cancelRequested || job.isFinished()) {
+                return false;
+            }
+            job.file = file;
+            job.fileSize = file.length();
+            job.status = STATUS_COMPLETED;
+            job.finishedTime = System.currentTimeMillis();
+        } finally {
+            job.lock.unlock();
+        }
+        notifyListeners(job);
+        job.listeners.clear();
+        return true;
+    }
+
+    private void updateStatus(ExportJob job, String status, String errorMessage) {
+        job.lock.lock();
+        try {
+            if (job.isFinished()) {
+                return;
+            }
+            job.status = status;
+            job.errorMessage = errorMessage;
+            if (job.isFinished()) {
+                job.finishedTime = System.currentTimeMillis();
+            }
+        } finally {
+            job.lock.unlock();
+        }
+        notifyListeners(job);
+        if (job.isFinished()) {
+            job.listeners.clear();
+        }
+    }
+
+    private void notifyListeners(ExportJob job) {
+        for (Subscriber subscriber : job.listeners) {
+            deliver(job, subscriber);
+        }
+    }
+
+    /**
+     * 向订阅者推送最新状态。每个订阅者同一时刻只有一个线程在推送，
+     * 其他线程只标记有新状态后立即返回，由正在推送的线程补发，慢客户端只拖慢自己
+     */
+    private void deliver(ExportJob job, Subscriber subscriber) {
+        subscriber.dirty.set(true);
+        while (subscriber.dirty.get() && subscriber.sendLock.tryLock()) {
+            try {
+                while (!subscriber.closed && subscriber.dirty.getAndSet(false)) {
+                    Map<String, Object> status = job.toStatus();
+                    subscriber.listener.accept(status);
+                    // 终态推送后客户端会关闭连接，不再继续推送
+                    if (!STATUS_PENDING.equals(status.get("status")) && !STATUS_RUNNING.equals(status.get("status"))) {
+                        subscriber.closed = true;
+                    }
+                }
+            } catch (Exception e) {
+                log.debug("推送导出进度失败，移除监听器: {}", e.getMessage());
+                subscriber.closed = true;
+                job.listeners.remove(subscriber);
+            } finally {
+                subscriber.sendLock.unlock();
+            }
+            if (subscriber.closed) {
+                return;
+            }
+        }
+    }
+
+    private boolean canReuse(ExportJob job, String dataVersion) {
+        if (STATUS_PENDING.equals(job.status) || STATUS_RUNNING.equals(job.status)) {
+            return !job.cancelRequested;
+        }
+        // 已完成的文件只有在调用方给出数据版本时才复用，避免返回过期数据
+        return STATUS_COMPLETED.equals(job.status) && dataVersion != null
+            && job.file != null && job.file.exists();
+    }
+
+    private String buildFingerprint(String sqlContent, Map<String, Object> parameters, String databaseType,
+                                    Map<String, Object> options, String dataVersion) {
+        try {
+            Map<String, Object> key = new LinkedHashMap<>();
+            key.put("sql", sqlContent.trim());
+            key.put("databaseType", databaseType);
+            key.put("parameters", parameters != null ? new TreeMap<>(parameters) : Collections.emptyMap());
+            key.put("options", options != null ? new TreeMap<>(options) : Collections.emptyMap());
+            key.put("dataVersion", dataVersion);
+            return DigestUtils.md5DigestAsHex(objectMapper.writeValueAsBytes(key));
+        } catch (Exception e) {
+            return DigestUtils.md5DigestAsHex((sqlContent + "|" + databaseType + "|" + parameters + "|" + options
+                + "|" + dataVersion).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private ExportJob getJob(String jobId) {
+        ExportJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new BusinessException(404, "导出任务不存在或已过期: " + jobId);
+        }
+        return job;
+    }
+
+    private void cleanupExpiredJobs() {
+        long cutoff = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(retentionMinutes);
+        int removed = 0;
+
+        Iterator<ExportJob> iterator = jobs.values().iterator();
+        while (iterator.hasNext()) {
+            ExportJob job = iterator.next();
+            if (job.isFinished() && job.finishedTime < cutoff && markExpired(job)) {
+                iterator.remove();
+                fingerprintIndex.remove(job.fingerprint, job.jobId);
+                if (job.file != null) {
+                    deleteQuietly(job.file.toPath());
+                }
+                removed++;
+            }
+        }
+
+        if (removed > 0) {
+            log.info("清理过期导出任务 {} 个", removed);
+        }
+    }
+
+    /**
+     * 没有进行中的下载时标记任务过期，之后不再允许下载；有下载时留到下次清理
+     */
+    private boolean markExpired(ExportJob job) {
+        job.lock.lock();
+        try {
+            if (job.activeDownloads > 0) {
+                return false;
+            }
+            job.expired = true;
+            return true;
+        } finally {
+            job.lock.unlock();
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("删除导出临时文件失败: {}", path, e);
+        }
+    }
+
+    /**
+     * 导出任务
+     */
+    private static class ExportJob {
+        private final String jobId;
+        private final String fingerprint;
+        private final long createdTime = System.currentTimeMillis();
+        private final List<Subscriber> listeners = new CopyOnWriteArrayList<>();
+
+        // 保护状态切换、下载计数与订阅登记，锁内不做SSE写出；使用ReentrantLock避免钉住虚拟线程
+        private final ReentrantLock lock = new ReentrantLock();
+        private String sqlContent;
+        private Map<String, Object> parameters;
+        private String databaseType;
+        private Map<String, Object> options;
+        private String format;
+        private Future<?> future;
+        private volatile String status = STATUS_PENDING;
+        private volatile boolean cancelRequested;
+        private volatile long rowCount;
+        private volatile long startedTime;
+        private volatile long finishedTime;
+        private volatile File file;
+        private volatile long fileSize;
+        private volatile String errorMessage;
+
+        // 进行中的下载数与过期标记，在lock内访问
+        private int activeDownloads;
+        private boolean expired;
+
+        ExportJob(String jobId, String fingerprint) {
+            this.jobId = jobId;
+            this.fingerprint = fingerprint;
+        }
+
+        String fileExtension() {
+            return FORMAT_ARROW.equals(format) ? ".arrow" : ".xlsx";
+        }
+
+        boolean isFinished() {
+            return STATUS_COMPLETED.equals(status) || STATUS_FAILED.equals(status) || STATUS_CANCELLED.equals(status);
+        }
+
+        Map<String, Object> toStatus() {
+            Map<String, Object> status = new HashMap<>();
+            status.put("jobId", jobId);
+            status.put("status", this.status);
+            status.put("format", format);
+            status.put("rowCount", rowCount);
+            status.put("fileSize", fileSize);
+            status.put("createdTime", createdTime);
+            status.put("startedTime", startedTime > 0 ? startedTime : null);
+            status.put("finishedTime", finishedTime > 0 ? finishedTime : null);
+            status.put("errorMessage", errorMessage);
+            return status;
+        }
+    }
+
+    /**
+     * 进度订阅者，推送在各自的sendLock内串行进行
+     */
+    private static class Subscriber {
+        private final Consumer<Map<String, Object>> listener;
+        private final ReentrantLock sendLock = new ReentrantLock();
+        private final AtomicBoolean dirty = new AtomicBoolean();
+        private volatile boolean closed;
+
+        Subscriber(Consumer<Map<String, Object>> listener) {
+            this.listener = listener;
+        }
+    }
+}
@@ -1,15 +1,26 @@
 package com.hospital.report.service.impl;
 
+import com.hospital.report.executor.ResultConverter;
 import com.hospital.report.service.ExportService;
 import com.hospital.report.service.ReportRendererService;
+import com.hospital.report.service.SqlExecutionService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.ResultSetMetaData;
 import java.util.*;
+import java.util.Date;
 import java.util.List;
+import java.util.function.LongConsumer;
 
 @Slf4j
 @Service
@@ -17,8 +28,20 @@ import java.util.List;
 public class ExportServiceImpl implements ExportService {
     
     private final ReportRendererService reportRendererService;
+    private final SqlExecutionService sqlExecutionService;
+    private final ResultConverter resultConverter;
     
-    private static final String[] SUPPORTED_FORMATS = {"PDF", "EXCEL", "WORD", "CSV", "PNG", "JPEG"};
+    /**
+     * SXSSF内存中保留的行数，超出部分刷写到压缩临时文件
+     */
+    @Value("${export.excel.row-access-window:500}")
+    private int rowAccessWindowSize;
+    
+    private static final int MAX_SHEET_ROWS = SpreadsheetVersion.EXCEL2007.getMaxRows();
+    private static final int MAX_CELL_LENGTH = SpreadsheetVersion.EXCEL2007.getMaxTextLength();
+    private static final int PROGRESS_INTERVAL = 1000;
+    
+    private static final String[] SUPPORTED_FORMATS = {"PDF", "EXCEL", "WORD", "CSV", "PNG", "JPEG", "ARROW"};
     
     @Override
     public byte[] exportToPdf(Map<String, Object> reportData, Map<String, Object> options) {
@@ -42,22 +65,105 @@ public class ExportServiceImpl implements ExportService {
     
     @Override
     public byte[] exportToExcel(Map<String, Object> reportData, Map<String, Object> options) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        exportToExcel(reportData, options, outputStream);
+        return outputStream.toByteArray();
+    }
+    
+    @Override
+    public void exportToExcel(Map<String, Object> reportData, Map<String, Object> options, OutputStream outputStream) {
+        SXSSFWorkbook workbook = createStreamingWorkbook();
         try {
             log.info("开始导出Excel报表，reportId: {}", reportData.get("reportId"));
             
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            
             // 创建Excel工作簿
-            createExcelWorkbook(reportData, options, outputStream);
-            
-            byte[] excelBytes = outputStream.toByteArray();
-            log.info("Excel导出完成，大小: {} bytes", excelBytes.length);
+            createExcelWorkbook(reportData, options, workbook);
+            workbook.write(outputStream);
+            outputStream.flush();
             
-            return excelBytes;
+            log.info("Excel导出完成，reportId: {}", reportData.get("reportId"));
             
         } catch (Exception e) {
             log.error("Excel导出失败", e);
             throw new RuntimeException("Excel导出失败: " + e.getMessage());
+        } finally {
+            closeWorkbook(workbook);
+        }
+    }
+    
+    @Override
+    public void exportQueryToExcel(String sqlContent, Map<String, Object> parameters, String databaseType,
+                                   Map<String, Object> options, OutputStream outputStream) {
+        exportQueryToExcel(sqlContent, parameters, databaseType, options, outputStream, null);
+    }
+    
+    @Override
+    public void exportQueryToExcel(String sqlContent, Map<String, Object> parameters, String databaseType,
+                                   Map<String, Object> options, OutputStream outputStream, LongConsumer progressListener) {
+        SXSSFWorkbook workbook = createStreamingWorkbook();
+        try {
+            log.info("开始流式导出查询结果，数据源: {}", databaseType);
+            
+            String sheetName = options != null && options.get("sheetName") != null
+                ? options.get("sheetName").toString() : "数据";
+            ExcelSheetWriter writer = new ExcelSheetWriter(workbook, sheetName);
+            
+            long[] rowCount = {0};
+            sqlExecutionService.executeQueryStreaming(sqlContent, parameters, databaseType, resultSet -> {
+                ResultSetMetaData metaData = resultSet.getMetaData();
+                int columnCount = metaData.getColumnCount();
+                
+                List<String> headers = new ArrayList<>(columnCount);
+                for (int i = 1; i <= columnCount; i++) {
+                    headers.add(metaData.getColumnLabel(i));
+                }
+                writer.setHeaders(headers);
+                
+                Object[] values = new Object[columnCount];
+                while (resultSet.next()) {
+                    for (int i = 0; i < columnCount; i++) {
+                        values[i] = resultSet.getObject(i + 1);
+                    }
+                    writer.writeRow(values);
+                    rowCount[0]++;
+                    if (progressListener != null && rowCount[0] % PROGRESS_INTERVAL == 0) {
+                        progressListener.accept(rowCount[0]);
+                    }
+                }
+            });
+            
+            workbook.write(outputStream);
+            outputStream.flush();
+            if (progressListener != null) {
+                progressListener.accept(rowCount[0]);
+            }
+            
+            log.info("查询结果流式导出完成，行数: {}", rowCount[0]);
+            
+        } catch (Exception e) {
+            log.error("查询结果Excel导出失败", e);
+            throw new RuntimeException("Excel导出失败: " + e.getMessage());
+        } finally {
+            closeWorkbook(workbook);
+        }
+    }
+    
+    @Override
+    public void exportQueryToArrow(String sqlContent, Map<String, Object> parameters, String databaseType,
+                                   OutputStream outputStream, LongConsumer progressListener) {
+        try {
+            log.info("开始导出Arrow列式数据，数据源: {}", databaseType);
+            
+            long[] rowCount = {0};
+            sqlExecutionService.executeQueryStreaming(sqlContent, parameters, databaseType, resultSet ->
+                rowCount[0] = resultConverter.writeColumnarFormat(resultSet, "arrow", outputStream, progressListener));
+            outputStream.flush();
+            
+            log.info("Arrow导出完成，行数: {}", rowCount[0]);
+            
+        } catch (Exception e) {
+            log.error("Arrow导出失败", e);
+            throw new RuntimeException("Arrow导出失败: " + e.getMessage());
         }
     }
     
@@ -171,15 +277,33 @@ public class ExportServiceImpl implements ExportService {
         }
     }
     
-    private void createExcelWorkbook(Map<String, Object> reportData, Map<String, Object> options, ByteArrayOutputStream outputStream) throws IOException {
-        // 这里应该使用EasyExcel或Apache POI创建Excel文件
-        // 模拟实现
-        StringBuilder excelContent = new StringBuilder();
+    private SXSSFWorkbook createStreamingWorkbook() {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(rowAccessWindowSize);
+        // 刷出窗口的行写入gzip压缩的临时文件，减少大导出的磁盘占用
+        workbook.setCompressTempFiles(true);
+        return workbook;
+    }
+    
+    private void closeWorkbook(SXSSFWorkbook workbook) {
+        try {
+            // 删除SXSSF产生的临时文件
+            workbook.dispose();
+            workbook.close();
+        } catch (IOException e) {
+            log.warn("关闭Excel工作簿失败: {}", e.getMessage());
+        }
+    }
+    
+    private void createExcelWorkbook(Map<String, Object> reportData, Map<String, Object> options, SXSSFWorkbook workbook) {
+        String sheetName = options != null && options.get("sheetName") != null
+            ? options.get("sheetName").toString() : "报表";
+        ExcelSheetWriter writer = new ExcelSheetWriter(workbook, sheetName);
         
         // Excel头部信息
-        excelContent.append("报表名称,").append(reportData.get("reportName")).append("\n");
-        excelContent.append("生成时间,").append(new Date((Long) reportData.get("generatedAt"))).append("\n");
-        excelContent.append("\n");
+        writer.writeRow(new Object[]{"报表名称", reportData.get("reportName")});
+        Object generatedAt = reportData.get("generatedAt");
+        writer.writeRow(new Object[]{"生成时间", generatedAt instanceof Long ? new Date((Long) generatedAt) : generatedAt});
+        writer.writeRow(new Object[0]);
         
         // 导出组件数据
         List<Map<String, Object>> components = (List<Map<String, Object>>) reportData.get("components");
@@ -188,71 +312,62 @@ public class ExportServiceImpl implements ExportService {
                 String componentType = (String) component.get("componentType");
                 
                 if ("table".equals(componentType)) {
-                    exportTableToExcel(component, excelContent);
-                } else if (componentType.contains("chart")) {
-                    exportChartDataToExcel(component, excelContent);
+                    exportTableToExcel(component, writer);
+                } else if (componentType != null && componentType.contains("chart")) {
+                    exportChartDataToExcel(component, writer);
                 }
                 
-                excelContent.append("\n");
+                writer.writeRow(new Object[0]);
             }
         }
-        
-        outputStream.write(excelContent.toString().getBytes("UTF-8"));
     }
     
-    private void exportTableToExcel(Map<String, Object> component, StringBuilder content) {
+    private void exportTableToExcel(Map<String, Object> component, ExcelSheetWriter writer) {
         Map<String, Object> data = (Map<String, Object>) component.get("data");
         if (data == null) return;
         
-        String componentName = (String) component.get("componentName");
-        content.append("表格: ").append(componentName).append("\n");
+        writer.writeRow(new Object[]{"表格: " + component.get("componentName")});
         
         List<Map<String, Object>> columns = (List<Map<String, Object>>) data.get("columns");
         List<Map<String, Object>> records = (List<Map<String, Object>>) data.get("records");
         
         if (columns != null && records != null) {
             // 写入表头
+            Object[] header = new Object[columns.size()];
             for (int i = 0; i < columns.size(); i++) {
-                if (i > 0) content.append(",");
-                content.append(escapeCSV((String) columns.get(i).get("title")));
+                header[i] = columns.get(i).get("title");
             }
-            content.append("\n");
+            writer.writeHeaderRow(header);
             
             // 写入数据行
+            Object[] values = new Object[columns.size()];
             for (Map<String, Object> record : records) {
                 for (int i = 0; i < columns.size(); i++) {
-                    if (i > 0) content.append(",");
-                    String dataIndex = (String) columns.get(i).get("dataIndex");
-                    Object value = record.get(dataIndex);
-                    content.append(escapeCSV(value != null ? value.toString() : ""));
+                    values[i] = record.get((String) columns.get(i).get("dataIndex"));
                 }
-                content.append("\n");
+                writer.writeRow(values);
             }
         }
     }
     
-    private void exportChartDataToExcel(Map<String, Object> component, StringBuilder content) {
-        String componentName = (String) component.get("componentName");
-        content.append("图表: ").append(componentName).append("\n");
+    private void exportChartDataToExcel(Map<String, Object> component, ExcelSheetWriter writer) {
+        writer.writeRow(new Object[]{"图表: " + component.get("componentName")});
         
         Map<String, Object> data = (Map<String, Object>) component.get("data");
         if (data != null) {
             List<Map<String, Object>> records = (List<Map<String, Object>>) data.get("records");
             if (records != null && !records.isEmpty()) {
                 // 获取数据的键作为列头
-                Set<String> keys = records.get(0).keySet();
-                
-                // 写入表头
-                content.append(String.join(",", keys)).append("\n");
+                List<String> keys = new ArrayList<>(records.get(0).keySet());
+                writer.writeHeaderRow(keys.toArray());
                 
                 // 写入数据
+                Object[] values = new Object[keys.size()];
                 for (Map<String, Object> record : records) {
-                    List<String> values = new ArrayList<>();
-                    for (String key : keys) {
-                        Object value = record.get(key);
-                        values.add(escapeCSV(value != null ? value.toString() : ""));
+                    for (int i = 0; i < keys.size(); i++) {
+                        values[i] = record.get(keys.get(i));
                     }
-                    content.append(String.join(",", values)).append("\n");
+                    writer.writeRow(values);
                 }
             }
         }
@@ -470,4 +585,92 @@ public class ExportServiceImpl implements ExportService {
         
         return true;
     }
-}
\ No newline at end of file
+    
+    /**
+     * 顺序写入SXSSF工作表，超出单表行数上限时自动新建工作表并重复表头
+     */
+    private static class ExcelSheetWriter {
+        
+        private final SXSSFWorkbook workbook;
+        private final String baseSheetName;
+        private final CellStyle headerStyle;
+        private final CellStyle dateStyle;
+        private SXSSFSheet sheet;
+        private int sheetIndex;
+        private int rowIndex;
+        private Object[] headers;
+        
+        ExcelSheetWriter(SXSSFWorkbook workbook, String baseSheetName) {
+            this.workbook = workbook;
+            this.baseSheetName = baseSheetName.length() > 25 ? baseSheetName.substring(0, 25) : baseSheetName;
+            
+            Font headerFont = workbook.createFont();
+            headerFont.setBold(true);
+            this.headerStyle = workbook.createCellStyle();
+            this.headerStyle.setFont(headerFont);
+            
+            this.dateStyle = workbook.createCellStyle();
+            this.dateStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("yyyy-mm-dd hh:mm:ss"));
+            
+            newSheet();
+        }
+        
+        void setHeaders(List<String> headers) {
+            writeHeaderRow(headers.toArray());
+        }
+        
+        void writeHeaderRow(Object[] values) {
+            this.headers = values.clone();
+            writeRow(values, headerStyle);
+        }
+        
+        void writeRow(Object[] values) {
+            writeRow(values, null);
+        }
+        
+        private void writeRow(Object[] values, CellStyle style) {
+            if (rowIndex >= MAX_SHEET_ROWS) {
+                newSheet();
+                if (headers != null && style != headerStyle) {
+                    writeRow(headers, headerStyle);
+                }
+            }
+            
+            Row row = sheet.createRow(rowIndex++);
+            for (int i = 0; i < values.length; i++) {
+                Cell cell = row.createCell(i);
+                setCellValue(cell, values[i]);
+                if (style != null) {
+                    cell.setCellStyle(style);
+                }
+            }
+        }
+        
+        private void setCellValue(Cell cell, Object value) {
+            if (value == null) {
+                return;
+            }
+            if (value instanceof Number) {
+                cell.setCellValue(((Number) value).doubleValue());
+            } else if (value instanceof Boolean) {
+                cell.setCellValue((Boolean) value);
+            } else if (value instanceof Date) {
+                cell.setCellValue((Date) value);
+                cell.setCellStyle(dateStyle);
+            } else if (value instanceof java.time.LocalDateTime) {
+                cell.setCellValue((java.time.LocalDateTime) value);
+                cell.setCellStyle(dateStyle);
+            } else {
+                String text = value.toString();
+                cell.setCellValue(text.length() > MAX_CELL_LENGTH ? text.substring(0, MAX_CELL_LENGTH) : text);
+            }
+        }
+        
+        private void newSheet() {
+            sheetIndex++;
+            String name = sheetIndex == 1 ? baseSheetName : baseSheetName + "_" + sheetIndex;
+            sheet = workbook.createSheet(name);
+            rowIndex = 0;
+        }
+    }
+}
@@ -9,13 +9,19 @@ import com.hospital.report.mapper.ReportConfigMapper;
 import com.hospital.report.service.ReportAuditService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 /**
@@ -32,6 +38,21 @@ public class ReportAuditServiceImpl implements ReportAuditService {
     @Autowired
     private ReportAuditLogMapper auditLogMapper;
 
+    /**
+     * 统计缓存的最长有效期，覆盖审核服务之外的报表变更
+     */
+    @Value("${report.audit.statistics-ttl-seconds:60}")
+    private long statisticsTtlSeconds;
+
+    /**
+     * 统计失效代数，审核/发布状态变更提交后递增
+     */
+    private final AtomicLong statisticsGeneration = new AtomicLong();
+
+    private volatile CachedStatistics<ReportAuditDTO.AuditStatistics> auditStatisticsCache;
+
+    private volatile CachedStatistics<ReportAuditDTO.PublishStatistics> publishStatisticsCache;
+
     @Override
     public ReportAuditDTO.AuditResult auditReport(Long reportId, 
                                                  ReportAuditDTO.AuditRequest request, 
@@ -74,6 +95,7 @@ public class ReportAuditServiceImpl implements ReportAuditService {
         report.setUpdatedTime(LocalDateTime.now());
 
         reportConfigMapper.updateById(report);
+        invalidateStatisticsAfterCommit();
 
         log.info("报表审核完成，reportId: {}, 新状态: {}", reportId, request.getNewStatus());
 
@@ -157,6 +179,7 @@ public class ReportAuditServiceImpl implements ReportAuditService {
         report.setUpdatedTime(LocalDateTime.now());
 
         reportConfigMapper.updateById(report);
+        invalidateStatisticsAfterCommit();
 
         log.info("报表发布成功，reportId: {}", reportId);
 
@@ -191,6 +214,7 @@ public class ReportAuditServiceImpl implements ReportAuditService {
         report.setUpdatedTime(LocalDateTime.now());
 
         reportConfigMapper.updateById(report);
+        invalidateStatisticsAfterCommit();
 
         log.info("报表取消发布成功，reportId: {}", reportId);
 
@@ -232,6 +256,7 @@ public class ReportAuditServiceImpl implements ReportAuditService {
         report.setAuditComment(null);
 
         reportConfigMapper.updateById(report);
+        invalidateStatisticsAfterCommit();
 
         log.info("报表重新提交审核成功，reportId: {}", reportId);
     }
@@ -243,107 +268,114 @@ public class ReportAuditServiceImpl implements ReportAuditService {
 
     @Override
     public ReportAuditDTO.AuditStatistics getAuditStatistics() {
-        log.info("获取审核统计信息");
-
-        // 查询所有报表的统计数据
-        List<ReportConfig> allReports = reportConfigMapper.selectList(null);
-
-        int totalReports = 0;
-        int pendingCount = 0;
-        int approvedCount = 0;
-        int rejectedCount = 0;
-        int publishedCount = 0;
-        int approvedUnpublishedCount = 0;
-
-        LocalDateTime lastAuditTime = null;
-
-        for (ReportConfig report : allReports) {
-            if (report.getApprovalStatus() != null && report.getApprovalStatus() >= 2) {
-                totalReports++;
-
-                switch (report.getApprovalStatus()) {
-                    case 2: // PENDING_AUDIT
-                        pendingCount++;
-                        break;
-                    case 3: // APPROVED
-                        approvedCount++;
-                        if (report.getIsPublished() != null && report.getIsPublished() == 1) {
-                            publishedCount++;
-                        } else {
-                            approvedUnpublishedCount++;
-                        }
-                        break;
-                    case 4: // REJECTED
-                        rejectedCount++;
-                        break;
-                }
-
-                // 更新最后审核时间
-                if (report.getAuditTime() != null) {
-                    if (lastAuditTime == null || report.getAuditTime().isAfter(lastAuditTime)) {
-                        lastAuditTime = report.getAuditTime();
-                    }
-                }
-            }
+        long generation = statisticsGeneration.get();
+        CachedStatistics<ReportAuditDTO.AuditStatistics> cached = auditStatisticsCache;
+        if (cached != null && cached.isValid(generation, statisticsTtlSeconds * 1000)) {
+            return cached.value;
         }
 
-        // 计算平均审核时间（小时）
-        Double avgAuditHours = allReports.stream()
-                .filter(r -> r.getAuditTime() != null && r.getSubmitTime() != null)
-                .mapToDouble(r -> java.time.Duration.between(r.getSubmitTime(), r.getAuditTime()).toHours())
-                .average()
-                .orElse(0.0);
-
-        return ReportAuditDTO.AuditStatistics.builder()
-                .totalReports(totalReports)
-                .pendingCount(pendingCount)
-                .approvedCount(approvedCount)
-                .rejectedCount(rejectedCount)
-                .publishedCount(publishedCount)
-                .approvedUnpublishedCount(approvedUnpublishedCount)
-                .avgAuditHours(avgAuditHours)
-                .lastAuditTime(lastAuditTime)
+        log.info("获取审核统计信息");
+
+        // 聚合查询各审核状态数量，不加载报表配置内容
+        Map<String, Object> row = reportConfigMapper.selectAuditStatistics();
+
+        ReportAuditDTO.AuditStatistics statistics = ReportAuditDTO.AuditStatistics.builder()
+                .totalReports(getInt(row, "total_reports"))
+                .pendingCount(getInt(row, "pending_count"))
+                .approvedCount(getInt(row, "approved_count"))
+                .rejectedCount(getInt(row, "rejected_count"))
+                .publishedCount(getInt(row, "published_count"))
+                .approvedUnpublishedCount(getInt(row, "approved_unpublished_count"))
+                .avgAuditHours(getDouble(row, "avg_audit_hours"))
+                .lastAuditTime(getDateTime(row, "last_audit_time"))
                 .build();
+
+        auditStatisticsCache = new CachedStatistics<>(statistics, generation);
+        return statistics;
     }
 
     @Override
     public ReportAuditDTO.PublishStatistics getPublishStatistics() {
+        long generation = statisticsGeneration.get();
+        CachedStatistics<ReportAuditDTO.PublishStatistics> cached = publishStatisticsCache;
+        if (cached != null && cached.isValid(generation, statisticsTtlSeconds * 1000)) {
+            return cached.value;
+        }
+
         log.info("获取发布统计信息");
 
-        // 查询所有报表
-        List<ReportConfig> allReports = reportConfigMapper.selectList(null);
+        // 聚合查询发布状态数量
+        Map<String, Object> row = reportConfigMapper.selectPublishStatistics();
 
-        int totalReports = allReports.size();
-        int publishedCount = 0;
-        int unpublishedCount = 0;
-        int approvedUnpublishedCount = 0;
+        ReportAuditDTO.PublishStatistics statistics = ReportAuditDTO.PublishStatistics.builder()
+                .totalReports(getInt(row, "total_reports"))
+                .publishedCount(getInt(row, "published_count"))
+                .unpublishedCount(getInt(row, "unpublished_count"))
+                .approvedUnpublishedCount(getInt(row, "approved_unpublished_count"))
+                .lastPublishTime(getDateTime(row, "last_publish_time"))
+                .build();
 
-        LocalDateTime lastPublishTime = null;
+        publishStatisticsCache = new CachedStatistics<>(statistics, generation);
+        return statistics;
+    }
 
-        for (ReportConfig report : allReports) {
-            if (report.getIsPublished() != null && report.getIsPublished() == 1) {
-                publishedCount++;
-                // 更新最后发布时间
-                if (report.getPublishTime() != null) {
-                    if (lastPublishTime == null || report.getPublishTime().isAfter(lastPublishTime)) {
-                        lastPublishTime = report.getPublishTime();
-                    }
+    /**
+     * 审核/发布状态变更后使统计缓存失效
+     * 在事务提交后执行，避免并发请求在提交前重新读取旧数据并写回缓存。
+     * 其他入口（报表新建、删除、导入等）的变更由缓存过期时间兜底。
+     */
+    private void invalidateStatisticsAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    statisticsGeneration.incrementAndGet();
                 }
-            } else {
-                unpublishedCount++;
-                if (report.getApprovalStatus() != null && report.getApprovalStatus() == 3) {
-                    approvedUnpublishedCount++;
-                }
-            }
+            });
+        } else {
+            statisticsGeneration.incrementAndGet();
         }
+    }
 
-        return ReportAuditDTO.PublishStatistics.builder()
-                .totalReports(totalReports)
-                .publishedCount(publishedCount)
-                .unpublishedCount(unpublishedCount)
-                .approvedUnpublishedCount(approvedUnpublishedCount)
-                .lastPublishTime(lastPublishTime)
-                .build();
+    private static Integer getInt(Map<String, Object> row, String key) {
+        Object value = row != null ? row.get(key) : null;
+        return value instanceof Number ? ((Number) value).intValue() : 0;
+    }
+
+    private static Double getDouble(Map<String, Object> row, String key) {
+        Object value = row != null ? row.get(key) : null;
+        return value instanceof Number ? ((Number) value).doubleValue() : 0.0;
+    }
+
+    private static LocalDateTime getDateTime(Map<String, Object> row, String key) {
+        Object value = row != null ? row.get(key) : null;
+        if (value instanceof LocalDateTime) {
+            return (LocalDateTime) value;
+        }
+        if (value instanceof Timestamp) {
+            return ((Timestamp) value).toLocalDateTime();
+        }
+        return null;
+    }
+
+    /**
+     * 统计缓存条目：记录计算时的失效代数和时间
+     */
+    private static class CachedStatistics<T> {
+
+        final T value;
+        final long generation;
+        final long createdAt;
+
+        CachedStatistics(T value, long generation) {
+            this.value = value;
+            this.generation = generation;
+            this.createdAt = System.currentTimeMillis();
+        }
+
+        boolean isValid(long currentGeneration, long ttlMillis) {
+            return generation == currentGeneration && System.currentTimeMillis() - createdAt < ttlMillis;
+        }
     }
 
     @Override
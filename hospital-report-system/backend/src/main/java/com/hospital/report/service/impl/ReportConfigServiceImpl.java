@@ -5,6 +5,7 @@ import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hospital.report.counter.ReportViewCounter;
 import com.hospital.report.dto.ReportConfigDTO;
 import com.hospital.report.entity.ReportConfig;
 import com.hospital.report.entity.ReportComponent;
@@ -38,6 +39,7 @@ public class ReportConfigServiceImpl implements ReportConfigService {
     private final ReportDataSourceMapper reportDataSourceMapper;
     private final ReportVersionMapper reportVersionMapper;
     private final ObjectMapper objectMapper;
+    private final ReportViewCounter reportViewCounter;
 
     @Autowired
     ReportConfigRepository reportConfigRepository;
@@ -463,7 +465,12 @@ public class ReportConfigServiceImpl implements ReportConfigService {
 
     @Override
     public ReportConfig getReportById(Long reportId) {
-        return reportConfigRepository.findById(reportId).orElseThrow(() -> new IllegalArgumentException("Report not found"));
+        ReportConfig report = reportConfigRepository.findById(reportId).orElseThrow(() -> new IllegalArgumentException("Report not found"));
+        // 合并尚未写回的观看次数；返回的是脱离持久化上下文的副本，避免修改被刷回数据库
+        ReportConfig result = new ReportConfig();
+        BeanUtils.copyProperties(report, result);
+        result.setViewCount(reportViewCounter.mergePending(reportId, report.getViewCount()));
+        return result;
 //        return reportConfigMapper.selectByIdWithUserInfo(reportId);
     }
 
@@ -888,40 +895,25 @@ public class ReportConfigServiceImpl implements ReportConfigService {
 
     // 观看次数管理实现
     @Override
-    @Transactional
     public int incrementViewCount(long reportId) {
-        log.info("Incrementing view count for report {}", reportId);
-
-        // 检查报表是否存在
-        ReportConfig report = reportConfigMapper.selectByIdWithUserInfo(reportId);
-        if (report == null) {
-            throw new RuntimeException("Report not found with id: " + reportId);
+        // 只在内存计数器中累加，由ReportViewCounter定期批量写回
+        try {
+            return (int) reportViewCounter.increment(reportId);
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException(e.getMessage());
         }
-
-        // 增加观看次数
-        int currentViewCount = report.getViewCount() != null ? report.getViewCount() : 0;
-        int newViewCount = currentViewCount + 1;
-
-        // 更新数据库
-        report.setViewCount(newViewCount);
-        report.setUpdatedTime(LocalDateTime.now());
-        reportConfigRepository.save(report);
-
-        log.info("View count for report {} updated from {} to {}", reportId, currentViewCount, newViewCount);
-        return newViewCount;
     }
 
     @Override
     public int getViewCount(int reportId) {
-        ReportConfig report = reportConfigMapper.selectById(reportId);
-        if (report == null) {
-            throw new RuntimeException("Report not found with id: " + reportId);
+        try {
+            return (int) reportViewCounter.getViewCount((long) reportId);
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException(e.getMessage());
         }
-        return report.getViewCount() != null ? report.getViewCount() : 0;
     }
 
     @Override
-    @Transactional
     public void resetViewCount(int reportId) {
         log.info("Resetting view count for report {}", reportId);
 
@@ -930,9 +922,8 @@ public class ReportConfigServiceImpl implements ReportConfigService {
             throw new RuntimeException("Report not found with id: " + reportId);
         }
 
-        report.setViewCount(0);
-        report.setUpdatedTime(LocalDateTime.now());
-        reportConfigMapper.updateById(report);
+        // 计数器在写回锁内丢弃未写回的增量并清零数据库，避免与写回、重新加载交错
+        reportViewCounter.reset((long) reportId);
 
         log.info("View count for report {} reset to 0", reportId);
     }
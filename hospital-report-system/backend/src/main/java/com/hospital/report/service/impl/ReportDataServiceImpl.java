@@ -2,10 +2,24 @@ package com.hospital.report.service.impl;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hospital.report.cache.ReportResultCache;
+import com.hospital.report.entity.DataSource;
+import com.hospital.report.entity.ReportComponent;
 import com.hospital.report.entity.ReportDataSource;
+import com.hospital.report.federation.FederatedJoinEngine;
+import com.hospital.report.federation.RowStream;
+import com.hospital.report.generator.ReportComponentFetcher;
+import com.hospital.report.mapper.ReportComponentMapper;
 import com.hospital.report.mapper.ReportDataSourceMapper;
+import com.hospital.report.service.DataSourceService;
 import com.hospital.report.service.ReportDataService;
 import com.hospital.report.service.SqlExecutionService;
+import com.hospital.report.snapshot.ReportSnapshotEngine;
+import com.hospital.report.transform.AggregationEngine;
+import com.hospital.report.transform.SqlPushdownOptimizer;
+import com.hospital.report.transform.TransformCompiler;
+import com.hospital.report.transform.TransformPipeline;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpEntity;
@@ -15,8 +29,11 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
+import java.sql.ResultSetMetaData;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 @Service
@@ -28,38 +45,96 @@ public class ReportDataServiceImpl implements ReportDataService {
     private final SqlExecutionService sqlExecutionService;
     private final ObjectMapper objectMapper;
     private final RestTemplate restTemplate;
+    private final ReportSnapshotEngine snapshotEngine;
+    private final ReportResultCache resultCache;
+    private final ReportComponentMapper componentMapper;
+    private final ReportComponentFetcher componentFetcher;
+    private final TransformCompiler transformCompiler;
+    private final AggregationEngine aggregationEngine;
+    private final SqlPushdownOptimizer pushdownOptimizer;
+    private final DataSourceService dataSourceService;
+    private final FederatedJoinEngine federatedJoinEngine;
+
+    private static final Pattern SQL_PARAMETER = Pattern.compile("#\\{(\\w+)}");
+
+    @PostConstruct
+    public void registerSnapshotLoader() {
+        snapshotEngine.setLoader(new ReportSnapshotEngine.Loader() {
+            @Override
+            public Map<String, Object> load(ReportDataSource dataSource, Map<String, Object> parameters,
+                                            String incrementalColumn, Object watermark) {
+                Map<String, Object> result = incrementalColumn != null
+                    ? executeIncrementalQuery(dataSource, parameters, incrementalColumn, watermark)
+                    : loadSourceData(dataSource, parameters);
+                if (!Boolean.FALSE.equals(result.get("success"))) {
+                    dataSourceMapper.updateRefreshStatus(dataSource.getDataSourceId(), null, 0);
+                }
+                // The engine merges and scans rows by column name
+                return withRowMaps(result);
+            }
+
+            @Override
+            public Map<String, Object> finish(ReportDataSource dataSource, Map<String, Object> rawResult) {
+                if (dataSource.getTransformConfig() != null) {
+                    return transformData(rawResult, dataSource.getTransformConfig());
+                }
+                // Untransformed SQL results keep the same row shape as a live query
+                String sourceType = dataSource.getSourceType().toUpperCase();
+                return "SQL".equals(sourceType) || "DATABASE".equals(sourceType)
+                    ? withRowLists(rawResult)
+                    : rawResult;
+            }
+        });
+    }
 
     @Override
     public Map<String, Object> executeDataQuery(Long dataSourceId, Map<String, Object> parameters) {
+        // Serve from the precomputed snapshot when the data source is scheduled for refresh
+        Map<String, Object> snapshot = snapshotEngine.lookup(dataSourceId, parameters);
+        if (snapshot != null) {
+            return snapshot;
+        }
+
+        // Honor the owning report's cacheEnabled/cacheTimeout (stale-while-revalidate)
+        ReportResultCache.CachePolicy cachePolicy = resultCache.getPolicy(dataSourceId);
+        if (cachePolicy != null) {
+            return resultCache.get(cachePolicy, dataSourceId, parameters,
+                () -> executeLiveQuery(dataSourceId, parameters));
+        }
+
+        return executeLiveQuery(dataSourceId, parameters);
+    }
+
+    private Map<String, Object> executeLiveQuery(Long dataSourceId, Map<String, Object> parameters) {
         ReportDataSource dataSource = dataSourceMapper.selectByDataSourceId(dataSourceId);
         if (dataSource == null) {
             throw new RuntimeException("Data source not found");
         }
 
         try {
-            Map<String, Object> result;
-            
-            switch (dataSource.getSourceType().toUpperCase()) {
-                case "SQL":
-                case "DATABASE":
-                    result = executeDatabaseQuery(dataSource, parameters);
-                    break;
-                case "API":
-                    result = executeApiQuery(dataSource, parameters);
-                    break;
-                case "STATIC":
-                    result = getStaticData(dataSource.getStaticData());
-                    break;
-                case "TEMPLATE":
-                    result = executeSqlTemplate(dataSource.getSqlTemplateId(), parameters);
-                    break;
-                default:
-                    throw new RuntimeException("Unsupported data source type: " + dataSource.getSourceType());
+            // Push eligible filter/sort/limit/aggregate steps into the SQL; the rest runs in Java
+            String transformConfig = dataSource.getTransformConfig();
+            SqlPushdownOptimizer.PushdownPlan pushdownPlan = planPushdown(dataSource);
+            Map<String, Object> result = pushdownPlan != null
+                ? executePushdownQuery(dataSource, pushdownPlan, parameters)
+                : null;
+            if (result != null) {
+                transformConfig = pushdownPlan.getResidualConfig();
+                if (!pushdownPlan.isAggregated()) {
+                    pushdownOptimizer.recordColumnTypes(dataSource.getQueryConfig(), result);
+                }
+                if (transformConfig == null) {
+                    result = withRowMaps(result);
+                }
+            } else {
+                result = loadSourceData(dataSource, parameters);
+                // Column types decide which sorts and numeric filters the next plan may push down
+                pushdownOptimizer.recordColumnTypes(dataSource.getQueryConfig(), result);
             }
 
             // Apply data transformation if configured
-            if (dataSource.getTransformConfig() != null) {
-                result = transformData(result, dataSource.getTransformConfig());
+            if (transformConfig != null) {
+                result = transformData(result, transformConfig);
             }
 
             // Update last refresh time
@@ -79,6 +154,66 @@ public class ReportDataServiceImpl implements ReportDataService {
         }
     }
 
+    /**
+     * Plan SQL pushdown for the data source's transformConfig.
+     * Only SQL/DATABASE sources qualify; TEMPLATE sources are executed by template id and cannot be wrapped.
+     */
+    private SqlPushdownOptimizer.PushdownPlan planPushdown(ReportDataSource dataSource) {
+        String sourceType = dataSource.getSourceType().toUpperCase();
+        if (dataSource.getTransformConfig() == null || !("SQL".equals(sourceType) || "DATABASE".equals(sourceType))) {
+            return null;
+        }
+
+        try {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> config = objectMapper.readValue(dataSource.getQueryConfig(), Map.class);
+            String code = (String) config.getOrDefault("databaseType", "MySQL");
+
+            DataSource target;
+            try {
+                target = dataSourceService.getById(Long.parseLong(code));
+            } catch (NumberFormatException e) {
+                target = dataSourceService.findByCode(code);
+            }
+            return target != null
+                ? pushdownOptimizer.plan(dataSource.getQueryConfig(), dataSource.getTransformConfig(), target.getDatabaseType())
+                : null;
+
+        } catch (Exception e) {
+            log.debug("Skip pushdown for data source {}: {}", dataSource.getDataSourceId(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Run the source SQL wrapped by the pushdown plan.
+     * @return null when the rewritten query fails, so the caller falls back to the original query
+     */
+    private Map<String, Object> executePushdownQuery(ReportDataSource dataSource,
+                                                     SqlPushdownOptimizer.PushdownPlan plan,
+                                                     Map<String, Object> parameters) {
+        try {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> config = objectMapper.readValue(dataSource.getQueryConfig(), Map.class);
+            String sql = (String) config.get("sql");
+            String databaseType = (String) config.getOrDefault("databaseType", "MySQL");
+
+            Map<String, Object> result = sqlExecutionService.executeQuery(
+                plan.wrap(sql), plan.bindParameters(parameters), databaseType, 1L);
+            if (!Boolean.FALSE.equals(result.get("success"))) {
+                return result;
+            }
+            log.warn("Pushdown query failed for data source {}, falling back: {}",
+                dataSource.getDataSourceId(), result.get("message"));
+
+        } catch (Exception e) {
+            log.warn("Pushdown query failed for data source {}, falling back: {}",
+                dataSource.getDataSourceId(), e.getMessage());
+        }
+        pushdownOptimizer.disable(plan);
+        return null;
+    }
+
     @Override
     public Map<String, Object> executeDataQuery(String sourceType, String queryConfig, Map<String, Object> parameters) {
         try {
@@ -193,16 +328,17 @@ public class ReportDataServiceImpl implements ReportDataService {
                 return rawData;
             }
             
-            @SuppressWarnings("unchecked")
-            Map<String, Object> config = objectMapper.readValue(transformConfig, Map.class);
+            // Compiled once per distinct config and reused across calls
+            TransformPipeline pipeline = transformCompiler.compile(transformConfig);
             
-            Object data = rawData.get("data");
+            Map<String, Object> rowData = withRowMaps(rawData);
+            Object data = rowData.get("data");
             if (data instanceof List) {
                 @SuppressWarnings("unchecked")
                 List<Map<String, Object>> dataList = (List<Map<String, Object>>) data;
-                dataList = applyTransformations(dataList, config);
+                dataList = pipeline.execute(dataList, rowData.get("columns"));
                 
-                Map<String, Object> result = new HashMap<>(rawData);
+                Map<String, Object> result = new HashMap<>(rowData);
                 result.put("data", dataList);
                 result.put("total", dataList.size());
                 
@@ -217,6 +353,69 @@ public class ReportDataServiceImpl implements ReportDataService {
         }
     }
 
+    /**
+     * SQL results carry rows as value lists plus column names; convert them to maps keyed by column name
+     */
+    private Map<String, Object> withRowMaps(Map<String, Object> rawData) {
+        Object data = rawData.get("data");
+        Object columns = rawData.get("columns");
+        if (!(data instanceof List) || ((List<?>) data).isEmpty() || !(((List<?>) data).get(0) instanceof List)
+            || !(columns instanceof List)) {
+            return rawData;
+        }
+
+        List<?> columnList = (List<?>) columns;
+        String[] names = new String[columnList.size()];
+        for (int i = 0; i < names.length; i++) {
+            Object column = columnList.get(i);
+            names[i] = String.valueOf(column instanceof Map ? ((Map<?, ?>) column).get("name") : column);
+        }
+
+        List<Map<String, Object>> rows = new ArrayList<>(((List<?>) data).size());
+        for (Object row : (List<?>) data) {
+            List<?> values = (List<?>) row;
+            Map<String, Object> rowMap = new LinkedHashMap<>(Math.max(16, (int) (names.length / 0.75f) + 1));
+            for (int i = 0; i < names.length && i < values.size(); i++) {
+                rowMap.put(names[i], values.get(i));
+            }
+            rows.add(rowMap);
+        }
+
+        Map<String, Object> result = new HashMap<>(rawData);
+        result.put("data", rows);
+        return result;
+    }
+
+    /**
+     * Inverse of {@link #withRowMaps}: column-keyed rows back to value lists ordered by the column names
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> withRowLists(Map<String, Object> rowData) {
+        Object data = rowData.get("data");
+        Object columns = rowData.get("columns");
+        if (!(data instanceof List) || !(columns instanceof List)) {
+            return rowData;
+        }
+
+        List<?> columnList = (List<?>) columns;
+        List<List<Object>> rows = new ArrayList<>(((List<?>) data).size());
+        for (Object row : (List<?>) data) {
+            if (!(row instanceof Map)) {
+                return rowData;
+            }
+            Map<String, Object> rowMap = (Map<String, Object>) row;
+            List<Object> values = new ArrayList<>(columnList.size());
+            for (Object column : columnList) {
+                values.add(rowMap.get(String.valueOf(column)));
+            }
+            rows.add(values);
+        }
+
+        Map<String, Object> result = new HashMap<>(rowData);
+        result.put("data", rows);
+        return result;
+    }
+
     @Override
     public List<Map<String, Object>> aggregateData(List<Map<String, Object>> data, String aggregateConfig) {
         try {
@@ -224,40 +423,9 @@ public class ReportDataServiceImpl implements ReportDataService {
                 return data;
             }
             
-            @SuppressWarnings("unchecked")
-            Map<String, Object> config = objectMapper.readValue(aggregateConfig, Map.class);
-            
-            String groupBy = (String) config.get("groupBy");
-            @SuppressWarnings("unchecked")
-            List<Map<String, Object>> aggregations = (List<Map<String, Object>>) config.get("aggregations");
-            
-            if (groupBy == null || aggregations == null) {
-                return data;
-            }
-            
-            // Group data by specified field
-            Map<Object, List<Map<String, Object>>> groupedData = data.stream()
-                .collect(Collectors.groupingBy(row -> row.get(groupBy)));
-            
-            // Apply aggregations
-            List<Map<String, Object>> result = new ArrayList<>();
-            for (Map.Entry<Object, List<Map<String, Object>>> group : groupedData.entrySet()) {
-                Map<String, Object> aggregatedRow = new HashMap<>();
-                aggregatedRow.put(groupBy, group.getKey());
-                
-                for (Map<String, Object> agg : aggregations) {
-                    String field = (String) agg.get("field");
-                    String function = (String) agg.get("function");
-                    String alias = (String) agg.getOrDefault("alias", field + "_" + function);
-                    
-                    Object value = applyAggregateFunction(group.getValue(), field, function);
-                    aggregatedRow.put(alias, value);
-                }
-                
-                result.add(aggregatedRow);
-            }
-            
-            return result;
+            // Single-pass hash aggregation; large inputs are split across cores
+            List<Map<String, Object>> result = aggregationEngine.aggregate(data, aggregateConfig);
+            return result != null ? result : data;
             
         } catch (Exception e) {
             log.error("Failed to aggregate data: {}", e.getMessage(), e);
@@ -387,6 +555,8 @@ public class ReportDataServiceImpl implements ReportDataService {
     @Override
     public void refreshDataSourceCache(Long dataSourceId) {
         try {
+            snapshotEngine.refreshNow(dataSourceId);
+            resultCache.invalidateDataSource(dataSourceId);
             executeDataQuery(dataSourceId, new HashMap<>());
             log.info("Data source cache refreshed for ID: {}", dataSourceId);
         } catch (Exception e) {
@@ -414,8 +584,164 @@ public class ReportDataServiceImpl implements ReportDataService {
 
     @Override
     public Map<String, Object> combineDataSources(List<Long> dataSourceIds, String combineConfig) {
-        // TODO: Implement data source combination
-        return createEmptyResult();
+        if (dataSourceIds == null || dataSourceIds.isEmpty()) {
+            return createEmptyResult();
+        }
+
+        List<RowStream> inputs = new ArrayList<>();
+        try {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> config = combineConfig != null && !combineConfig.trim().isEmpty()
+                ? objectMapper.readValue(combineConfig, Map.class)
+                : new HashMap<>();
+            @SuppressWarnings("unchecked")
+            Map<String, Object> parameters = config.get("parameters") instanceof Map
+                ? (Map<String, Object>) config.get("parameters")
+                : new HashMap<>();
+
+            // All sources are opened up front so streaming SQL sources are read concurrently
+            for (Long dataSourceId : dataSourceIds) {
+                inputs.add(openRowStream(dataSourceId, sourceParameters(dataSourceId, parameters)));
+            }
+            return federatedJoinEngine.combine(inputs, config);
+
+        } catch (Exception e) {
+            inputs.forEach(RowStream::close);
+            log.error("Failed to combine data sources {}: {}", dataSourceIds, e.getMessage(), e);
+            throw new RuntimeException("Data source combination failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Parameters for one source of a combination: shared entries overlaid with the entry keyed by the
+     * data source id, e.g. {"from": "2024-01-01", "12": {"deptId": 3}}
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> sourceParameters(Long dataSourceId, Map<String, Object> parameters) {
+        Map<String, Object> merged = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : parameters.entrySet()) {
+            if (!(entry.getValue() instanceof Map)) {
+                merged.put(entry.getKey(), entry.getValue());
+            }
+        }
+        Object own = parameters.get(String.valueOf(dataSourceId));
+        if (own instanceof Map) {
+            merged.putAll((Map<String, Object>) own);
+        }
+        return merged;
+    }
+
+    /**
+     * Only the parameters the SQL references, in placeholder order: values are bound by position,
+     * so keys meant for other sources would shift every placeholder after them
+     */
+    private static Map<String, Object> referencedParameters(String sql, Map<String, Object> parameters) {
+        Map<String, Object> referenced = new LinkedHashMap<>();
+        if (sql == null) {
+            return referenced;
+        }
+        Matcher matcher = SQL_PARAMETER.matcher(sql);
+        while (matcher.find()) {
+            String key = matcher.group(1);
+            if (parameters.containsKey(key)) {
+                referenced.putIfAbsent(key, parameters.get(key));
+            }
+        }
+        return referenced;
+    }
+
+    /**
+     * Plain SQL sources are streamed from a server-side cursor; other sources (and SQL sources with
+     * transformations) go through the regular query path and are read from memory.
+     * Streamed values get the same conversion as regular query results, so join keys and output match.
+     */
+    @SuppressWarnings("unchecked")
+    private RowStream openRowStream(Long dataSourceId, Map<String, Object> parameters) throws JsonProcessingException {
+        ReportDataSource dataSource = dataSourceMapper.selectByDataSourceId(dataSourceId);
+        if (dataSource == null) {
+            throw new RuntimeException("Data source not found: " + dataSourceId);
+        }
+
+        String name = dataSource.getSourceName() != null ? dataSource.getSourceName() : String.valueOf(dataSourceId);
+        String sourceType = dataSource.getSourceType().toUpperCase();
+        Map<String, Object> sourceParameters = parameters;
+        if ("SQL".equals(sourceType) || "DATABASE".equals(sourceType)) {
+            Map<String, Object> config = objectMapper.readValue(dataSource.getQueryConfig(), Map.class);
+            String sql = (String) config.get("sql");
+            String databaseType = (String) config.getOrDefault("databaseType", "MySQL");
+            sourceParameters = referencedParameters(sql, parameters);
+
+            if (dataSource.getTransformConfig() == null) {
+                Map<String, Object> bound = sourceParameters;
+                return federatedJoinEngine.stream(name, sink ->
+                    sqlExecutionService.executeQueryStreaming(sql, bound, databaseType, resultSet -> {
+                        ResultSetMetaData metaData = resultSet.getMetaData();
+                        int columnCount = metaData.getColumnCount();
+                        String[] labels = new String[columnCount];
+                        for (int i = 0; i < columnCount; i++) {
+                            labels[i] = metaData.getColumnLabel(i + 1);
+                        }
+
+                        while (resultSet.next()) {
+                            Map<String, Object> row = new LinkedHashMap<>(Math.max(16, (int) (columnCount / 0.75f) + 1));
+                            for (int i = 0; i < columnCount; i++) {
+                                row.put(labels[i], SqlExecutionService.toResultValue(resultSet.getObject(i + 1)));
+                            }
+                            if (!sink.accept(row)) {
+                                return;
+                            }
+                        }
+                    }));
+            }
+        }
+
+        Object data = withRowMaps(executeDataQuery(dataSourceId, sourceParameters)).get("data");
+        return RowStream.of(name, data instanceof List ? (List<Map<String, Object>>) data : Collections.emptyList());
+    }
+
+    @Override
+    public Map<String, Object> fetchReportComponentData(Long reportId, Map<String, Object> parameters) {
+        List<ReportComponent> components = componentMapper.selectByReportId(reportId);
+        Map<String, Object> reportParameters = parameters != null ? parameters : new HashMap<>();
+
+        Map<String, Object> result = componentFetcher.fetch(components,
+            component -> resolveComponentParameters(component, reportParameters),
+            this::executeDataQuery,
+            componentFetcher.getDefaultDeadlineMillis());
+        result.put("reportId", reportId);
+        result.put("parameters", reportParameters);
+        result.put("generatedAt", System.currentTimeMillis());
+
+        if (Boolean.TRUE.equals(result.get("partial"))) {
+            log.warn("Report {} generated with {} failed component(s) in {}ms",
+                reportId, result.get("failedCount"), result.get("elapsedMs"));
+        }
+        return result;
+    }
+
+    /**
+     * Report parameters overlaid with the component's own "parameters" from dataConfig
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> resolveComponentParameters(ReportComponent component, Map<String, Object> reportParameters) {
+        if (component.getDataConfig() == null || component.getDataConfig().isEmpty()) {
+            return reportParameters;
+        }
+
+        try {
+            Map<String, Object> dataConfig = objectMapper.readValue(component.getDataConfig(), Map.class);
+            Object componentParameters = dataConfig.get("parameters");
+            if (!(componentParameters instanceof Map)) {
+                return reportParameters;
+            }
+
+            Map<String, Object> merged = new HashMap<>(reportParameters);
+            merged.putAll((Map<String, Object>) componentParameters);
+            return merged;
+        } catch (JsonProcessingException e) {
+            log.warn("Invalid dataConfig on component {}: {}", component.getComponentId(), e.getMessage());
+            return reportParameters;
+        }
     }
 
     @Override
@@ -426,8 +752,12 @@ public class ReportDataServiceImpl implements ReportDataService {
 
     @Override
     public void scheduleDataRefresh(Long dataSourceId, String cronExpression) {
-        // TODO: Implement scheduled data refresh
-        log.info("Scheduled data refresh for data source {} with cron: {}", dataSourceId, cronExpression);
+        try {
+            snapshotEngine.scheduleCron(dataSourceId, cronExpression);
+            log.info("Scheduled data refresh for data source {} with cron: {}", dataSourceId, cronExpression);
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Invalid cron expression: " + cronExpression, e);
+        }
     }
 
     @Override
@@ -445,6 +775,50 @@ public class ReportDataServiceImpl implements ReportDataService {
     }
 
     // Helper methods
+
+    private Map<String, Object> loadSourceData(ReportDataSource dataSource, Map<String, Object> parameters) {
+        switch (dataSource.getSourceType().toUpperCase()) {
+            case "SQL":
+            case "DATABASE":
+                return executeDatabaseQuery(dataSource, parameters);
+            case "API":
+                return executeApiQuery(dataSource, parameters);
+            case "STATIC":
+                return getStaticData(dataSource.getStaticData());
+            case "TEMPLATE":
+                return executeSqlTemplate(dataSource.getSqlTemplateId(), parameters);
+            default:
+                throw new RuntimeException("Unsupported data source type: " + dataSource.getSourceType());
+        }
+    }
+
+    /**
+     * Incremental snapshot refresh: wraps the configured SQL and only fetches rows past the watermark.
+     * The watermark placeholder is appended last so positional binding follows the parameter order.
+     */
+    private Map<String, Object> executeIncrementalQuery(ReportDataSource dataSource, Map<String, Object> parameters,
+                                                        String incrementalColumn, Object watermark) {
+        try {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> config = objectMapper.readValue(dataSource.getQueryConfig(), Map.class);
+
+            String sql = ((String) config.get("sql")).trim();
+            if (sql.endsWith(";")) {
+                sql = sql.substring(0, sql.length() - 1);
+            }
+            String databaseType = (String) config.getOrDefault("databaseType", "MySQL");
+
+            String incrementalSql = "SELECT * FROM (" + sql + ") snapshot_src WHERE snapshot_src."
+                + incrementalColumn + " > #{__snapshot_watermark}";
+            Map<String, Object> incrementalParameters = new LinkedHashMap<>(parameters);
+            incrementalParameters.put("__snapshot_watermark", watermark);
+
+            return sqlExecutionService.executeQuery(incrementalSql, incrementalParameters, databaseType, 1L);
+
+        } catch (Exception e) {
+            throw new RuntimeException("Incremental query execution failed", e);
+        }
+    }
     
     private Map<String, Object> executeDatabaseQuery(ReportDataSource dataSource, Map<String, Object> parameters) {
         try {
@@ -479,36 +853,6 @@ public class ReportDataServiceImpl implements ReportDataService {
         }
     }
 
-    private List<Map<String, Object>> applyTransformations(List<Map<String, Object>> data, Map<String, Object> config) {
-        @SuppressWarnings("unchecked")
-        List<Map<String, Object>> transformations = (List<Map<String, Object>>) config.get("transformations");
-        
-        if (transformations == null) {
-            return data;
-        }
-        
-        for (Map<String, Object> transformation : transformations) {
-            String type = (String) transformation.get("type");
-            
-            switch (type.toUpperCase()) {
-                case "FILTER":
-                    data = applyFilter(data, transformation);
-                    break;
-                case "SORT":
-                    data = applySort(data, transformation);
-                    break;
-                case "MAP":
-                    data = applyMapping(data, transformation);
-                    break;
-                case "LIMIT":
-                    data = applyLimit(data, transformation);
-                    break;
-            }
-        }
-        
-        return data;
-    }
-
     private List<Map<String, Object>> applyFilter(List<Map<String, Object>> data, Map<String, Object> filter) {
         String field = (String) filter.get("field");
         String operator = (String) filter.get("operator");
@@ -522,88 +866,6 @@ public class ReportDataServiceImpl implements ReportDataService {
             .collect(Collectors.toList());
     }
 
-    private List<Map<String, Object>> applySort(List<Map<String, Object>> data, Map<String, Object> sort) {
-        String field = (String) sort.get("field");
-        String direction = (String) sort.getOrDefault("direction", "ASC");
-        
-        return data.stream()
-            .sorted((a, b) -> {
-                Object valueA = a.get(field);
-                Object valueB = b.get(field);
-                
-                int comparison = compareValues(valueA, valueB);
-                return "DESC".equalsIgnoreCase(direction) ? -comparison : comparison;
-            })
-            .collect(Collectors.toList());
-    }
-
-    private List<Map<String, Object>> applyMapping(List<Map<String, Object>> data, Map<String, Object> mapping) {
-        @SuppressWarnings("unchecked")
-        Map<String, String> fieldMappings = (Map<String, String>) mapping.get("mappings");
-        
-        return data.stream()
-            .map(row -> {
-                Map<String, Object> newRow = new HashMap<>();
-                for (Map.Entry<String, String> fieldMapping : fieldMappings.entrySet()) {
-                    String oldField = fieldMapping.getKey();
-                    String newField = fieldMapping.getValue();
-                    newRow.put(newField, row.get(oldField));
-                }
-                return newRow;
-            })
-            .collect(Collectors.toList());
-    }
-
-    private List<Map<String, Object>> applyLimit(List<Map<String, Object>> data, Map<String, Object> limit) {
-        Integer limitValue = (Integer) limit.get("limit");
-        Integer offset = (Integer) limit.getOrDefault("offset", 0);
-        
-        if (limitValue == null) {
-            return data;
-        }
-        
-        int startIndex = Math.max(0, offset);
-        int endIndex = Math.min(data.size(), startIndex + limitValue);
-        
-        return data.subList(startIndex, endIndex);
-    }
-
-    private Object applyAggregateFunction(List<Map<String, Object>> data, String field, String function) {
-        switch (function.toUpperCase()) {
-            case "COUNT":
-                return data.size();
-            case "SUM":
-                return data.stream()
-                    .mapToDouble(row -> {
-                        Object value = row.get(field);
-                        return value instanceof Number ? ((Number) value).doubleValue() : 0;
-                    })
-                    .sum();
-            case "AVG":
-                return data.stream()
-                    .mapToDouble(row -> {
-                        Object value = row.get(field);
-                        return value instanceof Number ? ((Number) value).doubleValue() : 0;
-                    })
-                    .average()
-                    .orElse(0);
-            case "MIN":
-                return data.stream()
-                    .map(row -> row.get(field))
-                    .filter(Objects::nonNull)
-                    .min(this::compareValues)
-                    .orElse(null);
-            case "MAX":
-                return data.stream()
-                    .map(row -> row.get(field))
-                    .filter(Objects::nonNull)
-                    .max(this::compareValues)
-                    .orElse(null);
-            default:
-                return null;
-        }
-    }
-
     private boolean evaluateCondition(Object fieldValue, String operator, Object value) {
         if (fieldValue == null && value == null) {
             return "EQUALS".equals(operator);
@@ -4,8 +4,11 @@ import com.hospital.report.service.ReportRendererService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -16,81 +19,60 @@ public class ReportRendererServiceImpl implements ReportRendererService {
     
     private final ObjectMapper objectMapper;
     
+    private static final String RENDER_TYPE_HTML = "html";
+    private static final String RENDER_TYPE_MOBILE = "mobile";
+    
+    /**
+     * 编译后布局缓存上限，按最近使用淘汰
+     */
+    private static final int MAX_COMPILED_LAYOUTS = 256;
+    
+    /**
+     * 已编译的报表布局：布局指纹 -> 静态片段与数据插槽
+     */
+    private final Map<String, CompiledLayout> compiledLayouts = Collections.synchronizedMap(
+        new LinkedHashMap<String, CompiledLayout>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompiledLayout> eldest) {
+                return size() > MAX_COMPILED_LAYOUTS;
+            }
+        });
+    
+    /**
+     * 布局指纹缓存：报表ID + 版本号 + 更新时间 -> 布局指纹，同一版本的报表不再重复序列化组件配置
+     */
+    private final Map<String, String> layoutFingerprints = Collections.synchronizedMap(
+        new LinkedHashMap<String, String>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > MAX_COMPILED_LAYOUTS;
+            }
+        });
+    
     @Override
     public String renderToHtml(Map<String, Object> reportData, Map<String, Object> options) {
         try {
-            StringBuilder html = new StringBuilder();
-            
-            // HTML文档头部
-            html.append("<!DOCTYPE html>\n");
-            html.append("<html lang=\"zh-CN\">\n");
-            html.append("<head>\n");
-            html.append("    <meta charset=\"UTF-8\">\n");
-            html.append("    <meta name=\"viewport\" content=\"width=device-width, initial-scale=1.0\">\n");
-            html.append("    <title>").append(reportData.get("reportName")).append("</title>\n");
-            
-            // 引入样式
-            html.append("    <style>\n");
-            html.append(generateStyles(reportData, "html"));
-            html.append("    </style>\n");
-            
-            // 引入ECharts
-            html.append("    <script src=\"https://cdn.jsdelivr.net/npm/echarts@5.4.3/dist/echarts.min.js\"></script>\n");
-            html.append("</head>\n");
-            
-            // HTML主体
-            html.append("<body>\n");
-            html.append("    <div class=\"report-container\">\n");
-            
-            // 报表头部信息
-            html.append("        <div class=\"report-header\">\n");
-            html.append("            <h1>").append(reportData.get("reportName")).append("</h1>\n");
-            if (reportData.get("reportDescription") != null) {
-                html.append("            <p class=\"report-description\">").append(reportData.get("reportDescription")).append("</p>\n");
-            }
-            html.append("            <div class=\"report-meta\">\n");
-            html.append("                <span>生成时间: ").append(new Date((Long) reportData.get("generatedAt"))).append("</span>\n");
-            if (reportData.get("parameters") != null) {
-                Map<String, Object> params = (Map<String, Object>) reportData.get("parameters");
-                if (!params.isEmpty()) {
-                    html.append("                <span>参数: ").append(formatParameters(params)).append("</span>\n");
-                }
-            }
-            html.append("            </div>\n");
-            html.append("        </div>\n");
-            
-            // 报表画布
-            Integer canvasWidth = (Integer) reportData.get("canvasWidth");
-            Integer canvasHeight = (Integer) reportData.get("canvasHeight");
-            
-            html.append("        <div class=\"report-canvas\" style=\"width: ").append(canvasWidth).append("px; height: ").append(canvasHeight).append("px; position: relative; margin: 0 auto; background: white; border: 1px solid #e8e8e8;\">\n");
-            
-            // 渲染组件
-            List<Map<String, Object>> components = (List<Map<String, Object>>) reportData.get("components");
-            if (components != null) {
-                for (Map<String, Object> component : components) {
-                    html.append(renderComponent(component, "html", options));
-                }
-            }
-            
-            html.append("        </div>\n");
-            html.append("    </div>\n");
-            
-            // JavaScript脚本
-            html.append("    <script>\n");
-            html.append(generateScripts(reportData, "html"));
-            html.append("    </script>\n");
-            
-            html.append("</body>\n");
-            html.append("</html>");
-            
-            return html.toString();
-            
+            return renderToString(reportData, RENDER_TYPE_HTML, options);
         } catch (Exception e) {
             log.error("HTML渲染失败", e);
             return "<html><body><h1>报表渲染失败</h1><p>" + e.getMessage() + "</p></body></html>";
         }
     }
+
+    @Override
+    public void renderToHtml(Map<String, Object> reportData, Map<String, Object> options, OutputStream out) throws IOException {
+        writeCompiledLayout(compileLayout(reportData, RENDER_TYPE_HTML), reportData, RENDER_TYPE_HTML, options, out);
+    }
+    
+    /**
+     * 渲染为字符串：静态片段直接追加缓存的文本，不经过字节编码再解码
+     */
+    private String renderToString(Map<String, Object> reportData, String renderType, Map<String, Object> options) throws IOException {
+        CompiledLayout layout = compileLayout(reportData, renderType);
+        StringWriter writer = new StringWriter(layout.staticLength + 4096);
+        writeCompiledLayout(layout, reportData, renderType, options, writer, null);
+        return writer.toString();
+    }
     
     @Override
     public String renderToJson(Map<String, Object> reportData, Map<String, Object> options) {
@@ -105,62 +87,17 @@ public class ReportRendererServiceImpl implements ReportRendererService {
     @Override
     public String renderToMobileHtml(Map<String, Object> reportData, Map<String, Object> options) {
         try {
-            StringBuilder html = new StringBuilder();
-            
-            // 移动端HTML头部
-            html.append("<!DOCTYPE html>\n");
-            html.append("<html lang=\"zh-CN\">\n");
-            html.append("<head>\n");
-            html.append("    <meta charset=\"UTF-8\">\n");
-            html.append("    <meta name=\"viewport\" content=\"width=device-width, initial-scale=1.0, maximum-scale=1.0, user-scalable=no\">\n");
-            html.append("    <meta name=\"format-detection\" content=\"telephone=no\">\n");
-            html.append("    <title>").append(reportData.get("reportName")).append("</title>\n");
-            
-            html.append("    <style>\n");
-            html.append(generateStyles(reportData, "mobile"));
-            html.append("    </style>\n");
-            
-            html.append("    <script src=\"https://cdn.jsdelivr.net/npm/echarts@5.4.3/dist/echarts.min.js\"></script>\n");
-            html.append("</head>\n");
-            
-            html.append("<body>\n");
-            html.append("    <div class=\"mobile-report-container\">\n");
-            
-            // 移动端报表头部
-            html.append("        <div class=\"mobile-report-header\">\n");
-            html.append("            <h2>").append(reportData.get("reportName")).append("</h2>\n");
-            html.append("            <div class=\"mobile-report-meta\">").append(new Date((Long) reportData.get("generatedAt"))).append("</div>\n");
-            html.append("        </div>\n");
-            
-            // 移动端组件布局（垂直排列）
-            html.append("        <div class=\"mobile-components\">\n");
-            
-            List<Map<String, Object>> components = (List<Map<String, Object>>) reportData.get("components");
-            if (components != null) {
-                for (Map<String, Object> component : components) {
-                    html.append("            <div class=\"mobile-component-wrapper\">\n");
-                    html.append(renderComponent(component, "mobile", options));
-                    html.append("            </div>\n");
-                }
-            }
-            
-            html.append("        </div>\n");
-            html.append("    </div>\n");
-            
-            html.append("    <script>\n");
-            html.append(generateScripts(reportData, "mobile"));
-            html.append("    </script>\n");
-            
-            html.append("</body>\n");
-            html.append("</html>");
-            
-            return html.toString();
-            
+            return renderToString(reportData, RENDER_TYPE_MOBILE, options);
         } catch (Exception e) {
             log.error("移动端HTML渲染失败", e);
             return "<html><body><h1>移动端报表渲染失败</h1></body></html>";
         }
     }
+
+    @Override
+    public void renderToMobileHtml(Map<String, Object> reportData, Map<String, Object> options, OutputStream out) throws IOException {
+        writeCompiledLayout(compileLayout(reportData, RENDER_TYPE_MOBILE), reportData, RENDER_TYPE_MOBILE, options, out);
+    }
     
     @Override
     public String renderToPrintHtml(Map<String, Object> reportData, Map<String, Object> options) {
@@ -214,37 +151,50 @@ public class ReportRendererServiceImpl implements ReportRendererService {
     
     @Override
     public String renderComponent(Map<String, Object> componentData, String renderType, Map<String, Object> options) {
+        StringWriter writer = new StringWriter();
+        try {
+            writeComponent(writer, componentData, renderType, options);
+        } catch (IOException e) {
+            // StringWriter不会抛出IO异常
+            throw new IllegalStateException(e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * 把单个组件直接写入输出，表格逐行写出，不在内存中拼接整段HTML
+     */
+    private void writeComponent(Writer out, Map<String, Object> componentData, String renderType,
+                                Map<String, Object> options) throws IOException {
         try {
             String componentType = (String) componentData.get("componentType");
             String componentId = componentData.get("componentId").toString();
             Map<String, Object> position = (Map<String, Object>) componentData.get("position");
             
-            StringBuilder component = new StringBuilder();
-            
             if ("mobile".equals(renderType)) {
                 // 移动端组件渲染
-                component.append("<div class=\"mobile-component mobile-").append(componentType).append("\" data-component-id=\"").append(componentId).append("\">\n");
+                out.write("<div class=\"mobile-component mobile-" + componentType + "\" data-component-id=\"" + componentId + "\">\n");
                 
                 switch (componentType) {
                     case "table":
-                        component.append(renderMobileTable(componentData));
+                        writeMobileTable(out, componentData);
                         break;
                     case "bar-chart":
                     case "line-chart":
                     case "pie-chart":
-                        component.append(renderMobileChart(componentData));
+                        out.write(renderMobileChart(componentData));
                         break;
                     case "text":
-                        component.append(renderMobileText(componentData));
+                        out.write(renderMobileText(componentData));
                         break;
                     case "image":
-                        component.append(renderMobileImage(componentData));
+                        out.write(renderMobileImage(componentData));
                         break;
                     default:
-                        component.append("<div class=\"unsupported-component\">不支持的组件类型: ").append(componentType).append("</div>");
+                        out.write("<div class=\"unsupported-component\">不支持的组件类型: " + componentType + "</div>");
                 }
                 
-                component.append("</div>\n");
+                out.write("</div>\n");
                 
             } else {
                 // 桌面端组件渲染
@@ -254,45 +204,47 @@ public class ReportRendererServiceImpl implements ReportRendererService {
                 int height = (Integer) position.get("height");
                 Integer zIndex = (Integer) componentData.get("zIndex");
                 
-                component.append("<div class=\"report-component component-").append(componentType).append("\" ");
-                component.append("data-component-id=\"").append(componentId).append("\" ");
-                component.append("style=\"position: absolute; left: ").append(x).append("px; top: ").append(y).append("px; ");
-                component.append("width: ").append(width).append("px; height: ").append(height).append("px; ");
+                StringBuilder wrapper = new StringBuilder();
+                wrapper.append("<div class=\"report-component component-").append(componentType).append("\" ");
+                wrapper.append("data-component-id=\"").append(componentId).append("\" ");
+                wrapper.append("style=\"position: absolute; left: ").append(x).append("px; top: ").append(y).append("px; ");
+                wrapper.append("width: ").append(width).append("px; height: ").append(height).append("px; ");
                 if (zIndex != null) {
-                    component.append("z-index: ").append(zIndex).append("; ");
+                    wrapper.append("z-index: ").append(zIndex).append("; ");
                 }
-                component.append("\">\n");
+                wrapper.append("\">\n");
+                out.write(wrapper.toString());
                 
                 switch (componentType) {
                     case "table":
-                        component.append(renderTable(componentData, renderType));
+                        writeTable(out, componentData);
                         break;
                     case "bar-chart":
                     case "line-chart":
                     case "pie-chart":
-                        component.append(renderChart(componentData, renderType));
+                        out.write(renderChart(componentData, renderType));
                         break;
                     case "text":
-                        component.append(renderText(componentData, renderType));
+                        out.write(renderText(componentData, renderType));
                         break;
                     case "image":
-                        component.append(renderImage(componentData, renderType));
+                        out.write(renderImage(componentData, renderType));
                         break;
                     case "divider":
-                        component.append(renderDivider(componentData, renderType));
+                        out.write(renderDivider(componentData, renderType));
                         break;
                     default:
-                        component.append("<div class=\"unsupported-component\">不支持的组件类型: ").append(componentType).append("</div>");
+                        out.write("<div class=\"unsupported-component\">不支持的组件类型: " + componentType + "</div>");
                 }
                 
-                component.append("</div>\n");
+                out.write("</div>\n");
             }
             
-            return component.toString();
-            
+        } catch (IOException e) {
+            throw e;
         } catch (Exception e) {
             log.error("组件渲染失败", e);
-            return "<div class=\"component-error\">组件渲染失败: " + e.getMessage() + "</div>";
+            out.write("<div class=\"component-error\">组件渲染失败: " + e.getMessage() + "</div>");
         }
     }
     
@@ -322,15 +274,7 @@ public class ReportRendererServiceImpl implements ReportRendererService {
         StringBuilder js = new StringBuilder();
         
         // 初始化图表
-        List<Map<String, Object>> components = (List<Map<String, Object>>) reportData.get("components");
-        if (components != null) {
-            for (Map<String, Object> component : components) {
-                String componentType = (String) component.get("componentType");
-                if (componentType.contains("chart")) {
-                    js.append(generateChartScript(component, renderType));
-                }
-            }
-        }
+        js.append(generateChartScripts(reportData, renderType));
         
         // 添加交互功能
         if (!"print".equals(renderType)) {
@@ -348,50 +292,330 @@ public class ReportRendererServiceImpl implements ReportRendererService {
             .collect(Collectors.joining(", "));
     }
     
-    private String renderTable(Map<String, Object> componentData, String renderType) {
+    /**
+     * 获取报表布局的编译结果
+     * 布局指纹只包含报表元信息、样式和组件配置（不含组件数据），
+     * 同一布局的后续渲染直接复用已编码的静态片段，只填充数据插槽。
+     */
+    private CompiledLayout compileLayout(Map<String, Object> reportData, String renderType) throws IOException {
+        String cacheKey = renderType + ":" + reportData.get("reportId") + ":" + layoutFingerprint(reportData);
+        CompiledLayout layout = compiledLayouts.get(cacheKey);
+        if (layout == null) {
+            layout = "mobile".equals(renderType)
+                ? compileMobileLayout(reportData)
+                : compileDesktopLayout(reportData);
+            compiledLayouts.put(cacheKey, layout);
+            log.debug("报表布局编译完成: {}, 片段数: {}", cacheKey, layout.segments.size());
+        }
+        return layout;
+    }
+    
+    /**
+     * 报表数据带有版本号或更新时间（来自 ReportConfig）时按版本缓存指纹，否则每次重新计算
+     */
+    private String layoutFingerprint(Map<String, Object> reportData) throws IOException {
+        Object reportId = reportData.get("reportId");
+        Object version = reportData.get("version");
+        Object updatedTime = reportData.get("updatedTime");
+        if (reportId == null || (version == null && updatedTime == null)) {
+            return computeLayoutFingerprint(reportData);
+        }
+        
+        String versionKey = reportId + ":" + version + ":" + updatedTime;
+        String fingerprint = layoutFingerprints.get(versionKey);
+        if (fingerprint == null) {
+            fingerprint = computeLayoutFingerprint(reportData);
+            layoutFingerprints.put(versionKey, fingerprint);
+        }
+        return fingerprint;
+    }
+    
+    private String computeLayoutFingerprint(Map<String, Object> reportData) throws IOException {
+        Map<String, Object> layout = new LinkedHashMap<>();
+        layout.put("reportName", reportData.get("reportName"));
+        layout.put("reportDescription", reportData.get("reportDescription"));
+        layout.put("canvasWidth", reportData.get("canvasWidth"));
+        layout.put("canvasHeight", reportData.get("canvasHeight"));
+        layout.put("styleConfig", reportData.get("styleConfig"));
+        
+        List<Map<String, Object>> components = (List<Map<String, Object>>) reportData.get("components");
+        if (components != null) {
+            List<Map<String, Object>> componentLayouts = new ArrayList<>(components.size());
+            for (Map<String, Object> component : components) {
+                Map<String, Object> componentLayout = new LinkedHashMap<>(component);
+                componentLayout.remove("data");
+                componentLayouts.add(componentLayout);
+            }
+            layout.put("components", componentLayouts);
+        }
+        
+        return DigestUtils.md5DigestAsHex(objectMapper.writeValueAsBytes(layout));
+    }
+    
+    private CompiledLayout compileDesktopLayout(Map<String, Object> reportData) throws IOException {
+        LayoutBuilder builder = new LayoutBuilder();
+        
+        // HTML文档头部
+        builder.append("<!DOCTYPE html>\n");
+        builder.append("<html lang=\"zh-CN\">\n");
+        builder.append("<head>\n");
+        builder.append("    <meta charset=\"UTF-8\">\n");
+        builder.append("    <meta name=\"viewport\" content=\"width=device-width, initial-scale=1.0\">\n");
+        builder.append("    <title>" + reportData.get("reportName") + "</title>\n");
+        
+        // 引入样式
+        builder.append("    <style>\n");
+        builder.append(generateStyles(reportData, "html"));
+        builder.append("    </style>\n");
+        
+        // 引入ECharts
+        builder.append("    <script src=\"https://cdn.jsdelivr.net/npm/echarts@5.4.3/dist/echarts.min.js\"></script>\n");
+        builder.append("</head>\n");
+        
+        // HTML主体
+        builder.append("<body>\n");
+        builder.append("    <div class=\"report-container\">\n");
+        
+        // 报表头部信息
+        builder.append("        <div class=\"report-header\">\n");
+        builder.append("            <h1>" + reportData.get("reportName") + "</h1>\n");
+        if (reportData.get("reportDescription") != null) {
+            builder.append("            <p class=\"report-description\">" + reportData.get("reportDescription") + "</p>\n");
+        }
+        builder.append("            <div class=\"report-meta\">\n");
+        builder.slot(SlotType.META, -1);
+        builder.append("            </div>\n");
+        builder.append("        </div>\n");
+        
+        // 报表画布
+        Integer canvasWidth = (Integer) reportData.get("canvasWidth");
+        Integer canvasHeight = (Integer) reportData.get("canvasHeight");
+        
+        builder.append("        <div class=\"report-canvas\" style=\"width: " + canvasWidth + "px; height: " + canvasHeight + "px; position: relative; margin: 0 auto; background: white; border: 1px solid #e8e8e8;\">\n");
+        
+        appendComponents(builder, reportData, "html", null, null);
+        
+        builder.append("        </div>\n");
+        builder.append("    </div>\n");
+        
+        // JavaScript脚本
+        builder.append("    <script>\n");
+        builder.slot(SlotType.SCRIPTS, -1);
+        builder.append(generateInteractionScripts("html"));
+        builder.append("    </script>\n");
+        
+        builder.append("</body>\n");
+        builder.append("</html>");
+        
+        return builder.build();
+    }
+    
+    private CompiledLayout compileMobileLayout(Map<String, Object> reportData) throws IOException {
+        LayoutBuilder builder = new LayoutBuilder();
+        
+        // 移动端HTML头部
+        builder.append("<!DOCTYPE html>\n");
+        builder.append("<html lang=\"zh-CN\">\n");
+        builder.append("<head>\n");
+        builder.append("    <meta charset=\"UTF-8\">\n");
+        builder.append("    <meta name=\"viewport\" content=\"width=device-width, initial-scale=1.0, maximum-scale=1.0, user-scalable=no\">\n");
+        builder.append("    <meta name=\"format-detection\" content=\"telephone=no\">\n");
+        builder.append("    <title>" + reportData.get("reportName") + "</title>\n");
+        
+        builder.append("    <style>\n");
+        builder.append(generateStyles(reportData, "mobile"));
+        builder.append("    </style>\n");
+        
+        builder.append("    <script src=\"https://cdn.jsdelivr.net/npm/echarts@5.4.3/dist/echarts.min.js\"></script>\n");
+        builder.append("</head>\n");
+        
+        builder.append("<body>\n");
+        builder.append("    <div class=\"mobile-report-container\">\n");
+        
+        // 移动端报表头部
+        builder.append("        <div class=\"mobile-report-header\">\n");
+        builder.append("            <h2>" + reportData.get("reportName") + "</h2>\n");
+        builder.slot(SlotType.META, -1);
+        builder.append("        </div>\n");
+        
+        // 移动端组件布局（垂直排列）
+        builder.append("        <div class=\"mobile-components\">\n");
+        
+        appendComponents(builder, reportData, "mobile",
+            "            <div class=\"mobile-component-wrapper\">\n", "            </div>\n");
+        
+        builder.append("        </div>\n");
+        builder.append("    </div>\n");
+        
+        builder.append("    <script>\n");
+        builder.slot(SlotType.SCRIPTS, -1);
+        builder.append(generateInteractionScripts("mobile"));
+        builder.append("    </script>\n");
+        
+        builder.append("</body>\n");
+        builder.append("</html>");
+        
+        return builder.build();
+    }
+    
+    /**
+     * 文本、图片、分隔线等不依赖数据的组件在编译时预先渲染，表格和图表保留为数据插槽
+     */
+    private void appendComponents(LayoutBuilder builder, Map<String, Object> reportData, String renderType,
+                                  String wrapperStart, String wrapperEnd) {
+        List<Map<String, Object>> components = (List<Map<String, Object>>) reportData.get("components");
+        if (components == null) {
+            return;
+        }
+        
+        for (int i = 0; i < components.size(); i++) {
+            Map<String, Object> component = components.get(i);
+            if (wrapperStart != null) {
+                builder.append(wrapperStart);
+            }
+            if (isDataBound(component)) {
+                builder.slot(SlotType.COMPONENT, i);
+            } else {
+                builder.append(renderComponent(component, renderType, null));
+            }
+            if (wrapperEnd != null) {
+                builder.append(wrapperEnd);
+            }
+        }
+    }
+    
+    private boolean isDataBound(Map<String, Object> component) {
+        String componentType = (String) component.get("componentType");
+        return component.get("data") != null
+            || "table".equals(componentType)
+            || (componentType != null && componentType.contains("chart"));
+    }
+    
+    /**
+     * 按编译后的布局写出报表：静态片段直接写出预编码字节，数据插槽逐行流式写出。
+     * 报表头部写完后立即刷新，客户端无需等待整份报表生成即可开始解析。
+     */
+    private void writeCompiledLayout(CompiledLayout layout, Map<String, Object> reportData, String renderType,
+                                     Map<String, Object> options, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 8192);
+        writeCompiledLayout(layout, reportData, renderType, options, writer, out);
+    }
+    
+    /**
+     * @param out 非空时静态片段以预编码字节写入该流（writer 须包装同一流），为空时以文本写入 writer
+     */
+    private void writeCompiledLayout(CompiledLayout layout, Map<String, Object> reportData, String renderType,
+                                     Map<String, Object> options, Writer writer, OutputStream out) throws IOException {
+        List<Map<String, Object>> components = (List<Map<String, Object>>) reportData.get("components");
+        
+        for (Segment segment : layout.segments) {
+            if (segment.text != null) {
+                if (out != null) {
+                    writer.flush();
+                    out.write(segment.content);
+                } else {
+                    writer.write(segment.text);
+                }
+                continue;
+            }
+            
+            switch (segment.slotType) {
+                case META:
+                    writeMeta(writer, reportData, renderType);
+                    if (out != null) {
+                        writer.flush();
+                        out.flush();
+                    }
+                    break;
+                case COMPONENT:
+                    writeComponent(writer, components.get(segment.componentIndex), renderType, options);
+                    break;
+                case SCRIPTS:
+                    writer.write(generateChartScripts(reportData, renderType));
+                    break;
+                default:
+                    break;
+            }
+        }
+        
+        writer.flush();
+        if (out != null) {
+            out.flush();
+        }
+    }
+    
+    private void writeMeta(Writer out, Map<String, Object> reportData, String renderType) throws IOException {
+        if ("mobile".equals(renderType)) {
+            out.write("            <div class=\"mobile-report-meta\">" + new Date((Long) reportData.get("generatedAt")) + "</div>\n");
+            return;
+        }
+        
+        out.write("                <span>生成时间: " + new Date((Long) reportData.get("generatedAt")) + "</span>\n");
+        if (reportData.get("parameters") != null) {
+            Map<String, Object> params = (Map<String, Object>) reportData.get("parameters");
+            if (!params.isEmpty()) {
+                out.write("                <span>参数: " + formatParameters(params) + "</span>\n");
+            }
+        }
+    }
+    
+    private String generateChartScripts(Map<String, Object> reportData, String renderType) {
+        StringBuilder js = new StringBuilder();
+        List<Map<String, Object>> components = (List<Map<String, Object>>) reportData.get("components");
+        if (components != null) {
+            for (Map<String, Object> component : components) {
+                String componentType = (String) component.get("componentType");
+                if (componentType.contains("chart")) {
+                    js.append(generateChartScript(component, renderType));
+                }
+            }
+        }
+        return js.toString();
+    }
+    
+    private void writeTable(Writer out, Map<String, Object> componentData) throws IOException {
         Map<String, Object> data = (Map<String, Object>) componentData.get("data");
-        Map<String, Object> tableConfig = (Map<String, Object>) componentData.get("tableConfig");
         
         if (data == null) {
-            return "<div class=\"no-data\">暂无数据</div>";
+            out.write("<div class=\"no-data\">暂无数据</div>");
+            return;
         }
         
-        StringBuilder table = new StringBuilder();
-        table.append("<div class=\"table-container\">\n");
-        table.append("<table class=\"report-table\">\n");
+        out.write("<div class=\"table-container\">\n");
+        out.write("<table class=\"report-table\">\n");
         
         // 表头
         List<Map<String, Object>> columns = (List<Map<String, Object>>) data.get("columns");
         if (columns != null && !columns.isEmpty()) {
-            table.append("<thead><tr>\n");
+            out.write("<thead><tr>\n");
             for (Map<String, Object> column : columns) {
-                table.append("<th>").append(column.get("title")).append("</th>\n");
+                out.write("<th>" + column.get("title") + "</th>\n");
             }
-            table.append("</tr></thead>\n");
+            out.write("</tr></thead>\n");
         }
         
         // 表体
         List<Map<String, Object>> records = (List<Map<String, Object>>) data.get("records");
         if (records != null && !records.isEmpty()) {
-            table.append("<tbody>\n");
+            out.write("<tbody>\n");
             for (Map<String, Object> record : records) {
-                table.append("<tr>\n");
+                out.write("<tr>\n");
                 if (columns != null) {
                     for (Map<String, Object> column : columns) {
                         String dataIndex = (String) column.get("dataIndex");
                         Object value = record.get(dataIndex);
-                        table.append("<td>").append(value != null ? value.toString() : "").append("</td>\n");
+                        out.write("<td>");
+                        out.write(value != null ? value.toString() : "");
+                        out.write("</td>\n");
                     }
                 }
-                table.append("</tr>\n");
+                out.write("</tr>\n");
             }
-            table.append("</tbody>\n");
+            out.write("</tbody>\n");
         }
         
-        table.append("</table>\n");
-        table.append("</div>\n");
-        
-        return table.toString();
+        out.write("</table>\n");
+        out.write("</div>\n");
     }
     
     private String renderChart(Map<String, Object> componentData, String renderType) {
@@ -451,39 +675,40 @@ public class ReportRendererServiceImpl implements ReportRendererService {
         return "<hr style=\"border: none; border-top: 1px solid " + color + "; margin: 0; width: 100%;\" />";
     }
     
-    private String renderMobileTable(Map<String, Object> componentData) {
+    private void writeMobileTable(Writer out, Map<String, Object> componentData) throws IOException {
         // 移动端表格采用卡片式布局
         Map<String, Object> data = (Map<String, Object>) componentData.get("data");
         
         if (data == null) {
-            return "<div class=\"mobile-no-data\">暂无数据</div>";
+            out.write("<div class=\"mobile-no-data\">暂无数据</div>");
+            return;
         }
         
-        StringBuilder cards = new StringBuilder();
-        cards.append("<div class=\"mobile-table-cards\">\n");
+        out.write("<div class=\"mobile-table-cards\">\n");
         
         List<Map<String, Object>> records = (List<Map<String, Object>>) data.get("records");
         List<Map<String, Object>> columns = (List<Map<String, Object>>) data.get("columns");
         
         if (records != null && columns != null) {
             for (Map<String, Object> record : records) {
-                cards.append("<div class=\"mobile-table-card\">\n");
+                out.write("<div class=\"mobile-table-card\">\n");
                 for (Map<String, Object> column : columns) {
                     String dataIndex = (String) column.get("dataIndex");
                     String title = (String) column.get("title");
                     Object value = record.get(dataIndex);
                     
-                    cards.append("<div class=\"mobile-table-row\">\n");
-                    cards.append("<span class=\"mobile-table-label\">").append(title).append(":</span>\n");
-                    cards.append("<span class=\"mobile-table-value\">").append(value != null ? value.toString() : "").append("</span>\n");
-                    cards.append("</div>\n");
+                    out.write("<div class=\"mobile-table-row\">\n");
+                    out.write("<span class=\"mobile-table-label\">" + title + ":</span>\n");
+                    out.write("<span class=\"mobile-table-value\">");
+                    out.write(value != null ? value.toString() : "");
+                    out.write("</span>\n");
+                    out.write("</div>\n");
                 }
-                cards.append("</div>\n");
+                out.write("</div>\n");
             }
         }
         
-        cards.append("</div>\n");
-        return cards.toString();
+        out.write("</div>\n");
     }
     
     private String renderMobileChart(Map<String, Object> componentData) {
@@ -684,4 +909,67 @@ public class ReportRendererServiceImpl implements ReportRendererService {
                 """;
         }
     }
-}
\ No newline at end of file
+    
+    private enum SlotType {
+        META, COMPONENT, SCRIPTS
+    }
+    
+    /**
+     * 布局片段：静态内容同时保存文本和预编码的UTF-8字节（分别用于字符串渲染和流式写出），否则为数据插槽
+     */
+    private static class Segment {
+        
+        final String text;
+        final byte[] content;
+        final SlotType slotType;
+        final int componentIndex;
+        
+        Segment(String text, SlotType slotType, int componentIndex) {
+            this.text = text;
+            this.content = text != null ? text.getBytes(StandardCharsets.UTF_8) : null;
+            this.slotType = slotType;
+            this.componentIndex = componentIndex;
+        }
+    }
+    
+    private static class CompiledLayout {
+        
+        final List<Segment> segments;
+        final int staticLength;
+        
+        CompiledLayout(List<Segment> segments) {
+            this.segments = segments;
+            this.staticLength = segments.stream().mapToInt(segment -> segment.text != null ? segment.text.length() : 0).sum();
+        }
+    }
+    
+    /**
+     * 编译布局时合并相邻的静态文本，遇到插槽时切分片段
+     */
+    private static class LayoutBuilder {
+        
+        private final List<Segment> segments = new ArrayList<>();
+        private final StringBuilder pending = new StringBuilder();
+        
+        void append(String text) {
+            pending.append(text);
+        }
+        
+        void slot(SlotType slotType, int componentIndex) {
+            flushPending();
+            segments.add(new Segment(null, slotType, componentIndex));
+        }
+        
+        CompiledLayout build() {
+            flushPending();
+            return new CompiledLayout(Collections.unmodifiableList(segments));
+        }
+        
+        private void flushPending() {
+            if (pending.length() > 0) {
+                segments.add(new Segment(pending.toString(), null, -1));
+                pending.setLength(0);
+            }
+        }
+    }
+}
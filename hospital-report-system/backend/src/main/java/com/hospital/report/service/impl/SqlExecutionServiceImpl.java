@@ -101,6 +101,7 @@ public class SqlExecutionServiceImpl implements SqlExecutionService {
                             result.put("success", true);
                             result.put("data", queryResult.get("data"));
                             result.put("columns", queryResult.get("columns"));
+                            result.put("columnTypes", queryResult.get("columnTypes"));
                             result.put("rowCount", queryResult.get("rowCount"));
                             result.put("executionTime", String.format("%.3fs", executionTimeSeconds));
                             result.put("message", "Query executed successfully");
@@ -154,6 +155,63 @@ public class SqlExecutionServiceImpl implements SqlExecutionService {
         return result;
     }
 
+    @Override
+    public void executeQueryStreaming(String sqlContent, Map<String, Object> parameters, String databaseType, CursorHandler handler) {
+        log.info("Executing streaming SQL query: {}, database: {}", sqlContent, databaseType);
+
+        DataSource dataSourceConfig;
+        try {
+            dataSourceConfig = dataSourceService.getById(Long.parseLong(databaseType));
+        } catch (NumberFormatException e) {
+            dataSourceConfig = dataSourceService.findByCode(databaseType);
+        }
+        if (dataSourceConfig == null) {
+            throw new RuntimeException("Data source configuration not found: " + databaseType);
+        }
+
+        javax.sql.DataSource actualDataSource = dataSourceManager.getDataSource(dataSourceConfig.getDatasourceCode());
+        if (actualDataSource == null) {
+            throw new RuntimeException("Data source connection not found: " + databaseType);
+        }
+
+        long startTime = System.currentTimeMillis();
+        try (Connection connection = actualDataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            String dbType = dataSourceConfig.getDatabaseType();
+            boolean mysql = dbType != null && dbType.toLowerCase().contains("mysql");
+
+            // PostgreSQL等驱动只有在事务内才会按fetchSize使用服务端游标
+            if (!mysql && autoCommit) {
+                connection.setAutoCommit(false);
+            }
+
+            String processedSql = processSqlParameters(sqlContent, parameters);
+            try (PreparedStatement statement = connection.prepareStatement(
+                    processedSql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                // MySQL驱动需要Integer.MIN_VALUE才会逐行流式读取，其余驱动按批次拉取
+                statement.setFetchSize(mysql ? Integer.MIN_VALUE : 1000);
+                setStatementParameters(statement, parameters);
+
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    handler.handle(resultSet);
+                }
+            } finally {
+                if (!mysql && autoCommit) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+            }
+
+            log.info("Streaming query finished, time: {}s",
+                    String.format("%.3f", (System.currentTimeMillis() - startTime) / 1000.0));
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Streaming SQL execution failed", e);
+            throw new RuntimeException("SQL execution failed: " + e.getMessage(), e);
+        }
+    }
+
     @Override
     public String executeQueryAsync(Long templateId, Map<String, Object> parameters, Long userId) {
         log.info("Executing async SQL query for template: {}, user: {}", templateId, userId);
@@ -385,6 +443,7 @@ public class SqlExecutionServiceImpl implements SqlExecutionService {
     private Map<String, Object> processResultSet(ResultSet resultSet) throws SQLException {
         Map<String, Object> result = new HashMap<>();
         List<String> columns = new ArrayList<>();
+        List<String> columnTypes = new ArrayList<>();
         List<List<Object>> data = new ArrayList<>();
 
         // 获取列信息
@@ -393,6 +452,7 @@ public class SqlExecutionServiceImpl implements SqlExecutionService {
 
         for (int i = 1; i <= columnCount; i++) {
             columns.add(metaData.getColumnLabel(i));
+            columnTypes.add(jdbcTypeName(metaData.getColumnType(i)));
         }
 
         // 获取数据行
@@ -400,16 +460,8 @@ public class SqlExecutionServiceImpl implements SqlExecutionService {
         while (resultSet.next()) {
             List<Object> row = new ArrayList<>();
             for (int i = 1; i <= columnCount; i++) {
-                Object value = resultSet.getObject(i);
                 // 处理特殊类型
-                if (value instanceof Timestamp) {
-                    value = value.toString();
-                } else if (value instanceof java.sql.Date) {
-                    value = value.toString();
-                } else if (value instanceof Time) {
-                    value = value.toString();
-                }
-                row.add(value);
+                row.add(SqlExecutionService.toResultValue(resultSet.getObject(i)));
             }
             data.add(row);
             rowCount++;
@@ -422,9 +474,21 @@ public class SqlExecutionServiceImpl implements SqlExecutionService {
         }
 
         result.put("columns", columns);
+        result.put("columnTypes", columnTypes);
         result.put("data", data);
         result.put("rowCount", rowCount);
 
         return result;
     }
+
+    /**
+     * JDBC类型名（java.sql.JDBCType），驱动专有类型返回OTHER
+     */
+    private static String jdbcTypeName(int columnType) {
+        try {
+            return JDBCType.valueOf(columnType).getName();
+        } catch (IllegalArgumentException e) {
+            return JDBCType.OTHER.getName();
+        }
+    }
 }
\ No newline at end of file
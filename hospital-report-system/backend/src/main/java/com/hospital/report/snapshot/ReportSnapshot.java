@@ -0,0 +1,46 @@
+package com.hospital.report.snapshot;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 报表数据快照：某个数据源在一组参数下的预计算结果
+ * rawData 为转换前的源数据，用于增量刷新时合并；result 为转换后直接返回给调用方的结果。
+ */
+@Data
+public class ReportSnapshot {
+
+    private Long dataSourceId;
+
+    /**
+     * 规范化后的查询参数
+     */
+    private Map<String, Object> parameters;
+
+    private List<Map<String, Object>> rawData;
+
+    private Map<String, Object> result;
+
+    /**
+     * 增量列的最大值，下次增量刷新只拉取大于该值的数据
+     */
+    private Object watermark;
+
+    /**
+     * 距上次全量刷新以来的增量刷新次数
+     */
+    private int incrementalRuns;
+
+    private long refreshedAt;
+
+    private long nextRefreshAt;
+
+    /**
+     * 从文件恢复的快照：水位值类型在序列化后可能改变，下次刷新必须全量
+     */
+    @JsonIgnore
+    private transient boolean restored;
+}
@@ -0,0 +1,738 @@
+package com.hospital.report.snapshot;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hospital.report.entity.ReportDataSource;
+import com.hospital.report.mapper.ReportDataSourceMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.support.CronExpression;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 报表数据快照引擎
+ * 对配置了刷新间隔的数据源（数据源或所属报表的 refresh_interval > 0，或通过 scheduleDataRefresh 设置了Cron），
+ * 按默认参数和最常用的若干组参数定期预计算数据，结果保存在内存（可选落盘到本地文件），
+ * 查看报表时直接返回快照，不再访问源库。
+ *
+ * 数据源查询配置中设置了 incrementalColumn 时按水位增量刷新：只拉取增量列大于上次最大值的数据，
+ * 配置了 keyColumns 时按主键合并，否则追加；每隔若干次增量刷新做一次全量刷新，以反映源端的修改和删除。
+ *
+ * SQL 中的 #{参数} 在某个参数组里没有取值时跳过该参数组；刷新失败后按指数退避重试，不会每次扫描都访问源库。
+ * 快照默认只保存在内存，配置 store-dir 后才落盘（快照含业务数据，目录需限制访问权限）。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ReportSnapshotEngine {
+
+    private final ReportDataSourceMapper dataSourceMapper;
+    private final ObjectMapper objectMapper;
+
+    // 参数访问次数的衰减周期，使不再使用的参数组逐步退出快照
+    private static final long HIT_DECAY_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    // 参与统计的参数组上限，防止任意参数撑大内存
+    private static final int MAX_TRACKED_PARAMETER_SETS = 10000;
+
+    private static final Pattern COLUMN_NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_.]*");
+
+    private static final Pattern SQL_PARAMETER = Pattern.compile("#\\{(\\w+)}");
+
+    // 退避时长上限
+    private static final long MAX_FAILURE_BACKOFF_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    @Value("${report.snapshot.enabled:true}")
+    private boolean enabled;
+
+    // 为空时不落盘
+    @Value("${report.snapshot.store-dir:}")
+    private String storeDir;
+
+    @Value("${report.snapshot.scan-seconds:15}")
+    private int scanSeconds;
+
+    @Value("${report.snapshot.refresh-threads:2}")
+    private int refreshThreads;
+
+    @Value("${report.snapshot.max-param-sets:5}")
+    private int maxParamSets;
+
+    @Value("${report.snapshot.min-hits:3}")
+    private int minHits;
+
+    @Value("${report.snapshot.max-rows:50000}")
+    private int maxRows;
+
+    @Value("${report.snapshot.full-refresh-every:12}")
+    private int fullRefreshEvery;
+
+    @Value("${report.snapshot.stale-grace-seconds:300}")
+    private int staleGraceSeconds;
+
+    @Value("${report.snapshot.failure-backoff-seconds:60}")
+    private int failureBackoffSeconds;
+
+    private ScheduledExecutorService scanExecutor;
+
+    private ExecutorService refreshExecutor;
+
+    private volatile Loader loader;
+
+    // 数据源ID -> 刷新计划
+    private final ConcurrentHashMap<Long, RefreshSchedule> schedules = new ConcurrentHashMap<>();
+
+    // 通过 scheduleDataRefresh 设置的Cron计划，优先于刷新间隔
+    private final ConcurrentHashMap<Long, CronExpression> cronSchedules = new ConcurrentHashMap<>();
+
+    // 快照键 -> 快照
+    private final ConcurrentHashMap<String, ReportSnapshot> snapshots = new ConcurrentHashMap<>();
+
+    // 快照键 -> 参数组访问统计
+    private final ConcurrentHashMap<String, ParameterSet> parameterSets = new ConcurrentHashMap<>();
+
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    // 快照键 -> 连续失败状态，退避期内不再刷新
+    private final ConcurrentHashMap<String, RefreshFailure> failures = new ConcurrentHashMap<>();
+
+    private volatile long lastDecayTime = System.currentTimeMillis();
+
+    /**
+     * 快照数据加载器，由数据服务提供，避免快照引擎与数据服务循环依赖
+     */
+    public interface Loader {
+
+        /**
+         * 执行源查询，返回转换前的结果
+         * @param incrementalColumn 增量列，为null时全量查询
+         * @param watermark 增量列的上次最大值
+         */
+        Map<String, Object> load(ReportDataSource dataSource, Map<String, Object> parameters,
+                                 String incrementalColumn, Object watermark);
+
+        /**
+         * 对合并后的源数据应用数据源的转换配置
+         */
+        Map<String, Object> finish(ReportDataSource dataSource, Map<String, Object> rawResult);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+
+        scanExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "report-snapshot-scan");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger threadIndex = new AtomicInteger();
+        refreshExecutor = Executors.newFixedThreadPool(Math.max(1, refreshThreads), r -> {
+            Thread thread = new Thread(r, "report-snapshot-refresh-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        scanExecutor.execute(this::restoreSnapshots);
+        scanExecutor.scheduleWithFixedDelay(this::scanQuietly, scanSeconds, scanSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scanExecutor != null) {
+            scanExecutor.shutdownNow();
+        }
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdownNow();
+        }
+    }
+
+    public void setLoader(Loader loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * 查找可用的快照结果
+     * @return 快照结果的副本；数据源未配置快照、快照尚未生成或已过期时返回null
+     */
+    public Map<String, Object> lookup(Long dataSourceId, Map<String, Object> parameters) {
+        if (!enabled || dataSourceId == null || !schedules.containsKey(dataSourceId)) {
+            return null;
+        }
+
+        Map<String, Object> normalized = normalizeParameters(parameters);
+        String key = snapshotKey(dataSourceId, normalized);
+        recordAccess(key, dataSourceId, normalized);
+
+        ReportSnapshot snapshot = snapshots.get(key);
+        if (snapshot == null) {
+            return null;
+        }
+
+        // 刷新持续失败时快照会越来越旧，超过宽限期后回退到实时查询
+        long staleLimit = snapshot.getNextRefreshAt() + TimeUnit.SECONDS.toMillis(staleGraceSeconds);
+        if (System.currentTimeMillis() > staleLimit) {
+            return null;
+        }
+
+        Map<String, Object> result = new HashMap<>(snapshot.getResult());
+        result.put("fromCache", true);
+        result.put("fromSnapshot", true);
+        result.put("snapshotTime", toLocalDateTime(snapshot.getRefreshedAt()));
+        return result;
+    }
+
+    /**
+     * 按Cron表达式定时刷新数据源快照
+     */
+    public void scheduleCron(Long dataSourceId, String cronExpression) {
+        if (cronExpression == null || cronExpression.trim().isEmpty()) {
+            cronSchedules.remove(dataSourceId);
+            schedules.remove(dataSourceId);
+            return;
+        }
+
+        CronExpression cron = CronExpression.parse(cronExpression.trim());
+        cronSchedules.put(dataSourceId, cron);
+        schedules.put(dataSourceId, new RefreshSchedule(0, cron));
+        if (enabled) {
+            // 立即生成默认参数的快照
+            scanExecutor.execute(this::scanQuietly);
+        }
+    }
+
+    /**
+     * 立即刷新数据源的全部快照（下次刷新按全量执行）
+     */
+    public void refreshNow(Long dataSourceId) {
+        if (!enabled) {
+            return;
+        }
+        for (ReportSnapshot snapshot : snapshots.values()) {
+            if (snapshot.getDataSourceId().equals(dataSourceId)) {
+                snapshot.setNextRefreshAt(0);
+                snapshot.setRestored(true);
+            }
+        }
+        // 手动刷新不受失败退避限制
+        failures.keySet().removeIf(key -> key.startsWith(dataSourceId + "_"));
+        scanExecutor.execute(this::scanQuietly);
+    }
+
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("scheduledDataSources", schedules.size());
+        stats.put("snapshotCount", snapshots.size());
+        stats.put("trackedParameterSets", parameterSets.size());
+        stats.put("refreshing", refreshing.size());
+        stats.put("failingSnapshots", failures.size());
+        stats.put("snapshotRows", snapshots.values().stream()
+            .mapToLong(s -> s.getRawData() != null ? s.getRawData().size() : 0).sum());
+        return stats;
+    }
+
+    /**
+     * 规范化参数：按参数名排序，值统一转为字符串，使等价的参数组得到相同的键
+     */
+    public static Map<String, Object> normalizeParameters(Map<String, Object> parameters) {
+        TreeMap<String, Object> normalized = new TreeMap<>();
+        if (parameters != null) {
+            for (Map.Entry<String, Object> entry : parameters.entrySet()) {
+                if (entry.getValue() != null) {
+                    normalized.put(entry.getKey(), String.valueOf(entry.getValue()));
+                }
+            }
+        }
+        return normalized;
+    }
+
+    private String snapshotKey(Long dataSourceId, Map<String, Object> normalizedParameters) {
+        String parameterText = normalizedParameters.entrySet().stream()
+            .map(entry -> entry.getKey() + "=" + entry.getValue())
+            .collect(Collectors.joining("&"));
+        return dataSourceId + "_" + DigestUtils.md5DigestAsHex(parameterText.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void recordAccess(String key, Long dataSourceId, Map<String, Object> normalized) {
+        ParameterSet parameterSet = parameterSets.get(key);
+        if (parameterSet == null) {
+            if (parameterSets.size() >= MAX_TRACKED_PARAMETER_SETS) {
+                return;
+            }
+            parameterSet = parameterSets.computeIfAbsent(key, k -> new ParameterSet(dataSourceId, normalized));
+        }
+        parameterSet.hits.increment();
+    }
+
+    private void scanQuietly() {
+        try {
+            scan();
+        } catch (Exception e) {
+            log.error("报表快照扫描失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 扫描刷新计划：加载需要快照的数据源，提交到期的刷新，清理不再需要的快照
+     */
+    private void scan() {
+        if (loader == null) {
+            return;
+        }
+
+        loadSchedules();
+        decayHits();
+
+        long now = System.currentTimeMillis();
+        Set<String> wantedKeys = new HashSet<>();
+
+        for (Map.Entry<Long, RefreshSchedule> entry : schedules.entrySet()) {
+            Long dataSourceId = entry.getKey();
+            for (Map<String, Object> parameters : selectParameterSets(dataSourceId)) {
+                String key = snapshotKey(dataSourceId, parameters);
+                wantedKeys.add(key);
+
+                ReportSnapshot snapshot = snapshots.get(key);
+                RefreshFailure failure = failures.get(key);
+                boolean due = (snapshot == null || now >= snapshot.getNextRefreshAt())
+                    && (failure == null || now >= failure.retryAt);
+                if (due && refreshing.add(key)) {
+                    RefreshSchedule schedule = entry.getValue();
+                    refreshExecutor.execute(() -> {
+                        try {
+                            if (refresh(key, dataSourceId, parameters, schedule)) {
+                                failures.remove(key);
+                            } else {
+                                recordFailure(key);
+                            }
+                        } catch (Exception e) {
+                            recordFailure(key);
+                            log.error("报表快照刷新失败，数据源: {}, 参数: {}, 错误: {}", dataSourceId, parameters, e.getMessage(), e);
+                        } finally {
+                            refreshing.remove(key);
+                        }
+                    });
+                }
+            }
+        }
+
+        // 清理数据源不再需要快照或参数组已不常用的快照
+        for (String key : new ArrayList<>(snapshots.keySet())) {
+            if (!wantedKeys.contains(key) && !refreshing.contains(key)) {
+                snapshots.remove(key);
+                deleteSnapshotFile(key);
+            }
+        }
+        parameterSets.values().removeIf(parameterSet -> !schedules.containsKey(parameterSet.dataSourceId));
+        failures.keySet().retainAll(wantedKeys);
+    }
+
+    /**
+     * 记录一次刷新失败：退避时长从 failure-backoff-seconds 开始逐次翻倍，最长1小时
+     */
+    private void recordFailure(String key) {
+        failures.compute(key, (k, previous) -> {
+            int attempts = previous != null ? previous.attempts + 1 : 1;
+            long backoff = Math.min(MAX_FAILURE_BACKOFF_MILLIS,
+                TimeUnit.SECONDS.toMillis(failureBackoffSeconds) << Math.min(attempts - 1, 16));
+            return new RefreshFailure(attempts, System.currentTimeMillis() + backoff);
+        });
+    }
+
+    private void loadSchedules() {
+        Map<Long, RefreshSchedule> loaded = new HashMap<>();
+        for (Map<String, Object> row : dataSourceMapper.selectSnapshotSchedules()) {
+            Object id = row.get("data_source_id");
+            Object interval = row.get("refresh_interval");
+            if (id instanceof Number && interval instanceof Number && ((Number) interval).intValue() > 0) {
+                loaded.put(((Number) id).longValue(), new RefreshSchedule(((Number) interval).intValue(), null));
+            }
+        }
+        cronSchedules.forEach((dataSourceId, cron) -> loaded.put(dataSourceId, new RefreshSchedule(0, cron)));
+
+        schedules.keySet().retainAll(loaded.keySet());
+        schedules.putAll(loaded);
+    }
+
+    private void decayHits() {
+        long now = System.currentTimeMillis();
+        if (now - lastDecayTime < HIT_DECAY_MILLIS) {
+            return;
+        }
+        lastDecayTime = now;
+
+        Iterator<ParameterSet> iterator = parameterSets.values().iterator();
+        while (iterator.hasNext()) {
+            ParameterSet parameterSet = iterator.next();
+            long hits = parameterSet.hits.sumThenReset();
+            if (hits > 1) {
+                parameterSet.hits.add(hits / 2);
+            } else {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * 需要快照的参数组：默认参数（空参数）以及访问次数最多的若干组
+     */
+    private List<Map<String, Object>> selectParameterSets(Long dataSourceId) {
+        List<Map<String, Object>> result = new ArrayList<>();
+        result.add(Collections.emptyMap());
+
+        parameterSets.values().stream()
+            .filter(parameterSet -> parameterSet.dataSourceId.equals(dataSourceId))
+            .filter(parameterSet -> !parameterSet.parameters.isEmpty())
+            .filter(parameterSet -> parameterSet.hits.sum() >= minHits)
+            .sorted((a, b) -> Long.compare(b.hits.sum(), a.hits.sum()))
+            .limit(maxParamSets)
+            .forEach(parameterSet -> result.add(parameterSet.parameters));
+
+        return result;
+    }
+
+    /**
+     * 刷新一个快照
+     * @return false 表示源查询未能执行（失败或缺少参数），由调用方退避
+     */
+    @SuppressWarnings("unchecked")
+    private boolean refresh(String key, Long dataSourceId, Map<String, Object> parameters, RefreshSchedule schedule) {
+        ReportDataSource dataSource = dataSourceMapper.selectByDataSourceId(dataSourceId);
+        if (dataSource == null || Boolean.FALSE.equals(dataSource.getIsActive())) {
+            return true;
+        }
+
+        long startTime = System.currentTimeMillis();
+        ReportSnapshot previous = snapshots.get(key);
+        Map<String, Object> queryConfig = readQueryConfig(dataSource);
+
+        String missingParameter = missingSqlParameter(queryConfig, parameters);
+        if (missingParameter != null) {
+            log.debug("报表快照跳过参数组，数据源: {}, 缺少参数: {}", dataSourceId, missingParameter);
+            return false;
+        }
+
+        String incrementalColumn = incrementalColumnOf(dataSource, queryConfig);
+
+        boolean incremental = previous != null
+            && incrementalColumn != null
+            && previous.getWatermark() != null
+            && !previous.isRestored()
+            && previous.getIncrementalRuns() < fullRefreshEvery;
+
+        Map<String, Object> raw = loader.load(dataSource, new LinkedHashMap<>(parameters),
+            incremental ? incrementalColumn : null, incremental ? previous.getWatermark() : null);
+        if (raw == null || Boolean.FALSE.equals(raw.get("success"))) {
+            log.warn("报表快照源查询失败，保留旧快照，数据源: {}, 原因: {}", dataSourceId,
+                raw != null ? raw.get("message") : "无返回结果");
+            return false;
+        }
+
+        Object dataObject = raw.get("data");
+        List<Map<String, Object>> rows = dataObject instanceof List ? (List<Map<String, Object>>) dataObject : new ArrayList<>();
+
+        List<Map<String, Object>> merged;
+        if (incremental) {
+            merged = mergeRows(previous.getRawData(), rows, keyColumnsOf(queryConfig));
+        } else {
+            merged = new ArrayList<>(rows);
+        }
+
+        if (merged.size() > maxRows) {
+            log.warn("报表快照数据量超过上限，不生成快照，数据源: {}, 行数: {}, 上限: {}", dataSourceId, merged.size(), maxRows);
+            snapshots.remove(key);
+            deleteSnapshotFile(key);
+            return true;
+        }
+
+        Object watermark = incrementalColumn != null
+            ? maxValue(rows, incrementalColumn, incremental ? previous.getWatermark() : null)
+            : null;
+
+        Map<String, Object> rawResult = new HashMap<>(raw);
+        rawResult.put("data", merged);
+        rawResult.put("total", merged.size());
+        Map<String, Object> result = new HashMap<>(loader.finish(dataSource, rawResult));
+        if (result.get("data") instanceof List) {
+            result.put("data", Collections.unmodifiableList((List<Map<String, Object>>) result.get("data")));
+        }
+
+        long now = System.currentTimeMillis();
+        ReportSnapshot snapshot = new ReportSnapshot();
+        snapshot.setDataSourceId(dataSourceId);
+        snapshot.setParameters(parameters);
+        snapshot.setRawData(merged);
+        snapshot.setResult(result);
+        snapshot.setWatermark(watermark);
+        snapshot.setIncrementalRuns(incremental ? previous.getIncrementalRuns() + 1 : 0);
+        snapshot.setRefreshedAt(now);
+        snapshot.setNextRefreshAt(schedule.nextRefreshTime(now));
+
+        snapshots.put(key, snapshot);
+        persistSnapshot(key, snapshot);
+
+        log.debug("报表快照刷新完成，数据源: {}, 方式: {}, 新增行: {}, 总行数: {}, 耗时: {}ms",
+            dataSourceId, incremental ? "增量" : "全量", rows.size(), merged.size(), now - startTime);
+        return true;
+    }
+
+    /**
+     * SQL中引用但参数组未提供的参数名，全部提供时返回null
+     */
+    private static String missingSqlParameter(Map<String, Object> queryConfig, Map<String, Object> parameters) {
+        Object sql = queryConfig.get("sql");
+        if (!(sql instanceof String)) {
+            return null;
+        }
+        Matcher matcher = SQL_PARAMETER.matcher((String) sql);
+        while (matcher.find()) {
+            if (parameters.get(matcher.group(1)) == null) {
+                return matcher.group(1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 合并增量数据：配置了主键列时按主键覆盖，否则直接追加
+     */
+    private List<Map<String, Object>> mergeRows(List<Map<String, Object>> existing, List<Map<String, Object>> delta,
+                                                List<String> keyColumns) {
+        if (keyColumns.isEmpty()) {
+            List<Map<String, Object>> merged = new ArrayList<>(existing.size() + delta.size());
+            merged.addAll(existing);
+            merged.addAll(delta);
+            return merged;
+        }
+
+        LinkedHashMap<List<Object>, Map<String, Object>> byKey = new LinkedHashMap<>();
+        for (Map<String, Object> row : existing) {
+            byKey.put(rowKey(row, keyColumns), row);
+        }
+        for (Map<String, Object> row : delta) {
+            byKey.put(rowKey(row, keyColumns), row);
+        }
+        return new ArrayList<>(byKey.values());
+    }
+
+    private List<Object> rowKey(Map<String, Object> row, List<String> keyColumns) {
+        List<Object> key = new ArrayList<>(keyColumns.size());
+        for (String column : keyColumns) {
+            Object value = row.get(column);
+            key.add(value != null ? value.toString() : null);
+        }
+        return key;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object maxValue(List<Map<String, Object>> rows, String column, Object current) {
+        Object max = current;
+        for (Map<String, Object> row : rows) {
+            Object value = row.get(column);
+            if (value == null) {
+                continue;
+            }
+            if (max == null) {
+                max = value;
+            } else if (value instanceof Comparable && value.getClass().isInstance(max)) {
+                if (((Comparable<Object>) value).compareTo(max) > 0) {
+                    max = value;
+                }
+            } else if (value.toString().compareTo(max.toString()) > 0) {
+                max = value;
+            }
+        }
+        return max;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> readQueryConfig(ReportDataSource dataSource) {
+        String queryConfig = dataSource.getQueryConfig();
+        if (queryConfig == null || queryConfig.trim().isEmpty()) {
+            return Collections.emptyMap();
+        }
+        try {
+            return objectMapper.readValue(queryConfig, Map.class);
+        } catch (Exception e) {
+            return Collections.emptyMap();
+        }
+    }
+
+    /**
+     * 增量列只对SQL类数据源生效，且必须是合法的列名
+     */
+    private String incrementalColumnOf(ReportDataSource dataSource, Map<String, Object> queryConfig) {
+        String sourceType = dataSource.getSourceType() != null ? dataSource.getSourceType().toUpperCase() : "";
+        if (!"SQL".equals(sourceType) && !"DATABASE".equals(sourceType)) {
+            return null;
+        }
+
+        Object column = queryConfig.get("incrementalColumn");
+        if (column instanceof String && COLUMN_NAME.matcher((String) column).matches()) {
+            return (String) column;
+        }
+        return null;
+    }
+
+    private List<String> keyColumnsOf(Map<String, Object> queryConfig) {
+        Object keyColumns = queryConfig.get("keyColumns");
+        if (keyColumns instanceof List) {
+            List<String> result = new ArrayList<>();
+            for (Object column : (List<?>) keyColumns) {
+                if (column != null) {
+                    result.add(column.toString());
+                }
+            }
+            return result;
+        }
+        if (keyColumns instanceof String && !((String) keyColumns).trim().isEmpty()) {
+            return Arrays.stream(((String) keyColumns).split(","))
+                .map(String::trim)
+                .filter(column -> !column.isEmpty())
+                .collect(Collectors.toList());
+        }
+        return Collections.emptyList();
+    }
+
+    // ==================== 本地文件存储 ====================
+
+    private boolean persistent() {
+        return storeDir != null && !storeDir.trim().isEmpty();
+    }
+
+    private void persistSnapshot(String key, ReportSnapshot snapshot) {
+        if (!persistent()) {
+            return;
+        }
+        try {
+            Path dir = Paths.get(storeDir);
+            Files.createDirectories(dir);
+            Path temp = dir.resolve(key + ".json.tmp");
+            objectMapper.writeValue(temp.toFile(), snapshot);
+            Files.move(temp, dir.resolve(key + ".json"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            // 落盘失败不影响内存中的快照
+            log.warn("报表快照写入文件失败: {} - {}", key, e.getMessage());
+        }
+    }
+
+    private void deleteSnapshotFile(String key) {
+        if (!persistent()) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(Paths.get(storeDir, key + ".json"));
+        } catch (IOException e) {
+            log.warn("删除报表快照文件失败: {} - {}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * 启动时从文件恢复快照，重启后无需等待首次刷新即可服务
+     */
+    private void restoreSnapshots() {
+        if (!persistent()) {
+            return;
+        }
+        Path dir = Paths.get(storeDir);
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+
+        int restored = 0;
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String fileName = file.getFileName().toString();
+                if (!fileName.endsWith(".json")) {
+                    continue;
+                }
+                try {
+                    ReportSnapshot snapshot = objectMapper.readValue(file.toFile(), ReportSnapshot.class);
+                    snapshot.setRestored(true);
+                    snapshots.putIfAbsent(fileName.substring(0, fileName.length() - ".json".length()), snapshot);
+                    restored++;
+                } catch (Exception e) {
+                    log.warn("报表快照文件无法读取，已删除: {} - {}", fileName, e.getMessage());
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("恢复报表快照失败: {}", e.getMessage());
+        }
+
+        if (restored > 0) {
+            log.info("已从本地文件恢复 {} 个报表快照", restored);
+        }
+    }
+
+    private static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(java.time.Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    /**
+     * 刷新计划：固定间隔（秒）或Cron表达式
+     */
+    private static class RefreshSchedule {
+
+        final int intervalSeconds;
+        final CronExpression cron;
+
+        RefreshSchedule(int intervalSeconds, CronExpression cron) {
+            this.intervalSeconds = intervalSeconds;
+            this.cron = cron;
+        }
+
+        long nextRefreshTime(long now) {
+            if (cron != null) {
+                LocalDateTime next = cron.next(toLocalDateTime(now));
+                return next != null
+                    ? next.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                    : Long.MAX_VALUE - TimeUnit.DAYS.toMillis(1);
+            }
+            return now + TimeUnit.SECONDS.toMillis(intervalSeconds);
+        }
+    }
+
+    private static class RefreshFailure {
+
+        final int attempts;
+        final long retryAt;
+
+        RefreshFailure(int attempts, long retryAt) {
+            this.attempts = attempts;
+            this.retryAt = retryAt;
+        }
+    }
+
+    private static class ParameterSet {
+
+        final Long dataSourceId;
+        final Map<String, Object> parameters;
+        final LongAdder hits = new LongAdder();
+
+        ParameterSet(Long dataSourceId, Map<String, Object> parameters) {
+            this.dataSourceId = dataSourceId;
+            this.parameters = parameters;
+        }
+    }
+}
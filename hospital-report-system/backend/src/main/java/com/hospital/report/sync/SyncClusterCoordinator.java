@@ -0,0 +1,216 @@
+package com.hospital.report.sync;
+
+import com.hospital.report.mapper.SyncClusterMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 同步任务集群协调器
+ * 各节点通过 sync_cluster_node 表定期续约，租约内的节点视为存活；
+ * 同步任务按一致性哈希分配给存活节点，每个节点只调度归属自己的任务。
+ * 节点下线后租约过期，其余节点在下一次心跳时重算归属并接管其任务；
+ * 归属变化的过渡期内，由触发认领（sync_fire_claim）保证同一次计划触发只执行一次。
+ *
+ * 未开启集群模式时，本节点拥有全部任务，行为与单机部署一致。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SyncClusterCoordinator {
+
+    private final SyncClusterMapper syncClusterMapper;
+
+    // 每个节点在哈希环上的虚拟节点数，使任务分布更均匀
+    private static final int VIRTUAL_NODES = 64;
+
+    // 触发认领记录的保留时间
+    private static final int CLAIM_RETENTION_HOURS = 24;
+
+    @Value("${sync.cluster.enabled:false}")
+    private boolean clusterEnabled;
+
+    @Value("${sync.cluster.heartbeat-seconds:10}")
+    private int heartbeatSeconds;
+
+    @Value("${sync.cluster.lease-seconds:30}")
+    private int leaseSeconds;
+
+    private final String nodeId = buildNodeId();
+
+    private final ScheduledExecutorService heartbeatExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "sync-cluster-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final List<Runnable> rebalanceListeners = new CopyOnWriteArrayList<>();
+
+    // 当前哈希环：哈希值 -> 节点ID，整体替换
+    private volatile NavigableMap<Long, String> ring = Collections.emptyNavigableMap();
+
+    private volatile List<String> liveNodes = Collections.emptyList();
+
+    @PostConstruct
+    public void start() {
+        if (!clusterEnabled) {
+            return;
+        }
+
+        // 启动时同步完成首次续约，保证调度器初始化时已有哈希环
+        heartbeatQuietly();
+        heartbeatExecutor.scheduleWithFixedDelay(this::heartbeatQuietly,
+            heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+        log.info("同步调度集群模式已开启，节点ID: {}, 租约: {}秒", nodeId, leaseSeconds);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (!clusterEnabled) {
+            return;
+        }
+
+        heartbeatExecutor.shutdownNow();
+        try {
+            // 主动退出，其他节点无需等待租约过期即可接管
+            syncClusterMapper.deleteNode(nodeId);
+        } catch (Exception e) {
+            log.warn("注销集群节点失败: {}", e.getMessage());
+        }
+    }
+
+    public boolean isClusterEnabled() {
+        return clusterEnabled;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * 判断任务是否归属本节点调度
+     */
+    public boolean isOwner(Long taskId) {
+        if (!clusterEnabled) {
+            return true;
+        }
+
+        NavigableMap<Long, String> currentRing = ring;
+        if (currentRing.isEmpty()) {
+            // 尚未取得成员信息（如数据库暂不可用），暂不调度，等待下次心跳
+            return false;
+        }
+
+        Map.Entry<Long, String> entry = currentRing.ceilingEntry(hash("task:" + taskId));
+        if (entry == null) {
+            entry = currentRing.firstEntry();
+        }
+        return nodeId.equals(entry.getValue());
+    }
+
+    /**
+     * 认领一次计划触发
+     * @return 本节点获得执行权时返回true
+     */
+    public boolean claimFire(Long taskId, Date scheduledFireTime) {
+        if (!clusterEnabled || scheduledFireTime == null) {
+            return true;
+        }
+        return syncClusterMapper.claimFire(taskId, scheduledFireTime, nodeId) > 0;
+    }
+
+    /**
+     * 注册对账监听器，每次心跳刷新成员信息后回调，用于调整本节点调度的任务
+     */
+    public void addRebalanceListener(Runnable listener) {
+        rebalanceListeners.add(listener);
+    }
+
+    public Map<String, Object> getClusterStatus() {
+        Map<String, Object> status = new HashMap<>();
+        status.put("clusterEnabled", clusterEnabled);
+        status.put("nodeId", nodeId);
+        status.put("liveNodes", liveNodes);
+        status.put("leaseSeconds", leaseSeconds);
+        return status;
+    }
+
+    private void heartbeatQuietly() {
+        try {
+            heartbeat();
+        } catch (Exception e) {
+            log.error("集群心跳失败: {}", e.getMessage(), e);
+        }
+    }
+
+    private void heartbeat() {
+        syncClusterMapper.heartbeat(nodeId, hostName());
+        List<String> currentNodes = syncClusterMapper.selectLiveNodeIds(leaseSeconds);
+
+        // 顺带清理过期数据，各节点重复执行无副作用
+        syncClusterMapper.deleteExpiredNodes(leaseSeconds * 10);
+        syncClusterMapper.deleteExpiredClaims(CLAIM_RETENTION_HOURS);
+
+        boolean changed = !currentNodes.equals(liveNodes);
+        if (changed) {
+            ring = buildRing(currentNodes);
+            log.info("同步调度集群成员变化: {} -> {}", liveNodes, currentNodes);
+            liveNodes = Collections.unmodifiableList(new ArrayList<>(currentNodes));
+        }
+
+        // 每次心跳都通知监听器对账，覆盖在其他节点上新建或修改的任务
+        for (Runnable listener : rebalanceListeners) {
+            try {
+                listener.run();
+            } catch (Exception e) {
+                log.error("集群任务对账失败: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private static NavigableMap<Long, String> buildRing(List<String> nodeIds) {
+        TreeMap<Long, String> newRing = new TreeMap<>();
+        for (String node : nodeIds) {
+            for (int i = 0; i < VIRTUAL_NODES; i++) {
+                newRing.put(hash(node + "#" + i), node);
+            }
+        }
+        return Collections.unmodifiableNavigableMap(newRing);
+    }
+
+    private static long hash(String key) {
+        byte[] digest = DigestUtils.md5Digest(key.getBytes(StandardCharsets.UTF_8));
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (digest[i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static String buildNodeId() {
+        // 主机名 + 进程名 + 随机后缀，同一主机上的多个实例也能区分
+        String processName = ManagementFactory.getRuntimeMXBean().getName();
+        return processName + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "unknown";
+        }
+    }
+}
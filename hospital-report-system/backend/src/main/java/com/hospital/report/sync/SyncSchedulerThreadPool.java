@@ -0,0 +1,73 @@
+package com.hospital.report.sync;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 同步任务调度线程池
+ * Quartz自带的SimpleThreadPool在调度器启动后无法调整大小，而集群对账后本节点调度的任务会变化，
+ * 因此改由可调整的线程池执行Quartz任务，线程数按本节点实际调度的任务权重之和确定，
+ * 限制在[min-threads, max-threads]之间。线程全部占用时，已触发的任务排队等待执行。
+ * 线程池本身不注册为Spring Bean，避免替换@Async使用的默认执行器。
+ */
+@Slf4j
+@Component
+public class SyncSchedulerThreadPool {
+
+    @Value("${sync.scheduler.min-threads:2}")
+    private int minThreads;
+
+    @Value("${sync.scheduler.max-threads:10}")
+    private int maxThreads;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = new ThreadPoolExecutor(minThreads, minThreads, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), r -> {
+                Thread thread = new Thread(r, "sync-scheduler-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * 按本节点调度任务的总权重调整线程数
+     */
+    public synchronized void resize(int totalWeight) {
+        int threadCount = Math.max(minThreads, Math.min(maxThreads, totalWeight));
+        if (threadCount == executor.getCorePoolSize()) {
+            return;
+        }
+
+        // 核心线程数不能超过最大线程数，扩容先调最大值，缩容先调核心值
+        if (threadCount > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(threadCount);
+            executor.setCorePoolSize(threadCount);
+        } else {
+            executor.setCorePoolSize(threadCount);
+            executor.setMaximumPoolSize(threadCount);
+        }
+        log.info("调度线程数调整为: {}（本节点任务总权重: {}）", threadCount, totalWeight);
+    }
+}
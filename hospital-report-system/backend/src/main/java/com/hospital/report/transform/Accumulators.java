@@ -0,0 +1,401 @@
+package com.hospital.report.transform;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 聚合函数的累加器
+ * 每个分组每个聚合项一个累加器，逐行累加，分片并行时由 {@link Accumulator#merge} 合并各分片的部分结果。
+ * 数值以 long/double 原始类型累加，不为每行创建对象。
+ */
+final class Accumulators {
+
+    private Accumulators() {
+    }
+
+    interface Accumulator {
+
+        void add(Object value);
+
+        /**
+         * 合并同类型累加器（另一分片同一分组的部分结果）
+         */
+        void merge(Accumulator other);
+
+        Object result();
+    }
+
+    /**
+     * 按函数名创建累加器
+     * @return 不支持的函数返回null
+     */
+    static Accumulator create(String function, double percentile) {
+        switch (function) {
+            case "COUNT":
+                return new Count();
+            case "SUM":
+                return new Sum();
+            case "AVG":
+                return new Avg();
+            case "MIN":
+                return new Extreme(false);
+            case "MAX":
+                return new Extreme(true);
+            case "COUNT_DISTINCT":
+                return new DistinctCount();
+            case "MEDIAN":
+                return new Percentile(0.5);
+            case "PERCENTILE":
+                return new Percentile(percentile);
+            default:
+                return null;
+        }
+    }
+
+    static boolean isIntegral(Object value) {
+        return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+    }
+
+    /**
+     * 行数（包括字段为空的行）
+     */
+    static class Count implements Accumulator {
+
+        long count;
+
+        @Override
+        public void add(Object value) {
+            count++;
+        }
+
+        @Override
+        public void merge(Accumulator other) {
+            count += ((Count) other).count;
+        }
+
+        @Override
+        public Object result() {
+            return count;
+        }
+    }
+
+    /**
+     * 求和：全部为整数时按long精确累加并返回Long，出现小数后转为double
+     */
+    static class Sum implements Accumulator {
+
+        long longSum;
+        double doubleSum;
+        boolean integral = true;
+
+        @Override
+        public void add(Object value) {
+            if (isIntegral(value)) {
+                longSum += ((Number) value).longValue();
+            } else if (value instanceof Number) {
+                integral = false;
+                doubleSum += ((Number) value).doubleValue();
+            }
+        }
+
+        @Override
+        public void merge(Accumulator other) {
+            Sum sum = (Sum) other;
+            longSum += sum.longSum;
+            doubleSum += sum.doubleSum;
+            integral &= sum.integral;
+        }
+
+        @Override
+        public Object result() {
+            return integral ? (Object) longSum : (Object) (longSum + doubleSum);
+        }
+    }
+
+    /**
+     * 平均值：分母为分组行数，非数值按0计（与原有实现一致）
+     */
+    static class Avg implements Accumulator {
+
+        double sum;
+        long count;
+
+        @Override
+        public void add(Object value) {
+            if (value instanceof Number) {
+                sum += ((Number) value).doubleValue();
+            }
+            count++;
+        }
+
+        @Override
+        public void merge(Accumulator other) {
+            Avg avg = (Avg) other;
+            sum += avg.sum;
+            count += avg.count;
+        }
+
+        @Override
+        public Object result() {
+            return count == 0 ? 0.0 : sum / count;
+        }
+    }
+
+    /**
+     * 最小值/最大值，忽略空值；数值之间按double比较，返回原始值
+     */
+    static class Extreme implements Accumulator {
+
+        final boolean max;
+        Object best;
+        double bestNumber;
+
+        Extreme(boolean max) {
+            this.max = max;
+        }
+
+        @Override
+        public void add(Object value) {
+            if (value == null) {
+                return;
+            }
+            if (best == null) {
+                accept(value);
+                return;
+            }
+
+            int comparison;
+            if (value instanceof Number && best instanceof Number) {
+                comparison = Double.compare(((Number) value).doubleValue(), bestNumber);
+            } else {
+                comparison = TransformPipeline.ValueComparators.compareValues(value, best);
+            }
+            if (max ? comparison > 0 : comparison < 0) {
+                accept(value);
+            }
+        }
+
+        @Override
+        public void merge(Accumulator other) {
+            add(((Extreme) other).best);
+        }
+
+        @Override
+        public Object result() {
+            return best;
+        }
+
+        private void accept(Object value) {
+            best = value;
+            if (value instanceof Number) {
+                bestNumber = ((Number) value).doubleValue();
+            }
+        }
+    }
+
+    /**
+     * 去重计数：不同值较少时精确计数，超过阈值后转为HyperLogLog估算（标准误差约1.6%）
+     */
+    static class DistinctCount implements Accumulator {
+
+        private static final int EXACT_LIMIT = 1024;
+        private static final int PRECISION = 12;
+        private static final int REGISTER_COUNT = 1 << PRECISION;
+
+        Set<Object> exact = new HashSet<>();
+        byte[] registers;
+
+        @Override
+        public void add(Object value) {
+            if (value == null) {
+                return;
+            }
+
+            Object normalized = normalize(value);
+            if (exact != null) {
+                exact.add(normalized);
+                if (exact.size() > EXACT_LIMIT) {
+                    promote();
+                }
+            } else {
+                addHash(normalized);
+            }
+        }
+
+        @Override
+        public void merge(Accumulator other) {
+            DistinctCount distinct = (DistinctCount) other;
+            if (distinct.exact != null) {
+                for (Object value : distinct.exact) {
+                    add(value);
+                }
+                return;
+            }
+
+            if (exact != null) {
+                promote();
+            }
+            for (int i = 0; i < REGISTER_COUNT; i++) {
+                registers[i] = (byte) Math.max(registers[i], distinct.registers[i]);
+            }
+        }
+
+        @Override
+        public Object result() {
+            if (exact != null) {
+                return (long) exact.size();
+            }
+
+            double sum = 0;
+            int zeros = 0;
+            for (byte register : registers) {
+                sum += 1.0 / (1L << register);
+                if (register == 0) {
+                    zeros++;
+                }
+            }
+            double alpha = 0.7213 / (1 + 1.079 / REGISTER_COUNT);
+            double estimate = alpha * REGISTER_COUNT * REGISTER_COUNT / sum;
+            if (estimate <= 2.5 * REGISTER_COUNT && zeros > 0) {
+                // 小基数时用线性计数修正
+                estimate = REGISTER_COUNT * Math.log((double) REGISTER_COUNT / zeros);
+            }
+            return Math.round(estimate);
+        }
+
+        private void promote() {
+            registers = new byte[REGISTER_COUNT];
+            for (Object value : exact) {
+                addHash(value);
+            }
+            exact = null;
+        }
+
+        private void addHash(Object value) {
+            long hash = mix(value.hashCode());
+            int index = (int) (hash >>> (64 - PRECISION));
+            long remaining = hash << PRECISION | (1L << (PRECISION - 1));
+            byte rank = (byte) (Long.numberOfLeadingZeros(remaining) + 1);
+            if (rank > registers[index]) {
+                registers[index] = rank;
+            }
+        }
+
+        /**
+         * 不同包装类型的相同整数视为同一个值
+         */
+        private static Object normalize(Object value) {
+            if (isIntegral(value)) {
+                return ((Number) value).longValue();
+            }
+            if (value instanceof BigDecimal) {
+                return ((BigDecimal) value).stripTrailingZeros();
+            }
+            return value;
+        }
+
+        private static long mix(long h) {
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb9fe1a85ec53L;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+
+    /**
+     * 百分位数：样本不超过上限时精确计算，超过后按蓄水池抽样估算
+     */
+    static class Percentile implements Accumulator {
+
+        private static final int SAMPLE_LIMIT = 100_000;
+
+        final double percentile;
+        double[] samples = new double[64];
+        int size;
+        long seen;
+
+        Percentile(double percentile) {
+            this.percentile = Math.min(1.0, Math.max(0.0, percentile));
+        }
+
+        @Override
+        public void add(Object value) {
+            if (value instanceof Number) {
+                addSample(((Number) value).doubleValue());
+            }
+        }
+
+        @Override
+        public void merge(Accumulator other) {
+            Percentile percentileOther = (Percentile) other;
+            if (seen + percentileOther.seen <= SAMPLE_LIMIT) {
+                for (int i = 0; i < percentileOther.size; i++) {
+                    addSample(percentileOther.samples[i]);
+                }
+                return;
+            }
+
+            // 两个样本按各自代表的行数比例抽取，合并后仍为均匀样本
+            long total = seen + percentileOther.seen;
+            int keepThis = (int) Math.round((double) SAMPLE_LIMIT * seen / total);
+            int keepOther = SAMPLE_LIMIT - keepThis;
+            double[] merged = new double[SAMPLE_LIMIT];
+            int mergedSize = sample(samples, size, keepThis, merged, 0);
+            mergedSize = sample(percentileOther.samples, percentileOther.size, keepOther, merged, mergedSize);
+            samples = merged;
+            size = mergedSize;
+            seen = total;
+        }
+
+        @Override
+        public Object result() {
+            if (size == 0) {
+                return null;
+            }
+
+            double[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            // 线性插值
+            double position = percentile * (size - 1);
+            int lower = (int) Math.floor(position);
+            int upper = Math.min(size - 1, lower + 1);
+            return sorted[lower] + (sorted[upper] - sorted[lower]) * (position - lower);
+        }
+
+        private void addSample(double value) {
+            seen++;
+            if (size < SAMPLE_LIMIT) {
+                if (size == samples.length) {
+                    samples = Arrays.copyOf(samples, Math.min(SAMPLE_LIMIT, size * 2));
+                }
+                samples[size++] = value;
+                return;
+            }
+
+            long slot = ThreadLocalRandom.current().nextLong(seen);
+            if (slot < SAMPLE_LIMIT) {
+                samples[(int) slot] = value;
+            }
+        }
+
+        private static int sample(double[] source, int sourceSize, int count, double[] target, int offset) {
+            count = Math.min(count, sourceSize);
+            double[] copy = Arrays.copyOf(source, sourceSize);
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            // 部分Fisher-Yates洗牌取前count个
+            for (int i = 0; i < count; i++) {
+                int j = i + random.nextInt(sourceSize - i);
+                double swap = copy[i];
+                copy[i] = copy[j];
+                copy[j] = swap;
+                target[offset + i] = copy[i];
+            }
+            return offset + count;
+        }
+    }
+}
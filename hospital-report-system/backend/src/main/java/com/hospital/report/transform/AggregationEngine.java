@@ -0,0 +1,231 @@
+package com.hospital.report.transform;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * 哈希聚合引擎
+ * 聚合配置：
+ * <pre>
+ * {"groupBy": "dept" 或 ["dept", "month"],
+ *  "aggregations": [{"field": "amount", "function": "SUM", "alias": "total"},
+ *                   {"field": "cost", "function": "PERCENTILE", "percentile": 0.9}]}
+ * </pre>
+ * 支持 COUNT、SUM、AVG、MIN、MAX、COUNT_DISTINCT（近似）、MEDIAN/PERCENTILE（近似）。
+ *
+ * 一次遍历数据，每个分组每个聚合项一个原始类型累加器；数据量超过阈值时按CPU核数分片并行聚合，
+ * 再按分片顺序合并各分片的部分结果。输出按分组首次出现的顺序排列。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AggregationEngine {
+
+    private final ObjectMapper objectMapper;
+
+    private static final int MAX_COMPILED_PLANS = 256;
+
+    @Value("${report.aggregation.parallel-threshold:50000}")
+    private int parallelThreshold;
+
+    /**
+     * 聚合配置 -> 解析结果
+     */
+    private final Map<String, Plan> compiledPlans = Collections.synchronizedMap(
+        new LinkedHashMap<String, Plan>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Plan> eldest) {
+                return size() > MAX_COMPILED_PLANS;
+            }
+        });
+
+    /**
+     * 按配置聚合
+     * @return 配置缺少 groupBy 或 aggregations 时返回null
+     * @throws IllegalArgumentException 配置格式错误
+     */
+    public List<Map<String, Object>> aggregate(List<Map<String, Object>> rows, String aggregateConfig) {
+        Plan plan = compiledPlans.get(aggregateConfig);
+        if (plan == null) {
+            plan = compile(aggregateConfig);
+            compiledPlans.put(aggregateConfig, plan);
+        }
+        if (plan.groupBy.length == 0 || plan.aggregations.length == 0) {
+            return null;
+        }
+
+        Map<Object, Accumulators.Accumulator[]> groups;
+        int parallelism = ForkJoinPool.commonPool().getParallelism();
+        if (rows.size() < parallelThreshold || parallelism <= 1) {
+            groups = aggregateRange(plan, rows, 0, rows.size());
+        } else {
+            groups = aggregateParallel(plan, rows, parallelism);
+        }
+        return toRows(plan, groups);
+    }
+
+    private Map<Object, Accumulators.Accumulator[]> aggregateParallel(Plan plan, List<Map<String, Object>> rows,
+                                                                      int parallelism) {
+        int chunkCount = Math.min(parallelism, (rows.size() + parallelThreshold - 1) / parallelThreshold * 2);
+        int chunkSize = (rows.size() + chunkCount - 1) / chunkCount;
+
+        List<ForkJoinTask<Map<Object, Accumulators.Accumulator[]>>> tasks = new ArrayList<>(chunkCount);
+        for (int start = 0; start < rows.size(); start += chunkSize) {
+            int from = start;
+            int to = Math.min(rows.size(), start + chunkSize);
+            tasks.add(ForkJoinPool.commonPool().submit(() -> aggregateRange(plan, rows, from, to)));
+        }
+
+        // 按分片顺序合并，保持分组首次出现的顺序
+        Map<Object, Accumulators.Accumulator[]> merged = tasks.get(0).join();
+        for (int i = 1; i < tasks.size(); i++) {
+            for (Map.Entry<Object, Accumulators.Accumulator[]> entry : tasks.get(i).join().entrySet()) {
+                Accumulators.Accumulator[] target = merged.get(entry.getKey());
+                if (target == null) {
+                    merged.put(entry.getKey(), entry.getValue());
+                    continue;
+                }
+                Accumulators.Accumulator[] partial = entry.getValue();
+                for (int j = 0; j < target.length; j++) {
+                    if (target[j] != null) {
+                        target[j].merge(partial[j]);
+                    }
+                }
+            }
+        }
+        return merged;
+    }
+
+    private static Map<Object, Accumulators.Accumulator[]> aggregateRange(Plan plan, List<Map<String, Object>> rows,
+                                                                          int from, int to) {
+        Map<Object, Accumulators.Accumulator[]> groups = new LinkedHashMap<>();
+        Aggregation[] aggregations = plan.aggregations;
+        for (int i = from; i < to; i++) {
+            Map<String, Object> row = rows.get(i);
+            Accumulators.Accumulator[] accumulators = groups.computeIfAbsent(plan.groupKey(row), key -> plan.newAccumulators());
+            for (int j = 0; j < aggregations.length; j++) {
+                if (accumulators[j] != null) {
+                    accumulators[j].add(aggregations[j].field != null ? row.get(aggregations[j].field) : null);
+                }
+            }
+        }
+        return groups;
+    }
+
+    private static List<Map<String, Object>> toRows(Plan plan, Map<Object, Accumulators.Accumulator[]> groups) {
+        List<Map<String, Object>> result = new ArrayList<>(groups.size());
+        for (Map.Entry<Object, Accumulators.Accumulator[]> group : groups.entrySet()) {
+            Map<String, Object> aggregatedRow = new HashMap<>();
+            if (plan.groupBy.length == 1) {
+                aggregatedRow.put(plan.groupBy[0], group.getKey());
+            } else {
+                List<?> keyValues = (List<?>) group.getKey();
+                for (int i = 0; i < plan.groupBy.length; i++) {
+                    aggregatedRow.put(plan.groupBy[i], keyValues.get(i));
+                }
+            }
+
+            Accumulators.Accumulator[] accumulators = group.getValue();
+            for (int j = 0; j < plan.aggregations.length; j++) {
+                aggregatedRow.put(plan.aggregations[j].alias, accumulators[j] != null ? accumulators[j].result() : null);
+            }
+            result.add(aggregatedRow);
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Plan compile(String aggregateConfig) {
+        Map<String, Object> config;
+        try {
+            config = objectMapper.readValue(aggregateConfig, Map.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("聚合配置格式错误: " + e.getOriginalMessage(), e);
+        }
+
+        Object groupByConfig = config.get("groupBy");
+        String[] groupBy;
+        if (groupByConfig instanceof List) {
+            groupBy = ((List<Object>) groupByConfig).stream().map(String::valueOf).toArray(String[]::new);
+        } else if (groupByConfig instanceof String) {
+            groupBy = new String[]{(String) groupByConfig};
+        } else {
+            groupBy = new String[0];
+        }
+
+        List<Map<String, Object>> aggregationConfigs = (List<Map<String, Object>>) config.get("aggregations");
+        List<Aggregation> aggregations = new ArrayList<>();
+        if (aggregationConfigs != null) {
+            for (Map<String, Object> agg : aggregationConfigs) {
+                String field = (String) agg.get("field");
+                String function = (String) agg.get("function");
+                if (function == null) {
+                    throw new IllegalArgumentException("聚合项缺少function");
+                }
+                String alias = (String) agg.getOrDefault("alias", field + "_" + function);
+                Object percentile = agg.getOrDefault("percentile", 0.5);
+                double percentileValue = percentile instanceof Number ? ((Number) percentile).doubleValue() : 0.5;
+                aggregations.add(new Aggregation(field, function.toUpperCase(), alias, percentileValue));
+            }
+        }
+
+        return new Plan(groupBy, aggregations.toArray(new Aggregation[0]));
+    }
+
+    private static class Plan {
+
+        final String[] groupBy;
+        final Aggregation[] aggregations;
+
+        Plan(String[] groupBy, Aggregation[] aggregations) {
+            this.groupBy = groupBy;
+            this.aggregations = aggregations;
+        }
+
+        /**
+         * 单字段分组直接以字段值为键（可为null），多字段分组以值列表为键
+         */
+        Object groupKey(Map<String, Object> row) {
+            if (groupBy.length == 1) {
+                return row.get(groupBy[0]);
+            }
+            Object[] values = new Object[groupBy.length];
+            for (int i = 0; i < groupBy.length; i++) {
+                values[i] = row.get(groupBy[i]);
+            }
+            return Arrays.asList(values);
+        }
+
+        Accumulators.Accumulator[] newAccumulators() {
+            Accumulators.Accumulator[] accumulators = new Accumulators.Accumulator[aggregations.length];
+            for (int i = 0; i < aggregations.length; i++) {
+                // 不支持的函数没有累加器，结果为null
+                accumulators[i] = Accumulators.create(aggregations[i].function, aggregations[i].percentile);
+            }
+            return accumulators;
+        }
+    }
+
+    private static class Aggregation {
+
+        final String field;
+        final String function;
+        final String alias;
+        final double percentile;
+
+        Aggregation(String field, String function, String alias, double percentile) {
+            this.field = field;
+            this.function = function;
+            this.alias = alias;
+            this.percentile = percentile;
+        }
+    }
+}
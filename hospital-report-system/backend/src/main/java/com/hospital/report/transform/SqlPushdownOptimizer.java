@@ -0,0 +1,573 @@
+package com.hospital.report.transform;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * 转换下推优化器
+ * 把 SQL 数据源 transformConfig 中可以用 SQL 表达的前缀步骤改写到外层查询：
+ * SELECT ... FROM (原SQL) pd_src WHERE ... GROUP BY ... ORDER BY ... LIMIT/OFFSET，
+ * 由数据库完成过滤、排序、分页和聚合，只传输需要展示的数据。
+ *
+ * 下推规则：
+ * - 从第一步开始连续下推，遇到无法下推的步骤（MAP、第二个SORT、不支持的条件等）即停止，其后的步骤留在Java执行；
+ * - 列类型取自该数据源此前查询结果的 JDBC 列元数据（{@link #recordColumnTypes}），未知类型的列按字符串处理；
+ * - 数值常量的大小比较只在列为数值类型时精确下推（字符串列在 Java 中按字符串比较）；数值相等条件在 Java 中
+ *   按 equals 比较（Integer 与 Long 不相等），只作为预过滤下推，不等条件不下推；
+ * - 字符串相等和包含类条件受数据库排序规则影响（如不区分大小写），只作为预过滤下推；
+ *   预过滤条件在 Java 中仍会再执行一次，此后的 LIMIT 不再下推；
+ * - 排序只在列为数值或日期时间类型时下推，字符串排序受数据库排序规则影响，与 Java 结果（尤其是排序后取前N行）不一致；
+ * - LIMIT 下推后停止；聚合（transformConfig 的 aggregate 项）只在全部转换步骤都已精确下推且没有排序分页时下推。
+ *
+ * 仅支持 MySQL/MariaDB、PostgreSQL、SQL Server、Oracle，其他数据库不下推。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SqlPushdownOptimizer {
+
+    private final ObjectMapper objectMapper;
+
+    private static final int MAX_CACHED_PLANS = 512;
+
+    private static final int MAX_CACHED_SOURCES = 256;
+
+    private static final Set<String> NUMERIC_TYPES = Set.of(
+        "TINYINT", "SMALLINT", "INTEGER", "BIGINT", "REAL", "FLOAT", "DOUBLE", "NUMERIC", "DECIMAL");
+
+    // 带时区的类型在 Java 中以字符串比较，与时间先后不一定一致，不包含在内
+    private static final Set<String> TEMPORAL_TYPES = Set.of("DATE", "TIME", "TIMESTAMP");
+
+    @Value("${report.pushdown.enabled:true}")
+    private boolean enabled;
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    private static final Set<String> PUSHABLE_AGGREGATES = Set.of("COUNT", "SUM", "AVG", "MIN", "MAX", "COUNT_DISTINCT");
+
+    /**
+     * 数据库类型 + 列类型 + 转换配置 -> 下推计划
+     */
+    private final Map<String, PushdownPlan> plans = Collections.synchronizedMap(
+        new LinkedHashMap<String, PushdownPlan>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PushdownPlan> eldest) {
+                return size() > MAX_CACHED_PLANS;
+            }
+        });
+
+    /**
+     * 源查询（queryConfig）-> 列名到 JDBC 类型名
+     */
+    private final Map<String, Map<String, String>> sourceColumnTypes = Collections.synchronizedMap(
+        new LinkedHashMap<String, Map<String, String>>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Map<String, String>> eldest) {
+                return size() > MAX_CACHED_SOURCES;
+            }
+        });
+
+    /**
+     * 生成下推计划
+     * @param sourceKey 源查询的标识（queryConfig），用于取得已记录的列类型
+     * @param databaseType 数据源的数据库类型（mysql、postgresql 等）
+     * @return 没有可下推的步骤时返回null
+     */
+    public PushdownPlan plan(String sourceKey, String transformConfig, String databaseType) {
+        Dialect dialect = Dialect.of(databaseType);
+        if (!enabled || dialect == null || transformConfig == null || transformConfig.trim().isEmpty()) {
+            return null;
+        }
+
+        Map<String, String> columnTypes = sourceColumnTypes.getOrDefault(sourceKey, Collections.emptyMap());
+        String key = dialect.name() + "\n" + columnTypes + "\n" + transformConfig;
+        PushdownPlan plan = plans.get(key);
+        if (plan == null) {
+            plan = compile(key, transformConfig, dialect, columnTypes);
+            plans.put(key, plan);
+        }
+        return plan.isEmpty() ? null : plan;
+    }
+
+    /**
+     * 记录源查询结果的列类型（SqlExecutionService 结果中的 columns 与 columnTypes）
+     * 聚合下推的结果列与源查询不同，不应记录。
+     */
+    public void recordColumnTypes(String sourceKey, Map<String, Object> result) {
+        Object columns = result.get("columns");
+        Object types = result.get("columnTypes");
+        if (sourceKey == null || !(columns instanceof List) || !(types instanceof List)
+            || ((List<?>) columns).size() != ((List<?>) types).size()) {
+            return;
+        }
+
+        Map<String, String> columnTypes = new TreeMap<>();
+        for (int i = 0; i < ((List<?>) columns).size(); i++) {
+            Object name = ((List<?>) columns).get(i);
+            Object type = ((List<?>) types).get(i);
+            if (name != null && type != null) {
+                columnTypes.put(name.toString(), type.toString().toUpperCase());
+            }
+        }
+        if (!columnTypes.equals(sourceColumnTypes.get(sourceKey))) {
+            sourceColumnTypes.put(sourceKey, Collections.unmodifiableMap(columnTypes));
+        }
+    }
+
+    /**
+     * 下推后的SQL执行失败（如数据库不支持列的隐式类型转换）时停用该计划，之后按原SQL查询
+     */
+    public void disable(PushdownPlan plan) {
+        log.warn("停用转换下推: {}", plan.key);
+        plans.put(plan.key, PushdownPlan.EMPTY);
+    }
+
+    @SuppressWarnings("unchecked")
+    private PushdownPlan compile(String key, String transformConfig, Dialect dialect, Map<String, String> columnTypes) {
+        Map<String, Object> config;
+        try {
+            config = objectMapper.readValue(transformConfig, Map.class);
+        } catch (JsonProcessingException e) {
+            // 配置错误交给Java转换处理（记录日志并返回原数据）
+            return PushdownPlan.EMPTY;
+        }
+
+        List<Map<String, Object>> transformations = config.get("transformations") instanceof List
+            ? (List<Map<String, Object>>) config.get("transformations") : Collections.emptyList();
+
+        PlanBuilder builder = new PlanBuilder(dialect, columnTypes);
+        int pushed = 0;
+        for (Map<String, Object> transformation : transformations) {
+            if (!builder.push(transformation)) {
+                break;
+            }
+            pushed++;
+        }
+
+        boolean allPushed = pushed == transformations.size();
+        Object aggregate = config.get("aggregate");
+        boolean aggregatePushed = allPushed && aggregate instanceof Map && builder.pushAggregate((Map<String, Object>) aggregate);
+
+        if (builder.isEmpty()) {
+            return PushdownPlan.EMPTY;
+        }
+
+        // 剩余步骤：作为预过滤下推的条件 + 未下推的步骤 + 未下推的聚合
+        List<Map<String, Object>> residualSteps = new ArrayList<>(builder.recheckFilters);
+        residualSteps.addAll(transformations.subList(pushed, transformations.size()));
+        String residualConfig = null;
+        if (!residualSteps.isEmpty() || (aggregate != null && !aggregatePushed)) {
+            Map<String, Object> residual = new LinkedHashMap<>();
+            residual.put("transformations", residualSteps);
+            if (aggregate != null && !aggregatePushed) {
+                residual.put("aggregate", aggregate);
+            }
+            try {
+                residualConfig = objectMapper.writeValueAsString(residual);
+            } catch (JsonProcessingException e) {
+                return PushdownPlan.EMPTY;
+            }
+        }
+
+        return new PushdownPlan(key, builder, residualConfig);
+    }
+
+    /**
+     * 下推计划：外层SQL模板、追加的绑定参数和留在Java执行的剩余转换配置
+     */
+    public static class PushdownPlan {
+
+        static final PushdownPlan EMPTY = new PushdownPlan(null, null, null);
+
+        private final String key;
+        private final String selectClause;
+        private final String suffix;
+        private final List<Object> bindValues;
+        private final String residualConfig;
+        private final boolean aggregated;
+
+        PushdownPlan(String key, PlanBuilder builder, String residualConfig) {
+            this.key = key;
+            this.aggregated = builder != null && builder.groupColumns != null;
+            this.selectClause = builder != null ? builder.selectClause() : null;
+            this.suffix = builder != null ? builder.suffix() : null;
+            this.bindValues = builder != null ? Collections.unmodifiableList(builder.bindValues) : Collections.emptyList();
+            this.residualConfig = residualConfig;
+        }
+
+        boolean isEmpty() {
+            return selectClause == null;
+        }
+
+        /**
+         * 是否下推了聚合（结果列为分组列和聚合列，而不是源查询的列）
+         */
+        public boolean isAggregated() {
+            return aggregated;
+        }
+
+        /**
+         * 把原SQL包装为子查询并附加下推的子句
+         * 下推条件的占位符排在原SQL之后，与参数的追加顺序一致（参数按顺序绑定）。
+         */
+        public String wrap(String sql) {
+            String inner = sql.trim();
+            if (inner.endsWith(";")) {
+                inner = inner.substring(0, inner.length() - 1);
+            }
+            return selectClause + " FROM (" + inner + ") pd_src" + suffix;
+        }
+
+        /**
+         * 在原参数之后追加下推条件的参数
+         */
+        public Map<String, Object> bindParameters(Map<String, Object> parameters) {
+            Map<String, Object> bound = new LinkedHashMap<>(parameters != null ? parameters : Collections.emptyMap());
+            for (int i = 0; i < bindValues.size(); i++) {
+                bound.put(PlanBuilder.PARAMETER_PREFIX + i, bindValues.get(i));
+            }
+            return bound;
+        }
+
+        /**
+         * 留在Java执行的转换配置，全部下推时为null
+         */
+        public String getResidualConfig() {
+            return residualConfig;
+        }
+    }
+
+    private static class PlanBuilder {
+
+        static final String PARAMETER_PREFIX = "__pd_";
+
+        final Dialect dialect;
+        final Map<String, String> columnTypes;
+        final List<String> predicates = new ArrayList<>();
+        final List<Object> bindValues = new ArrayList<>();
+        final List<Map<String, Object>> recheckFilters = new ArrayList<>();
+        String orderBy;
+        String limitClause;
+        List<String> groupColumns;
+        List<String> aggregateColumns;
+        boolean limited;
+        boolean sorted;
+
+        PlanBuilder(Dialect dialect, Map<String, String> columnTypes) {
+            this.dialect = dialect;
+            this.columnTypes = columnTypes;
+        }
+
+        boolean isEmpty() {
+            return predicates.isEmpty() && orderBy == null && limitClause == null && groupColumns == null;
+        }
+
+        boolean push(Map<String, Object> transformation) {
+            if (limited) {
+                return false;
+            }
+
+            String type = transformation.get("type") instanceof String ? ((String) transformation.get("type")).toUpperCase() : "";
+            switch (type) {
+                case "FILTER":
+                    return pushFilter(transformation);
+                case "SORT":
+                    return pushSort(transformation);
+                case "LIMIT":
+                    return pushLimit(transformation);
+                default:
+                    return false;
+            }
+        }
+
+        private boolean pushFilter(Map<String, Object> filter) {
+            String field = identifier(filter.get("field"));
+            if (field == null || !(filter.get("operator") instanceof String)) {
+                return false;
+            }
+            String operator = ((String) filter.get("operator")).toUpperCase();
+            Object value = filter.get("value");
+
+            if (value == null) {
+                predicates.add("EQUALS".equals(operator) ? field + " IS NULL"
+                    : "NOT_EQUALS".equals(operator) ? field + " IS NOT NULL" : "1 = 0");
+                return true;
+            }
+
+            if (value instanceof Number) {
+                String comparison = comparisonOperator(operator);
+                // 非数值列在 Java 中按字符串比较；不等条件按 equals 判断，数据库结果不是其超集
+                if (comparison == null || "NOT_EQUALS".equals(operator) || !isNumericColumn(filter.get("field"))) {
+                    return false;
+                }
+                predicates.add(field + " " + comparison + " " + bind(value));
+                if ("EQUALS".equals(operator)) {
+                    recheckFilters.add(filter);
+                }
+                return true;
+            }
+
+            // 字符串条件只在允许隐式类型转换的数据库上作为预过滤下推
+            if (!(value instanceof String) || !dialect.implicitStringConversion) {
+                return false;
+            }
+            String text = (String) value;
+            String predicate;
+            switch (operator) {
+                case "EQUALS":
+                    predicate = field + " = " + bind(text);
+                    break;
+                case "CONTAINS":
+                    predicate = field + " LIKE " + bind("%" + escapeLike(text) + "%") + dialect.likeEscape;
+                    break;
+                case "STARTS_WITH":
+                    predicate = field + " LIKE " + bind(escapeLike(text) + "%") + dialect.likeEscape;
+                    break;
+                case "ENDS_WITH":
+                    predicate = field + " LIKE " + bind("%" + escapeLike(text)) + dialect.likeEscape;
+                    break;
+                default:
+                    return false;
+            }
+            predicates.add(predicate);
+            recheckFilters.add(filter);
+            return true;
+        }
+
+        private boolean pushSort(Map<String, Object> sort) {
+            String field = identifier(sort.get("field"));
+            if (field == null || sorted || !isOrderedColumn(sort.get("field"))) {
+                return false;
+            }
+            boolean descending = "DESC".equalsIgnoreCase(String.valueOf(sort.getOrDefault("direction", "ASC")));
+            // Java 排序空值在前（升序）/在后（降序）
+            orderBy = field + (descending ? " DESC" : " ASC") + dialect.nullOrdering(descending);
+            sorted = true;
+            return true;
+        }
+
+        private boolean pushLimit(Map<String, Object> limit) {
+            Object limitValue = limit.get("limit");
+            if (!(limitValue instanceof Number) || !recheckFilters.isEmpty()) {
+                // 预过滤的结果是超集，分页必须在Java复核之后
+                return false;
+            }
+            Object offsetValue = limit.getOrDefault("offset", 0);
+            long offset = offsetValue instanceof Number ? Math.max(0, ((Number) offsetValue).longValue()) : 0;
+            long count = Math.max(0, ((Number) limitValue).longValue());
+            limitClause = dialect.limit(offset, count, orderBy != null);
+            limited = true;
+            return true;
+        }
+
+        @SuppressWarnings("unchecked")
+        boolean pushAggregate(Map<String, Object> aggregate) {
+            if (sorted || limited || !recheckFilters.isEmpty()) {
+                return false;
+            }
+
+            Object groupByConfig = aggregate.get("groupBy");
+            List<Object> groupBy = groupByConfig instanceof List ? (List<Object>) groupByConfig
+                : groupByConfig instanceof String ? List.of(groupByConfig) : Collections.emptyList();
+            Object aggregationConfig = aggregate.get("aggregations");
+            if (groupBy.isEmpty() || !(aggregationConfig instanceof List)) {
+                return false;
+            }
+
+            List<String> groups = new ArrayList<>();
+            for (Object group : groupBy) {
+                String column = identifier(group);
+                if (column == null) {
+                    return false;
+                }
+                groups.add(column);
+            }
+
+            List<String> columns = new ArrayList<>();
+            for (Map<String, Object> agg : (List<Map<String, Object>>) aggregationConfig) {
+                String function = agg.get("function") instanceof String ? ((String) agg.get("function")).toUpperCase() : null;
+                if (function == null || !PUSHABLE_AGGREGATES.contains(function)) {
+                    return false;
+                }
+                String field = (String) agg.get("field");
+                String column = identifier(field);
+                String alias = identifier(agg.getOrDefault("alias", field + "_" + agg.get("function")));
+                if (alias == null || (column == null && !"COUNT".equals(function))) {
+                    return false;
+                }
+                columns.add(aggregateExpression(function, column) + " AS " + alias);
+            }
+
+            groupColumns = groups;
+            aggregateColumns = columns;
+            return true;
+        }
+
+        private static String aggregateExpression(String function, String column) {
+            switch (function) {
+                case "COUNT":
+                    return "COUNT(*)";
+                case "COUNT_DISTINCT":
+                    return "COUNT(DISTINCT " + column + ")";
+                case "AVG":
+                    // 与Java实现一致：分母为分组行数
+                    return "COALESCE(SUM(" + column + "), 0) * 1.0 / COUNT(*)";
+                default:
+                    return function + "(" + column + ")";
+            }
+        }
+
+        String selectClause() {
+            if (groupColumns == null) {
+                return "SELECT *";
+            }
+            List<String> columns = new ArrayList<>(groupColumns);
+            columns.addAll(aggregateColumns);
+            return "SELECT " + String.join(", ", columns);
+        }
+
+        String suffix() {
+            StringBuilder suffix = new StringBuilder();
+            if (!predicates.isEmpty()) {
+                suffix.append(" WHERE ").append(String.join(" AND ", predicates));
+            }
+            if (groupColumns != null) {
+                suffix.append(" GROUP BY ").append(String.join(", ", groupColumns));
+            }
+            if (orderBy != null) {
+                suffix.append(" ORDER BY ").append(orderBy);
+            }
+            if (limitClause != null) {
+                suffix.append(limitClause);
+            }
+            return suffix.toString();
+        }
+
+        private boolean isNumericColumn(Object name) {
+            String type = columnType(name);
+            return type != null && NUMERIC_TYPES.contains(type);
+        }
+
+        /**
+         * 数据库排序与 Java 排序一致的列：数值和日期时间（Java 中为标准格式字符串）
+         */
+        private boolean isOrderedColumn(Object name) {
+            String type = columnType(name);
+            return type != null && (NUMERIC_TYPES.contains(type) || TEMPORAL_TYPES.contains(type));
+        }
+
+        /**
+         * 列类型未知（尚未记录或结果中没有该列）时返回null，对应步骤留在 Java 中执行
+         */
+        private String columnType(Object name) {
+            return name != null ? columnTypes.get(name.toString()) : null;
+        }
+
+        private String bind(Object value) {
+            String placeholder = "#{" + PARAMETER_PREFIX + bindValues.size() + "}";
+            bindValues.add(value);
+            return placeholder;
+        }
+
+        private String identifier(Object name) {
+            if (!(name instanceof String) || !IDENTIFIER.matcher((String) name).matches()) {
+                return null;
+            }
+            return dialect.quote((String) name);
+        }
+
+        private static String comparisonOperator(String operator) {
+            switch (operator) {
+                case "EQUALS":
+                    return "=";
+                case "NOT_EQUALS":
+                    return "<>";
+                case "GREATER_THAN":
+                    return ">";
+                case "LESS_THAN":
+                    return "<";
+                case "GREATER_EQUALS":
+                    return ">=";
+                case "LESS_EQUALS":
+                    return "<=";
+                default:
+                    return null;
+            }
+        }
+
+        private static String escapeLike(String text) {
+            return text.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+        }
+    }
+
+    /**
+     * 数据库方言：标识符引用、空值排序和分页语法
+     */
+    private enum Dialect {
+
+        MYSQL("`", "`", true, false),
+        POSTGRESQL("\"", "\"", false, true),
+        SQLSERVER("[", "]", true, false),
+        ORACLE("\"", "\"", false, true);
+
+        final String quoteOpen;
+        final String quoteClose;
+        final boolean implicitStringConversion;
+        // 默认空值排序与Java不同（升序时空值在后），需要显式指定
+        final boolean explicitNullOrdering;
+        final String likeEscape = " ESCAPE '!'";
+
+        Dialect(String quoteOpen, String quoteClose, boolean implicitStringConversion, boolean explicitNullOrdering) {
+            this.quoteOpen = quoteOpen;
+            this.quoteClose = quoteClose;
+            this.implicitStringConversion = implicitStringConversion;
+            this.explicitNullOrdering = explicitNullOrdering;
+        }
+
+        static Dialect of(String databaseType) {
+            if (databaseType == null) {
+                return null;
+            }
+            switch (databaseType.toLowerCase()) {
+                case "mysql":
+                case "mariadb":
+                    return MYSQL;
+                case "postgresql":
+                    return POSTGRESQL;
+                case "sqlserver":
+                    return SQLSERVER;
+                case "oracle":
+                    return ORACLE;
+                default:
+                    return null;
+            }
+        }
+
+        String quote(String identifier) {
+            return quoteOpen + identifier + quoteClose;
+        }
+
+        String nullOrdering(boolean descending) {
+            if (!explicitNullOrdering) {
+                return "";
+            }
+            return descending ? " NULLS LAST" : " NULLS FIRST";
+        }
+
+        String limit(long offset, long count, boolean ordered) {
+            if (this == MYSQL || this == POSTGRESQL) {
+                return " LIMIT " + count + (offset > 0 ? " OFFSET " + offset : "");
+            }
+            // SQL Server 的 OFFSET/FETCH 必须跟在 ORDER BY 之后
+            String order = !ordered && this == SQLSERVER ? " ORDER BY (SELECT NULL)" : "";
+            return order + " OFFSET " + offset + " ROWS FETCH NEXT " + count + " ROWS ONLY";
+        }
+    }
+}
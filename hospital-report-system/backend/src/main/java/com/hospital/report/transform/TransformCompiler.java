@@ -0,0 +1,229 @@
+package com.hospital.report.transform;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.function.ToIntFunction;
+
+/**
+ * 数据转换配置编译器
+ * 把数据源的 transformConfig（JSON）编译为 {@link TransformPipeline} 并按配置内容缓存：
+ * 数据源修改转换配置后内容变化，自然命中新的编译结果，旧结果按LRU淘汰。
+ * 可选的 aggregate 项（格式同聚合配置）在全部转换步骤之后执行。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TransformCompiler {
+
+    private final ObjectMapper objectMapper;
+    private final AggregationEngine aggregationEngine;
+
+    private static final int MAX_COMPILED_PIPELINES = 512;
+
+    /**
+     * 转换配置 -> 编译结果
+     */
+    private final Map<String, TransformPipeline> compiledPipelines = Collections.synchronizedMap(
+        new LinkedHashMap<String, TransformPipeline>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TransformPipeline> eldest) {
+                return size() > MAX_COMPILED_PIPELINES;
+            }
+        });
+
+    /**
+     * 获取编译后的转换流水线
+     * @throws IllegalArgumentException 配置无法解析或含有非法的转换步骤
+     */
+    public TransformPipeline compile(String transformConfig) {
+        TransformPipeline pipeline = compiledPipelines.get(transformConfig);
+        if (pipeline == null) {
+            pipeline = doCompile(transformConfig);
+            compiledPipelines.put(transformConfig, pipeline);
+        }
+        return pipeline;
+    }
+
+    @SuppressWarnings("unchecked")
+    private TransformPipeline doCompile(String transformConfig) {
+        Map<String, Object> config;
+        try {
+            config = objectMapper.readValue(transformConfig, Map.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("转换配置格式错误: " + e.getOriginalMessage(), e);
+        }
+
+        List<TransformPipeline.Stage> stages = new ArrayList<>();
+        List<Map<String, Object>> transformations = (List<Map<String, Object>>) config.getOrDefault(
+            "transformations", Collections.emptyList());
+
+        for (Map<String, Object> transformation : transformations) {
+            String type = (String) transformation.get("type");
+            if (type == null) {
+                throw new IllegalArgumentException("转换步骤缺少type");
+            }
+
+            switch (type.toUpperCase()) {
+                case "FILTER":
+                    rowStage(stages).operators.add(compileFilter(transformation));
+                    break;
+                case "MAP":
+                    TransformPipeline.RowStage stage = rowStage(stages);
+                    stage.operators.add(compileMapping(transformation));
+                    stage.reshapes = true;
+                    break;
+                case "SORT":
+                    String direction = (String) transformation.getOrDefault("direction", "ASC");
+                    stages.add(new TransformPipeline.SortStage((String) transformation.get("field"),
+                        "DESC".equalsIgnoreCase(direction)));
+                    break;
+                case "LIMIT":
+                    addLimit(stages, transformation);
+                    break;
+                default:
+                    // 未知的转换类型忽略
+                    break;
+            }
+        }
+
+        Object aggregate = config.get("aggregate");
+        if (aggregate instanceof Map) {
+            try {
+                stages.add(new TransformPipeline.AggregateStage(aggregationEngine, objectMapper.writeValueAsString(aggregate)));
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("聚合配置格式错误: " + e.getOriginalMessage(), e);
+            }
+        }
+
+        return new TransformPipeline(stages);
+    }
+
+    /**
+     * 取末尾的逐行阶段以便合并；末尾不是逐行阶段或已带LIMIT时新建
+     */
+    private static TransformPipeline.RowStage rowStage(List<TransformPipeline.Stage> stages) {
+        TransformPipeline.Stage last = stages.isEmpty() ? null : stages.get(stages.size() - 1);
+        if (last instanceof TransformPipeline.RowStage && ((TransformPipeline.RowStage) last).window == null) {
+            return (TransformPipeline.RowStage) last;
+        }
+
+        TransformPipeline.RowStage stage = new TransformPipeline.RowStage();
+        stages.add(stage);
+        return stage;
+    }
+
+    /**
+     * LIMIT 并入前一个排序或逐行阶段，无法合并时作为独立阶段
+     */
+    private static void addLimit(List<TransformPipeline.Stage> stages, Map<String, Object> transformation) {
+        Object limit = transformation.get("limit");
+        if (!(limit instanceof Number)) {
+            return;
+        }
+        Object offset = transformation.getOrDefault("offset", 0);
+        TransformPipeline.Window window = new TransformPipeline.Window(
+            offset instanceof Number ? ((Number) offset).intValue() : 0, ((Number) limit).intValue());
+
+        TransformPipeline.Stage last = stages.isEmpty() ? null : stages.get(stages.size() - 1);
+        if (last instanceof TransformPipeline.SortStage && ((TransformPipeline.SortStage) last).window == null) {
+            ((TransformPipeline.SortStage) last).window = window;
+        } else if (last instanceof TransformPipeline.RowStage && ((TransformPipeline.RowStage) last).window == null) {
+            ((TransformPipeline.RowStage) last).window = window;
+        } else {
+            stages.add(new TransformPipeline.LimitStage(window));
+        }
+    }
+
+    private static TransformPipeline.RowOperator compileFilter(Map<String, Object> filter) {
+        String field = (String) filter.get("field");
+        String operator = ((String) filter.get("operator")).toUpperCase();
+        Object value = filter.get("value");
+
+        if (value == null) {
+            // 与空值比较：只有 EQUALS 匹配空值，NOT_EQUALS 匹配非空值
+            boolean matchNull = "EQUALS".equals(operator);
+            boolean matchNonNull = "NOT_EQUALS".equals(operator);
+            return row -> (row.get(field) == null ? matchNull : matchNonNull) ? row : null;
+        }
+
+        ValuePredicate predicate = compilePredicate(operator, value);
+        boolean nullMatches = "NOT_EQUALS".equals(operator);
+        return row -> {
+            Object fieldValue = row.get(field);
+            boolean matches = fieldValue == null ? nullMatches : predicate.test(fieldValue);
+            return matches ? row : null;
+        };
+    }
+
+    private static ValuePredicate compilePredicate(String operator, Object value) {
+        String text = value.toString();
+        ToIntFunction<Object> comparison = compileComparison(value, text);
+        switch (operator) {
+            case "EQUALS":
+                return fieldValue -> fieldValue.equals(value);
+            case "NOT_EQUALS":
+                return fieldValue -> !fieldValue.equals(value);
+            case "GREATER_THAN":
+                return fieldValue -> comparison.applyAsInt(fieldValue) > 0;
+            case "LESS_THAN":
+                return fieldValue -> comparison.applyAsInt(fieldValue) < 0;
+            case "GREATER_EQUALS":
+                return fieldValue -> comparison.applyAsInt(fieldValue) >= 0;
+            case "LESS_EQUALS":
+                return fieldValue -> comparison.applyAsInt(fieldValue) <= 0;
+            case "CONTAINS":
+                return fieldValue -> fieldValue.toString().contains(text);
+            case "STARTS_WITH":
+                return fieldValue -> fieldValue.toString().startsWith(text);
+            case "ENDS_WITH":
+                return fieldValue -> fieldValue.toString().endsWith(text);
+            default:
+                return fieldValue -> false;
+        }
+    }
+
+    /**
+     * 与常量比较：常量为数值时预先取出double，数值字段直接比较，其他按字符串
+     */
+    private static ToIntFunction<Object> compileComparison(Object value, String text) {
+        if (value instanceof Number) {
+            double constant = ((Number) value).doubleValue();
+            return fieldValue -> fieldValue instanceof Number
+                ? Double.compare(((Number) fieldValue).doubleValue(), constant)
+                : fieldValue.toString().compareTo(text);
+        }
+        return fieldValue -> fieldValue.toString().compareTo(text);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static TransformPipeline.RowOperator compileMapping(Map<String, Object> mapping) {
+        Map<String, String> fieldMappings = (Map<String, String>) mapping.get("mappings");
+        if (fieldMappings == null) {
+            throw new IllegalArgumentException("MAP转换缺少mappings");
+        }
+
+        String[] oldFields = fieldMappings.keySet().toArray(new String[0]);
+        String[] newFields = new String[oldFields.length];
+        for (int i = 0; i < oldFields.length; i++) {
+            newFields[i] = fieldMappings.get(oldFields[i]);
+        }
+
+        int capacity = Math.max(16, (int) (oldFields.length / 0.75f) + 1);
+        return row -> {
+            Map<String, Object> newRow = new HashMap<>(capacity);
+            for (int i = 0; i < oldFields.length; i++) {
+                newRow.put(newFields[i], row.get(oldFields[i]));
+            }
+            return newRow;
+        };
+    }
+
+    private interface ValuePredicate {
+        boolean test(Object fieldValue);
+    }
+}
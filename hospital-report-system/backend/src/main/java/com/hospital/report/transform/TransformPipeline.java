@@ -0,0 +1,371 @@
+package com.hospital.report.transform;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * 已编译的数据转换流水线
+ * 由 {@link TransformCompiler} 根据 transformConfig 生成，可被并发复用：
+ * 相邻的 FILTER/MAP 合并为一次逐行遍历，SORT 后紧跟 LIMIT 时用大小为 offset+limit 的堆取前K行，
+ * 排序比较器在每次执行时按列元数据（或首个非空值）确定类型。
+ * 配置中的 aggregate 项作为最后一个阶段，由 {@link AggregationEngine} 对转换结果分组聚合。
+ */
+public class TransformPipeline {
+
+    private final List<Stage> stages;
+
+    TransformPipeline(List<Stage> stages) {
+        this.stages = stages;
+    }
+
+    /**
+     * 执行转换
+     * @param rows 源数据行，不会被修改
+     * @param columns 结果集的列元数据（{name, type} 列表），可为空
+     */
+    public List<Map<String, Object>> execute(List<Map<String, Object>> rows, Object columns) {
+        Map<String, String> columnTypes = columnTypes(columns);
+        List<Map<String, Object>> current = rows;
+        for (Stage stage : stages) {
+            current = stage.apply(current, columnTypes);
+            if (stage instanceof RowStage && ((RowStage) stage).reshapes) {
+                // MAP之后列名已变化，后续排序改为按值推断类型
+                columnTypes = Collections.emptyMap();
+            }
+        }
+        return current;
+    }
+
+    public int getStageCount() {
+        return stages.size();
+    }
+
+    private static Map<String, String> columnTypes(Object columns) {
+        if (!(columns instanceof List)) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, String> types = new HashMap<>();
+        for (Object column : (List<?>) columns) {
+            if (column instanceof Map) {
+                Object name = ((Map<?, ?>) column).get("name");
+                Object type = ((Map<?, ?>) column).get("type");
+                if (name != null && type != null) {
+                    types.put(name.toString(), type.toString());
+                }
+            }
+        }
+        return types;
+    }
+
+    // ==================== 执行阶段 ====================
+
+    interface Stage {
+        List<Map<String, Object>> apply(List<Map<String, Object>> rows, Map<String, String> columnTypes);
+    }
+
+    /**
+     * 逐行算子：返回null表示过滤掉该行
+     */
+    interface RowOperator {
+        Map<String, Object> apply(Map<String, Object> row);
+    }
+
+    /**
+     * 合并后的 FILTER/MAP，一次遍历完成；后接 LIMIT 时取够行数即停止
+     */
+    static class RowStage implements Stage {
+
+        final List<RowOperator> operators = new ArrayList<>();
+        Window window;
+
+        // 包含MAP，输出行的列与输入不同
+        boolean reshapes;
+
+        @Override
+        public List<Map<String, Object>> apply(List<Map<String, Object>> rows, Map<String, String> columnTypes) {
+            int skip = window != null ? window.offset : 0;
+            int take = window != null ? window.limit : Integer.MAX_VALUE;
+
+            List<Map<String, Object>> result = new ArrayList<>(Math.min(rows.size(), take));
+            for (Map<String, Object> row : rows) {
+                if (result.size() >= take) {
+                    break;
+                }
+
+                Map<String, Object> current = row;
+                for (RowOperator operator : operators) {
+                    current = operator.apply(current);
+                    if (current == null) {
+                        break;
+                    }
+                }
+
+                if (current != null) {
+                    if (skip > 0) {
+                        skip--;
+                    } else {
+                        result.add(current);
+                    }
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 排序；后接 LIMIT 时只保留前 offset+limit 行（堆排序取前K，与稳定排序结果一致）
+     */
+    static class SortStage implements Stage {
+
+        final String field;
+        final boolean descending;
+        Window window;
+
+        SortStage(String field, boolean descending) {
+            this.field = field;
+            this.descending = descending;
+        }
+
+        @Override
+        public List<Map<String, Object>> apply(List<Map<String, Object>> rows, Map<String, String> columnTypes) {
+            Comparator<Object> valueComparator = ValueComparators.forType(resolveType(rows, columnTypes));
+            Comparator<Map<String, Object>> rowComparator = (a, b) -> {
+                int comparison = valueComparator.compare(a.get(field), b.get(field));
+                return descending ? -comparison : comparison;
+            };
+
+            if (window != null && (long) window.offset + window.limit < rows.size()) {
+                return window.slice(topK(rows, rowComparator, window.offset + window.limit));
+            }
+
+            List<Map<String, Object>> sorted = new ArrayList<>(rows);
+            sorted.sort(rowComparator);
+            return window != null ? window.slice(sorted) : sorted;
+        }
+
+        private String resolveType(List<Map<String, Object>> rows, Map<String, String> columnTypes) {
+            String type = columnTypes.get(field);
+            if (type != null) {
+                return ValueComparators.fromColumnType(type);
+            }
+            for (Map<String, Object> row : rows) {
+                Object value = row.get(field);
+                if (value != null) {
+                    return ValueComparators.fromValue(value);
+                }
+            }
+            return ValueComparators.GENERIC;
+        }
+
+        private static List<Map<String, Object>> topK(List<Map<String, Object>> rows,
+                                                      Comparator<Map<String, Object>> comparator, int k) {
+            if (k <= 0) {
+                return new ArrayList<>();
+            }
+
+            // 比较相同时按原始位置，结果与稳定排序一致
+            Comparator<IndexedRow> order = (a, b) -> {
+                int comparison = comparator.compare(a.row, b.row);
+                return comparison != 0 ? comparison : Integer.compare(a.index, b.index);
+            };
+
+            // 大顶堆保存当前最小的k行
+            PriorityQueue<IndexedRow> heap = new PriorityQueue<>(k, order.reversed());
+            int index = 0;
+            for (Map<String, Object> row : rows) {
+                IndexedRow candidate = new IndexedRow(row, index++);
+                if (heap.size() < k) {
+                    heap.add(candidate);
+                } else if (order.compare(candidate, heap.peek()) < 0) {
+                    heap.poll();
+                    heap.add(candidate);
+                }
+            }
+
+            List<IndexedRow> top = new ArrayList<>(heap);
+            top.sort(order);
+            List<Map<String, Object>> result = new ArrayList<>(top.size());
+            for (IndexedRow indexedRow : top) {
+                result.add(indexedRow.row);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 独立的 LIMIT（前面没有可合并的阶段）
+     */
+    static class LimitStage implements Stage {
+
+        final Window window;
+
+        LimitStage(Window window) {
+            this.window = window;
+        }
+
+        @Override
+        public List<Map<String, Object>> apply(List<Map<String, Object>> rows, Map<String, String> columnTypes) {
+            return window.slice(rows);
+        }
+    }
+
+    /**
+     * 对转换结果分组聚合（transformConfig 的 aggregate 项）
+     */
+    static class AggregateStage implements Stage {
+
+        final AggregationEngine engine;
+        final String aggregateConfig;
+
+        AggregateStage(AggregationEngine engine, String aggregateConfig) {
+            this.engine = engine;
+            this.aggregateConfig = aggregateConfig;
+        }
+
+        @Override
+        public List<Map<String, Object>> apply(List<Map<String, Object>> rows, Map<String, String> columnTypes) {
+            List<Map<String, Object>> aggregated = engine.aggregate(rows, aggregateConfig);
+            return aggregated != null ? aggregated : rows;
+        }
+    }
+
+    static class Window {
+
+        final int offset;
+        final int limit;
+
+        Window(int offset, int limit) {
+            this.offset = Math.max(0, offset);
+            this.limit = Math.max(0, limit);
+        }
+
+        List<Map<String, Object>> slice(List<Map<String, Object>> rows) {
+            int startIndex = Math.min(offset, rows.size());
+            int endIndex = (int) Math.min(rows.size(), (long) startIndex + limit);
+            return rows.subList(startIndex, endIndex);
+        }
+    }
+
+    private static class IndexedRow {
+
+        final Map<String, Object> row;
+        final int index;
+
+        IndexedRow(Map<String, Object> row, int index) {
+            this.row = row;
+            this.index = index;
+        }
+    }
+
+    // ==================== 值比较 ====================
+
+    /**
+     * 按列类型选择比较器：类型匹配时直接比较，不匹配时回退到通用比较（数值按double，其他按字符串），
+     * 空值排在最前。
+     */
+    static final class ValueComparators {
+
+        static final String LONG = "LONG";
+        static final String DECIMAL = "DECIMAL";
+        static final String DOUBLE = "DOUBLE";
+        static final String STRING = "STRING";
+        static final String COMPARABLE = "COMPARABLE";
+        static final String GENERIC = "GENERIC";
+
+        private ValueComparators() {
+        }
+
+        static String fromColumnType(String columnType) {
+            switch (columnType.toUpperCase()) {
+                case "INTEGER":
+                case "BIGINT":
+                    return LONG;
+                case "DECIMAL":
+                    return DECIMAL;
+                case "FLOAT":
+                case "DOUBLE":
+                    return DOUBLE;
+                case "STRING":
+                    return STRING;
+                case "DATE":
+                case "TIME":
+                case "TIMESTAMP":
+                    return COMPARABLE;
+                default:
+                    return GENERIC;
+            }
+        }
+
+        static String fromValue(Object value) {
+            if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                return LONG;
+            }
+            if (value instanceof BigDecimal) {
+                return DECIMAL;
+            }
+            if (value instanceof Number) {
+                return DOUBLE;
+            }
+            if (value instanceof String) {
+                return STRING;
+            }
+            if (value instanceof Comparable) {
+                return COMPARABLE;
+            }
+            return GENERIC;
+        }
+
+        static Comparator<Object> forType(String type) {
+            switch (type) {
+                case LONG:
+                    return nullsFirst((a, b) -> isIntegral(a) && isIntegral(b)
+                        ? Long.compare(((Number) a).longValue(), ((Number) b).longValue())
+                        : compareValues(a, b));
+                case DECIMAL:
+                    return nullsFirst((a, b) -> a instanceof BigDecimal && b instanceof BigDecimal
+                        ? ((BigDecimal) a).compareTo((BigDecimal) b)
+                        : compareValues(a, b));
+                case STRING:
+                    return nullsFirst((a, b) -> a instanceof String && b instanceof String
+                        ? ((String) a).compareTo((String) b)
+                        : compareValues(a, b));
+                case COMPARABLE:
+                    return nullsFirst(ValueComparators::compareSameClass);
+                default:
+                    return nullsFirst(ValueComparators::compareValues);
+            }
+        }
+
+        /**
+         * 通用比较：数值按double，其他按字符串
+         */
+        static int compareValues(Object a, Object b) {
+            if (a instanceof Number && b instanceof Number) {
+                return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+            }
+            return a.toString().compareTo(b.toString());
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private static int compareSameClass(Object a, Object b) {
+            if (a.getClass() == b.getClass() && a instanceof Comparable) {
+                return ((Comparable) a).compareTo(b);
+            }
+            return compareValues(a, b);
+        }
+
+        private static boolean isIntegral(Object value) {
+            return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+        }
+
+        private static Comparator<Object> nullsFirst(Comparator<Object> comparator) {
+            return (a, b) -> {
+                if (a == null && b == null) return 0;
+                if (a == null) return -1;
+                if (b == null) return 1;
+                return comparator.compare(a, b);
+            };
+        }
+    }
+}
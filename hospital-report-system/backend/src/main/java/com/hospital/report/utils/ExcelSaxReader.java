@@ -0,0 +1,113 @@
+package com.hospital.report.utils;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 基于SAX事件模型的xlsx读取工具
+ * 逐行回调单元格的格式化文本，不构建工作簿DOM，内存占用与行数无关。
+ */
+public final class ExcelSaxReader {
+
+    private ExcelSaxReader() {
+    }
+
+    /**
+     * 行处理器
+     */
+    @FunctionalInterface
+    public interface RowHandler {
+        /**
+         * @param rowIndex 行号（从0开始）
+         * @param values 按列位置排列的单元格文本，空单元格为null
+         */
+        void handleRow(int rowIndex, List<String> values) throws Exception;
+    }
+
+    /**
+     * 读取第一个工作表的所有行
+     */
+    public static void readFirstSheet(File file, RowHandler rowHandler) throws Exception {
+        try (OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ)) {
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            XSSFReader reader = new XSSFReader(pkg);
+            StylesTable styles = reader.getStylesTable();
+
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            if (!sheets.hasNext()) {
+                return;
+            }
+
+            try (InputStream sheet = sheets.next()) {
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new XSSFSheetXMLHandler(
+                    styles, null, strings, new RowCollector(rowHandler), new DataFormatter(), false));
+                parser.parse(new InputSource(sheet));
+            } catch (RowHandlerException e) {
+                throw (Exception) e.getCause();
+            }
+        }
+    }
+
+    private static class RowCollector implements XSSFSheetXMLHandler.SheetContentsHandler {
+
+        private final RowHandler rowHandler;
+        private final List<String> values = new ArrayList<>();
+        private int currentColumn;
+
+        RowCollector(RowHandler rowHandler) {
+            this.rowHandler = rowHandler;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            values.clear();
+            currentColumn = -1;
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            try {
+                rowHandler.handleRow(rowNum, new ArrayList<>(values));
+            } catch (Exception e) {
+                throw new RowHandlerException(e);
+            }
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int column = cellReference != null ? new CellReference(cellReference).getCol() : currentColumn + 1;
+            // 空单元格不会产生事件，需要补齐列位置
+            while (values.size() < column) {
+                values.add(null);
+            }
+            values.add(formattedValue);
+            currentColumn = column;
+        }
+    }
+
+    /**
+     * 用于把行处理器的异常穿过SAX解析器传递出来
+     */
+    private static class RowHandlerException extends RuntimeException {
+        RowHandlerException(Exception cause) {
+            super(cause);
+        }
+    }
+}
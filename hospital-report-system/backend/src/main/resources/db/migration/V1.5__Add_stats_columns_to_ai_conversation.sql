@@ -0,0 +1,33 @@
+-- 为ai_conversation表添加冗余统计字段，避免对话列表逐条统计消息
+-- 创建时间：2026-10-19
+
+-- 添加消息数、最后一条消息预览和最后活跃时间
+ALTER TABLE ai_conversation
+ADD COLUMN message_count INT NOT NULL DEFAULT 0 COMMENT '消息数量' AFTER status,
+ADD COLUMN last_message VARCHAR(255) COMMENT '最后一条消息预览' AFTER message_count,
+ADD COLUMN last_message_time DATETIME COMMENT '最后一条消息时间' AFTER last_message;
+
+-- 回填现有对话的统计数据
+UPDATE ai_conversation c
+JOIN (
+    SELECT conversation_id, COUNT(*) AS cnt, MAX(created_time) AS last_time
+    FROM ai_message
+    GROUP BY conversation_id
+) s ON s.conversation_id = c.id
+SET c.message_count = s.cnt,
+    c.last_message_time = s.last_time;
+
+UPDATE ai_conversation c
+JOIN (
+    SELECT m.conversation_id, m.content
+    FROM ai_message m
+    JOIN (
+        SELECT conversation_id, MAX(id) AS max_id
+        FROM ai_message
+        GROUP BY conversation_id
+    ) t ON t.max_id = m.id
+) lm ON lm.conversation_id = c.id
+SET c.last_message = IF(CHAR_LENGTH(lm.content) > 50, CONCAT(LEFT(lm.content, 50), '...'), lm.content);
+
+-- 对话列表按用户、状态和更新时间查询
+CREATE INDEX idx_user_status_updated ON ai_conversation (user_id, status, updated_time);
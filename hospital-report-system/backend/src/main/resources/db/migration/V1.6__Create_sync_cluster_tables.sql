@@ -0,0 +1,22 @@
+-- 同步任务集群调度：节点租约与触发认领
+-- 创建时间：2026-10-19
+
+-- 存活节点：各节点定期续约，心跳超过租约时间视为下线
+CREATE TABLE IF NOT EXISTS sync_cluster_node (
+    node_id VARCHAR(128) NOT NULL COMMENT '节点ID',
+    host_name VARCHAR(255) COMMENT '主机名',
+    started_time DATETIME NOT NULL COMMENT '节点启动时间',
+    heartbeat_time DATETIME NOT NULL COMMENT '最近心跳时间',
+    PRIMARY KEY (node_id),
+    KEY idx_heartbeat_time (heartbeat_time)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='同步调度集群节点';
+
+-- 触发认领：同一任务的同一次计划触发只允许一个节点执行
+CREATE TABLE IF NOT EXISTS sync_fire_claim (
+    task_id BIGINT NOT NULL COMMENT '同步任务ID',
+    fire_time DATETIME NOT NULL COMMENT '计划触发时间',
+    node_id VARCHAR(128) NOT NULL COMMENT '执行节点ID',
+    claimed_time DATETIME NOT NULL COMMENT '认领时间',
+    PRIMARY KEY (task_id, fire_time),
+    KEY idx_fire_time (fire_time)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='同步任务触发认领';
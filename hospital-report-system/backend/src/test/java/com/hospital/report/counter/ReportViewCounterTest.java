@@ -0,0 +1,82 @@
+package com.hospital.report.counter;
+
+import com.hospital.report.mapper.ReportConfigMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 观看计数器：空闲淘汰后不再参与重新加载，重置与计数不会相互覆盖
+ */
+class ReportViewCounterTest {
+
+    private ReportConfigMapper mapper;
+    private ReportViewCounter counter;
+
+    @BeforeEach
+    void setUp() {
+        mapper = mock(ReportConfigMapper.class);
+        counter = new ReportViewCounter(mapper);
+        ReflectionTestUtils.setField(counter, "idleMinutes", 10);
+        when(mapper.selectViewCount(anyLong())).thenReturn(5);
+        when(mapper.selectViewCounts(anyList())).thenReturn(List.of());
+    }
+
+    @Test
+    void idleCountersAreEvictedAndNotReloaded() {
+        assertEquals(6, counter.increment(1L));
+        assertEquals(5, counter.getViewCount(2L));
+        counter.flush();
+        verify(mapper).batchIncrementViewCount(argThat(deltas -> deltas.size() == 1));
+        verify(mapper).selectViewCounts(argThat(ids -> ids.size() == 2));
+
+        // 两个计数器都已空闲且没有待写回增量
+        Map<Long, ?> counters = counters();
+        counters.values().forEach(value -> ReflectionTestUtils.setField(value, "lastAccessMillis", 0L));
+        counter.flush();
+
+        assertTrue(counters.isEmpty());
+        verify(mapper, times(1)).selectViewCounts(anyList());
+        // 再次访问时从数据库重新加载
+        assertEquals(5, counter.getViewCount(1L));
+    }
+
+    @Test
+    void countersWithPendingViewsAreNotEvicted() {
+        counter.increment(1L);
+        counters().values().forEach(value -> ReflectionTestUtils.setField(value, "lastAccessMillis", 0L));
+        doThrow(new IllegalStateException("db down")).when(mapper).batchIncrementViewCount(anyList());
+
+        counter.flush();
+
+        // 写回失败的增量退回计数器，计数器保留
+        assertEquals(1, counters().size());
+        assertEquals(6, counter.getViewCount(1L));
+    }
+
+    @Test
+    void resetDiscardsPendingAndCountsLaterViewsFromZero() {
+        counter.increment(1L);
+        counter.increment(1L);
+
+        counter.reset(1L);
+        verify(mapper).resetViewCount(1L);
+        assertEquals(1, counter.increment(1L));
+
+        counter.flush();
+        verify(mapper).batchIncrementViewCount(argThat(deltas ->
+            deltas.size() == 1 && Long.valueOf(1L).equals(deltas.get(0).get("delta"))));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Long, ?> counters() {
+        return (Map<Long, ?>) ReflectionTestUtils.getField(counter, "counters");
+    }
+}
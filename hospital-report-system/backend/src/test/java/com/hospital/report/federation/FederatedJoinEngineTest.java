@@ -0,0 +1,202 @@
+package com.hospital.report.federation;
+
+import com.hospital.report.concurrent.ExecutionMode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 联邦连接：内存预算为0时强制全部分区溢写，结果应与内存内连接一致
+ */
+class FederatedJoinEngineTest {
+
+    private static final int ROWS = 2000;
+
+    @TempDir
+    Path spillDir;
+
+    private FederatedJoinEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        engine = new FederatedJoinEngine(new ExecutionMode(false));
+        ReflectionTestUtils.setField(engine, "memoryBudgetMb", 64L);
+        ReflectionTestUtils.setField(engine, "spillPartitions", 8);
+        ReflectionTestUtils.setField(engine, "spillDir", spillDir.toString());
+        ReflectionTestUtils.setField(engine, "queueSize", 16);
+        ReflectionTestUtils.setField(engine, "maxResultRows", 100000);
+        engine.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.shutdown();
+    }
+
+    @Test
+    void spilledHashJoinMatchesInMemoryJoin() throws Exception {
+        Map<String, Object> config = joinConfig("INNER");
+
+        Map<String, Object> inMemory = engine.combine(inputs(), config);
+        ReflectionTestUtils.setField(engine, "memoryBudgetMb", 0L);
+        Map<String, Object> spilled = engine.combine(inputs(), config);
+
+        assertEquals(0, stats(inMemory).get("spilledPartitions"));
+        assertEquals(8, stats(spilled).get("spilledPartitions"));
+        assertTrue(((Number) stats(spilled).get("spilledRows")).longValue() > 0);
+        // 溢写分区最后连接，只比较内容不比较顺序
+        assertEquals(ROWS / 2, rows(spilled).size());
+        assertEquals(new HashSet<>(rows(inMemory)), new HashSet<>(rows(spilled)));
+        assertEquals(Boolean.FALSE, spilled.get("truncated"));
+        assertSpillFilesRemoved();
+    }
+
+    @Test
+    void spilledLeftJoinKeepsUnmatchedAndNullKeyRows() throws Exception {
+        ReflectionTestUtils.setField(engine, "memoryBudgetMb", 0L);
+        List<Map<String, Object>> probe = new ArrayList<>(probeRows());
+        probe.add(row("patient_id", null, "visit", "v-null"));
+
+        Map<String, Object> result = engine.combine(
+            List.of(RowStream.of("visit", probe), RowStream.of("patient", buildRows())), joinConfig("LEFT"));
+
+        List<Map<String, Object>> rows = rows(result);
+        assertEquals(ROWS + 1, rows.size());
+        Map<String, Object> matched = find(rows, "visit", "v-2");
+        assertEquals("name-2", matched.get("name"));
+        Map<String, Object> unmatched = find(rows, "visit", "v-3");
+        assertFalse(unmatched.containsKey("name"));
+        assertNotNull(find(rows, "visit", "v-null"));
+        assertSpillFilesRemoved();
+    }
+
+    @Test
+    void spilledJoinIsTruncatedAtMaxRows() throws Exception {
+        ReflectionTestUtils.setField(engine, "memoryBudgetMb", 0L);
+        Map<String, Object> config = joinConfig("INNER");
+        config.put("maxRows", 10);
+
+        Map<String, Object> result = engine.combine(inputs(), config);
+
+        assertEquals(10, rows(result).size());
+        assertEquals(Boolean.TRUE, result.get("truncated"));
+        assertSpillFilesRemoved();
+    }
+
+    @Test
+    void numericKeysOfDifferentTypesMatch() throws Exception {
+        List<Map<String, Object>> left = List.of(row("patient_id", 7, "visit", "v-7"));
+        List<Map<String, Object>> right = List.of(row("patient_id", new java.math.BigDecimal("7.00"), "name", "name-7"));
+
+        Map<String, Object> result = engine.combine(
+            List.of(RowStream.of("visit", left), RowStream.of("patient", right)), joinConfig("INNER"));
+
+        assertEquals(1, rows(result).size());
+        assertEquals("name-7", rows(result).get(0).get("name"));
+    }
+
+    @Test
+    void sortedJoinUsesMergeAndRejectsUnorderedInput() throws Exception {
+        Map<String, Object> config = joinConfig("INNER");
+        config.put("sorted", true);
+
+        Map<String, Object> result = engine.combine(inputs(), config);
+        assertEquals(List.of(FederatedJoinEngine.STRATEGY_MERGE), stats(result).get("strategies"));
+        assertEquals(ROWS / 2, rows(result).size());
+
+        List<Map<String, Object>> unordered = new ArrayList<>(buildRows());
+        Collections.reverse(unordered);
+        assertThrows(IllegalStateException.class, () -> engine.combine(
+            List.of(RowStream.of("visit", probeRows()), RowStream.of("patient", unordered)), config));
+    }
+
+    @Test
+    void streamedSourceIsJoinedAndClosedAfterTruncation() throws Exception {
+        ReflectionTestUtils.setField(engine, "memoryBudgetMb", 0L);
+        Map<String, Object> config = joinConfig("INNER");
+        config.put("maxRows", 5);
+
+        RowStream probe = engine.stream("visit", sink -> {
+            for (Map<String, Object> row : probeRows()) {
+                if (!sink.accept(row)) {
+                    return;
+                }
+            }
+        });
+        Map<String, Object> result = engine.combine(List.of(probe, RowStream.of("patient", buildRows())), config);
+
+        assertEquals(5, rows(result).size());
+        assertEquals(Boolean.TRUE, result.get("truncated"));
+    }
+
+    private static Map<String, Object> joinConfig(String joinType) {
+        Map<String, Object> config = new HashMap<>();
+        config.put("type", "JOIN");
+        config.put("joinType", joinType);
+        config.put("keys", List.of("patient_id"));
+        return config;
+    }
+
+    private static List<RowStream> inputs() {
+        return List.of(RowStream.of("visit", probeRows()), RowStream.of("patient", buildRows()));
+    }
+
+    /**
+     * 就诊记录：每个患者一条，患者编号 0..ROWS-1
+     */
+    private static List<Map<String, Object>> probeRows() {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (long i = 0; i < ROWS; i++) {
+            rows.add(row("patient_id", i, "visit", "v-" + i));
+        }
+        return rows;
+    }
+
+    /**
+     * 患者信息：只有偶数编号的患者
+     */
+    private static List<Map<String, Object>> buildRows() {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int i = 0; i < ROWS; i += 2) {
+            rows.add(row("patient_id", i, "name", "name-" + i));
+        }
+        return rows;
+    }
+
+    private static Map<String, Object> row(String key, Object keyValue, String field, Object value) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put(key, keyValue);
+        row.put(field, value);
+        return row;
+    }
+
+    private static Map<String, Object> find(List<Map<String, Object>> rows, String field, Object value) {
+        return rows.stream().filter(row -> value.equals(row.get(field))).findFirst()
+            .orElseGet(() -> fail("结果中没有 " + field + "=" + value));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> rows(Map<String, Object> result) {
+        return (List<Map<String, Object>>) result.get("data");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> stats(Map<String, Object> result) {
+        return (Map<String, Object>) result.get("combineStats");
+    }
+
+    private void assertSpillFilesRemoved() throws Exception {
+        try (Stream<Path> files = Files.list(spillDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+}
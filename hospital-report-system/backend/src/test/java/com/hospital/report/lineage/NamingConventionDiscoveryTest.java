@@ -0,0 +1,71 @@
+package com.hospital.report.lineage;
+
+import com.hospital.report.entity.LineageNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 命名规则发现：派生字段跨表匹配，关系在调用线程中逐条回调
+ */
+class NamingConventionDiscoveryTest {
+
+    private final NamingConventionDiscovery discovery = new NamingConventionDiscovery();
+
+    @Test
+    void derivedColumnsMatchAcrossTables() {
+        List<LineageNode> nodes = List.of(
+            node("n1", "visit", "amount"),
+            node("n2", "visit_summary", "amount_total"),
+            node("n3", "visit", "amountTotalFee"));
+
+        Set<String> derived = new HashSet<>();
+        int count = discovery.discover(nodes, relation -> {
+            if ("DERIVED".equals(relation.get("relationType"))) {
+                derived.add(relation.get("sourceId") + "->" + relation.get("targetId"));
+            }
+        });
+
+        assertEquals(Set.of("n1->n2", "n1->n3", "n2->n3"), derived);
+        assertEquals(3, count);
+    }
+
+    @Test
+    void keyColumnReferencesOwnerTable() {
+        List<LineageNode> nodes = List.of(
+            node("d1", "sys_dept", "dept_id"),
+            node("v1", "visit", "deptId"),
+            node("v2", "visit", "patient_name"));
+
+        List<Map<String, Object>> relations = new ArrayList<>();
+        discovery.discover(nodes, relations::add);
+
+        assertEquals(1, relations.size());
+        assertEquals("d1", relations.get(0).get("sourceId"));
+        assertEquals("v1", relations.get(0).get("targetId"));
+        assertEquals("REFERENCE", relations.get(0).get("relationType"));
+    }
+
+    @Test
+    void relationsAreDeliveredOnCallingThreadAndConsumerFailureStopsDiscovery() {
+        List<LineageNode> nodes = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            nodes.add(node("s" + i, "src_" + i, "col" + i));
+            nodes.add(node("t" + i, "dst_" + i, "col" + i + "_sum"));
+        }
+        Thread caller = Thread.currentThread();
+
+        IllegalStateException error = assertThrows(IllegalStateException.class, () ->
+            discovery.discover(nodes, relation -> {
+                assertSame(caller, Thread.currentThread());
+                throw new IllegalStateException("SSE连接已断开");
+            }));
+        assertEquals("SSE连接已断开", error.getMessage());
+    }
+
+    private static LineageNode node(String nodeId, String tableName, String columnName) {
+        return new LineageNode().setNodeId(nodeId).setTableName(tableName).setColumnName(columnName);
+    }
+}
@@ -0,0 +1,127 @@
+package com.hospital.report.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hospital.report.service.ExportService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 导出任务：执行中的任务由工作线程完成取消，慢订阅者不阻塞状态更新
+ */
+class ExportJobServiceImplTest {
+
+    @TempDir
+    Path spoolDir;
+
+    private ExportService exportService;
+    private ExportJobServiceImpl service;
+
+    private final CountDownLatch exportStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseExport = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() throws Exception {
+        exportService = mock(ExportService.class);
+        service = new ExportJobServiceImpl(exportService, new ObjectMapper());
+        ReflectionTestUtils.setField(service, "workerThreads", 1);
+        ReflectionTestUtils.setField(service, "queueCapacity", 4);
+        ReflectionTestUtils.setField(service, "spoolDir", spoolDir.toString());
+        ReflectionTestUtils.setField(service, "retentionMinutes", 120);
+        service.init();
+
+        doAnswer(invocation -> {
+            LongConsumer progress = invocation.getArgument(5);
+            exportStarted.countDown();
+            releaseExport.await(5, TimeUnit.SECONDS);
+            progress.accept(100);
+            return null;
+        }).when(exportService).exportQueryToExcel(anyString(), anyMap(), anyString(), anyMap(), any(), any());
+    }
+
+    @AfterEach
+    void tearDown() {
+        releaseExport.countDown();
+        service.shutdown();
+    }
+
+    @Test
+    void runningJobStaysRunningUntilWorkerStops() throws Exception {
+        String jobId = submit();
+        assertTrue(exportStarted.await(5, TimeUnit.SECONDS));
+
+        service.cancelJob(jobId);
+        assertEquals("RUNNING", service.getJobStatus(jobId).get("status"));
+
+        releaseExport.countDown();
+        awaitStatus(jobId, "CANCELLED");
+        try (var files = Files.list(spoolDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void queuedJobIsCancelledImmediately() throws Exception {
+        submit();
+        assertTrue(exportStarted.await(5, TimeUnit.SECONDS));
+        String queued = service.submitQueryExport("SELECT 2", Map.of(), "mysql", Map.of(), null)
+            .get("jobId").toString();
+
+        service.cancelJob(queued);
+
+        assertEquals("CANCELLED", service.getJobStatus(queued).get("status"));
+        verify(exportService, times(1)).exportQueryToExcel(anyString(), anyMap(), anyString(), anyMap(), any(), any());
+    }
+
+    @Test
+    void slowSubscriberDoesNotBlockStatusUpdates() throws Exception {
+        String jobId = submit();
+        assertTrue(exportStarted.await(5, TimeUnit.SECONDS));
+
+        CountDownLatch inSend = new CountDownLatch(1);
+        CountDownLatch releaseSend = new CountDownLatch(1);
+        Thread subscriber = new Thread(() -> service.subscribe(jobId, status -> {
+            inSend.countDown();
+            try {
+                releaseSend.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        subscriber.start();
+        assertTrue(inSend.await(5, TimeUnit.SECONDS));
+
+        // 订阅者的首次推送仍阻塞时，任务可以照常完成
+        releaseExport.countDown();
+        awaitStatus(jobId, "COMPLETED");
+
+        releaseSend.countDown();
+        subscriber.join(5000);
+        assertFalse(subscriber.isAlive());
+    }
+
+    private String submit() {
+        return service.submitQueryExport("SELECT 1", Map.of(), "mysql", Map.of(), null).get("jobId").toString();
+    }
+
+    private void awaitStatus(String jobId, String expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!expected.equals(service.getJobStatus(jobId).get("status")) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, service.getJobStatus(jobId).get("status"));
+    }
+}
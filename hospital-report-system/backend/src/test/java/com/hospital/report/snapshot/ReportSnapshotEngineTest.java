@@ -0,0 +1,154 @@
+package com.hospital.report.snapshot;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hospital.report.cache.ReportResultCache;
+import com.hospital.report.entity.ReportDataSource;
+import com.hospital.report.federation.FederatedJoinEngine;
+import com.hospital.report.generator.ReportComponentFetcher;
+import com.hospital.report.mapper.ReportComponentMapper;
+import com.hospital.report.mapper.ReportDataSourceMapper;
+import com.hospital.report.service.DataSourceService;
+import com.hospital.report.service.SqlExecutionService;
+import com.hospital.report.service.impl.ReportDataServiceImpl;
+import com.hospital.report.transform.AggregationEngine;
+import com.hospital.report.transform.SqlPushdownOptimizer;
+import com.hospital.report.transform.TransformCompiler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 快照引擎与数据服务加载器联调：SQL 数据源的结果为值列表形式，增量刷新按列名合并
+ */
+class ReportSnapshotEngineTest {
+
+    private static final String SQL = "SELECT id, status, updated_at FROM visit";
+
+    private ReportDataSourceMapper dataSourceMapper;
+    private SqlExecutionService sqlExecutionService;
+    private ReportSnapshotEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        dataSourceMapper = mock(ReportDataSourceMapper.class);
+        sqlExecutionService = mock(SqlExecutionService.class);
+        engine = new ReportSnapshotEngine(dataSourceMapper, objectMapper);
+        ReflectionTestUtils.setField(engine, "enabled", true);
+        ReflectionTestUtils.setField(engine, "storeDir", "");
+        ReflectionTestUtils.setField(engine, "scanSeconds", 1);
+        ReflectionTestUtils.setField(engine, "refreshThreads", 1);
+        ReflectionTestUtils.setField(engine, "maxParamSets", 5);
+        ReflectionTestUtils.setField(engine, "minHits", 3);
+        ReflectionTestUtils.setField(engine, "maxRows", 50000);
+        ReflectionTestUtils.setField(engine, "fullRefreshEvery", 12);
+        ReflectionTestUtils.setField(engine, "staleGraceSeconds", 300);
+        ReflectionTestUtils.setField(engine, "failureBackoffSeconds", 60);
+
+        ReportDataServiceImpl dataService = new ReportDataServiceImpl(dataSourceMapper, sqlExecutionService, objectMapper,
+            mock(RestTemplate.class), engine, mock(ReportResultCache.class), mock(ReportComponentMapper.class),
+            mock(ReportComponentFetcher.class), mock(TransformCompiler.class), mock(AggregationEngine.class),
+            mock(SqlPushdownOptimizer.class), mock(DataSourceService.class), mock(FederatedJoinEngine.class));
+        dataService.registerSnapshotLoader();
+
+        when(dataSourceMapper.selectSnapshotSchedules())
+            .thenReturn(List.of(Map.of("data_source_id", 1L, "refresh_interval", 1)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.shutdown();
+    }
+
+    @Test
+    void incrementalRefreshMergesSqlRowsByKeyColumn() throws Exception {
+        when(dataSourceMapper.selectByDataSourceId(1L)).thenReturn(dataSource(SQL
+            + "\",\"incrementalColumn\":\"updated_at\",\"keyColumns\":[\"id\"]"));
+        when(sqlExecutionService.executeQuery(eq(SQL), anyMap(), eq("his"), eq(1L)))
+            .thenReturn(sqlResult(List.of(List.of(1L, "OPEN", 100L), List.of(2L, "OPEN", 100L))));
+        when(sqlExecutionService.executeQuery(contains("snapshot_src"), anyMap(), eq("his"), eq(1L)))
+            .thenReturn(sqlResult(List.of(List.of(2L, "CLOSED", 200L), List.of(3L, "OPEN", 200L))));
+
+        engine.start();
+
+        Map<String, Object> snapshot = await(() -> {
+            Map<String, Object> result = engine.lookup(1L, Collections.emptyMap());
+            return result != null && ((List<?>) result.get("data")).size() == 3 ? result : null;
+        });
+
+        // 与实时查询相同的值列表形式，主键2被增量数据覆盖
+        assertEquals(List.of(
+            List.of(1L, "OPEN", 100L),
+            List.of(2L, "CLOSED", 200L),
+            List.of(3L, "OPEN", 200L)), snapshot.get("data"));
+        assertEquals(Boolean.TRUE, snapshot.get("fromSnapshot"));
+        verify(sqlExecutionService, atLeastOnce()).executeQuery(contains("snapshot_src"),
+            argThat(parameters -> Long.valueOf(100L).equals(parameters.get("__snapshot_watermark"))), eq("his"), eq(1L));
+    }
+
+    @Test
+    void defaultParameterSetIsSkippedWhenSqlParameterIsMissing() throws Exception {
+        when(dataSourceMapper.selectByDataSourceId(1L)).thenReturn(dataSource(SQL + " WHERE dept_id = #{deptId}\""));
+
+        engine.start();
+        Thread.sleep(3000);
+
+        verify(sqlExecutionService, never()).executeQuery(anyString(), anyMap(), anyString(), anyLong());
+    }
+
+    @Test
+    void failedRefreshBacksOffInsteadOfRetryingEveryScan() throws Exception {
+        when(dataSourceMapper.selectByDataSourceId(1L)).thenReturn(dataSource(SQL + "\""));
+        Map<String, Object> failure = new HashMap<>();
+        failure.put("success", false);
+        failure.put("message", "SQL execution failed");
+        when(sqlExecutionService.executeQuery(eq(SQL), anyMap(), eq("his"), eq(1L))).thenReturn(failure);
+
+        engine.start();
+        Thread.sleep(3500);
+
+        verify(sqlExecutionService, times(1)).executeQuery(eq(SQL), anyMap(), eq("his"), eq(1L));
+        assertNull(engine.lookup(1L, Collections.emptyMap()));
+    }
+
+    /**
+     * @param sqlAndOptions sql 开头、以引号结束（可带后续配置项）的 queryConfig 片段
+     */
+    private static ReportDataSource dataSource(String sqlAndOptions) {
+        return new ReportDataSource()
+            .setDataSourceId(1L)
+            .setSourceType("SQL")
+            .setIsActive(true)
+            .setQueryConfig("{\"databaseType\":\"his\",\"sql\":\"" + sqlAndOptions + "}");
+    }
+
+    private static Map<String, Object> sqlResult(List<? extends List<?>> rows) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("success", true);
+        result.put("data", rows);
+        result.put("columns", List.of("id", "status", "updated_at"));
+        result.put("rowCount", rows.size());
+        return result;
+    }
+
+    private static <T> T await(Supplier<T> condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 15000;
+        while (System.currentTimeMillis() < deadline) {
+            T value = condition.get();
+            if (value != null) {
+                return value;
+            }
+            Thread.sleep(100);
+        }
+        return fail("快照未在15秒内完成增量刷新");
+    }
+}
@@ -0,0 +1,104 @@
+package com.hospital.report.transform;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 下推规则与列类型：字符串列的排序和数值条件留在 Java 执行
+ */
+class SqlPushdownOptimizerTest {
+
+    private static final String SOURCE = "{\"sql\":\"SELECT * FROM visit\"}";
+    private static final String SQL = "SELECT * FROM visit";
+
+    private SqlPushdownOptimizer optimizer;
+
+    @BeforeEach
+    void setUp() {
+        optimizer = new SqlPushdownOptimizer(new ObjectMapper());
+        ReflectionTestUtils.setField(optimizer, "enabled", true);
+        Map<String, Object> result = new HashMap<>();
+        result.put("columns", List.of("dept_name", "fee", "visit_time", "bed_no"));
+        result.put("columnTypes", List.of("VARCHAR", "DECIMAL", "TIMESTAMP", "VARCHAR"));
+        optimizer.recordColumnTypes(SOURCE, result);
+    }
+
+    @Test
+    void stringSortWithLimitStaysInJava() {
+        String config = "{\"transformations\":[{\"type\":\"SORT\",\"field\":\"dept_name\"},{\"type\":\"LIMIT\",\"limit\":10}]}";
+
+        assertNull(optimizer.plan(SOURCE, config, "mysql"));
+    }
+
+    @Test
+    void numericAndTemporalSortWithLimitArePushed() {
+        String config = "{\"transformations\":[{\"type\":\"SORT\",\"field\":\"visit_time\",\"direction\":\"DESC\"},"
+            + "{\"type\":\"LIMIT\",\"limit\":10}]}";
+
+        SqlPushdownOptimizer.PushdownPlan plan = optimizer.plan(SOURCE, config, "mysql");
+
+        assertNotNull(plan);
+        assertEquals("SELECT * FROM (" + SQL + ") pd_src ORDER BY `visit_time` DESC LIMIT 10", plan.wrap(SQL));
+        assertNull(plan.getResidualConfig());
+    }
+
+    @Test
+    void sortIsNotPushedBeforeColumnTypesAreKnown() {
+        String config = "{\"transformations\":[{\"type\":\"SORT\",\"field\":\"fee\"}]}";
+
+        assertNull(optimizer.plan("{\"sql\":\"SELECT * FROM other\"}", config, "mysql"));
+    }
+
+    @Test
+    void unknownColumnOnlyKeepsItsOwnStepInJava() {
+        String config = "{\"transformations\":[{\"type\":\"FILTER\",\"field\":\"fee\",\"operator\":\"GREATER_THAN\",\"value\":100},"
+            + "{\"type\":\"SORT\",\"field\":\"amount\"}]}";
+
+        SqlPushdownOptimizer.PushdownPlan plan = optimizer.plan(SOURCE, config, "mysql");
+
+        assertNotNull(plan);
+        assertEquals("SELECT * FROM (" + SQL + ") pd_src WHERE `fee` > #{__pd_0}", plan.wrap(SQL));
+        assertEquals("{\"transformations\":[{\"type\":\"SORT\",\"field\":\"amount\"}]}", plan.getResidualConfig());
+    }
+
+    @Test
+    void numericPredicateOnStringColumnStaysInJava() {
+        String config = "{\"transformations\":[{\"type\":\"FILTER\",\"field\":\"bed_no\",\"operator\":\"GREATER_THAN\",\"value\":9}]}";
+
+        assertNull(optimizer.plan(SOURCE, config, "mysql"));
+    }
+
+    @Test
+    void numericEqualityIsRecheckedAndBlocksLimit() {
+        String config = "{\"transformations\":[{\"type\":\"FILTER\",\"field\":\"fee\",\"operator\":\"EQUALS\",\"value\":10},"
+            + "{\"type\":\"LIMIT\",\"limit\":5}]}";
+
+        SqlPushdownOptimizer.PushdownPlan plan = optimizer.plan(SOURCE, config, "mysql");
+
+        assertNotNull(plan);
+        assertEquals("SELECT * FROM (" + SQL + ") pd_src WHERE `fee` = #{__pd_0}", plan.wrap(SQL));
+        assertEquals("{\"transformations\":[{\"type\":\"FILTER\",\"field\":\"fee\",\"operator\":\"EQUALS\",\"value\":10},"
+            + "{\"type\":\"LIMIT\",\"limit\":5}]}", plan.getResidualConfig());
+    }
+
+    @Test
+    void numericRangeOnNumericColumnIsPushedExactly() {
+        String config = "{\"transformations\":[{\"type\":\"FILTER\",\"field\":\"fee\",\"operator\":\"GREATER_EQUALS\",\"value\":100},"
+            + "{\"type\":\"LIMIT\",\"limit\":5}]}";
+
+        SqlPushdownOptimizer.PushdownPlan plan = optimizer.plan(SOURCE, config, "postgresql");
+
+        assertNotNull(plan);
+        assertEquals("SELECT * FROM (" + SQL + ") pd_src WHERE \"fee\" >= #{__pd_0} LIMIT 5", plan.wrap(SQL));
+        assertEquals(100, plan.bindParameters(Map.of()).get("__pd_0"));
+        assertNull(plan.getResidualConfig());
+    }
+}
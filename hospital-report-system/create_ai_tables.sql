@@ -10,12 +10,16 @@ CREATE TABLE ai_conversation (
     title VARCHAR(255) NOT NULL COMMENT '对话标题',
     datasource_id BIGINT COMMENT '关联数据源ID',
     status VARCHAR(20) DEFAULT 'ACTIVE' COMMENT '状态：ACTIVE, ARCHIVED, DELETED',
+    message_count INT NOT NULL DEFAULT 0 COMMENT '消息数量',
+    last_message VARCHAR(255) COMMENT '最后一条消息预览',
+    last_message_time DATETIME COMMENT '最后一条消息时间',
     created_time DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
     updated_time DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
     INDEX idx_user_id (user_id),
     INDEX idx_datasource_id (datasource_id),
     INDEX idx_status (status),
-    INDEX idx_created_time (created_time)
+    INDEX idx_created_time (created_time),
+    INDEX idx_user_status_updated (user_id, status, updated_time)
 ) COMMENT 'AI对话表' ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
 -- 2. AI消息表 (AI Messages)